@@ -0,0 +1,32 @@
+package com.financorp.serf.config;
+
+import com.financorp.serf.patterns.structural.ParallelSectionRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configura el renderizado paralelo de secciones de reportes
+ * a partir de las propiedades de la aplicación
+ */
+@Configuration
+public class ReportRenderingConfig {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReportRenderingConfig.class);
+    
+    /**
+     * Renderizador compartido por los reportes de la aplicación; su pool se
+     * libera al cerrar el contexto
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ParallelSectionRenderer parallelSectionRenderer(
+            @Value("${serf.reportes.render.parallel.enabled:true}") boolean parallelEnabled,
+            @Value("${serf.reportes.render.parallel.threads:4}") int parallelThreads,
+            @Value("${serf.reportes.render.parallel.threshold-chars:65536}") long thresholdChars) {
+        logger.info("Renderizado paralelo de reportes: habilitado={}, hilos={}, umbral={} caracteres",
+                parallelEnabled, parallelThreads, thresholdChars);
+        return new ParallelSectionRenderer(parallelEnabled, parallelThreads, thresholdChars);
+    }
+}
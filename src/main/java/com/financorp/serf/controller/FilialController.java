@@ -1,5 +1,7 @@
 package com.financorp.serf.controller;
 
+import com.financorp.serf.dto.FilialDto;
+import com.financorp.serf.dto.Pagina;
 import com.financorp.serf.model.Filial;
 import com.financorp.serf.service.FilialService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,7 +9,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/filiales")
@@ -17,41 +21,62 @@ public class FilialController {
     @Autowired
     private FilialService filialService;
     
+    /**
+     * Filiales paginadas por id; la siguiente página se pide con el
+     * siguienteCursor de la respuesta
+     */
     @GetMapping
-    public ResponseEntity<List<Filial>> getAllFiliales() {
-        return ResponseEntity.ok(filialService.getAllFiliales());
+    public ResponseEntity<?> getFiliales(
+            @RequestParam(required = false) String pais,
+            @RequestParam(required = false) Boolean activa,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        try {
+            Pagina<Filial> pagina = filialService.getFilialesPage(pais, activa, cursor, limite);
+            return ResponseEntity.ok(pagina.map(FilialDto::from));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
     }
     
     @GetMapping("/activas")
-    public ResponseEntity<List<Filial>> getActiveFiliales() {
-        return ResponseEntity.ok(filialService.getActiveFiliales());
+    public ResponseEntity<List<FilialDto>> getActiveFiliales() {
+        return ResponseEntity.ok(filialService.getActiveFiliales().stream().map(FilialDto::from).toList());
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<Filial> getFilialById(@PathVariable Long id) {
-        return ResponseEntity.ok(filialService.getFilialById(id));
+    public ResponseEntity<FilialDto> getFilialById(@PathVariable Long id) {
+        return ResponseEntity.ok(FilialDto.from(filialService.getFilialById(id)));
     }
     
     @GetMapping("/codigo/{codigo}")
-    public ResponseEntity<Filial> getFilialByCodigo(@PathVariable String codigo) {
-        return ResponseEntity.ok(filialService.getFilialByCodigo(codigo));
+    public ResponseEntity<FilialDto> getFilialByCodigo(@PathVariable String codigo) {
+        return ResponseEntity.ok(FilialDto.from(filialService.getFilialByCodigo(codigo)));
     }
     
     @GetMapping("/pais/{pais}")
-    public ResponseEntity<List<Filial>> getFilialByPais(@PathVariable String pais) {
-        return ResponseEntity.ok(filialService.getFilialByPais(pais));
+    public ResponseEntity<List<FilialDto>> getFilialByPais(@PathVariable String pais) {
+        return ResponseEntity.ok(filialService.getFilialByPais(pais).stream().map(FilialDto::from).toList());
     }
     
     @PostMapping
-    public ResponseEntity<Filial> createFilial(@RequestBody Filial filial) {
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(filialService.createFilial(filial));
+    public ResponseEntity<?> createFilial(@RequestBody Filial filial) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(FilialDto.from(filialService.createFilial(filial)));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
     }
     
     @PutMapping("/{id}")
-    public ResponseEntity<Filial> updateFilial(@PathVariable Long id, 
-                                               @RequestBody Filial filial) {
-        return ResponseEntity.ok(filialService.updateFilial(id, filial));
+    public ResponseEntity<?> updateFilial(@PathVariable Long id, 
+                                          @RequestBody Filial filial) {
+        try {
+            return ResponseEntity.ok(FilialDto.from(filialService.updateFilial(id, filial)));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
     }
     
     @DeleteMapping("/{id}")
@@ -59,4 +84,11 @@ public class FilialController {
         filialService.deleteFilial(id);
         return ResponseEntity.noContent().build();
     }
+    
+    private ResponseEntity<Map<String, Object>> badRequest(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("message", message);
+        return ResponseEntity.badRequest().body(response);
+    }
 }
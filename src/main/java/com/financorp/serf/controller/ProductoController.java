@@ -1,13 +1,22 @@
 package com.financorp.serf.controller;
 
+import com.financorp.serf.dto.Pagina;
+import com.financorp.serf.dto.ProductoDto;
 import com.financorp.serf.model.Producto;
+import com.financorp.serf.service.CatalogCache;
+import com.financorp.serf.service.InventoryLedger;
+import com.financorp.serf.service.LowStockIndex;
 import com.financorp.serf.service.ProductoService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/productos")
@@ -17,53 +26,127 @@ public class ProductoController {
     @Autowired
     private ProductoService productoService;
     
+    @Autowired
+    private InventoryLedger inventoryLedger;
+    
+    @Autowired
+    private CatalogCache catalogCache;
+    
+    @Autowired
+    private LowStockIndex lowStockIndex;
+    
+    /**
+     * Productos paginados por id; la siguiente página se pide con el
+     * siguienteCursor de la respuesta
+     */
     @GetMapping
-    public ResponseEntity<List<Producto>> getAllProductos() {
-        return ResponseEntity.ok(productoService.getAllProductos());
+    public ResponseEntity<?> getProductos(
+            @RequestParam(required = false) Long filialId,
+            @RequestParam(required = false) Producto.CategoriaProducto categoria,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        try {
+            Pagina<Producto> pagina = productoService.getProductosPage(filialId, categoria, cursor, limite);
+            return ResponseEntity.ok(pagina.map(ProductoDto::from));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<Producto> getProductoById(@PathVariable Long id) {
-        return ResponseEntity.ok(productoService.getProductoById(id));
+    public ResponseEntity<ProductoDto> getProductoById(@PathVariable Long id) {
+        return ResponseEntity.ok(ProductoDto.from(productoService.getProductoById(id)));
     }
     
     @GetMapping("/sku/{sku}")
-    public ResponseEntity<Producto> getProductoBySku(@PathVariable String sku) {
-        return ResponseEntity.ok(productoService.getProductoBySku(sku));
+    public ResponseEntity<ProductoDto> getProductoBySku(@PathVariable String sku) {
+        return ResponseEntity.ok(ProductoDto.from(productoService.getProductoBySku(sku)));
     }
     
     @GetMapping("/filial/{filialId}")
-    public ResponseEntity<List<Producto>> getProductosByFilial(@PathVariable Long filialId) {
-        return ResponseEntity.ok(productoService.getProductosByFilial(filialId));
+    public ResponseEntity<List<ProductoDto>> getProductosByFilial(@PathVariable Long filialId) {
+        return ResponseEntity.ok(productoService.getProductosByFilial(filialId).stream()
+                .map(ProductoDto::from).toList());
     }
     
     @GetMapping("/categoria/{categoria}")
-    public ResponseEntity<List<Producto>> getProductosByCategoria(
+    public ResponseEntity<List<ProductoDto>> getProductosByCategoria(
             @PathVariable Producto.CategoriaProducto categoria) {
-        return ResponseEntity.ok(productoService.getProductosByCategoria(categoria));
+        return ResponseEntity.ok(productoService.getProductosByCategoria(categoria).stream()
+                .map(ProductoDto::from).toList());
     }
     
     @GetMapping("/bajo-stock")
-    public ResponseEntity<List<Producto>> getProductosConBajoStock() {
+    public ResponseEntity<List<ProductoDto>> getProductosConBajoStock() {
         return ResponseEntity.ok(productoService.getProductosConBajoStock());
     }
     
+    /**
+     * Alertas de stock por Server-Sent Events: BAJO_STOCK cuando un producto
+     * baja del mínimo y RECUPERADO cuando vuelve a superarlo
+     */
+    @GetMapping(value = "/bajo-stock/alertas", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAlertasStock() {
+        return lowStockIndex.subscribe();
+    }
+    
+    /**
+     * Reconstruye el índice de stock bajo desde la base de datos (debe
+     * ejecutarse sin ventas concurrentes)
+     */
+    @PostMapping("/bajo-stock/recargar")
+    public ResponseEntity<Map<String, Object>> reloadBajoStock() {
+        return ResponseEntity.ok(lowStockIndex.reload());
+    }
+    
+    @GetMapping("/{id}/stock")
+    public ResponseEntity<Map<String, Object>> getStockDisponible(@PathVariable Long id) {
+        return ResponseEntity.ok(Map.of(
+                "productoId", id,
+                "stockDisponible", productoService.getStockDisponible(id),
+                "registroEnMemoria", inventoryLedger.isEnabled()));
+    }
+    
+    /**
+     * Conciliación del registro de inventario en memoria con la base de datos
+     */
+    @GetMapping("/inventario/conciliacion")
+    public ResponseEntity<Map<String, Object>> reconcileInventario(
+            @RequestParam(defaultValue = "false") boolean reparar) {
+        if (!inventoryLedger.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "El registro de inventario en memoria no está activo"));
+        }
+        List<Map<String, Object>> diferencias = inventoryLedger.reconcile(reparar);
+        return ResponseEntity.ok(Map.of(
+                "conciliado", diferencias.isEmpty(),
+                "diferencias", diferencias));
+    }
+    
+    /**
+     * Contadores de la caché de búsquedas de filiales y productos
+     */
+    @GetMapping("/cache/estadisticas")
+    public ResponseEntity<Map<String, Object>> getCatalogCacheStatistics() {
+        return ResponseEntity.ok(catalogCache.getStatistics());
+    }
+    
     @PostMapping
-    public ResponseEntity<Producto> createProducto(@RequestBody Producto producto) {
+    public ResponseEntity<ProductoDto> createProducto(@RequestBody Producto producto) {
         return ResponseEntity.status(HttpStatus.CREATED)
-                .body(productoService.createProducto(producto));
+                .body(ProductoDto.from(productoService.createProducto(producto)));
     }
     
     @PutMapping("/{id}")
-    public ResponseEntity<Producto> updateProducto(@PathVariable Long id, 
+    public ResponseEntity<ProductoDto> updateProducto(@PathVariable Long id, 
                                                    @RequestBody Producto producto) {
-        return ResponseEntity.ok(productoService.updateProducto(id, producto));
+        return ResponseEntity.ok(ProductoDto.from(productoService.updateProducto(id, producto)));
     }
     
     @PatchMapping("/{id}/stock")
-    public ResponseEntity<Producto> updateStock(@PathVariable Long id, 
+    public ResponseEntity<ProductoDto> updateStock(@PathVariable Long id, 
                                                @RequestParam Integer cantidad) {
-        return ResponseEntity.ok(productoService.updateStock(id, cantidad));
+        return ResponseEntity.ok(ProductoDto.from(productoService.updateStock(id, cantidad)));
     }
     
     @DeleteMapping("/{id}")
@@ -71,4 +154,11 @@ public class ProductoController {
         productoService.deleteProducto(id);
         return ResponseEntity.noContent().build();
     }
+    
+    private ResponseEntity<Map<String, Object>> badRequest(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("message", message);
+        return ResponseEntity.badRequest().body(response);
+    }
 }
@@ -1,16 +1,36 @@
 package com.financorp.serf.controller;
 
+import com.financorp.serf.metrics.ReportMetrics;
+import com.financorp.serf.metrics.ServerTiming;
 import com.financorp.serf.patterns.creational.ReportFactory;
+import com.financorp.serf.patterns.structural.Report;
+import com.financorp.serf.service.ExcelExportService;
+import com.financorp.serf.service.FxRateService;
+import com.financorp.serf.service.ReportCache;
 import com.financorp.serf.service.ReportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Controlador REST para la generación de reportes
@@ -20,35 +40,73 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class ReportController {
     
+    // Tamaño de cada bloque enviado al cliente mientras se renderiza el reporte
+    private static final int STREAM_CHUNK_SIZE = 8192;
+    
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType("text", "plain", StandardCharsets.UTF_8);
+    
+    private static final MediaType XLSX = MediaType.parseMediaType(
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+    
     @Autowired
     private ReportService reportService;
     
+    @Autowired
+    private ReportCache reportCache;
+    
+    @Autowired
+    private ExcelExportService excelExportService;
+    
+    @Autowired
+    private FxRateService fxRateService;
+    
     /**
      * Genera un reporte usando el Factory Pattern
      */
     @PostMapping("/generar")
-    public ResponseEntity<Map<String, String>> generateReport(
+    public ResponseEntity<StreamingResponseBody> generateReport(
             @RequestParam ReportFactory.ReportType tipo,
             @RequestParam String pais,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaInicio,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaFin,
             @RequestParam(defaultValue = "Sistema SERF") String generadoPor) {
         
-        String reporte = reportService.generateReport(tipo, pais, fechaInicio, fechaFin, generadoPor);
+        ServerTiming timing = ReportMetrics.startServerTiming();
+        Report reporte = timed(() -> reportService.createReport(tipo, pais, fechaInicio, fechaFin, generadoPor));
         
-        Map<String, String> response = new HashMap<>();
-        response.put("status", "success");
-        response.put("tipo", tipo.getDescription());
-        response.put("reporte", reporte);
+        return streamReport(reporte, tipo.name(), pais, timing);
+    }
+    
+    /**
+     * Exporta un reporte a Excel (XLSX): cada sección es una hoja y cada tabla, celdas reales
+     */
+    @PostMapping("/excel")
+    public ResponseEntity<StreamingResponseBody> exportReportToExcel(
+            @RequestParam ReportFactory.ReportType tipo,
+            @RequestParam String pais,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaFin,
+            @RequestParam(defaultValue = "Sistema SERF") String generadoPor) {
         
-        return ResponseEntity.ok(response);
+        Report reporte = reportService.createStructuredReport(tipo, pais, fechaInicio, fechaFin, generadoPor);
+        
+        StreamingResponseBody body = outputStream -> excelExportService.export(reporte, outputStream);
+        
+        return ResponseEntity.ok()
+                .contentType(XLSX)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("reporte-" + tipo.name().toLowerCase() + ".xlsx")
+                        .build()
+                        .toString())
+                .header("X-Reporte-Tipo", tipo.name())
+                .body(body);
     }
     
     /**
      * Genera un reporte personalizado usando el Builder Pattern
      */
     @PostMapping("/personalizado")
-    public ResponseEntity<Map<String, String>> generateCustomReport(
+    public ResponseEntity<StreamingResponseBody> generateCustomReport(
             @RequestParam String titulo,
             @RequestParam String tipoReporte,
             @RequestParam String pais,
@@ -59,36 +117,28 @@ public class ReportController {
             @RequestParam(defaultValue = "false") boolean incluirFirma,
             @RequestParam(defaultValue = "Sistema SERF") String generadoPor) {
         
-        String reporte = reportService.generateCustomReport(
+        ServerTiming timing = ReportMetrics.startServerTiming();
+        Report reporte = timed(() -> reportService.createCustomReport(
                 titulo, tipoReporte, pais, fechaInicio, fechaFin,
                 filiales, incluirGraficos, incluirFirma, generadoPor
-        );
+        ));
         
-        Map<String, String> response = new HashMap<>();
-        response.put("status", "success");
-        response.put("titulo", titulo);
-        response.put("reporte", reporte);
-        
-        return ResponseEntity.ok(response);
+        return streamReport(reporte, "PERSONALIZADO", pais, timing);
     }
     
     /**
      * Genera un reporte consolidado de todas las filiales
      */
     @PostMapping("/consolidado")
-    public ResponseEntity<Map<String, String>> generateConsolidatedReport(
+    public ResponseEntity<StreamingResponseBody> generateConsolidatedReport(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaInicio,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaFin,
             @RequestParam(defaultValue = "Sistema SERF") String generadoPor) {
         
-        String reporte = reportService.generateConsolidatedReport(fechaInicio, fechaFin, generadoPor);
+        ServerTiming timing = ReportMetrics.startServerTiming();
+        Report reporte = timed(() -> reportService.createConsolidatedReport(fechaInicio, fechaFin, generadoPor));
         
-        Map<String, String> response = new HashMap<>();
-        response.put("status", "success");
-        response.put("tipo", "Reporte Consolidado Corporativo");
-        response.put("reporte", reporte);
-        
-        return ResponseEntity.ok(response);
+        return streamReport(reporte, "CONSOLIDADO", "Corporativo", timing);
     }
     
     /**
@@ -105,6 +155,108 @@ public class ReportController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Obtiene los contadores de la caché de reportes renderizados
+     */
+    @GetMapping("/cache/estadisticas")
+    public ResponseEntity<Map<String, Object>> getCacheStatistics() {
+        return ResponseEntity.ok(reportCache.getStatistics());
+    }
+    
+    /**
+     * Tipos de cambio a la moneda de consolidación vigentes al cierre de un mes
+     * (?mes=2026-06; por defecto el actual)
+     */
+    @GetMapping("/tipos-cambio")
+    public ResponseEntity<Map<String, Object>> getTiposCambio(@RequestParam(required = false) String mes) {
+        try {
+            return ResponseEntity.ok(fxRateService.getRates(mes != null ? YearMonth.parse(mes) : YearMonth.now()));
+        } catch (DateTimeParseException e) {
+            return badRequest("Mes no válido (formato yyyy-MM): " + mes);
+        }
+    }
+    
+    /**
+     * Vuelve a cargar el fichero de tipos de cambio (descarta los reportes cacheados)
+     */
+    @PostMapping("/tipos-cambio/recargar")
+    public ResponseEntity<Map<String, Object>> reloadTiposCambio() {
+        try {
+            return ResponseEntity.ok(fxRateService.reload());
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            return badRequest(e.getMessage());
+        }
+    }
+    
+    private ResponseEntity<Map<String, Object>> badRequest(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("message", message);
+        return ResponseEntity.badRequest().body(response);
+    }
+    
+    /**
+     * Prepara el reporte acumulando los tiempos por etapa para la cabecera Server-Timing
+     */
+    private Report timed(Supplier<Report> preparation) {
+        try {
+            return preparation.get();
+        } finally {
+            ReportMetrics.stopServerTiming();
+        }
+    }
+    
+    /**
+     * Escribe el reporte en la respuesta por bloques a medida que se renderiza,
+     * de modo que el primer byte sale antes de terminar el renderizado
+     */
+    private ResponseEntity<StreamingResponseBody> streamReport(Report report, String tipo, String pais,
+                                                               ServerTiming timing) {
+        StreamingResponseBody body = outputStream -> {
+            CountingWriter writer = new CountingWriter(new BufferedWriter(
+                    new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), STREAM_CHUNK_SIZE));
+            report.writeTo(writer);
+            writer.flush();
+            ReportMetrics.recordOutputSize(report.getType(), pais, writer.count);
+        };
+        
+        // Las etapas que ocurren durante la transmisión solo quedan en las métricas
+        return ResponseEntity.ok()
+                .contentType(TEXT_PLAIN_UTF8)
+                .header("X-Reporte-Tipo", tipo)
+                .header("Server-Timing", timing.toHeaderValue())
+                .body(body);
+    }
+    
+    /**
+     * Writer que cuenta los caracteres escritos
+     */
+    private static final class CountingWriter extends FilterWriter {
+        private long count;
+        
+        CountingWriter(Writer out) {
+            super(out);
+        }
+        
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count++;
+        }
+        
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            count += len;
+        }
+        
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            count += len;
+        }
+    }
+    
     /**
      * Endpoint de prueba
      */
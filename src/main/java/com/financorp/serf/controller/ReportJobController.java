@@ -0,0 +1,181 @@
+package com.financorp.serf.controller;
+
+import com.financorp.serf.patterns.creational.ReportFactory;
+import com.financorp.serf.patterns.structural.Report;
+import com.financorp.serf.service.ReportJobService;
+import com.financorp.serf.service.ReportJobService.EstadoTrabajo;
+import com.financorp.serf.service.ReportJobService.ReportJob;
+import com.financorp.serf.service.ReportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Controlador REST para la generación asíncrona de reportes
+ *
+ * Cada solicitud devuelve un identificador de trabajo; el cliente consulta el
+ * estado y descarga el resultado cuando está completado.
+ */
+@RestController
+@RequestMapping("/api/reportes/trabajos")
+@CrossOrigin(origins = "*")
+public class ReportJobController {
+
+    // Segundos sugeridos al cliente para reintentar cuando la cola está llena
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType("text", "plain", StandardCharsets.UTF_8);
+
+    @Autowired
+    private ReportJobService reportJobService;
+
+    @Autowired
+    private ReportService reportService;
+
+    /**
+     * Encola la generación de un reporte usando el Factory Pattern
+     */
+    @PostMapping("/generar")
+    public ResponseEntity<Map<String, Object>> submitReport(
+            @RequestParam ReportFactory.ReportType tipo,
+            @RequestParam String pais,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaFin,
+            @RequestParam(defaultValue = "Sistema SERF") String generadoPor) {
+
+        return submit(tipo.name(), pais, () -> reportService.createReport(tipo, pais, fechaInicio, fechaFin, generadoPor));
+    }
+
+    /**
+     * Encola la generación de un reporte personalizado usando el Builder Pattern
+     */
+    @PostMapping("/personalizado")
+    public ResponseEntity<Map<String, Object>> submitCustomReport(
+            @RequestParam String titulo,
+            @RequestParam String tipoReporte,
+            @RequestParam String pais,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaFin,
+            @RequestParam(required = false) List<String> filiales,
+            @RequestParam(defaultValue = "false") boolean incluirGraficos,
+            @RequestParam(defaultValue = "false") boolean incluirFirma,
+            @RequestParam(defaultValue = "Sistema SERF") String generadoPor) {
+
+        return submit("PERSONALIZADO", pais, () -> reportService.createCustomReport(
+                titulo, tipoReporte, pais, fechaInicio, fechaFin,
+                filiales, incluirGraficos, incluirFirma, generadoPor));
+    }
+
+    /**
+     * Encola la generación de un reporte consolidado de todas las filiales
+     */
+    @PostMapping("/consolidado")
+    public ResponseEntity<Map<String, Object>> submitConsolidatedReport(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaInicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaFin,
+            @RequestParam(defaultValue = "Sistema SERF") String generadoPor) {
+
+        return submit("CONSOLIDADO", "Corporativo", () -> reportService.createConsolidatedReport(fechaInicio, fechaFin, generadoPor));
+    }
+
+    /**
+     * Obtiene el estado de un trabajo
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> getJobStatus(@PathVariable String id) {
+        return reportJobService.getJob(id)
+                .map(job -> ResponseEntity.ok(job.toStatus()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Descarga el resultado de un trabajo completado (una sola vez; después responde 410)
+     */
+    @GetMapping("/{id}/resultado")
+    public ResponseEntity<?> getJobResult(@PathVariable String id) {
+        ReportJob job = reportJobService.getJob(id).orElse(null);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        EstadoTrabajo estado = job.getEstado();
+        if (!estado.isFinal()) {
+            // Aún en cola o en proceso: el cliente debe seguir consultando
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(job.toStatus());
+        }
+        if (estado != EstadoTrabajo.COMPLETADO) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(job.toStatus());
+        }
+
+        // El resultado se entrega una sola vez y se descarta
+        String result = reportJobService.takeResult(id).orElse(null);
+        if (result == null) {
+            return ResponseEntity.status(HttpStatus.GONE).body(job.toStatus());
+        }
+        return ResponseEntity.ok()
+                .contentType(TEXT_PLAIN_UTF8)
+                .header("X-Reporte-Tipo", job.getTipo())
+                .body(result);
+    }
+
+    /**
+     * Cancela un trabajo en cola o en proceso
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> cancelJob(@PathVariable String id) {
+        ReportJob job = reportJobService.getJob(id).orElse(null);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!reportJobService.cancel(id)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(job.toStatus());
+        }
+        return ResponseEntity.ok(job.toStatus());
+    }
+
+    /**
+     * Obtiene el estado del pool de trabajos y de la cola
+     */
+    @GetMapping("/estadisticas")
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        return ResponseEntity.ok(reportJobService.getStatistics());
+    }
+
+    /**
+     * Encola el trabajo y responde 202 con su identificador, o 503 si la cola está llena
+     */
+    private ResponseEntity<Map<String, Object>> submit(String tipo, String pais, Supplier<Report> supplier) {
+        try {
+            ReportJob job = reportJobService.submit(tipo, pais, supplier);
+            Map<String, Object> response = new LinkedHashMap<>(job.toStatus());
+            response.put("estadoUrl", "/api/reportes/trabajos/" + job.getId());
+            response.put("resultadoUrl", "/api/reportes/trabajos/" + job.getId() + "/resultado");
+
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, "/api/reportes/trabajos/" + job.getId())
+                    .body(response);
+        } catch (RejectedExecutionException e) {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("status", "error");
+            response.put("message", "Cola de reportes llena, reintente más tarde");
+
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .body(response);
+        }
+    }
+}
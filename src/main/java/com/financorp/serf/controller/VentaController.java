@@ -1,13 +1,29 @@
 package com.financorp.serf.controller;
 
+import com.financorp.serf.dto.Pagina;
+import com.financorp.serf.dto.VentaDto;
+import com.financorp.serf.dto.VentaLoteItem;
+import com.financorp.serf.model.Money;
+import com.financorp.serf.model.Producto;
 import com.financorp.serf.model.Venta;
+import com.financorp.serf.service.VentaAnalyticsService;
+import com.financorp.serf.service.VentaColumnStore;
+import com.financorp.serf.service.VentaExportService;
+import com.financorp.serf.service.VentaLoteService;
+import com.financorp.serf.service.VentaResumenService;
 import com.financorp.serf.service.VentaService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -18,60 +34,201 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class VentaController {
     
+    private static final MediaType TEXT_CSV_UTF8 = new MediaType("text", "csv", StandardCharsets.UTF_8);
+    
     @Autowired
     private VentaService ventaService;
     
+    @Autowired
+    private VentaResumenService ventaResumenService;
+    
+    @Autowired
+    private VentaLoteService ventaLoteService;
+    
+    @Autowired
+    private VentaExportService ventaExportService;
+    
+    @Autowired
+    private VentaAnalyticsService ventaAnalyticsService;
+    
+    /**
+     * Ventas paginadas por clave, de la más reciente a la más antigua; la
+     * siguiente página se pide con el siguienteCursor de la respuesta
+     */
     @GetMapping
-    public ResponseEntity<List<Venta>> getAllVentas() {
-        return ResponseEntity.ok(ventaService.getAllVentas());
+    public ResponseEntity<?> getVentas(
+            @RequestParam(required = false) Long filialId,
+            @RequestParam(required = false) Venta.EstadoVenta estado,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaFin,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limite) {
+        try {
+            Pagina<Venta> pagina = ventaService.getVentasPage(filialId, estado, fechaInicio, fechaFin, cursor, limite);
+            return ResponseEntity.ok(pagina.map(VentaDto::from));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+    }
+    
+    /**
+     * Exporta todas las ventas que cumplen los filtros en NDJSON (una venta por
+     * línea) o CSV; las filas se transmiten a medida que se leen de la base de datos
+     */
+    @GetMapping("/exportar")
+    public ResponseEntity<StreamingResponseBody> exportVentas(
+            @RequestParam(required = false) Long filialId,
+            @RequestParam(required = false) Venta.EstadoVenta estado,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaFin,
+            @RequestParam(defaultValue = "NDJSON") VentaExportService.Formato formato) {
+        
+        StreamingResponseBody body = outputStream ->
+                ventaExportService.export(filialId, estado, fechaInicio, fechaFin, formato, outputStream);
+        
+        boolean csv = formato == VentaExportService.Formato.CSV;
+        return ResponseEntity.ok()
+                .contentType(csv ? TEXT_CSV_UTF8 : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(csv ? "ventas.csv" : "ventas.ndjson")
+                        .build()
+                        .toString())
+                .body(body);
+    }
+    
+    /**
+     * Totales de ventas agrupados sobre la instantánea analítica en memoria; sin
+     * filialId solo se puede agrupar por filial, porque cada filial factura en su moneda
+     */
+    @GetMapping("/analitica")
+    public ResponseEntity<?> getVentasAnalitica(
+            @RequestParam(defaultValue = "NINGUNA") VentaColumnStore.Dimension agruparPor,
+            @RequestParam(required = false) Long filialId,
+            @RequestParam(required = false) Long productoId,
+            @RequestParam(required = false) Producto.CategoriaProducto categoria,
+            @RequestParam(required = false) Venta.EstadoVenta estado,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin) {
+        if (!ventaAnalyticsService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "La instantánea analítica de ventas no está activa"));
+        }
+        if (filialId == null && agruparPor != VentaColumnStore.Dimension.FILIAL) {
+            return badRequest("Indique filialId o agrupe por FILIAL: los totales de varias filiales están en monedas distintas");
+        }
+        return ResponseEntity.ok(ventaAnalyticsService.aggregate(agruparPor, filialId, productoId, categoria,
+                estado, fechaInicio, fechaFin));
+    }
+    
+    /**
+     * Recuento de ventas con filtros combinados (valores separados por comas; "!"
+     * al principio excluye), resuelto con los índices de mapas de bits
+     */
+    @GetMapping("/analitica/conteo")
+    public ResponseEntity<?> countVentasAnalitica(
+            @RequestParam(required = false) String estado,
+            @RequestParam(required = false) String categoria,
+            @RequestParam(required = false) String filialId,
+            @RequestParam(required = false) String pais,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin,
+            @RequestParam(required = false) String desglosarPor) {
+        if (!ventaAnalyticsService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "La instantánea analítica de ventas no está activa"));
+        }
+        try {
+            return ResponseEntity.ok(ventaAnalyticsService.count(estado, categoria, filialId, pais,
+                    fechaInicio, fechaFin, desglosarPor));
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+    }
+    
+    /**
+     * Vuelve a cargar la instantánea analítica desde la tabla de ventas
+     */
+    @PostMapping("/analitica/recargar")
+    public ResponseEntity<Map<String, Object>> rebuildAnalitica() {
+        if (!ventaAnalyticsService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "La instantánea analítica de ventas no está activa"));
+        }
+        return ResponseEntity.ok(ventaAnalyticsService.rebuild());
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<Venta> getVentaById(@PathVariable Long id) {
-        return ResponseEntity.ok(ventaService.getVentaById(id));
+    public ResponseEntity<VentaDto> getVentaById(@PathVariable Long id) {
+        return ResponseEntity.ok(VentaDto.from(ventaService.getVentaById(id)));
     }
     
     @GetMapping("/codigo/{codigoVenta}")
-    public ResponseEntity<Venta> getVentaByCodigoVenta(@PathVariable String codigoVenta) {
-        return ResponseEntity.ok(ventaService.getVentaByCodigoVenta(codigoVenta));
+    public ResponseEntity<VentaDto> getVentaByCodigoVenta(@PathVariable String codigoVenta) {
+        return ResponseEntity.ok(VentaDto.from(ventaService.getVentaByCodigoVenta(codigoVenta)));
     }
     
     @GetMapping("/filial/{filialId}")
-    public ResponseEntity<List<Venta>> getVentasByFilial(@PathVariable Long filialId) {
-        return ResponseEntity.ok(ventaService.getVentasByFilial(filialId));
+    public ResponseEntity<List<VentaDto>> getVentasByFilial(@PathVariable Long filialId) {
+        return ResponseEntity.ok(ventaService.getVentasByFilial(filialId).stream()
+                .map(VentaDto::from).toList());
     }
     
     @GetMapping("/estado/{estado}")
-    public ResponseEntity<List<Venta>> getVentasByEstado(@PathVariable Venta.EstadoVenta estado) {
-        return ResponseEntity.ok(ventaService.getVentasByEstado(estado));
+    public ResponseEntity<List<VentaDto>> getVentasByEstado(@PathVariable Venta.EstadoVenta estado) {
+        return ResponseEntity.ok(ventaService.getVentasByEstado(estado).stream()
+                .map(VentaDto::from).toList());
     }
     
     @GetMapping("/periodo")
-    public ResponseEntity<List<Venta>> getVentasByPeriodo(
+    public ResponseEntity<List<VentaDto>> getVentasByPeriodo(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaInicio,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fechaFin) {
-        return ResponseEntity.ok(ventaService.getVentasByPeriodo(fechaInicio, fechaFin));
+        return ResponseEntity.ok(ventaService.getVentasByPeriodo(fechaInicio, fechaFin).stream()
+                .map(VentaDto::from).toList());
     }
     
     @GetMapping("/filial/{filialId}/total")
     public ResponseEntity<Map<String, Object>> getTotalVentasByFilial(@PathVariable Long filialId) {
-        Double total = ventaService.getTotalVentasByFilial(filialId);
+        Money total = ventaService.getTotalVentasByFilial(filialId);
         Map<String, Object> response = new HashMap<>();
         response.put("filialId", filialId);
-        response.put("totalVentas", total != null ? total : 0);
+        response.put("totalVentas", total.toBigDecimal());
+        response.put("moneda", total.moneda());
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Reconstruye el acumulado diario de ventas desde la tabla de ventas
+     */
+    @PostMapping("/resumen/reconstruir")
+    public ResponseEntity<Map<String, Object>> rebuildDailySummary() {
+        return ResponseEntity.ok(ventaResumenService.rebuild());
+    }
+    
     @PostMapping
-    public ResponseEntity<Venta> createVenta(@RequestBody Venta venta) {
+    public ResponseEntity<VentaDto> createVenta(@RequestBody Venta venta) {
         return ResponseEntity.status(HttpStatus.CREATED)
-                .body(ventaService.createVenta(venta));
+                .body(VentaDto.from(ventaService.createVenta(venta)));
+    }
+    
+    /**
+     * Carga masiva de ventas: responde con el resultado de cada fila
+     */
+    @PostMapping("/lote")
+    public ResponseEntity<?> createVentasLote(@RequestBody List<VentaLoteItem> ventas) {
+        if (ventas.size() > ventaLoteService.getMaxRows()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "El lote supera el máximo de " + ventaLoteService.getMaxRows() + " ventas");
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(response);
+        }
+        return ResponseEntity.ok(ventaLoteService.ingest(ventas));
     }
     
     @PutMapping("/{id}")
-    public ResponseEntity<Venta> updateVenta(@PathVariable Long id, 
+    public ResponseEntity<VentaDto> updateVenta(@PathVariable Long id, 
                                             @RequestBody Venta venta) {
-        return ResponseEntity.ok(ventaService.updateVenta(id, venta));
+        return ResponseEntity.ok(VentaDto.from(ventaService.updateVenta(id, venta)));
     }
     
     @DeleteMapping("/{id}")
@@ -79,4 +236,11 @@ public class VentaController {
         ventaService.deleteVenta(id);
         return ResponseEntity.noContent().build();
     }
+    
+    private ResponseEntity<Map<String, Object>> badRequest(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("message", message);
+        return ResponseEntity.badRequest().body(response);
+    }
 }
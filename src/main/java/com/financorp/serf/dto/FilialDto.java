@@ -0,0 +1,25 @@
+package com.financorp.serf.dto;
+
+import com.financorp.serf.model.Filial;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filial tal como la devuelve la API, sin las colecciones de productos y ventas
+ */
+public record FilialDto(Long id,
+                        String codigo,
+                        String nombre,
+                        String pais,
+                        String ciudad,
+                        String moneda,
+                        String responsable,
+                        Boolean activa,
+                        LocalDateTime fechaCreacion) {
+
+    public static FilialDto from(Filial filial) {
+        return new FilialDto(filial.getId(), filial.getCodigo(), filial.getNombre(), filial.getPais(),
+                filial.getCiudad(), filial.getMoneda(), filial.getResponsable(), filial.getActiva(),
+                filial.getFechaCreacion());
+    }
+}
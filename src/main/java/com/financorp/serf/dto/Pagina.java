@@ -0,0 +1,18 @@
+package com.financorp.serf.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Página de un listado con paginación por clave (keyset): siguienteCursor es
+ * null en la última página y, si no, se pasa tal cual como parámetro cursor
+ */
+public record Pagina<T>(List<T> elementos,
+                        int limite,
+                        boolean hayMas,
+                        String siguienteCursor) {
+
+    public <R> Pagina<R> map(Function<T, R> mapper) {
+        return new Pagina<>(elementos.stream().map(mapper).toList(), limite, hayMas, siguienteCursor);
+    }
+}
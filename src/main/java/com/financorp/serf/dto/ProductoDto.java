@@ -0,0 +1,44 @@
+package com.financorp.serf.dto;
+
+import com.financorp.serf.model.Producto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Producto tal como lo devuelve la API, con la filial reducida a id y código
+ * (el producto debe cargarse con su filial para no consultarla fila a fila)
+ */
+public record ProductoDto(Long id,
+                          String sku,
+                          String nombre,
+                          String descripcion,
+                          Producto.CategoriaProducto categoria,
+                          String marca,
+                          String modelo,
+                          BigDecimal precioCompra,
+                          BigDecimal precioVenta,
+                          Integer stockActual,
+                          Integer stockMinimo,
+                          String paisOrigen,
+                          Long filialId,
+                          String filialCodigo,
+                          LocalDateTime fechaImportacion,
+                          LocalDateTime fechaRegistro) {
+
+    public static ProductoDto from(Producto producto) {
+        return new ProductoDto(producto.getId(), producto.getSku(), producto.getNombre(),
+                producto.getDescripcion(), producto.getCategoria(), producto.getMarca(), producto.getModelo(),
+                producto.getPrecioCompra(), producto.getPrecioVenta(), producto.getStockActual(),
+                producto.getStockMinimo(), producto.getPaisOrigen(), producto.getFilial().getId(),
+                producto.getFilial().getCodigo(), producto.getFechaImportacion(), producto.getFechaRegistro());
+    }
+
+    /**
+     * Copia con otro stock actual y mínimo
+     */
+    public ProductoDto withStock(Integer stockActual, Integer stockMinimo) {
+        return new ProductoDto(id, sku, nombre, descripcion, categoria, marca, modelo, precioCompra, precioVenta,
+                stockActual, stockMinimo, paisOrigen, filialId, filialCodigo, fechaImportacion, fechaRegistro);
+    }
+}
@@ -0,0 +1,41 @@
+package com.financorp.serf.dto;
+
+import com.financorp.serf.model.Venta;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Venta tal como la devuelve la API, con producto y filial reducidos a sus
+ * identificadores (la venta debe cargarse con ambos para no consultarlos fila a fila)
+ */
+public record VentaDto(Long id,
+                       String codigoVenta,
+                       Long productoId,
+                       String productoSku,
+                       String productoNombre,
+                       Long filialId,
+                       String filialCodigo,
+                       String moneda,
+                       Integer cantidad,
+                       BigDecimal precioUnitario,
+                       BigDecimal subtotal,
+                       BigDecimal impuesto,
+                       BigDecimal montoImpuesto,
+                       BigDecimal total,
+                       String clienteNombre,
+                       String clienteDocumento,
+                       Venta.EstadoVenta estado,
+                       String formaPago,
+                       LocalDateTime fechaVenta,
+                       String observaciones) {
+
+    public static VentaDto from(Venta venta) {
+        return new VentaDto(venta.getId(), venta.getCodigoVenta(), venta.getProducto().getId(),
+                venta.getProducto().getSku(), venta.getProducto().getNombre(), venta.getFilial().getId(),
+                venta.getFilial().getCodigo(), venta.getMoneda(), venta.getCantidad(), venta.getPrecioUnitario(), venta.getSubtotal(),
+                venta.getImpuesto(), venta.getMontoImpuesto(), venta.getTotal(), venta.getClienteNombre(),
+                venta.getClienteDocumento(), venta.getEstado(), venta.getFormaPago(), venta.getFechaVenta(),
+                venta.getObservaciones());
+    }
+}
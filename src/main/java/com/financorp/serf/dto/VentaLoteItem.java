@@ -0,0 +1,23 @@
+package com.financorp.serf.dto;
+
+import com.financorp.serf.model.Venta;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Fila de una carga masiva de ventas; el producto y la filial se indican por id
+ */
+public record VentaLoteItem(String codigoVenta,
+                            Long productoId,
+                            Long filialId,
+                            Integer cantidad,
+                            BigDecimal precioUnitario,
+                            BigDecimal impuesto,
+                            Venta.EstadoVenta estado,
+                            String formaPago,
+                            LocalDateTime fechaVenta,
+                            String clienteNombre,
+                            String clienteDocumento,
+                            String observaciones) {
+}
@@ -0,0 +1,27 @@
+package com.financorp.serf.dto;
+
+import java.util.List;
+
+/**
+ * Resultado de una carga masiva de ventas, con el detalle de cada fila
+ */
+public record VentaLoteResultado(int recibidas,
+                                 int creadas,
+                                 int rechazadas,
+                                 long duracionMs,
+                                 List<Fila> resultados) {
+
+    /**
+     * Resultado de una fila: id de la venta creada o motivo del rechazo
+     */
+    public record Fila(int indice, String codigoVenta, boolean creada, Long id, String error) {
+
+        public static Fila created(int indice, String codigoVenta, Long id) {
+            return new Fila(indice, codigoVenta, true, id, null);
+        }
+
+        public static Fila rejected(int indice, String codigoVenta, String error) {
+            return new Fila(indice, codigoVenta, false, null, error);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.financorp.serf.metrics;
+
+import com.financorp.serf.metrics.ServerTiming.Stage;
+import com.financorp.serf.patterns.creational.ReportFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.lang.management.ManagementFactory;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Métricas del pipeline de reportes (Micrometer)
+ *
+ * Registra en {@link Metrics#globalRegistry}, al que Spring Boot Actuator
+ * conecta el registro de Prometheus; así los patrones, que no son beans de
+ * Spring, pueden instrumentarse sin cambiar cómo se crean.
+ *
+ * Por cada etapa se publica un timer, un contador de bytes asignados en el hilo
+ * (sufijo {@code .asignacion}) y, para la salida, un resumen de tamaño en
+ * caracteres. Los tags de tipo y país se normalizan a un conjunto cerrado para
+ * no disparar la cardinalidad con títulos o países escritos libremente.
+ */
+public final class ReportMetrics {
+
+    static final String SERVICE = "serf.reportes.servicio";
+    static final String FETCH = "serf.reportes.consulta";
+    static final String FACTORY = "serf.reportes.factory";
+    static final String BUILDER = "serf.reportes.builder";
+    static final String DECORATOR = "serf.reportes.decorador";
+    static final String RENDER = "serf.reportes.renderizado";
+    static final String OUTPUT_SIZE = "serf.reportes.tamano";
+
+    private static final String ALLOCATION_SUFFIX = ".asignacion";
+
+    private static final String CUSTOM_TYPE = "PERSONALIZADO";
+    private static final String OTHER_COUNTRY = "otro";
+
+    private static final Set<String> KNOWN_COUNTRIES = Set.of(
+            "espana", "mexico", "argentina", "peru", "colombia", "chile", "corporativo");
+
+    private static final com.sun.management.ThreadMXBean THREADS = initThreadBean();
+
+    private static final ThreadLocal<ServerTiming> SERVER_TIMING = new ThreadLocal<>();
+    private static final ThreadLocal<DecoratorSpan> CURRENT_DECORATOR = new ThreadLocal<>();
+
+    private ReportMetrics() {
+    }
+
+    private static com.sun.management.ThreadMXBean initThreadBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            if (!bean.isThreadAllocatedMemoryEnabled()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return bean;
+        }
+        return null;
+    }
+
+    /**
+     * Bytes asignados hasta ahora por el hilo actual, o -1 si la JVM no lo soporta
+     */
+    static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    /**
+     * Inicia la medición de una etapa
+     */
+    public static Sample start() {
+        return new Sample(System.nanoTime(), allocatedBytes());
+    }
+
+    /**
+     * Registra una operación completa de {@code ReportService}
+     */
+    public static void recordService(Sample sample, String operation, String type, String country) {
+        Tags tags = Tags.of("operacion", operation, "tipo", typeTag(type), "pais", countryTag(country));
+        Timer timer = Timer.builder(SERVICE)
+                .description("Duración de las operaciones de ReportService")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry);
+        record(timer, SERVICE, tags, sample.elapsedNanos(), sample.allocatedSince());
+    }
+
+    /**
+     * Registra la consulta de datos de un reporte
+     */
+    public static void recordFetch(Sample sample, String operation) {
+        long nanos = sample.elapsedNanos();
+        Tags tags = Tags.of("operacion", operation);
+        record(timer(FETCH, "Consulta de datos para reportes", tags), FETCH, tags, nanos, sample.allocatedSince());
+        addStage(Stage.FETCH, nanos);
+    }
+
+    /**
+     * Registra {@code ReportFactory.createReport} (plantilla rellenada, sin renderizar)
+     */
+    public static void recordFactory(Sample sample, ReportFactory.ReportType type, String country) {
+        long nanos = sample.elapsedNanos();
+        Tags tags = Tags.of("tipo", type.name(), "pais", countryTag(country));
+        record(timer(FACTORY, "Creación de reportes con ReportFactory", tags), FACTORY, tags, nanos, sample.allocatedSince());
+        addStage(Stage.BUILD, nanos);
+    }
+
+    /**
+     * Registra {@code FinancialReportBuilder.build} (árbol y decoradores, sin renderizar)
+     */
+    public static void recordBuild(Sample sample, String type, String country) {
+        long nanos = sample.elapsedNanos();
+        Tags tags = Tags.of("tipo", typeTag(type), "pais", countryTag(country));
+        record(timer(BUILDER, "Construcción de reportes con FinancialReportBuilder", tags), BUILDER, tags,
+                nanos, sample.allocatedSince());
+        addStage(Stage.BUILD, nanos);
+    }
+
+    /**
+     * Registra el renderizado del cuerpo del reporte (sin decoradores)
+     */
+    public static void recordRender(Sample sample, String type) {
+        long nanos = sample.elapsedNanos();
+        Tags tags = Tags.of("tipo", typeTag(type));
+        record(timer(RENDER, "Renderizado del cuerpo de los reportes", tags), RENDER, tags, nanos, sample.allocatedSince());
+        addStage(Stage.RENDER, nanos);
+    }
+
+    /**
+     * Registra el tamaño en caracteres de un reporte entregado
+     */
+    public static void recordOutputSize(String type, String country, long chars) {
+        DistributionSummary.builder(OUTPUT_SIZE)
+                .description("Tamaño de los reportes generados")
+                .baseUnit("caracteres")
+                .tags("tipo", typeTag(type), "pais", countryTag(country))
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry)
+                .record(chars);
+    }
+
+    /**
+     * Inicia la medición de un decorador. El tiempo dedicado a escribir el reporte
+     * decorado se descuenta con {@link DecoratorSpan#exclude}, de modo que cada
+     * decorador solo registra su propio coste.
+     */
+    public static DecoratorSpan startDecorator(String decorator, String type) {
+        DecoratorSpan span = new DecoratorSpan(decorator, type, CURRENT_DECORATOR.get());
+        CURRENT_DECORATOR.set(span);
+        return span;
+    }
+
+    /**
+     * Decorador que se está escribiendo en el hilo actual, o null
+     */
+    public static DecoratorSpan currentDecorator() {
+        return CURRENT_DECORATOR.get();
+    }
+
+    /**
+     * Empieza a acumular los tiempos por etapa de la petición en curso
+     */
+    public static ServerTiming startServerTiming() {
+        ServerTiming timing = new ServerTiming();
+        SERVER_TIMING.set(timing);
+        return timing;
+    }
+
+    /**
+     * Deja de acumular tiempos por etapa en el hilo actual
+     */
+    public static void stopServerTiming() {
+        SERVER_TIMING.remove();
+    }
+
+    /**
+     * Anota en la petición en curso si el reporte salió de la caché
+     */
+    public static void recordCacheHit(boolean hit) {
+        ServerTiming timing = SERVER_TIMING.get();
+        if (timing != null) {
+            timing.setCacheHit(hit);
+        }
+    }
+
+    private static void addStage(Stage stage, long nanos) {
+        ServerTiming timing = SERVER_TIMING.get();
+        if (timing != null) {
+            timing.add(stage, nanos);
+        }
+    }
+
+    private static Timer timer(String name, String description, Tags tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(Metrics.globalRegistry);
+    }
+
+    private static void record(Timer timer, String name, Tags tags, long nanos, long allocated) {
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+        if (allocated >= 0) {
+            Counter.builder(name + ALLOCATION_SUFFIX)
+                    .description("Bytes asignados en el hilo durante la etapa")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(Metrics.globalRegistry)
+                    .increment(allocated);
+        }
+    }
+
+    /**
+     * Tag de tipo: nombre del {@link ReportFactory.ReportType} o PERSONALIZADO
+     * (acepta tanto el nombre como la descripción del tipo)
+     */
+    static String typeTag(String type) {
+        if (type != null) {
+            for (ReportFactory.ReportType reportType : ReportFactory.ReportType.values()) {
+                if (reportType.name().equals(type) || reportType.getDescription().equals(type)) {
+                    return reportType.name();
+                }
+            }
+        }
+        return CUSTOM_TYPE;
+    }
+
+    /**
+     * Tag de país: nombre sin acentos y en minúsculas si es un país de FinanCorp, "otro" si no
+     */
+    static String countryTag(String country) {
+        if (country == null) {
+            return OTHER_COUNTRY;
+        }
+        String normalized = Normalizer.normalize(country.trim(), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        return KNOWN_COUNTRIES.contains(normalized) ? normalized : OTHER_COUNTRY;
+    }
+
+    /**
+     * Instante de inicio de una etapa
+     */
+    public static final class Sample {
+        private final long startNanos;
+        private final long startAllocated;
+
+        private Sample(long startNanos, long startAllocated) {
+            this.startNanos = startNanos;
+            this.startAllocated = startAllocated;
+        }
+
+        long elapsedNanos() {
+            return System.nanoTime() - startNanos;
+        }
+
+        long allocatedSince() {
+            return startAllocated >= 0 ? allocatedBytes() - startAllocated : -1;
+        }
+    }
+
+    /**
+     * Medición en curso de un decorador
+     */
+    public static final class DecoratorSpan {
+        private final String decorator;
+        private final String type;
+        private final DecoratorSpan outer;
+        private final Sample sample = start();
+        private long excludedNanos;
+        private long excludedAllocated;
+
+        private DecoratorSpan(String decorator, String type, DecoratorSpan outer) {
+            this.decorator = decorator;
+            this.type = type;
+            this.outer = outer;
+        }
+
+        /**
+         * Descuenta el tiempo y la memoria dedicados al reporte decorado
+         */
+        public void exclude(Sample inner) {
+            excludedNanos += inner.elapsedNanos();
+            long allocated = inner.allocatedSince();
+            if (allocated > 0) {
+                excludedAllocated += allocated;
+            }
+        }
+
+        /**
+         * Registra el coste propio del decorador y restaura el decorador exterior
+         */
+        public void stop() {
+            if (outer != null) {
+                CURRENT_DECORATOR.set(outer);
+            } else {
+                CURRENT_DECORATOR.remove();
+            }
+
+            long nanos = Math.max(0, sample.elapsedNanos() - excludedNanos);
+            long allocated = sample.allocatedSince();
+            Tags tags = Tags.of("decorador", decorator, "tipo", typeTag(type));
+            record(timer(DECORATOR, "Coste propio de cada decorador de reportes", tags), DECORATOR, tags,
+                    nanos, allocated >= 0 ? Math.max(0, allocated - excludedAllocated) : -1);
+            addStage(Stage.DECORATE, nanos);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.financorp.serf.metrics;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Tiempos por etapa de una petición de reporte, para la cabecera HTTP
+ * {@code Server-Timing}
+ *
+ * Solo contiene las etapas ejecutadas en el hilo de la petición antes de enviar
+ * las cabeceras; el renderizado que ocurre mientras se transmite la respuesta
+ * se registra únicamente en las métricas.
+ */
+public final class ServerTiming {
+
+    /**
+     * Etapas del pipeline de reportes
+     */
+    public enum Stage {
+        FETCH("fetch", "Consulta de datos"),
+        BUILD("build", "Arbol de componentes"),
+        RENDER("render", "Renderizado"),
+        DECORATE("decorate", "Decoradores");
+
+        private final String metricName;
+        private final String description;
+
+        Stage(String metricName, String description) {
+            this.metricName = metricName;
+            this.description = description;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final Map<Stage, Long> stageNanos = new EnumMap<>(Stage.class);
+    private Boolean cacheHit;
+
+    void add(Stage stage, long nanos) {
+        stageNanos.merge(stage, nanos, Long::sum);
+    }
+
+    void setCacheHit(boolean cacheHit) {
+        this.cacheHit = cacheHit;
+    }
+
+    public long getStageNanos(Stage stage) {
+        return stageNanos.getOrDefault(stage, 0L);
+    }
+
+    /**
+     * Valor de la cabecera, p. ej. {@code fetch;dur=1.2;desc="Consulta de datos", total;dur=3.4}
+     * (las descripciones son ASCII porque las cabeceras HTTP no admiten otros caracteres)
+     */
+    public String toHeaderValue() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Stage, Long> entry : stageNanos.entrySet()) {
+            appendMetric(sb, entry.getKey().getMetricName(), entry.getValue(), entry.getKey().getDescription());
+        }
+        if (cacheHit != null) {
+            sb.append("cache;desc=").append(cacheHit ? "hit" : "miss").append(", ");
+        }
+        appendMetric(sb, "total", System.nanoTime() - startNanos, null);
+        return sb.substring(0, sb.length() - 2);
+    }
+
+    private static void appendMetric(StringBuilder sb, String name, long nanos, String description) {
+        sb.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0));
+        if (description != null) {
+            sb.append(";desc=\"").append(description).append('"');
+        }
+        sb.append(", ");
+    }
+}
@@ -3,7 +3,9 @@ package com.financorp.serf.model;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -47,9 +49,14 @@ public class Filial {
     @Column(name = "fecha_creacion")
     private LocalDateTime fechaCreacion;
     
+    // Fuera de toString/equals/hashCode: recorrerlos cargaría las colecciones completas
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToMany(mappedBy = "filial", cascade = CascadeType.ALL)
     private List<Producto> productos = new ArrayList<>();
     
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToMany(mappedBy = "filial", cascade = CascadeType.ALL)
     private List<Venta> ventas = new ArrayList<>();
     
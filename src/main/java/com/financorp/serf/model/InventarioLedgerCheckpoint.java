@@ -0,0 +1,36 @@
+package com.financorp.serf.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Última secuencia del registro de inventario (WAL) aplicada en la base de datos
+ * Se actualiza en la misma transacción que los descuentos de stock, de modo que
+ * la recuperación tras una caída no aplica dos veces el mismo movimiento
+ */
+@Entity
+@Table(name = "inventario_ledger_checkpoint")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventarioLedgerCheckpoint {
+    
+    public static final Long ID = 1L;
+    
+    @Id
+    private Long id;
+    
+    // Identifica la base de datos a la que pertenece el fichero WAL
+    @Column(name = "ledger_id", nullable = false)
+    private String ledgerId;
+    
+    @Column(name = "ultima_secuencia", nullable = false)
+    private Long ultimaSecuencia;
+    
+    @Column(name = "fecha_actualizacion")
+    private LocalDateTime fechaActualizacion;
+}
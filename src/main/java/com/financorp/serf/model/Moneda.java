@@ -0,0 +1,65 @@
+package com.financorp.serf.model;
+
+import java.math.RoundingMode;
+
+/**
+ * Monedas de las filiales, con sus decimales (ISO 4217) y el redondeo que se
+ * aplica a los importes calculados en cada una
+ */
+public enum Moneda {
+    EUR("Euro", 2, RoundingMode.HALF_UP),
+    MXN("Peso mexicano", 2, RoundingMode.HALF_UP),
+    ARS("Peso argentino", 2, RoundingMode.HALF_UP),
+    PEN("Sol peruano", 2, RoundingMode.HALF_UP),
+    COP("Peso colombiano", 2, RoundingMode.HALF_UP),
+    CLP("Peso chileno", 0, RoundingMode.HALF_UP);
+
+    private final String descripcion;
+    private final int decimales;
+    private final RoundingMode redondeo;
+    private final long factor;
+
+    Moneda(String descripcion, int decimales, RoundingMode redondeo) {
+        this.descripcion = descripcion;
+        this.decimales = decimales;
+        this.redondeo = redondeo;
+        long factor = 1;
+        for (int i = 0; i < decimales; i++) {
+            factor *= 10;
+        }
+        this.factor = factor;
+    }
+
+    /**
+     * Moneda de un código ISO (EUR, MXN...); lanza IllegalArgumentException si no está soportada
+     */
+    public static Moneda of(String codigo) {
+        if (codigo != null) {
+            for (Moneda moneda : values()) {
+                if (moneda.name().equalsIgnoreCase(codigo.trim())) {
+                    return moneda;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Moneda no soportada: " + codigo);
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+
+    public int getDecimales() {
+        return decimales;
+    }
+
+    public RoundingMode getRedondeo() {
+        return redondeo;
+    }
+
+    /**
+     * Unidades menores por unidad de la moneda (100 céntimos por euro, 1 en CLP)
+     */
+    public long getFactor() {
+        return factor;
+    }
+}
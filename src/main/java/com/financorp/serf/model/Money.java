@@ -0,0 +1,180 @@
+package com.financorp.serf.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Importe en punto fijo: unidades menores de la moneda (céntimos, o pesos
+ * enteros en CLP) en un long
+ *
+ * Sumas, productos por cantidad y porcentajes se hacen con aritmética entera
+ * exacta y el redondeo explícito de cada moneda; los métodos estáticos sobre
+ * long permiten acumular millones de importes sin crear objetos. La conversión
+ * a BigDecimal queda para la frontera con la base de datos y la API.
+ */
+public record Money(long minor, Moneda moneda) implements Comparable<Money> {
+
+    /**
+     * Decimales de las columnas de importes (precision 10, scale 2)
+     */
+    public static final int STORAGE_SCALE = 2;
+
+    /**
+     * Decimales de las tasas de impuesto (centésimas de punto porcentual)
+     */
+    public static final int RATE_SCALE = 2;
+
+    // Tasa en centésimas de punto porcentual: 100 % = 10000
+    private static final long RATE_DIVISOR = 100 * 100;
+
+    public Money {
+        if (moneda == null) {
+            throw new IllegalArgumentException("La moneda es obligatoria");
+        }
+    }
+
+    public static Money zero(Moneda moneda) {
+        return new Money(0, moneda);
+    }
+
+    public static Money ofMinor(long minor, Moneda moneda) {
+        return new Money(minor, moneda);
+    }
+
+    /**
+     * Importe redondeado a los decimales de la moneda con su modo de redondeo
+     */
+    public static Money of(BigDecimal amount, Moneda moneda) {
+        return new Money(toMinor(amount, moneda.getDecimales(), moneda.getRedondeo()), moneda);
+    }
+
+    public Money plus(Money other) {
+        checkSameMoneda(other);
+        return new Money(Math.addExact(minor, other.minor), moneda);
+    }
+
+    public Money minus(Money other) {
+        checkSameMoneda(other);
+        return new Money(Math.subtractExact(minor, other.minor), moneda);
+    }
+
+    public Money times(long cantidad) {
+        return new Money(Math.multiplyExact(minor, cantidad), moneda);
+    }
+
+    /**
+     * Porcentaje del importe (21 para un 21 %) redondeado según la moneda
+     */
+    public Money percent(BigDecimal tasa) {
+        return new Money(percentOf(minor, toMinor(tasa, RATE_SCALE, RoundingMode.HALF_UP), moneda.getRedondeo()), moneda);
+    }
+
+    public boolean isZero() {
+        return minor == 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minor, moneda.getDecimales());
+    }
+
+    /**
+     * Importe con separador de miles: "EUR 1,234.50", "CLP 12,500"
+     */
+    public String format() {
+        return render(true);
+    }
+
+    /**
+     * Importe sin separador de miles: "EUR 1234.50"
+     */
+    @Override
+    public String toString() {
+        return render(false);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        checkSameMoneda(other);
+        return Long.compare(minor, other.minor);
+    }
+
+    private String render(boolean grouping) {
+        long factor = moneda.getFactor();
+        // Valor absoluto sin desbordar en Long.MIN_VALUE
+        long units = Math.abs(minor / factor);
+        long fraction = Math.abs(minor % factor);
+
+        StringBuilder text = new StringBuilder(32).append(moneda.name()).append(' ');
+        if (minor < 0) {
+            text.append('-');
+        }
+        String digits = Long.toString(units);
+        for (int i = 0; i < digits.length(); i++) {
+            if (grouping && i > 0 && (digits.length() - i) % 3 == 0) {
+                text.append(',');
+            }
+            text.append(digits.charAt(i));
+        }
+        if (moneda.getDecimales() > 0) {
+            String decimals = Long.toString(fraction);
+            text.append('.');
+            for (int i = decimals.length(); i < moneda.getDecimales(); i++) {
+                text.append('0');
+            }
+            text.append(decimals);
+        }
+        return text.toString();
+    }
+
+    private void checkSameMoneda(Money other) {
+        if (other.moneda != moneda) {
+            throw new IllegalArgumentException("No se pueden combinar importes en " + moneda + " y " + other.moneda);
+        }
+    }
+
+    /**
+     * Unidades menores de un importe con los decimales y el redondeo indicados
+     * (0 si es null); lanza ArithmeticException si no cabe en un long
+     */
+    public static long toMinor(BigDecimal amount, int scale, RoundingMode redondeo) {
+        if (amount == null) {
+            return 0;
+        }
+        return amount.setScale(scale, redondeo).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Porcentaje de un importe en unidades menores, con la tasa en centésimas de
+     * punto porcentual (2100 para un 21 %)
+     */
+    public static long percentOf(long minor, long tasa, RoundingMode redondeo) {
+        return divide(Math.multiplyExact(minor, tasa), RATE_DIVISOR, redondeo);
+    }
+
+    /**
+     * División entera con el modo de redondeo indicado, equivalente a
+     * BigDecimal.divide(divisor, 0, redondeo) sin crear objetos
+     */
+    public static long divide(long dividend, long divisor, RoundingMode redondeo) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        int sign = (dividend < 0) == (divisor < 0) ? 1 : -1;
+        // Compara el resto con la mitad del divisor sin riesgo de desbordamiento
+        long absRemainder = Math.abs(remainder);
+        int half = Long.compare(absRemainder, Math.abs(divisor) - absRemainder);
+        boolean away = switch (redondeo) {
+            case UP -> true;
+            case DOWN -> false;
+            case CEILING -> sign > 0;
+            case FLOOR -> sign < 0;
+            case HALF_UP -> half >= 0;
+            case HALF_DOWN -> half > 0;
+            case HALF_EVEN -> half > 0 || (half == 0 && (quotient & 1) != 0);
+            case UNNECESSARY -> throw new ArithmeticException("La división no es exacta");
+        };
+        return away ? quotient + sign : quotient;
+    }
+}
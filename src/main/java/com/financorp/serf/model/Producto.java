@@ -3,7 +3,9 @@ package com.financorp.serf.model;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -56,6 +58,9 @@ public class Producto {
     @Column(name = "pais_origen")
     private String paisOrigen = "China";
     
+    // Fuera de toString/equals/hashCode para no inicializar el proxy perezoso
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "filial_id", nullable = false)
     private Filial filial;
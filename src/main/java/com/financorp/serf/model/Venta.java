@@ -3,32 +3,48 @@ package com.financorp.serf.model;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.Hibernate;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 
 /**
  * Entidad que representa una Venta realizada por una filial
  */
 @Entity
-@Table(name = "ventas")
+@Table(name = "ventas",
+       indexes = {
+           // Paginación por clave (fechaVenta, id), general y por filial
+           @Index(name = "idx_ventas_fecha_id", columnList = "fecha_venta, id"),
+           @Index(name = "idx_ventas_filial_fecha_id", columnList = "filial_id, fecha_venta, id")
+       })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Venta {
     
+    // Secuencia con asignación por bloques: IDENTITY impide el batching de inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ventas_seq")
+    @SequenceGenerator(name = "ventas_seq", sequenceName = "ventas_seq", allocationSize = 500)
     private Long id;
     
     @Column(nullable = false, unique = true)
     private String codigoVenta; // Ej: ES-001-V-00001
     
+    // Fuera de toString/equals/hashCode para no inicializar los proxies perezosos
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "producto_id", nullable = false)
     private Producto producto;
     
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "filial_id", nullable = false)
     private Filial filial;
@@ -36,6 +52,10 @@ public class Venta {
     @Column(nullable = false)
     private Integer cantidad;
     
+    // Moneda de la filial en el momento de la venta: fija los decimales y el redondeo de los totales
+    @Column(length = 3)
+    private String moneda;
+    
     @Column(name = "precio_unitario", nullable = false, precision = 10, scale = 2)
     private BigDecimal precioUnitario;
     
@@ -75,6 +95,9 @@ public class Venta {
         if (fechaVenta == null) {
             fechaVenta = LocalDateTime.now();
         }
+        if (moneda == null && filial != null && Hibernate.isInitialized(filial)) {
+            moneda = filial.getMoneda();
+        }
         calcularTotales();
     }
     
@@ -84,13 +107,21 @@ public class Venta {
     }
     
     /**
-     * Calcula los totales de la venta
+     * Calcula los totales de la venta en unidades menores de su moneda (sin moneda,
+     * con los decimales de las columnas y redondeo HALF_UP)
      */
     private void calcularTotales() {
         if (cantidad != null && precioUnitario != null) {
-            this.subtotal = precioUnitario.multiply(BigDecimal.valueOf(cantidad));
-            this.montoImpuesto = subtotal.multiply(impuesto).divide(BigDecimal.valueOf(100));
-            this.total = subtotal.add(montoImpuesto);
+            Moneda divisa = moneda != null ? Moneda.of(moneda) : null;
+            int decimales = divisa != null ? divisa.getDecimales() : Money.STORAGE_SCALE;
+            RoundingMode redondeo = divisa != null ? divisa.getRedondeo() : RoundingMode.HALF_UP;
+            
+            long subtotalMinor = Math.multiplyExact(Money.toMinor(precioUnitario, decimales, redondeo), cantidad);
+            long tasa = Money.toMinor(impuesto, Money.RATE_SCALE, RoundingMode.HALF_UP);
+            long impuestoMinor = Money.percentOf(subtotalMinor, tasa, redondeo);
+            this.subtotal = BigDecimal.valueOf(subtotalMinor, decimales);
+            this.montoImpuesto = BigDecimal.valueOf(impuestoMinor, decimales);
+            this.total = BigDecimal.valueOf(Math.addExact(subtotalMinor, impuestoMinor), decimales);
         }
     }
     
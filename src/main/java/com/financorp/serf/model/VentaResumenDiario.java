@@ -0,0 +1,65 @@
+package com.financorp.serf.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Acumulado diario de ventas por filial, producto y estado
+ * Se mantiene en la misma transacción que cada alta, modificación o baja de venta
+ */
+@Entity
+@Table(name = "ventas_resumen_diario",
+       uniqueConstraints = @UniqueConstraint(name = "uk_resumen_dia_filial_producto_estado",
+                                             columnNames = {"dia", "filial_id", "producto_id", "estado"}),
+       indexes = @Index(name = "idx_resumen_filial_dia", columnList = "filial_id, dia"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VentaResumenDiario {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ventas_resumen_diario_seq")
+    @SequenceGenerator(name = "ventas_resumen_diario_seq", sequenceName = "ventas_resumen_diario_seq", allocationSize = 50)
+    private Long id;
+    
+    @Column(nullable = false)
+    private LocalDate dia;
+    
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "filial_id", nullable = false)
+    private Filial filial;
+    
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "producto_id", nullable = false)
+    private Producto producto;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Venta.EstadoVenta estado;
+    
+    @Column(name = "numero_ventas", nullable = false)
+    private Long numeroVentas = 0L;
+    
+    @Column(nullable = false)
+    private Long cantidad = 0L;
+    
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal subtotal = BigDecimal.ZERO;
+    
+    @Column(name = "monto_impuesto", nullable = false, precision = 19, scale = 2)
+    private BigDecimal montoImpuesto = BigDecimal.ZERO;
+    
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal total = BigDecimal.ZERO;
+}
@@ -0,0 +1,18 @@
+package com.financorp.serf.patterns.creational;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Etapa de datos del Builder: obtiene las cifras reales de cada filial del reporte
+ *
+ * Devuelve las cifras indexadas por el nombre de la filial tal y como se agregó
+ * al builder. Las filiales que no aparezcan en el resultado (p. ej. porque no
+ * respondieron dentro del plazo) se muestran como "N/D".
+ */
+@FunctionalInterface
+public interface FilialDataProvider {
+    
+    Map<String, FilialFigures> fetch(List<String> filiales, LocalDateTime startDate, LocalDateTime endDate);
+}
@@ -0,0 +1,26 @@
+package com.financorp.serf.patterns.creational;
+
+import java.math.BigDecimal;
+
+/**
+ * Cifras agregadas de una filial para el período de un reporte
+ *
+ * @param moneda                moneda local de la filial (EUR, MXN, ARS, ...)
+ * @param ventas                total vendido (ventas completadas, impuestos incluidos)
+ * @param valorInventario       stock actual valorado a precio de compra
+ * @param rendimiento           margen bruto sobre ventas netas, en porcentaje (null si no hubo ventas)
+ * @param monedaConsolidacion   moneda del total consolidado (null si no se pudo convertir)
+ * @param ventasConsolidadas    ventas convertidas con el tipo de cierre de cada mes
+ * @param inventarioConsolidado inventario convertido con el tipo de cierre del período
+ */
+public record FilialFigures(String moneda, BigDecimal ventas, BigDecimal valorInventario, BigDecimal rendimiento,
+                            String monedaConsolidacion, BigDecimal ventasConsolidadas,
+                            BigDecimal inventarioConsolidado) {
+
+    /**
+     * Cifras sin conversión a la moneda de consolidación
+     */
+    public FilialFigures(String moneda, BigDecimal ventas, BigDecimal valorInventario, BigDecimal rendimiento) {
+        this(moneda, ventas, valorInventario, rendimiento, null, null, null);
+    }
+}
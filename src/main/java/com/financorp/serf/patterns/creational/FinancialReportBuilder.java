@@ -1,11 +1,17 @@
 package com.financorp.serf.patterns.creational;
 
+import com.financorp.serf.metrics.ReportMetrics;
+import com.financorp.serf.model.Moneda;
+import com.financorp.serf.model.Money;
 import com.financorp.serf.patterns.structural.*;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * PATRÓN BUILDER - Construcción de Reportes Complejos
@@ -23,7 +29,6 @@ public class FinancialReportBuilder {
     private String country;
     private LocalDateTime startDate;
     private LocalDateTime endDate;
-    private ReportSection rootSection;
     private List<String> filiales;
     private boolean includeCharts;
     private boolean includeSummary;
@@ -41,6 +46,11 @@ public class FinancialReportBuilder {
     private String auditor;
     private String auditNotes;
     
+    // Etapa de datos: cifras reales por filial (se obtienen una sola vez)
+    private FilialDataProvider dataProvider;
+    private ParallelSectionRenderer parallelRenderer;
+    private Map<String, FilialFigures> filialFigures;
+    
     public FinancialReportBuilder() {
         this.filiales = new ArrayList<>();
         this.includeCharts = false;
@@ -92,6 +102,24 @@ public class FinancialReportBuilder {
         return this;
     }
     
+    /**
+     * Establece el proveedor de las cifras reales de cada filial
+     */
+    public FinancialReportBuilder withDataProvider(FilialDataProvider dataProvider) {
+        this.dataProvider = dataProvider;
+        this.filialFigures = null;
+        return this;
+    }
+    
+    /**
+     * Establece el renderizador paralelo de las secciones del reporte
+     * (sin él se renderizan en secuencia)
+     */
+    public FinancialReportBuilder withParallelRenderer(ParallelSectionRenderer parallelRenderer) {
+        this.parallelRenderer = parallelRenderer;
+        return this;
+    }
+    
     /**
      * Establece si incluir gráficos
      */
@@ -157,47 +185,68 @@ public class FinancialReportBuilder {
      * Construye el reporte completo
      */
     public Report build() {
-        // Validar campos requeridos
-        if (title == null || reportType == null) {
-            throw new IllegalStateException("Título y tipo de reporte son requeridos");
-        }
+        // La consulta de datos se mide como etapa propia, fuera de la construcción
+        loadFilialData();
+        ReportMetrics.Sample sample = ReportMetrics.start();
         
         // Crear estructura del reporte usando Composite
-        rootSection = new ReportSection(title, 1);
+        ReportSection rootSection = buildStructure();
+        
+        // Crear el reporte básico (el árbol se renderiza al escribir el reporte)
+        Report report = new BasicReport(title, reportType, rootSection);
+        
+        // Aplicar decoradores según configuración
+        report = applyFrameDecorators(report);
+        report = applyDynamicDecorators(report);
+        
+        ReportMetrics.recordBuild(sample, reportType, country);
+        return report;
+    }
+    
+    /**
+     * Construye el árbol de componentes del reporte sin decoradores
+     */
+    public ReportSection buildStructure() {
+        validate();
+        
+        ReportSection rootSection = new ReportSection(title, 1);
+        rootSection.setParallelRenderer(parallelRenderer);
         
         // Añadir sección de información general
-        addGeneralInfoSection();
+        rootSection.add(createGeneralInfoSection());
         
         // Añadir resumen ejecutivo si está configurado
         if (includeSummary) {
-            addExecutiveSummary();
+            rootSection.add(createExecutiveSummary());
         }
         
         // Añadir sección de datos por filial
-        addFilialDataSection();
+        rootSection.add(createFilialDataSection());
         
         // Añadir gráficos si está configurado
         if (includeCharts) {
-            addChartsSection();
+            rootSection.add(createChartsSection());
         }
         
         // Añadir conclusiones y recomendaciones
-        addConclusionsSection();
-        
-        // Crear el reporte básico
-        String reportContent = rootSection.render();
-        Report report = new BasicReport(title, reportType, reportContent);
-        
-        // Aplicar decoradores según configuración
-        report = applyDecorators(report);
+        rootSection.add(createConclusionsSection());
         
-        return report;
+        return rootSection;
+    }
+    
+    /**
+     * Valida los campos requeridos
+     */
+    void validate() {
+        if (title == null || reportType == null) {
+            throw new IllegalStateException("Título y tipo de reporte son requeridos");
+        }
     }
     
     /**
-     * Añade sección de información general
+     * Crea la sección de información general (depende del país, moneda, período y filiales)
      */
-    private void addGeneralInfoSection() {
+    ReportSection createGeneralInfoSection() {
         ReportSection infoSection = new ReportSection("Información General", 2);
         
         StringBuilder info = new StringBuilder();
@@ -214,13 +263,13 @@ public class FinancialReportBuilder {
         info.append("Filiales incluidas: ").append(filiales.isEmpty() ? "Todas" : filiales.size()).append("\n");
         
         infoSection.add(new ReportContent("", info.toString(), 3));
-        rootSection.add(infoSection);
+        return infoSection;
     }
     
     /**
-     * Añade resumen ejecutivo
+     * Crea el resumen ejecutivo (contenido estático)
      */
-    private void addExecutiveSummary() {
+    ReportSection createExecutiveSummary() {
         ReportSection summarySection = new ReportSection("Resumen Ejecutivo", 2);
         
         String summary = "Este reporte consolida la información financiera de las filiales de FinanCorp S.A. " +
@@ -228,50 +277,117 @@ public class FinancialReportBuilder {
                         "rendimiento operativo con el objetivo de facilitar la toma de decisiones estratégicas.";
         
         summarySection.add(new ReportContent("", summary, 3));
-        rootSection.add(summarySection);
+        return summarySection;
     }
     
     /**
-     * Añade sección de datos por filial
+     * Obtiene las cifras de las filiales del proveedor de datos, si lo hay
+     * (solo la primera vez; las siguientes llamadas reutilizan el resultado)
      */
-    private void addFilialDataSection() {
+    void loadFilialData() {
+        if (dataProvider == null || filialFigures != null || filiales.isEmpty()) {
+            return;
+        }
+        ReportMetrics.Sample sample = ReportMetrics.start();
+        filialFigures = dataProvider.fetch(List.copyOf(filiales), startDate, endDate);
+        ReportMetrics.recordFetch(sample, "filiales");
+    }
+    
+    /**
+     * Crea la sección de datos por filial (depende de las filiales del reporte)
+     */
+    ReportSection createFilialDataSection() {
         ReportSection dataSection = new ReportSection("Datos Consolidados", 2);
+        // Las plantillas renderizan esta sección suelta, fuera del árbol completo
+        dataSection.setParallelRenderer(parallelRenderer);
+        loadFilialData();
         
-        // Crear tabla de ejemplo
-        ReportTable table = new ReportTable("Resumen por Filial", 3);
+        // Columnar: misma salida que ReportTable con menos memoria por celda
+        ColumnarReportTable table = new ColumnarReportTable("Resumen por Filial", 3);
         table.setHeaders(List.of("Filial", "Ventas", "Inventario", "Rendimiento"));
         
+        int missing = 0;
         if (filiales.isEmpty()) {
             table.addRow(List.of("ES-001 España", "€1,250,000", "€450,000", "85%"));
             table.addRow(List.of("MX-001 México", "$850,000", "$320,000", "78%"));
             table.addRow(List.of("AR-001 Argentina", "ARS 2,100,000", "ARS 780,000", "72%"));
+        } else if (filialFigures == null) {
+            for (String filial : filiales) {
+                table.addRow(filial, "N/D", "N/D", "N/D");
+            }
         } else {
+            // Total en la moneda de consolidación, solo si todas las filiales que respondieron están convertidas
+            Moneda consolidacion = null;
+            long ventasConsolidadas = 0;
+            long inventarioConsolidado = 0;
+            boolean consolidable = true;
             for (String filial : filiales) {
-                table.addRow(List.of(filial, "N/D", "N/D", "N/D"));
+                FilialFigures figures = filialFigures.get(filial);
+                if (figures == null) {
+                    table.addRow(filial, "N/D", "N/D", "N/D");
+                    missing++;
+                } else {
+                    table.addRow(filial,
+                            formatAmount(figures.moneda(), figures.ventas()),
+                            formatAmount(figures.moneda(), figures.valorInventario()),
+                            figures.rendimiento() != null
+                                    ? figures.rendimiento().setScale(1, RoundingMode.HALF_UP) + "%"
+                                    : "N/D");
+                    if (figures.monedaConsolidacion() == null
+                            || (consolidacion != null && !consolidacion.name().equals(figures.monedaConsolidacion()))) {
+                        consolidable = false;
+                    } else if (consolidable) {
+                        consolidacion = Moneda.of(figures.monedaConsolidacion());
+                        ventasConsolidadas = Math.addExact(ventasConsolidadas,
+                                Money.of(figures.ventasConsolidadas(), consolidacion).minor());
+                        inventarioConsolidado = Math.addExact(inventarioConsolidado,
+                                Money.of(figures.inventarioConsolidado(), consolidacion).minor());
+                    }
+                }
+            }
+            if (consolidacion != null && consolidable) {
+                // Sin todas las filiales la suma es parcial y se marca como tal
+                String parcial = missing > 0 ? ", parcial: faltan " + missing + " filial(es)" : "";
+                table.addRow("Total consolidado (" + consolidacion + parcial + ")",
+                        Money.ofMinor(ventasConsolidadas, consolidacion).format(),
+                        Money.ofMinor(inventarioConsolidado, consolidacion).format(), "");
+            } else if (missing < filiales.size()) {
+                table.addRow("Total consolidado", "N/D", "N/D", "");
             }
         }
         
         dataSection.add(table);
-        rootSection.add(dataSection);
+        if (missing > 0) {
+            dataSection.add(new ReportContent("", "Datos parciales: " + missing
+                    + " filial(es) no respondieron dentro del plazo y se muestran como N/D.", 3));
+        }
+        return dataSection;
     }
     
     /**
-     * Añade sección de gráficos
+     * Importe con separador de miles y los decimales de su moneda (sin decimales en CLP)
      */
-    private void addChartsSection() {
+    private static String formatAmount(String moneda, BigDecimal amount) {
+        return Money.of(amount, Moneda.of(moneda)).format();
+    }
+    
+    /**
+     * Crea la sección de gráficos (contenido estático)
+     */
+    ReportSection createChartsSection() {
         ReportSection chartsSection = new ReportSection("Análisis Gráfico", 2);
         
         String chartInfo = "Los gráficos de tendencias y comparativos se generan automáticamente " +
                           "basados en los datos consolidados de todas las filiales.";
         
         chartsSection.add(new ReportContent("", chartInfo, 3));
-        rootSection.add(chartsSection);
+        return chartsSection;
     }
     
     /**
-     * Añade sección de conclusiones
+     * Crea la sección de conclusiones (contenido estático)
      */
-    private void addConclusionsSection() {
+    ReportSection createConclusionsSection() {
         ReportSection conclusionsSection = new ReportSection("Conclusiones y Recomendaciones", 2);
         
         String conclusions = "Basado en el análisis de los datos consolidados, se recomienda:\n" +
@@ -280,13 +396,14 @@ public class FinancialReportBuilder {
                            "3. Implementar estrategias de mejora en las filiales con bajo rendimiento";
         
         conclusionsSection.add(new ReportContent("", conclusions, 3));
-        rootSection.add(conclusionsSection);
+        return conclusionsSection;
     }
     
     /**
-     * Aplica decoradores al reporte según configuración
+     * Aplica los decoradores de marco (marca de agua y encabezado), cuyo texto
+     * no depende de la solicitud y por eso puede precompilarse en plantillas
      */
-    private Report applyDecorators(Report report) {
+    Report applyFrameDecorators(Report report) {
         Report decoratedReport = report;
         
         // Aplicar en orden específico para mejor presentación
@@ -295,12 +412,19 @@ public class FinancialReportBuilder {
         }
         
         if (includeHeader) {
-            String company = AppConfiguration.getInstance()
-                    .getConfigurationAsString("company.name");
-            decoratedReport = new HeaderDecorator(decoratedReport, company, 
+            decoratedReport = new HeaderDecorator(decoratedReport, getCompanyName(), 
                     "Departamento de Reportes Financieros");
         }
         
+        return decoratedReport;
+    }
+    
+    /**
+     * Aplica los decoradores que dependen de la solicitud (auditoría, firma y pie de página)
+     */
+    Report applyDynamicDecorators(Report report) {
+        Report decoratedReport = report;
+        
         if (includeAudit) {
             decoratedReport = new AuditDecorator(decoratedReport, auditor, auditNotes);
         }
@@ -318,6 +442,34 @@ public class FinancialReportBuilder {
         return decoratedReport;
     }
     
+    String getCompanyName() {
+        return AppConfiguration.getInstance().getConfigurationAsString("company.name");
+    }
+    
+    String getTitle() {
+        return title;
+    }
+    
+    String getReportType() {
+        return reportType;
+    }
+    
+    boolean isIncludeSummary() {
+        return includeSummary;
+    }
+    
+    boolean isIncludeCharts() {
+        return includeCharts;
+    }
+    
+    boolean isIncludeHeader() {
+        return includeHeader;
+    }
+    
+    boolean isIncludeWatermark() {
+        return includeWatermark;
+    }
+    
     /**
      * Obtiene la moneda según el país
      */
@@ -1,7 +1,9 @@
 package com.financorp.serf.patterns.creational;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Clase de configuración para la creación de reportes
@@ -53,6 +55,63 @@ public class ReportConfiguration {
     public String getAuditor() { return auditor; }
     public String getAuditNotes() { return auditNotes; }
     
+    /**
+     * Devuelve una copia normalizada, útil como clave de caché: textos sin espacios
+     * sobrantes, fechas truncadas a segundos y lista de filiales inmutable
+     */
+    public ReportConfiguration normalized() {
+        return builder()
+                .country(trim(country))
+                .startDate(startDate != null ? startDate.truncatedTo(ChronoUnit.SECONDS) : null)
+                .endDate(endDate != null ? endDate.truncatedTo(ChronoUnit.SECONDS) : null)
+                .filiales(filiales == null || filiales.isEmpty() ? null : List.copyOf(filiales))
+                .confidential(confidential)
+                .requireSignature(requireSignature)
+                .requireAudit(requireAudit)
+                .generatedBy(trim(generatedBy))
+                .signerName(trim(signerName))
+                .signerRole(trim(signerRole))
+                .auditor(trim(auditor))
+                .auditNotes(trim(auditNotes))
+                .build();
+    }
+    
+    /**
+     * Verifica si una fecha cae dentro del período configurado (un extremo nulo se considera abierto)
+     */
+    public boolean coversDate(LocalDateTime date) {
+        return (startDate == null || !date.isBefore(startDate))
+                && (endDate == null || !date.isAfter(endDate));
+    }
+    
+    private static String trim(String value) {
+        return value != null ? value.trim() : null;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ReportConfiguration that)) return false;
+        return confidential == that.confidential
+                && requireSignature == that.requireSignature
+                && requireAudit == that.requireAudit
+                && Objects.equals(country, that.country)
+                && Objects.equals(startDate, that.startDate)
+                && Objects.equals(endDate, that.endDate)
+                && Objects.equals(filiales, that.filiales)
+                && Objects.equals(generatedBy, that.generatedBy)
+                && Objects.equals(signerName, that.signerName)
+                && Objects.equals(signerRole, that.signerRole)
+                && Objects.equals(auditor, that.auditor)
+                && Objects.equals(auditNotes, that.auditNotes);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(country, startDate, endDate, filiales, confidential, requireSignature,
+                requireAudit, generatedBy, signerName, signerRole, auditor, auditNotes);
+    }
+    
     /**
      * Builder para ReportConfiguration
      */
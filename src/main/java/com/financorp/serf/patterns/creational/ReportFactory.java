@@ -1,5 +1,7 @@
 package com.financorp.serf.patterns.creational;
 
+import com.financorp.serf.metrics.ReportMetrics;
+import com.financorp.serf.patterns.structural.ParallelSectionRenderer;
 import com.financorp.serf.patterns.structural.Report;
 
 import java.time.LocalDateTime;
@@ -39,8 +41,53 @@ public class ReportFactory {
     
     /**
      * Crea un reporte según el tipo especificado
+     * 
+     * Las partes estáticas del tipo de reporte se toman de una plantilla
+     * precompilada; solo se renderizan los datos propios de la solicitud.
      */
     public static Report createReport(ReportType type, ReportConfiguration config) {
+        return createReport(type, config, null);
+    }
+    
+    /**
+     * Crea un reporte según el tipo especificado, con las cifras de cada filial
+     * obtenidas del proveedor de datos indicado
+     */
+    public static Report createReport(ReportType type, ReportConfiguration config, FilialDataProvider dataProvider) {
+        return createReport(type, config, dataProvider, null);
+    }
+    
+    /**
+     * Crea un reporte según el tipo especificado, renderizando las secciones
+     * grandes con el renderizador paralelo indicado (null para hacerlo en secuencia)
+     */
+    public static Report createReport(ReportType type, ReportConfiguration config, FilialDataProvider dataProvider,
+                                      ParallelSectionRenderer parallelRenderer) {
+        FinancialReportBuilder builder = prepareBuilder(type, config)
+                .withDataProvider(dataProvider)
+                .withParallelRenderer(parallelRenderer);
+        
+        // La consulta de datos se mide como etapa propia, fuera de la construcción
+        builder.loadFilialData();
+        
+        ReportMetrics.Sample sample = ReportMetrics.start();
+        Report report = ReportTemplate.forBuilder(builder).fill(builder);
+        ReportMetrics.recordFactory(sample, type, config.getCountry());
+        return report;
+    }
+    
+    /**
+     * Crea un reporte construyendo el árbol completo con el Builder, sin plantillas
+     * precompiladas (produce el mismo texto que {@link #createReport})
+     */
+    public static Report buildReport(ReportType type, ReportConfiguration config) {
+        return prepareBuilder(type, config).build();
+    }
+    
+    /**
+     * Prepara el builder con la configuración común y la específica del tipo
+     */
+    private static FinancialReportBuilder prepareBuilder(ReportType type, ReportConfiguration config) {
         FinancialReportBuilder builder = new FinancialReportBuilder();
         
         // Configuración común
@@ -56,52 +103,50 @@ public class ReportFactory {
         // Configuración específica según el tipo
         switch (type) {
             case SALES:
-                return createSalesReport(builder, config);
+                return configureSalesReport(builder, config);
             case INVENTORY:
-                return createInventoryReport(builder, config);
+                return configureInventoryReport(builder, config);
             case FINANCIAL:
-                return createFinancialReport(builder, config);
+                return configureFinancialReport(builder, config);
             case BRANCH:
-                return createBranchReport(builder, config);
+                return configureBranchReport(builder, config);
             case EXECUTIVE:
-                return createExecutiveReport(builder, config);
+                return configureExecutiveReport(builder, config);
             default:
                 throw new IllegalArgumentException("Tipo de reporte no soportado: " + type);
         }
     }
     
     /**
-     * Crea un reporte de ventas
+     * Configura un reporte de ventas
      */
-    private static Report createSalesReport(FinancialReportBuilder builder, ReportConfiguration config) {
+    private static FinancialReportBuilder configureSalesReport(FinancialReportBuilder builder, ReportConfiguration config) {
         return builder
                 .setTitle("Reporte de Ventas - FinanCorp S.A.")
                 .setReportType(ReportType.SALES.getDescription())
                 .includeCharts(true)
                 .includeSummary(true)
                 .withHeader(true)
-                .withWatermark(config.isConfidential())
-                .build();
+                .withWatermark(config.isConfidential());
     }
     
     /**
-     * Crea un reporte de inventario
+     * Configura un reporte de inventario
      */
-    private static Report createInventoryReport(FinancialReportBuilder builder, ReportConfiguration config) {
+    private static FinancialReportBuilder configureInventoryReport(FinancialReportBuilder builder, ReportConfiguration config) {
         return builder
                 .setTitle("Reporte de Inventario - FinanCorp S.A.")
                 .setReportType(ReportType.INVENTORY.getDescription())
                 .includeCharts(false)
                 .includeSummary(true)
                 .withHeader(true)
-                .withWatermark(config.isConfidential())
-                .build();
+                .withWatermark(config.isConfidential());
     }
     
     /**
-     * Crea un reporte financiero consolidado
+     * Configura un reporte financiero consolidado
      */
-    private static Report createFinancialReport(FinancialReportBuilder builder, ReportConfiguration config) {
+    private static FinancialReportBuilder configureFinancialReport(FinancialReportBuilder builder, ReportConfiguration config) {
         return builder
                 .setTitle("Reporte Financiero Consolidado - FinanCorp S.A.")
                 .setReportType(ReportType.FINANCIAL.getDescription())
@@ -114,14 +159,13 @@ public class ReportFactory {
                         config.getSignerRole())
                 .withAudit(config.isRequireAudit(), 
                         config.getAuditor(), 
-                        config.getAuditNotes())
-                .build();
+                        config.getAuditNotes());
     }
     
     /**
-     * Crea un reporte por filial
+     * Configura un reporte por filial
      */
-    private static Report createBranchReport(FinancialReportBuilder builder, ReportConfiguration config) {
+    private static FinancialReportBuilder configureBranchReport(FinancialReportBuilder builder, ReportConfiguration config) {
         String filialName = config.getFiliales() != null && !config.getFiliales().isEmpty() 
                 ? config.getFiliales().get(0) 
                 : "Filial";
@@ -132,14 +176,13 @@ public class ReportFactory {
                 .includeCharts(true)
                 .includeSummary(false)
                 .withHeader(true)
-                .withWatermark(config.isConfidential())
-                .build();
+                .withWatermark(config.isConfidential());
     }
     
     /**
-     * Crea un reporte ejecutivo
+     * Configura un reporte ejecutivo
      */
-    private static Report createExecutiveReport(FinancialReportBuilder builder, ReportConfiguration config) {
+    private static FinancialReportBuilder configureExecutiveReport(FinancialReportBuilder builder, ReportConfiguration config) {
         return builder
                 .setTitle("Reporte Ejecutivo - FinanCorp S.A.")
                 .setReportType(ReportType.EXECUTIVE.getDescription())
@@ -149,8 +192,7 @@ public class ReportFactory {
                 .withWatermark(true)
                 .withDigitalSignature(true, 
                         config.getSignerName() != null ? config.getSignerName() : "CEO FinanCorp", 
-                        config.getSignerRole() != null ? config.getSignerRole() : "Chief Executive Officer")
-                .build();
+                        config.getSignerRole() != null ? config.getSignerRole() : "Chief Executive Officer");
     }
     
     /**
@@ -0,0 +1,159 @@
+package com.financorp.serf.patterns.creational;
+
+import com.financorp.serf.metrics.ReportMetrics;
+import com.financorp.serf.patterns.structural.BasicReport;
+import com.financorp.serf.patterns.structural.Report;
+import com.financorp.serf.patterns.structural.ReportComponent;
+import com.financorp.serf.patterns.structural.ReportSection;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Plantilla de reporte precompilada
+ *
+ * Contiene pre-renderizadas todas las partes estáticas de un tipo de reporte
+ * (marca de agua, encabezado corporativo, título, resumen ejecutivo, gráficos y
+ * conclusiones). Cada solicitud solo rellena los huecos dinámicos: información
+ * general (país, moneda, período), tabla de filiales y los decoradores que
+ * dependen de la solicitud (auditoría, firma y pie de página).
+ *
+ * Las plantillas son inmutables y se compilan una sola vez por combinación de
+ * parámetros estáticos.
+ */
+public final class ReportTemplate {
+    
+    // Límite de plantillas en memoria (los títulos por filial generan una plantilla cada uno)
+    private static final int MAX_TEMPLATES = 256;
+    
+    // LinkedHashMap en orden de acceso: al llenarse se desaloja solo la menos usada recientemente
+    private static final Map<TemplateKey, ReportTemplate> TEMPLATES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TemplateKey, ReportTemplate> eldest) {
+            return size() > MAX_TEMPLATES;
+        }
+    };
+    
+    // Marcador que separa el prefijo y el sufijo de los decoradores de marco
+    private static final String BODY_MARKER = "\u0000CUERPO\u0000";
+    
+    private final String title;
+    private final String reportType;
+    private final String framePrefix;
+    private final String rootHeader;
+    private final String summary;
+    private final String trailingSections;
+    private final String frameSuffix;
+    
+    private ReportTemplate(FinancialReportBuilder prototype) {
+        prototype.validate();
+        this.title = prototype.getTitle();
+        this.reportType = prototype.getReportType();
+        
+        // Un decorador de marco envuelve el cuerpo: se renderiza alrededor de un marcador
+        String frame = prototype.applyFrameDecorators(new BasicReport(title, reportType, BODY_MARKER)).generate();
+        int marker = frame.indexOf(BODY_MARKER);
+        this.framePrefix = frame.substring(0, marker);
+        this.frameSuffix = frame.substring(marker + BODY_MARKER.length());
+        
+        // Una sección sin hijos renderiza solo su título
+        this.rootHeader = new ReportSection(title, 1).render();
+        this.summary = prototype.isIncludeSummary() ? prototype.createExecutiveSummary().render() : "";
+        this.trailingSections = (prototype.isIncludeCharts() ? prototype.createChartsSection().render() : "")
+                + prototype.createConclusionsSection().render();
+    }
+    
+    /**
+     * Obtiene (compilándola la primera vez) la plantilla correspondiente a la
+     * configuración estática del builder
+     */
+    static ReportTemplate forBuilder(FinancialReportBuilder builder) {
+        TemplateKey key = new TemplateKey(builder.getTitle(), builder.getReportType(),
+                builder.isIncludeSummary(), builder.isIncludeCharts(),
+                builder.isIncludeHeader(), builder.isIncludeWatermark(),
+                builder.isIncludeHeader() ? builder.getCompanyName() : null);
+        
+        synchronized (TEMPLATES) {
+            ReportTemplate template = TEMPLATES.get(key);
+            if (template != null) {
+                return template;
+            }
+        }
+        // Se compila fuera del bloqueo; si otro hilo se adelanta se usa la suya
+        ReportTemplate compiled = new ReportTemplate(builder);
+        synchronized (TEMPLATES) {
+            ReportTemplate existing = TEMPLATES.putIfAbsent(key, compiled);
+            return existing != null ? existing : compiled;
+        }
+    }
+    
+    /**
+     * Rellena los huecos dinámicos con los datos de la solicitud
+     */
+    Report fill(FinancialReportBuilder request) {
+        // Los datos de las filiales se consultan ahora, no al escribir el reporte
+        request.loadFilialData();
+        return request.applyDynamicDecorators(new TemplatedReport(this, request));
+    }
+    
+    /**
+     * Número de plantillas compiladas actualmente en memoria
+     */
+    public static int getCompiledTemplateCount() {
+        synchronized (TEMPLATES) {
+            return TEMPLATES.size();
+        }
+    }
+    
+    /**
+     * Parámetros que determinan el contenido estático de una plantilla
+     */
+    private record TemplateKey(String title, String reportType, boolean includeSummary,
+                               boolean includeCharts, boolean includeHeader,
+                               boolean includeWatermark, String companyName) {
+    }
+    
+    /**
+     * Reporte producido a partir de una plantilla: escribe las partes estáticas
+     * tal cual y renderiza solo las secciones dinámicas
+     */
+    private static final class TemplatedReport implements Report {
+        private final ReportTemplate template;
+        private final FinancialReportBuilder request;
+        
+        TemplatedReport(ReportTemplate template, FinancialReportBuilder request) {
+            this.template = template;
+            this.request = request;
+        }
+        
+        @Override
+        public void writeTo(Appendable out) throws IOException {
+            ReportMetrics.Sample sample = ReportMetrics.start();
+            out.append(template.framePrefix);
+            out.append(template.rootHeader);
+            request.createGeneralInfoSection().renderTo(out);
+            out.append(template.summary);
+            request.createFilialDataSection().renderTo(out);
+            out.append(template.trailingSections);
+            out.append(template.frameSuffix);
+            ReportMetrics.recordRender(sample, template.reportType);
+        }
+        
+        @Override
+        public String getTitle() {
+            return template.title;
+        }
+        
+        @Override
+        public String getType() {
+            return template.reportType;
+        }
+        
+        @Override
+        public ReportComponent getRootComponent() {
+            // El árbol completo solo se construye cuando se necesita (p. ej. exportación a Excel)
+            return request.buildStructure();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.financorp.serf.patterns.structural;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -17,20 +18,16 @@ public class AuditDecorator extends ReportDecorator {
     }
     
     @Override
-    public String generate() {
-        StringBuilder sb = new StringBuilder();
-        
-        sb.append(super.generate());
-        sb.append("\n");
-        sb.append("┌").append("─".repeat(68)).append("┐\n");
-        sb.append("│ NOTAS DE AUDITORÍA").append(" ".repeat(49)).append("│\n");
-        sb.append("├").append("─".repeat(68)).append("┤\n");
-        sb.append("│ Auditor: ").append(padRight(auditor, 57)).append("│\n");
-        sb.append("│ Notas: ").append(padRight(auditNotes, 59)).append("│\n");
-        sb.append("│ Fecha: ").append(padRight(formatDateTime(LocalDateTime.now()), 59)).append("│\n");
-        sb.append("└").append("─".repeat(68)).append("┘\n");
-        
-        return sb.toString();
+    protected void decorate(Appendable out) throws IOException {
+        writeDecorated(out);
+        out.append("\n");
+        out.append("┌").append("─".repeat(68)).append("┐\n");
+        out.append("│ NOTAS DE AUDITORÍA").append(" ".repeat(49)).append("│\n");
+        out.append("├").append("─".repeat(68)).append("┤\n");
+        out.append("│ Auditor: ").append(padRight(auditor, 57)).append("│\n");
+        out.append("│ Notas: ").append(padRight(auditNotes, 59)).append("│\n");
+        out.append("│ Fecha: ").append(padRight(formatDateTime(LocalDateTime.now()), 59)).append("│\n");
+        out.append("└").append("─".repeat(68)).append("┘\n");
     }
     
     private String padRight(String s, int n) {
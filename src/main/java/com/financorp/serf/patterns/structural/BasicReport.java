@@ -1,5 +1,9 @@
 package com.financorp.serf.patterns.structural;
 
+import com.financorp.serf.metrics.ReportMetrics;
+
+import java.io.IOException;
+
 /**
  * Reporte concreto básico
  */
@@ -7,6 +11,7 @@ public class BasicReport implements Report {
     private String title;
     private String type;
     private String content;
+    private ReportComponent rootComponent;
     
     public BasicReport(String title, String type, String content) {
         this.title = title;
@@ -14,9 +19,30 @@ public class BasicReport implements Report {
         this.content = content;
     }
     
+    /**
+     * Crea un reporte cuyo contenido se renderiza desde el árbol de componentes
+     * en el momento de escribirlo
+     */
+    public BasicReport(String title, String type, ReportComponent rootComponent) {
+        this.title = title;
+        this.type = type;
+        this.rootComponent = rootComponent;
+    }
+    
+    @Override
+    public void writeTo(Appendable out) throws IOException {
+        if (rootComponent != null) {
+            ReportMetrics.Sample sample = ReportMetrics.start();
+            rootComponent.renderTo(out);
+            ReportMetrics.recordRender(sample, type);
+        } else {
+            out.append(content);
+        }
+    }
+    
     @Override
     public String generate() {
-        return content;
+        return rootComponent != null ? Report.super.generate() : content;
     }
     
     @Override
@@ -28,4 +54,9 @@ public class BasicReport implements Report {
     public String getType() {
         return type;
     }
+    
+    @Override
+    public ReportComponent getRootComponent() {
+        return rootComponent;
+    }
 }
@@ -0,0 +1,235 @@
+package com.financorp.serf.patterns.structural;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Leaf - Tabla columnar para reportes con muchas filas
+ *
+ * Produce exactamente la misma salida que {@link ReportTable}, pero guarda cada
+ * columna en un arreglo, mantiene los anchos de columna al vuelo mientras se
+ * agregan filas y renderiza cada línea en un buffer reutilizable, sin crear
+ * objetos por celda.
+ */
+public class ColumnarReportTable extends ReportComponent {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] headers;
+    private String[][] columns; // columns[columna][fila]; null indica celda ausente
+    private int[] columnWidths;
+    private int rowCount;
+    private int rowCapacity;
+
+    public ColumnarReportTable(String name, int level) {
+        super(name, level);
+        this.headers = new String[0];
+        this.columns = new String[0][];
+        this.columnWidths = new int[0];
+        this.rowCapacity = INITIAL_CAPACITY;
+    }
+
+    public void setHeaders(List<String> headers) {
+        ensureColumns(headers.size());
+        this.headers = headers.toArray(new String[0]);
+        recalculateColumnWidths();
+        markDirty();
+    }
+
+    public void addRow(List<String> row) {
+        ensureColumns(row.size());
+        ensureRowCapacity();
+        for (int i = 0; i < row.size(); i++) {
+            setCell(i, row.get(i));
+        }
+        rowCount++;
+        markDirty();
+    }
+
+    /**
+     * Agrega una fila sin necesidad de construir una lista intermedia
+     */
+    public void addRow(String... row) {
+        ensureColumns(row.length);
+        ensureRowCapacity();
+        for (int i = 0; i < row.length; i++) {
+            setCell(i, row[i]);
+        }
+        rowCount++;
+        markDirty();
+    }
+
+    private void setCell(int column, String value) {
+        columns[column][rowCount] = value;
+        if (value.length() > columnWidths[column]) {
+            columnWidths[column] = value.length();
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return headers.length;
+    }
+
+    public List<String> getHeaders() {
+        return List.of(headers);
+    }
+
+    public String getValue(int row, int column) {
+        if (row >= rowCount) {
+            throw new IndexOutOfBoundsException("Fila fuera de rango: " + row);
+        }
+        return columns[column][row];
+    }
+
+    @Override
+    protected void renderContent(Appendable out) throws IOException {
+        String indent = "  ".repeat(level - 1);
+
+        if (!name.isEmpty()) {
+            out.append(indent).append("📊 ").append(name).append("\n");
+        }
+
+        out.append(borderLine(indent, '┌', '┬', '┐')).append("\n");
+
+        // Buffer de línea reutilizado para encabezados y todas las filas
+        char[] line = new char[maxLineLength(indent)];
+        writeLine(out, line, fillLine(line, indent, headers, -1));
+
+        out.append(borderLine(indent, '├', '┼', '┤')).append("\n");
+
+        for (int row = 0; row < rowCount; row++) {
+            writeLine(out, line, fillLine(line, indent, null, row));
+        }
+
+        out.append(borderLine(indent, '└', '┴', '┘')).append("\n\n");
+    }
+
+    /**
+     * Copia una línea de la tabla al buffer y devuelve su longitud.
+     * Si {@code values} es nulo se usa la fila {@code row} de las columnas.
+     */
+    private int fillLine(char[] line, String indent, String[] values, int row) {
+        int pos = copy(indent, line, 0);
+        line[pos++] = '│';
+
+        int cells = values != null ? values.length : columns.length;
+        for (int i = 0; i < cells; i++) {
+            String value = values != null ? values[i] : columns[i][row];
+            if (value == null) {
+                break;
+            }
+            line[pos++] = ' ';
+            pos = copy(value, line, pos);
+            int padding = columnWidths[i] - value.length();
+            Arrays.fill(line, pos, pos + padding, ' ');
+            pos += padding;
+            line[pos++] = ' ';
+            line[pos++] = '│';
+        }
+        line[pos++] = '\n';
+        return pos;
+    }
+
+    private static int copy(String value, char[] line, int pos) {
+        value.getChars(0, value.length(), line, pos);
+        return pos + value.length();
+    }
+
+    private static void writeLine(Appendable out, char[] line, int length) throws IOException {
+        if (out instanceof Writer writer) {
+            writer.write(line, 0, length);
+        } else if (out instanceof StringBuilder sb) {
+            sb.append(line, 0, length);
+        } else {
+            out.append(CharBuffer.wrap(line, 0, length));
+        }
+    }
+
+    private String borderLine(String indent, char left, char middle, char right) {
+        StringBuilder sb = new StringBuilder(maxLineLength(indent));
+        sb.append(indent).append(left);
+        for (int i = 0; i < headers.length; i++) {
+            sb.append("─".repeat(columnWidths[i] + 2));
+            if (i < headers.length - 1) sb.append(middle);
+        }
+        sb.append(right);
+        return sb.toString();
+    }
+
+    private int maxLineLength(String indent) {
+        int length = indent.length() + 2;
+        for (int width : columnWidths) {
+            length += width + 3;
+        }
+        return length;
+    }
+
+    private void ensureColumns(int count) {
+        if (count <= columns.length) {
+            return;
+        }
+        int previous = columns.length;
+        columns = Arrays.copyOf(columns, count);
+        columnWidths = Arrays.copyOf(columnWidths, count);
+        for (int i = previous; i < count; i++) {
+            columns[i] = new String[rowCapacity];
+        }
+    }
+
+    private void ensureRowCapacity() {
+        if (rowCount < rowCapacity) {
+            return;
+        }
+        rowCapacity = rowCapacity + (rowCapacity >> 1);
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Arrays.copyOf(columns[i], rowCapacity);
+        }
+    }
+
+    private void recalculateColumnWidths() {
+        Arrays.fill(columnWidths, 0);
+        for (int i = 0; i < headers.length; i++) {
+            columnWidths[i] = headers[i].length();
+        }
+        for (int i = 0; i < columns.length; i++) {
+            for (int row = 0; row < rowCount; row++) {
+                String value = columns[i][row];
+                if (value != null && value.length() > columnWidths[i]) {
+                    columnWidths[i] = value.length();
+                }
+            }
+        }
+    }
+
+    @Override
+    public long estimateRenderSize() {
+        // Los anchos de columna se mantienen al vuelo, así que la estimación es casi exacta
+        return (rowCount + 5L) * maxLineLength("  ".repeat(level - 1)) + name.length();
+    }
+    
+    @Override
+    public void add(ReportComponent component) {
+        throw new UnsupportedOperationException("No se puede agregar componentes a una tabla");
+    }
+
+    @Override
+    public void remove(ReportComponent component) {
+        throw new UnsupportedOperationException("No se puede remover componentes de una tabla");
+    }
+
+    @Override
+    public ReportComponent getChild(int index) {
+        throw new UnsupportedOperationException("Una tabla no tiene hijos");
+    }
+
+    @Override
+    public int getChildCount() {
+        return 0;
+    }
+}
@@ -1,5 +1,7 @@
 package com.financorp.serf.patterns.structural;
 
+import java.io.IOException;
+
 /**
  * Decorador: Añade firma digital
  */
@@ -16,21 +18,17 @@ public class DigitalSignatureDecorator extends ReportDecorator {
     }
     
     @Override
-    public String generate() {
-        StringBuilder sb = new StringBuilder();
-        
-        sb.append(super.generate());
-        sb.append("\n");
-        sb.append("═".repeat(70)).append("\n");
-        sb.append("FIRMA DIGITAL\n");
-        sb.append("═".repeat(70)).append("\n");
-        sb.append("Firmante: ").append(signerName).append("\n");
-        sb.append("Cargo: ").append(signerRole).append("\n");
-        sb.append("Código de firma: ").append(signatureCode).append("\n");
-        sb.append("Estado: ✓ VERIFICADO\n");
-        sb.append("═".repeat(70)).append("\n");
-        
-        return sb.toString();
+    protected void decorate(Appendable out) throws IOException {
+        writeDecorated(out);
+        out.append("\n");
+        out.append("═".repeat(70)).append("\n");
+        out.append("FIRMA DIGITAL\n");
+        out.append("═".repeat(70)).append("\n");
+        out.append("Firmante: ").append(signerName).append("\n");
+        out.append("Cargo: ").append(signerRole).append("\n");
+        out.append("Código de firma: ").append(signatureCode).append("\n");
+        out.append("Estado: ✓ VERIFICADO\n");
+        out.append("═".repeat(70)).append("\n");
     }
     
     private String generateSignatureCode() {
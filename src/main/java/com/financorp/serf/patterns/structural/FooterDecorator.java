@@ -1,5 +1,6 @@
 package com.financorp.serf.patterns.structural;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -17,18 +18,14 @@ public class FooterDecorator extends ReportDecorator {
     }
     
     @Override
-    public String generate() {
-        StringBuilder sb = new StringBuilder();
-        
-        sb.append(super.generate());
-        sb.append("\n");
-        sb.append("─".repeat(70)).append("\n");
-        sb.append("Generado por: ").append(generatedBy).append("\n");
-        sb.append("Fecha y hora: ").append(formatDateTime(generationDate)).append("\n");
-        sb.append("Tipo de reporte: ").append(getType()).append("\n");
-        sb.append("─".repeat(70)).append("\n");
-        
-        return sb.toString();
+    protected void decorate(Appendable out) throws IOException {
+        writeDecorated(out);
+        out.append("\n");
+        out.append("─".repeat(70)).append("\n");
+        out.append("Generado por: ").append(generatedBy).append("\n");
+        out.append("Fecha y hora: ").append(formatDateTime(generationDate)).append("\n");
+        out.append("Tipo de reporte: ").append(getType()).append("\n");
+        out.append("─".repeat(70)).append("\n");
     }
     
     private String formatDateTime(LocalDateTime dateTime) {
@@ -1,5 +1,7 @@
 package com.financorp.serf.patterns.structural;
 
+import java.io.IOException;
+
 /**
  * Decorador: Añade encabezado corporativo
  */
@@ -14,16 +16,12 @@ public class HeaderDecorator extends ReportDecorator {
     }
     
     @Override
-    public String generate() {
-        StringBuilder sb = new StringBuilder();
-        
-        sb.append("╔════════════════════════════════════════════════════════════════════╗\n");
-        sb.append("║                       ").append(centerText(companyName, 38)).append("                       ║\n");
-        sb.append("║                       ").append(centerText(department, 38)).append("                       ║\n");
-        sb.append("╚════════════════════════════════════════════════════════════════════╝\n\n");
-        sb.append(super.generate());
-        
-        return sb.toString();
+    protected void decorate(Appendable out) throws IOException {
+        out.append("╔════════════════════════════════════════════════════════════════════╗\n");
+        out.append("║                       ").append(centerText(companyName, 38)).append("                       ║\n");
+        out.append("║                       ").append(centerText(department, 38)).append("                       ║\n");
+        out.append("╚════════════════════════════════════════════════════════════════════╝\n\n");
+        writeDecorated(out);
     }
     
     private String centerText(String text, int width) {
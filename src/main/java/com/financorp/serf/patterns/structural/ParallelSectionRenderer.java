@@ -0,0 +1,164 @@
+package com.financorp.serf.patterns.structural;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renderizado en paralelo de subárboles de {@link ReportSection}
+ *
+ * Cuando una sección tiene al menos dos hijos cuyo tamaño estimado supera el
+ * umbral, esos hijos se renderizan como tareas fork/join en buffers separados
+ * y se concatenan en su orden original, por lo que la salida es idéntica byte
+ * a byte a la del renderizado secuencial. Los hijos pequeños se renderizan en
+ * el hilo que llama mientras tanto.
+ *
+ * Usa un pool propio y acotado (sin hilos de compensación) para que el
+ * tráfico de reportes no pueda acaparar los hilos de las peticiones.
+ *
+ * La configuración es inmutable: la aplicación crea una instancia (ver
+ * ReportRenderingConfig) y la asigna a los árboles de componentes con
+ * {@link ReportComponent#setParallelRenderer}; un árbol sin renderizador se
+ * renderiza de forma secuencial.
+ */
+public final class ParallelSectionRenderer {
+    
+    private final boolean enabled;
+    private final long thresholdChars;
+    private final ForkJoinPool pool;
+    
+    public ParallelSectionRenderer(boolean enabled, int parallelism, long thresholdChars) {
+        this.enabled = enabled && parallelism > 1;
+        this.thresholdChars = thresholdChars;
+        this.pool = this.enabled ? createBoundedPool(parallelism) : null;
+    }
+    
+    /**
+     * Libera el pool; los renderizados en curso terminan, los nuevos se rechazan
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+    
+    private static ForkJoinPool createBoundedPool(int parallelism) {
+        // maximumPoolSize = parallelism y saturate = true: al bloquearse en join() el pool
+        // no crea hilos de compensación, sigue trabajando con los que tiene
+        return new ForkJoinPool(parallelism,
+                pool -> {
+                    var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("serf-render-" + thread.getPoolIndex());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                null, false, 0, parallelism, 1, pool -> true, 60, TimeUnit.SECONDS);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public long getThresholdChars() {
+        return thresholdChars;
+    }
+    
+    public int getParallelism() {
+        return pool != null ? pool.getParallelism() : 1;
+    }
+    
+    /**
+     * Renderiza los hijos de una sección en orden, en paralelo si vale la pena
+     */
+    void renderChildren(List<ReportComponent> children, Appendable out) throws IOException {
+        List<RenderTask> tasks = enabled ? forkLargeChildren(children) : null;
+        
+        if (tasks == null) {
+            for (ReportComponent child : children) {
+                child.renderTo(out);
+            }
+            return;
+        }
+        
+        for (int i = 0; i < children.size(); i++) {
+            RenderTask task = tasks.get(i);
+            if (task == null) {
+                children.get(i).renderTo(out);
+            } else {
+                out.append(task.join());
+            }
+        }
+    }
+    
+    /**
+     * Lanza una tarea por cada hijo grande; devuelve null si hay menos de dos
+     * (en ese caso el paralelismo no compensa el coste de los buffers)
+     */
+    private List<RenderTask> forkLargeChildren(List<ReportComponent> children) {
+        if (children.size() < 2) {
+            return null;
+        }
+        
+        int large = 0;
+        boolean[] isLarge = new boolean[children.size()];
+        for (int i = 0; i < children.size(); i++) {
+            ReportComponent child = children.get(i);
+            // Un hijo memoizado y sin cambios solo se copia: no compensa lanzarlo en paralelo
+            isLarge[i] = !(child.isMemoizationEnabled() && !child.isDirty())
+                    && child.estimateRenderSize() >= thresholdChars;
+            if (isLarge[i]) {
+                large++;
+            }
+        }
+        if (large < 2) {
+            return null;
+        }
+        
+        boolean insidePool = ForkJoinTask.getPool() == pool;
+        List<RenderTask> tasks = new ArrayList<>(children.size());
+        for (int i = 0; i < children.size(); i++) {
+            if (!isLarge[i]) {
+                tasks.add(null);
+                continue;
+            }
+            RenderTask task = new RenderTask(children.get(i));
+            if (insidePool) {
+                task.fork();
+            } else {
+                pool.execute(task);
+            }
+            tasks.add(task);
+        }
+        return tasks;
+    }
+    
+    /**
+     * Tarea que renderiza un subárbol en su propio buffer (nunca se serializa)
+     */
+    @SuppressWarnings("serial")
+    private static final class RenderTask extends RecursiveTask<String> {
+        private final ReportComponent component;
+        
+        RenderTask(ReportComponent component) {
+            this.component = component;
+        }
+        
+        @Override
+        protected String compute() {
+            StringBuilder buffer = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8,
+                    component.estimateRenderSize()));
+            try {
+                component.renderTo(buffer);
+            } catch (IOException e) {
+                // StringBuilder nunca lanza IOException
+                throw new UncheckedIOException(e);
+            }
+            return buffer.toString();
+        }
+    }
+}
@@ -1,10 +1,40 @@
 package com.financorp.serf.patterns.structural;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * PATRÓN DECORATOR - Interfaz base para reportes
  */
 public interface Report {
-    String generate();
+    
+    /**
+     * Escribe el reporte en el destino indicado a medida que se renderiza,
+     * sin materializar el texto completo en memoria
+     */
+    void writeTo(Appendable out) throws IOException;
+    
     String getTitle();
     String getType();
+    
+    /**
+     * Obtiene el árbol de componentes del reporte, o null si solo se dispone del texto renderizado
+     */
+    default ReportComponent getRootComponent() {
+        return null;
+    }
+    
+    /**
+     * Genera el reporte completo como texto
+     */
+    default String generate() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeTo(sb);
+        } catch (IOException e) {
+            // StringBuilder nunca lanza IOException
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
 }
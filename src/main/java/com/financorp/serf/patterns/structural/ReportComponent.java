@@ -1,13 +1,33 @@
 package com.financorp.serf.patterns.structural;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * PATRÓN COMPOSITE - Componente abstracto base
  * Permite crear reportes con estructura jerárquica de secciones y subsecciones
+ *
+ * Los árboles de larga vida (p. ej. una vista consolidada que se actualiza con
+ * cada venta) pueden activar la memoización con {@link #setMemoized(boolean)}:
+ * cada nodo guarda su último renderizado y cualquier cambio lo marca como sucio
+ * junto con sus ancestros, de modo que solo se vuelven a renderizar los
+ * subárboles modificados.
  */
 public abstract class ReportComponent {
     protected String name;
     protected int level; // Nivel de jerarquía (1, 2, 3, etc.)
     
+    private ReportComponent parent;
+    private boolean memoized;
+    private ParallelSectionRenderer parallelRenderer;
+    
+    // Último renderizado del nodo; null indica que está sucio
+    private volatile String renderCache;
+    
+    // Se incrementa en cada cambio para no memoizar un renderizado que quedó obsoleto a mitad
+    private final AtomicLong version = new AtomicLong();
+    
     public ReportComponent(String name, int level) {
         this.name = name;
         this.level = level;
@@ -21,8 +41,141 @@ public abstract class ReportComponent {
         return level;
     }
     
-    // Operaciones que todos los componentes deben implementar
-    public abstract String render();
+    public ReportComponent getParent() {
+        return parent;
+    }
+    
+    void setParent(ReportComponent parent) {
+        if (parent == this.parent) {
+            return;
+        }
+        // Fuera del árbol memoizado los cambios ya no lo ensucian: su renderizado guardado no vale
+        if (isMemoizationEnabled()) {
+            clearRenderCache(this);
+        }
+        this.parent = parent;
+    }
+    
+    /**
+     * Renderiza el componente completo como texto
+     */
+    public String render() {
+        String cached = renderCache;
+        if (cached != null && isMemoizationEnabled()) {
+            return cached;
+        }
+        StringBuilder sb = new StringBuilder();
+        try {
+            renderTo(sb);
+        } catch (IOException e) {
+            // StringBuilder nunca lanza IOException
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Escribe el renderizado del componente, reutilizando el anterior si la
+     * memoización está activa y el nodo no ha cambiado
+     */
+    public final void renderTo(Appendable out) throws IOException {
+        if (!isMemoizationEnabled()) {
+            renderContent(out);
+            return;
+        }
+        
+        String cached = renderCache;
+        if (cached == null) {
+            long startVersion = version.get();
+            StringBuilder sb = new StringBuilder();
+            renderContent(sb);
+            cached = sb.toString();
+            if (version.get() == startVersion) {
+                renderCache = cached;
+            }
+        }
+        out.append(cached);
+    }
+    
+    /**
+     * Renderiza el contenido propio del componente (y el de sus hijos)
+     */
+    protected abstract void renderContent(Appendable out) throws IOException;
+    
+    /**
+     * Activa o desactiva la memoización del renderizado para este subárbol
+     */
+    public void setMemoized(boolean memoized) {
+        this.memoized = memoized;
+        if (!memoized) {
+            clearRenderCache(this);
+        }
+    }
+    
+    /**
+     * Indica si este nodo o alguno de sus ancestros tiene la memoización activa
+     */
+    public boolean isMemoizationEnabled() {
+        for (ReportComponent node = this; node != null; node = node.parent) {
+            if (node.memoized) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Asigna el renderizador paralelo de este subárbol (null para renderizarlo en secuencia)
+     */
+    public void setParallelRenderer(ParallelSectionRenderer parallelRenderer) {
+        this.parallelRenderer = parallelRenderer;
+    }
+    
+    /**
+     * Renderizador paralelo del nodo o, si no tiene, del ancestro más cercano que lo tenga
+     */
+    public ParallelSectionRenderer getParallelRenderer() {
+        for (ReportComponent node = this; node != null; node = node.parent) {
+            if (node.parallelRenderer != null) {
+                return node.parallelRenderer;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Indica si el nodo debe volver a renderizarse
+     */
+    public boolean isDirty() {
+        return renderCache == null;
+    }
+    
+    /**
+     * Marca el nodo y todos sus ancestros como sucios tras un cambio (sin
+     * memoización no hay renderizados guardados que invalidar)
+     */
+    protected void markDirty() {
+        if (!isMemoizationEnabled()) {
+            return;
+        }
+        for (ReportComponent node = this; node != null; node = node.parent) {
+            node.version.incrementAndGet();
+            node.renderCache = null;
+        }
+    }
+    
+    private static void clearRenderCache(ReportComponent node) {
+        node.renderCache = null;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            clearRenderCache(node.getChild(i));
+        }
+    }
+    
+    /**
+     * Estima el número de caracteres que producirá el renderizado,
+     * para decidir si conviene renderizar el componente en paralelo
+     */
+    public abstract long estimateRenderSize();
     public abstract void add(ReportComponent component);
     public abstract void remove(ReportComponent component);
     public abstract ReportComponent getChild(int index);
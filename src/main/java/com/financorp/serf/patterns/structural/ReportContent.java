@@ -1,5 +1,7 @@
 package com.financorp.serf.patterns.structural;
 
+import java.io.IOException;
+
 /**
  * Leaf - Contenido de texto del reporte
  */
@@ -12,17 +14,19 @@ public class ReportContent extends ReportComponent {
     }
     
     @Override
-    public String render() {
+    protected void renderContent(Appendable out) throws IOException {
         String indent = "  ".repeat(level - 1);
-        StringBuilder sb = new StringBuilder();
         
         if (!name.isEmpty()) {
-            sb.append(indent).append("• ").append(name).append("\n");
+            out.append(indent).append("• ").append(name).append("\n");
         }
         
-        sb.append(indent).append(content).append("\n\n");
-        
-        return sb.toString();
+        out.append(indent).append(content).append("\n\n");
+    }
+    
+    @Override
+    public long estimateRenderSize() {
+        return 4L * (level - 1) + name.length() + content.length() + 5;
     }
     
     @Override
@@ -51,5 +55,6 @@ public class ReportContent extends ReportComponent {
     
     public void setContent(String content) {
         this.content = content;
+        markDirty();
     }
 }
@@ -1,7 +1,15 @@
 package com.financorp.serf.patterns.structural;
 
+import com.financorp.serf.metrics.ReportMetrics;
+
+import java.io.IOException;
+
 /**
  * Decorador abstracto base
+ *
+ * Cada decorador escribe su parte en {@link #decorate} e incluye el reporte
+ * decorado con {@link #writeDecorated}; así se mide el coste propio de cada
+ * decorador sin contar el de los reportes que envuelve.
  */
 public abstract class ReportDecorator implements Report {
     protected Report decoratedReport;
@@ -11,8 +19,33 @@ public abstract class ReportDecorator implements Report {
     }
     
     @Override
-    public String generate() {
-        return decoratedReport.generate();
+    public final void writeTo(Appendable out) throws IOException {
+        ReportMetrics.DecoratorSpan span = ReportMetrics.startDecorator(getClass().getSimpleName(), getType());
+        try {
+            decorate(out);
+        } finally {
+            span.stop();
+        }
+    }
+    
+    /**
+     * Escribe la decoración alrededor del reporte decorado
+     */
+    protected abstract void decorate(Appendable out) throws IOException;
+    
+    /**
+     * Escribe el reporte decorado
+     */
+    protected final void writeDecorated(Appendable out) throws IOException {
+        ReportMetrics.DecoratorSpan span = ReportMetrics.currentDecorator();
+        ReportMetrics.Sample inner = ReportMetrics.start();
+        try {
+            decoratedReport.writeTo(out);
+        } finally {
+            if (span != null) {
+                span.exclude(inner);
+            }
+        }
     }
     
     @Override
@@ -24,4 +57,9 @@ public abstract class ReportDecorator implements Report {
     public String getType() {
         return decoratedReport.getType();
     }
+    
+    @Override
+    public ReportComponent getRootComponent() {
+        return decoratedReport.getRootComponent();
+    }
 }
@@ -1,5 +1,6 @@
 package com.financorp.serf.patterns.structural;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,14 +15,26 @@ public class ReportSection extends ReportComponent {
         this.children = new ArrayList<>();
     }
     
+    /**
+     * Añade un componente al final; si estaba en otra sección, se quita de ella
+     */
     @Override
     public void add(ReportComponent component) {
+        ReportComponent previous = component.getParent();
+        if (previous != null && previous != this) {
+            previous.remove(component);
+        }
         children.add(component);
+        component.setParent(this);
+        markDirty();
     }
     
     @Override
     public void remove(ReportComponent component) {
-        children.remove(component);
+        if (children.remove(component)) {
+            component.setParent(null);
+            markDirty();
+        }
     }
     
     @Override
@@ -35,21 +48,31 @@ public class ReportSection extends ReportComponent {
     }
     
     @Override
-    public String render() {
-        StringBuilder sb = new StringBuilder();
-        
+    protected void renderContent(Appendable out) throws IOException {
         // Renderizar título de sección con indentación según nivel
         String indent = getIndent();
-        sb.append(indent).append("═".repeat(50 - level * 2)).append("\n");
-        sb.append(indent).append(getHeaderPrefix()).append(name).append("\n");
-        sb.append(indent).append("═".repeat(50 - level * 2)).append("\n\n");
+        out.append(indent).append("═".repeat(50 - level * 2)).append("\n");
+        out.append(indent).append(getHeaderPrefix()).append(name).append("\n");
+        out.append(indent).append("═".repeat(50 - level * 2)).append("\n\n");
         
-        // Renderizar todos los hijos
+        // Renderizar los hijos en orden (los subárboles grandes, en paralelo si hay renderizador)
+        ParallelSectionRenderer renderer = getParallelRenderer();
+        if (renderer == null) {
+            for (ReportComponent child : children) {
+                child.renderTo(out);
+            }
+        } else {
+            renderer.renderChildren(children, out);
+        }
+    }
+    
+    @Override
+    public long estimateRenderSize() {
+        long size = 6L * (level - 1) + 2L * (50 - level * 2) + name.length() + 10;
         for (ReportComponent child : children) {
-            sb.append(child.render());
+            size += child.estimateRenderSize();
         }
-        
-        return sb.toString();
+        return size;
     }
     
     private String getIndent() {
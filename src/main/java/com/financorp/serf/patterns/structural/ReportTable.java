@@ -1,6 +1,8 @@
 package com.financorp.serf.patterns.structural;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -18,62 +20,73 @@ public class ReportTable extends ReportComponent {
     
     public void setHeaders(List<String> headers) {
         this.headers = new ArrayList<>(headers);
+        markDirty();
     }
     
     public void addRow(List<String> row) {
         this.rows.add(new ArrayList<>(row));
+        markDirty();
+    }
+    
+    public List<String> getHeaders() {
+        return Collections.unmodifiableList(headers);
+    }
+    
+    public List<List<String>> getRows() {
+        return Collections.unmodifiableList(rows);
     }
     
     @Override
-    public String render() {
-        StringBuilder sb = new StringBuilder();
+    protected void renderContent(Appendable out) throws IOException {
         String indent = "  ".repeat(level - 1);
         
         if (!name.isEmpty()) {
-            sb.append(indent).append("📊 ").append(name).append("\n");
+            out.append(indent).append("📊 ").append(name).append("\n");
         }
         
         // Calcular anchos de columnas
         int[] columnWidths = calculateColumnWidths();
         
         // Renderizar encabezados
-        sb.append(indent).append("┌");
+        out.append(indent).append("┌");
         for (int i = 0; i < headers.size(); i++) {
-            sb.append("─".repeat(columnWidths[i] + 2));
-            if (i < headers.size() - 1) sb.append("┬");
+            out.append("─".repeat(columnWidths[i] + 2));
+            if (i < headers.size() - 1) out.append("┬");
         }
-        sb.append("┐\n");
+        out.append("┐\n");
         
-        sb.append(indent).append("│");
+        out.append(indent).append("│");
         for (int i = 0; i < headers.size(); i++) {
-            sb.append(" ").append(padRight(headers.get(i), columnWidths[i])).append(" │");
+            out.append(" ");
+            appendPadded(out, headers.get(i), columnWidths[i]);
+            out.append(" │");
         }
-        sb.append("\n");
+        out.append("\n");
         
-        sb.append(indent).append("├");
+        out.append(indent).append("├");
         for (int i = 0; i < headers.size(); i++) {
-            sb.append("─".repeat(columnWidths[i] + 2));
-            if (i < headers.size() - 1) sb.append("┼");
+            out.append("─".repeat(columnWidths[i] + 2));
+            if (i < headers.size() - 1) out.append("┼");
         }
-        sb.append("┤\n");
+        out.append("┤\n");
         
         // Renderizar filas
         for (List<String> row : rows) {
-            sb.append(indent).append("│");
+            out.append(indent).append("│");
             for (int i = 0; i < row.size(); i++) {
-                sb.append(" ").append(padRight(row.get(i), columnWidths[i])).append(" │");
+                out.append(" ");
+                appendPadded(out, row.get(i), columnWidths[i]);
+                out.append(" │");
             }
-            sb.append("\n");
+            out.append("\n");
         }
         
-        sb.append(indent).append("└");
+        out.append(indent).append("└");
         for (int i = 0; i < headers.size(); i++) {
-            sb.append("─".repeat(columnWidths[i] + 2));
-            if (i < headers.size() - 1) sb.append("┴");
+            out.append("─".repeat(columnWidths[i] + 2));
+            if (i < headers.size() - 1) out.append("┴");
         }
-        sb.append("┘\n\n");
-        
-        return sb.toString();
+        out.append("┘\n\n");
     }
     
     private int[] calculateColumnWidths() {
@@ -94,8 +107,17 @@ public class ReportTable extends ReportComponent {
         return widths;
     }
     
-    private String padRight(String s, int n) {
-        return String.format("%-" + n + "s", s);
+    private void appendPadded(Appendable out, String s, int n) throws IOException {
+        out.append(s);
+        for (int i = s.length(); i < n; i++) {
+            out.append(' ');
+        }
+    }
+    
+    @Override
+    public long estimateRenderSize() {
+        // Estimación barata: no recorre las celdas
+        return (rows.size() + 5L) * (2L * (level - 1) + 2 + headers.size() * 16L);
     }
     
     @Override
@@ -1,5 +1,7 @@
 package com.financorp.serf.patterns.structural;
 
+import java.io.IOException;
+
 /**
  * Decorador: Añade marca de agua (confidencialidad)
  */
@@ -12,17 +14,13 @@ public class WatermarkDecorator extends ReportDecorator {
     }
     
     @Override
-    public String generate() {
-        StringBuilder sb = new StringBuilder();
-        
-        sb.append("╔═══════════════════════════════════════════════════════╗\n");
-        sb.append("║  ").append(watermarkText.toUpperCase()).append("  ║\n");
-        sb.append("╚═══════════════════════════════════════════════════════╝\n\n");
-        sb.append(super.generate());
-        sb.append("\n╚═══════════════════════════════════════════════════════╝\n");
-        sb.append("║  ").append(watermarkText.toUpperCase()).append("  ║\n");
-        sb.append("╚═══════════════════════════════════════════════════════╝\n");
-        
-        return sb.toString();
+    protected void decorate(Appendable out) throws IOException {
+        out.append("╔═══════════════════════════════════════════════════════╗\n");
+        out.append("║  ").append(watermarkText.toUpperCase()).append("  ║\n");
+        out.append("╚═══════════════════════════════════════════════════════╝\n\n");
+        writeDecorated(out);
+        out.append("\n╚═══════════════════════════════════════════════════════╝\n");
+        out.append("║  ").append(watermarkText.toUpperCase()).append("  ║\n");
+        out.append("╚═══════════════════════════════════════════════════════╝\n");
     }
 }
@@ -8,7 +8,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface FilialRepository extends JpaRepository<Filial, Long> {
+public interface FilialRepository extends JpaRepository<Filial, Long>, FilialRepositoryCustom {
     Optional<Filial> findByCodigo(String codigo);
     List<Filial> findByPais(String pais);
     List<Filial> findByActivaTrue();
@@ -0,0 +1,17 @@
+package com.financorp.serf.repository;
+
+import com.financorp.serf.model.Filial;
+
+import java.util.List;
+
+/**
+ * Consultas de filiales construidas según los filtros presentes
+ */
+public interface FilialRepositoryCustom {
+
+    /**
+     * Filiales por id ascendente a continuación del id indicado (null en la
+     * primera página); los filtros null no se aplican
+     */
+    List<Filial> findPage(String pais, Boolean activa, Long afterId, int limit);
+}
@@ -0,0 +1,40 @@
+package com.financorp.serf.repository;
+
+import com.financorp.serf.model.Filial;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class FilialRepositoryCustomImpl implements FilialRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Filial> findPage(String pais, Boolean activa, Long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT f FROM Filial f WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+        if (pais != null) {
+            jpql.append(" AND f.pais = :pais");
+            params.put("pais", pais);
+        }
+        if (activa != null) {
+            jpql.append(" AND f.activa = :activa");
+            params.put("activa", activa);
+        }
+        if (afterId != null) {
+            jpql.append(" AND f.id > :afterId");
+            params.put("afterId", afterId);
+        }
+        jpql.append(" ORDER BY f.id");
+
+        TypedQuery<Filial> query = entityManager.createQuery(jpql.toString(), Filial.class)
+                .setMaxResults(limit);
+        params.forEach(query::setParameter);
+        return query.getResultList();
+    }
+}
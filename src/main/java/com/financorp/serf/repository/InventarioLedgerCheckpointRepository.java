@@ -0,0 +1,9 @@
+package com.financorp.serf.repository;
+
+import com.financorp.serf.model.InventarioLedgerCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface InventarioLedgerCheckpointRepository extends JpaRepository<InventarioLedgerCheckpoint, Long> {
+}
@@ -1,22 +1,108 @@
 package com.financorp.serf.repository;
 
 import com.financorp.serf.model.Producto;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ProductoRepository extends JpaRepository<Producto, Long> {
+public interface ProductoRepository extends JpaRepository<Producto, Long>, ProductoRepositoryCustom {
     Optional<Producto> findBySku(String sku);
+    
+    // Los listados cargan la filial en la misma consulta (sin N+1 al mapear a ProductoDto)
+    @Override
+    @EntityGraph(attributePaths = "filial")
+    List<Producto> findAll();
+    
+    /**
+     * Producto con su filial ya cargada (para la caché de catálogo, fuera de la sesión)
+     */
+    @EntityGraph(attributePaths = "filial")
+    @Query("SELECT p FROM Producto p WHERE p.id = :id")
+    Optional<Producto> findWithFilialById(Long id);
+    
+    @EntityGraph(attributePaths = "filial")
+    @Query("SELECT p FROM Producto p WHERE p.id IN :ids")
+    List<Producto> findWithFilialByIdIn(Collection<Long> ids);
+    
+    @EntityGraph(attributePaths = "filial")
+    @Query("SELECT p FROM Producto p WHERE p.sku = :sku")
+    Optional<Producto> findWithFilialBySku(String sku);
+    
+    @EntityGraph(attributePaths = "filial")
     List<Producto> findByFilialId(Long filialId);
+    
+    @EntityGraph(attributePaths = "filial")
     List<Producto> findByCategoria(Producto.CategoriaProducto categoria);
     
+    @EntityGraph(attributePaths = "filial")
     @Query("SELECT p FROM Producto p WHERE p.stockActual < p.stockMinimo")
     List<Producto> findByStockActualLessThanStockMinimo();
     
+    /**
+     * Id, stock actual y stock mínimo de todos los productos (carga del índice de stock bajo)
+     */
+    @Query("SELECT p.id, p.stockActual, p.stockMinimo FROM Producto p")
+    List<Object[]> findNivelesStock();
+    
     @Query("SELECT p FROM Producto p WHERE p.filial.pais = :pais")
     List<Producto> findByPais(String pais);
+    
+    /**
+     * Valor del stock actual de una filial a precio de compra
+     */
+    @Query("SELECT COALESCE(SUM(p.stockActual * p.precioCompra), 0) FROM Producto p WHERE p.filial.id = :filialId")
+    BigDecimal getValorInventarioByFilial(Long filialId);
+    
+    /**
+     * Descuento atómico de stock: solo se aplica si hay unidades suficientes
+     * (devuelve 0 en caso contrario)
+     */
+    @Modifying
+    @Query("UPDATE Producto p SET p.stockActual = p.stockActual - :cantidad " +
+           "WHERE p.id = :id AND p.stockActual >= :cantidad")
+    int decrementStock(Long id, int cantidad);
+    
+    /**
+     * Aplica un movimiento de stock acumulado (positivo o negativo)
+     */
+    @Modifying
+    @Query("UPDATE Producto p SET p.stockActual = p.stockActual + :delta WHERE p.id = :id")
+    int adjustStock(Long id, int delta);
+    
+    @Query("SELECT p.stockActual FROM Producto p WHERE p.id = :id")
+    Optional<Integer> findStockActualById(Long id);
+    
+    @Query("SELECT p.sku FROM Producto p WHERE p.id = :id")
+    Optional<String> findSkuById(Long id);
+    
+    long countByFilialId(Long filialId);
+    
+    @Query("SELECT COUNT(p) FROM Producto p WHERE p.filial.id = :filialId AND p.stockActual < p.stockMinimo")
+    long countStockBajoByFilial(Long filialId);
+    
+    /**
+     * Productos, unidades en stock y valor de inventario de una filial por categoría
+     */
+    @Query("SELECT p.categoria AS categoria, COUNT(p) AS productos, COALESCE(SUM(p.stockActual), 0) AS stock, " +
+           "COALESCE(SUM(p.stockActual * p.precioCompra), 0) AS valor " +
+           "FROM Producto p WHERE p.filial.id = :filialId GROUP BY p.categoria ORDER BY p.categoria")
+    List<InventarioPorCategoria> getInventarioPorCategoria(Long filialId);
+    
+    /**
+     * Proyección del inventario agrupado por categoría
+     */
+    interface InventarioPorCategoria {
+        Producto.CategoriaProducto getCategoria();
+        Long getProductos();
+        Long getStock();
+        BigDecimal getValor();
+    }
 }
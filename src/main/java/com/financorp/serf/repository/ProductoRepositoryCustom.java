@@ -0,0 +1,17 @@
+package com.financorp.serf.repository;
+
+import com.financorp.serf.model.Producto;
+
+import java.util.List;
+
+/**
+ * Consultas de productos construidas según los filtros presentes
+ */
+public interface ProductoRepositoryCustom {
+
+    /**
+     * Productos por id ascendente, con su filial cargada, a continuación del id
+     * indicado (null en la primera página); los filtros null no se aplican
+     */
+    List<Producto> findPage(Long filialId, Producto.CategoriaProducto categoria, Long afterId, int limit);
+}
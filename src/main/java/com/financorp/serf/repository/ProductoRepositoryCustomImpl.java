@@ -0,0 +1,44 @@
+package com.financorp.serf.repository;
+
+import com.financorp.serf.model.Producto;
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class ProductoRepositoryCustomImpl implements ProductoRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Producto> findPage(Long filialId, Producto.CategoriaProducto categoria, Long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT p FROM Producto p WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+        if (filialId != null) {
+            jpql.append(" AND p.filial.id = :filialId");
+            params.put("filialId", filialId);
+        }
+        if (categoria != null) {
+            jpql.append(" AND p.categoria = :categoria");
+            params.put("categoria", categoria);
+        }
+        if (afterId != null) {
+            jpql.append(" AND p.id > :afterId");
+            params.put("afterId", afterId);
+        }
+        jpql.append(" ORDER BY p.id");
+
+        EntityGraph<Producto> graph = entityManager.createEntityGraph(Producto.class);
+        graph.addAttributeNodes("filial");
+        TypedQuery<Producto> query = entityManager.createQuery(jpql.toString(), Producto.class)
+                .setHint("jakarta.persistence.fetchgraph", graph)
+                .setMaxResults(limit);
+        params.forEach(query::setParameter);
+        return query.getResultList();
+    }
+}
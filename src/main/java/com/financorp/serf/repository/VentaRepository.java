@@ -1,24 +1,111 @@
 package com.financorp.serf.repository;
 
+import com.financorp.serf.model.Producto;
 import com.financorp.serf.model.Venta;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface VentaRepository extends JpaRepository<Venta, Long> {
+public interface VentaRepository extends JpaRepository<Venta, Long>, VentaRepositoryCustom {
+    // Los listados cargan producto y filial en la misma consulta (sin N+1 al mapear a VentaDto)
+    @Override
+    @EntityGraph(attributePaths = {"producto", "filial"})
+    List<Venta> findAll();
+    
+    @EntityGraph(attributePaths = {"producto", "filial"})
     Optional<Venta> findByCodigoVenta(String codigoVenta);
+    
+    @EntityGraph(attributePaths = {"producto", "filial"})
     List<Venta> findByFilialId(Long filialId);
+    
+    @EntityGraph(attributePaths = {"producto", "filial"})
     List<Venta> findByEstado(Venta.EstadoVenta estado);
+    
+    @EntityGraph(attributePaths = {"producto", "filial"})
     List<Venta> findByFechaVentaBetween(LocalDateTime start, LocalDateTime end);
     
     @Query("SELECT v FROM Venta v WHERE v.filial.pais = :pais AND v.fechaVenta BETWEEN :start AND :end")
     List<Venta> findByPaisAndFechaBetween(String pais, LocalDateTime start, LocalDateTime end);
     
-    @Query("SELECT SUM(v.total) FROM Venta v WHERE v.filial.id = :filialId AND v.estado = 'COMPLETADA'")
-    Double getTotalVentasByFilial(Long filialId);
+    long countByFilialId(Long filialId);
+    
+    @Query("SELECT v.codigoVenta FROM Venta v WHERE v.codigoVenta IN :codigos")
+    List<String> findExistingCodigos(Collection<String> codigos);
+    
+    /**
+     * Columnas de la instantánea analítica (id, fecha, filial, producto, categoría,
+     * estado, cantidad, total) en orden de id, sin cargar entidades
+     */
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT v.id, v.fechaVenta, v.filial.id, p.id, p.categoria, v.estado, v.cantidad, v.total " +
+           "FROM Venta v JOIN v.producto p ORDER BY v.id")
+    Stream<Object[]> streamAnalyticsRows();
+    
+    /**
+     * Ventas completadas de una filial por forma de pago
+     */
+    @Query("SELECT COALESCE(v.formaPago, 'Sin especificar') AS formaPago, COUNT(v) AS cantidad, " +
+           "COALESCE(SUM(v.cantidad), 0) AS unidades, COALESCE(SUM(v.total), 0) AS total " +
+           "FROM Venta v WHERE v.filial.id = :filialId AND v.estado = 'COMPLETADA' " +
+           "GROUP BY COALESCE(v.formaPago, 'Sin especificar') ORDER BY SUM(v.total) DESC")
+    List<VentasPorFormaPago> getVentasPorFormaPago(Long filialId);
+    
+    /**
+     * Totales comunes a las proyecciones agrupadas (también las usa el acumulado diario)
+     */
+    interface TotalesVentas {
+        Long getCantidad();
+        Long getUnidades();
+        BigDecimal getTotal();
+    }
+    
+    interface VentasPorEstado extends TotalesVentas {
+        Venta.EstadoVenta getEstado();
+    }
+    
+    interface VentasPorCategoria extends TotalesVentas {
+        Producto.CategoriaProducto getCategoria();
+    }
+    
+    interface VentasPorFormaPago extends TotalesVentas {
+        String getFormaPago();
+    }
+    
+    interface VentasPorDia extends TotalesVentas {
+        LocalDate getDia();
+    }
+    
+    /**
+     * Total vendido en un mes (consolidación multimoneda)
+     */
+    interface VentasPorMes {
+        Integer getAnio();
+        Integer getMes();
+        BigDecimal getTotal();
+    }
+    
+    /**
+     * Proyección con los totales de ventas de una filial (ver VentaResumenDiarioRepository)
+     */
+    interface VentasAgregadas {
+        BigDecimal getTotal();
+        BigDecimal getSubtotal();
+        BigDecimal getCosto();
+    }
 }
@@ -0,0 +1,28 @@
+package com.financorp.serf.repository;
+
+import com.financorp.serf.model.Venta;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Consultas de ventas construidas según los filtros presentes
+ */
+public interface VentaRepositoryCustom {
+
+    /**
+     * Ventas de la más reciente a la más antigua (fechaVenta, id), con producto y
+     * filial cargados, a continuación de la clave indicada (null en la primera página);
+     * los filtros null no se aplican
+     */
+    List<Venta> findPage(Long filialId, Venta.EstadoVenta estado, LocalDateTime desde, LocalDateTime hasta,
+                         LocalDateTime afterFecha, Long afterId, int limit);
+
+    /**
+     * Ventas en orden de id con producto y filial cargados, leídas de un cursor
+     * de solo avance; el stream debe cerrarse y consumirse dentro de una transacción
+     */
+    Stream<Venta> streamForExport(Long filialId, Venta.EstadoVenta estado, LocalDateTime desde,
+                                  LocalDateTime hasta, int fetchSize);
+}
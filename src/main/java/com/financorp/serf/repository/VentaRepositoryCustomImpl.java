@@ -0,0 +1,84 @@
+package com.financorp.serf.repository;
+
+import com.financorp.serf.model.Venta;
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.CacheMode;
+import org.hibernate.jpa.AvailableHints;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+class VentaRepositoryCustomImpl implements VentaRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Venta> findPage(Long filialId, Venta.EstadoVenta estado, LocalDateTime desde, LocalDateTime hasta,
+                                LocalDateTime afterFecha, Long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT v FROM Venta v WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+        appendFilters(jpql, params, filialId, estado, desde, hasta);
+        if (afterFecha != null) {
+            // El primer término es un rango sobre el índice (fecha_venta, id); el segundo desempata
+            jpql.append(" AND v.fechaVenta <= :afterFecha AND (v.fechaVenta < :afterFecha OR v.id < :afterId)");
+            params.put("afterFecha", afterFecha);
+            params.put("afterId", afterId);
+        }
+        jpql.append(" ORDER BY v.fechaVenta DESC, v.id DESC");
+
+        EntityGraph<Venta> graph = entityManager.createEntityGraph(Venta.class);
+        graph.addAttributeNodes("producto", "filial");
+        TypedQuery<Venta> query = entityManager.createQuery(jpql.toString(), Venta.class)
+                .setHint("jakarta.persistence.fetchgraph", graph)
+                .setMaxResults(limit);
+        params.forEach(query::setParameter);
+        return query.getResultList();
+    }
+
+    @Override
+    public Stream<Venta> streamForExport(Long filialId, Venta.EstadoVenta estado, LocalDateTime desde,
+                                         LocalDateTime hasta, int fetchSize) {
+        // Las relaciones se traen en la misma fila: el recorrido no lanza consultas adicionales
+        StringBuilder jpql = new StringBuilder(
+                "SELECT v FROM Venta v JOIN FETCH v.producto JOIN FETCH v.filial WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+        appendFilters(jpql, params, filialId, estado, desde, hasta);
+        jpql.append(" ORDER BY v.id");
+
+        // Hibernate implementa el stream sobre un cursor de solo avance (ScrollMode.FORWARD_ONLY)
+        TypedQuery<Venta> query = entityManager.createQuery(jpql.toString(), Venta.class)
+                .setHint(AvailableHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(AvailableHints.HINT_READ_ONLY, true)
+                .setHint(AvailableHints.HINT_CACHE_MODE, CacheMode.IGNORE);
+        params.forEach(query::setParameter);
+        return query.getResultStream();
+    }
+
+    // Solo se incluyen los filtros presentes: un "(:p IS NULL OR ...)" impediría usar los índices
+    private static void appendFilters(StringBuilder jpql, Map<String, Object> params, Long filialId,
+                                      Venta.EstadoVenta estado, LocalDateTime desde, LocalDateTime hasta) {
+        if (filialId != null) {
+            jpql.append(" AND v.filial.id = :filialId");
+            params.put("filialId", filialId);
+        }
+        if (estado != null) {
+            jpql.append(" AND v.estado = :estado");
+            params.put("estado", estado);
+        }
+        if (desde != null) {
+            jpql.append(" AND v.fechaVenta >= :desde");
+            params.put("desde", desde);
+        }
+        if (hasta != null) {
+            jpql.append(" AND v.fechaVenta <= :hasta");
+            params.put("hasta", hasta);
+        }
+    }
+}
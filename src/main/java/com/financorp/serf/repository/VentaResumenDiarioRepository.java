@@ -0,0 +1,96 @@
+package com.financorp.serf.repository;
+
+import com.financorp.serf.model.Venta;
+import com.financorp.serf.model.VentaResumenDiario;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Consultas sobre el acumulado diario de ventas: un período de un año recorre
+ * como mucho 365 filas por filial, producto y estado en lugar de cada venta
+ */
+@Repository
+public interface VentaResumenDiarioRepository extends JpaRepository<VentaResumenDiario, Long> {
+    
+    /**
+     * Suma (o resta, con valores negativos) una venta al acumulado de su día
+     */
+    @Modifying
+    @Query("UPDATE VentaResumenDiario r SET r.numeroVentas = r.numeroVentas + :numeroVentas, " +
+           "r.cantidad = r.cantidad + :cantidad, r.subtotal = r.subtotal + :subtotal, " +
+           "r.montoImpuesto = r.montoImpuesto + :montoImpuesto, r.total = r.total + :total " +
+           "WHERE r.dia = :dia AND r.filial.id = :filialId AND r.producto.id = :productoId AND r.estado = :estado")
+    int increment(LocalDate dia, Long filialId, Long productoId, Venta.EstadoVenta estado,
+                  long numeroVentas, long cantidad, BigDecimal subtotal, BigDecimal montoImpuesto, BigDecimal total);
+    
+    /**
+     * Elimina la fila de un día, filial, producto y estado si ya no le quedan ventas
+     */
+    @Modifying
+    @Query("DELETE FROM VentaResumenDiario r WHERE r.dia = :dia AND r.filial.id = :filialId " +
+           "AND r.producto.id = :productoId AND r.estado = :estado AND r.numeroVentas <= 0")
+    int deleteEmpty(LocalDate dia, Long filialId, Long productoId, Venta.EstadoVenta estado);
+    
+    @Modifying
+    @Query("DELETE FROM VentaResumenDiario r")
+    int deleteAllRows();
+    
+    /**
+     * Recalcula el acumulado completo a partir de la tabla de ventas
+     */
+    @Modifying
+    @Query("INSERT INTO VentaResumenDiario (dia, filial, producto, estado, numeroVentas, cantidad, subtotal, montoImpuesto, total) " +
+           "SELECT CAST(v.fechaVenta AS LocalDate), v.filial, v.producto, v.estado, COUNT(v), SUM(v.cantidad), " +
+           "SUM(v.subtotal), SUM(v.montoImpuesto), SUM(v.total) " +
+           "FROM Venta v GROUP BY CAST(v.fechaVenta AS LocalDate), v.filial, v.producto, v.estado")
+    int rebuildFromVentas();
+    
+    /**
+     * Total exacto de las ventas completadas de una filial (suma DECIMAL en la base de datos)
+     */
+    @Query("SELECT COALESCE(SUM(r.total), 0) FROM VentaResumenDiario r WHERE r.filial.id = :filialId AND r.estado = 'COMPLETADA'")
+    BigDecimal getTotalVentasByFilial(Long filialId);
+    
+    /**
+     * Totales de las ventas completadas de una filial entre dos días (incluidos)
+     */
+    @Query("SELECT COALESCE(SUM(r.total), 0) AS total, COALESCE(SUM(r.subtotal), 0) AS subtotal, " +
+           "COALESCE(SUM(r.cantidad * p.precioCompra), 0) AS costo " +
+           "FROM VentaResumenDiario r JOIN r.producto p " +
+           "WHERE r.filial.id = :filialId AND r.estado = 'COMPLETADA' AND r.dia BETWEEN :start AND :end")
+    VentaRepository.VentasAgregadas getVentasAgregadasByFilial(Long filialId, LocalDate start, LocalDate end);
+    
+    /**
+     * Total de las ventas completadas de una filial por mes entre dos días (incluidos)
+     */
+    @Query("SELECT YEAR(r.dia) AS anio, MONTH(r.dia) AS mes, COALESCE(SUM(r.total), 0) AS total " +
+           "FROM VentaResumenDiario r " +
+           "WHERE r.filial.id = :filialId AND r.estado = 'COMPLETADA' AND r.dia BETWEEN :start AND :end " +
+           "GROUP BY YEAR(r.dia), MONTH(r.dia) ORDER BY YEAR(r.dia), MONTH(r.dia)")
+    List<VentaRepository.VentasPorMes> getVentasPorMes(Long filialId, LocalDate start, LocalDate end);
+    
+    @Query("SELECT r.estado AS estado, COALESCE(SUM(r.numeroVentas), 0) AS cantidad, " +
+           "COALESCE(SUM(r.cantidad), 0) AS unidades, COALESCE(SUM(r.total), 0) AS total " +
+           "FROM VentaResumenDiario r WHERE r.filial.id = :filialId GROUP BY r.estado ORDER BY r.estado")
+    List<VentaRepository.VentasPorEstado> getVentasPorEstado(Long filialId);
+    
+    @Query("SELECT p.categoria AS categoria, COALESCE(SUM(r.numeroVentas), 0) AS cantidad, " +
+           "COALESCE(SUM(r.cantidad), 0) AS unidades, COALESCE(SUM(r.total), 0) AS total " +
+           "FROM VentaResumenDiario r JOIN r.producto p " +
+           "WHERE r.filial.id = :filialId AND r.estado = 'COMPLETADA' " +
+           "GROUP BY p.categoria ORDER BY SUM(r.total) DESC")
+    List<VentaRepository.VentasPorCategoria> getVentasPorCategoria(Long filialId);
+    
+    @Query("SELECT r.dia AS dia, COALESCE(SUM(r.numeroVentas), 0) AS cantidad, " +
+           "COALESCE(SUM(r.cantidad), 0) AS unidades, COALESCE(SUM(r.total), 0) AS total " +
+           "FROM VentaResumenDiario r " +
+           "WHERE r.filial.id = :filialId AND r.estado = 'COMPLETADA' AND r.dia BETWEEN :start AND :end " +
+           "GROUP BY r.dia ORDER BY r.dia")
+    List<VentaRepository.VentasPorDia> getVentasPorDia(Long filialId, LocalDate start, LocalDate end);
+}
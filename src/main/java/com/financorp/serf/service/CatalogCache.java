@@ -0,0 +1,269 @@
+package com.financorp.serf.service;
+
+import com.financorp.serf.model.Filial;
+import com.financorp.serf.model.Producto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Caché en proceso de las búsquedas de filiales y productos (read-through)
+ *
+ * Cada región guarda las entidades por id (LRU acotado con TTL) y un índice
+ * secundario del código de filial o SKU al id. Las búsquedas sin resultado no
+ * se cachean, por lo que las altas no dejan entradas obsoletas; los servicios
+ * invalidan la entrada al modificar o eliminar, y los productos también en cada
+ * cambio de stock. Dentro de una transacción la invalidación se aplica tras el
+ * commit, para que ninguna lectura concurrente vuelva a cachear los datos
+ * anteriores. Las entidades cacheadas están desasociadas de la sesión: los
+ * productos se cargan con su filial y no deben modificarse.
+ */
+@Component
+public class CatalogCache {
+
+    static final String LOOKUPS = "serf.catalogo.cache.consultas";
+    static final String SIZE = "serf.catalogo.cache.entradas";
+
+    private final boolean enabled;
+    private final Region<Filial> filiales;
+    private final Region<Producto> productos;
+
+    public CatalogCache(@Value("${serf.catalogo.cache.enabled:true}") boolean enabled,
+                        @Value("${serf.catalogo.cache.max-entries:10000}") int maxEntries,
+                        @Value("${serf.catalogo.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.enabled = enabled;
+        long ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.filiales = new Region<>("filiales", maxEntries, ttlNanos, Filial::getId);
+        this.productos = new Region<>("productos", maxEntries, ttlNanos, Producto::getId);
+    }
+
+    public Optional<Filial> getFilialById(Long id, Function<Long, Optional<Filial>> loader) {
+        return enabled ? filiales.getById(id, loader) : loader.apply(id);
+    }
+
+    public Optional<Filial> getFilialByCodigo(String codigo, Function<String, Optional<Filial>> loader) {
+        return enabled ? filiales.getByKey(codigo, Filial::getCodigo, loader) : loader.apply(codigo);
+    }
+
+    public Optional<Producto> getProductoById(Long id, Function<Long, Optional<Producto>> loader) {
+        return enabled ? productos.getById(id, loader) : loader.apply(id);
+    }
+
+    public Optional<Producto> getProductoBySku(String sku, Function<String, Optional<Producto>> loader) {
+        return enabled ? productos.getByKey(sku, Producto::getSku, loader) : loader.apply(sku);
+    }
+
+    public void invalidateFilial(Long id) {
+        afterCommit(() -> {
+            filiales.invalidate(id);
+            // Los productos cacheados llevan una copia de su filial
+            productos.invalidateAll();
+        });
+    }
+
+    public void invalidateProducto(Long id) {
+        afterCommit(() -> productos.invalidate(id));
+    }
+
+    public void invalidateAll() {
+        afterCommit(() -> {
+            filiales.invalidateAll();
+            productos.invalidateAll();
+        });
+    }
+
+    /**
+     * Obtiene los contadores de cada región para dimensionar la caché
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("habilitada", enabled);
+        stats.put("filiales", filiales.statistics());
+        stats.put("productos", productos.statistics());
+        return stats;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Región de la caché para un tipo de entidad
+     */
+    private static final class Region<V> {
+
+        private final int maxEntries;
+        private final long ttlNanos;
+        private final Function<V, Long> idOf;
+
+        // LinkedHashMap en orden de acceso: el primer elemento es el menos usado recientemente
+        private final LinkedHashMap<Long, Entry<V>> byId;
+        private final LinkedHashMap<String, Long> idByKey;
+
+        // Se incrementa en cada invalidación para descartar cargas iniciadas antes de ella
+        private long generation;
+
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
+        private final AtomicLong invalidations = new AtomicLong();
+
+        private final Counter hitCounter;
+        private final Counter missCounter;
+
+        Region(String name, int maxEntries, long ttlNanos, Function<V, Long> idOf) {
+            this.maxEntries = maxEntries;
+            this.ttlNanos = ttlNanos;
+            this.idOf = idOf;
+            this.byId = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Entry<V>> eldest) {
+                    if (size() > Region.this.maxEntries) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+            this.idByKey = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > Region.this.maxEntries;
+                }
+            };
+            this.hitCounter = lookupCounter(name, "acierto");
+            this.missCounter = lookupCounter(name, "fallo");
+            Gauge.builder(SIZE, this, Region::size)
+                    .description("Entradas en la caché de filiales y productos")
+                    .tag("region", name)
+                    .register(Metrics.globalRegistry);
+        }
+
+        Optional<V> getById(Long id, Function<Long, Optional<V>> loader) {
+            long startGeneration;
+            synchronized (this) {
+                V cached = lookup(id);
+                if (cached != null) {
+                    return hit(cached);
+                }
+                startGeneration = miss();
+            }
+            Optional<V> loaded = loader.apply(id);
+            loaded.ifPresent(value -> store(value, null, startGeneration));
+            return loaded;
+        }
+
+        Optional<V> getByKey(String key, Function<V, String> keyOf, Function<String, Optional<V>> loader) {
+            long startGeneration;
+            synchronized (this) {
+                Long id = idByKey.get(key);
+                V cached = id != null ? lookup(id) : null;
+                // El índice secundario puede apuntar a una entrada ya invalidada o con otra clave
+                if (cached != null && key.equals(keyOf.apply(cached))) {
+                    return hit(cached);
+                }
+                startGeneration = miss();
+            }
+            Optional<V> loaded = loader.apply(key);
+            loaded.ifPresent(value -> store(value, key, startGeneration));
+            return loaded;
+        }
+
+        synchronized void invalidate(Long id) {
+            generation++;
+            if (id != null && byId.remove(id) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+
+        synchronized void invalidateAll() {
+            generation++;
+            invalidations.addAndGet(byId.size());
+            byId.clear();
+            idByKey.clear();
+        }
+
+        synchronized int size() {
+            return byId.size();
+        }
+
+        synchronized Map<String, Object> statistics() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("entradas", byId.size());
+            stats.put("maxEntradas", maxEntries);
+            stats.put("ttlSegundos", TimeUnit.NANOSECONDS.toSeconds(ttlNanos));
+            stats.put("aciertos", hits.get());
+            stats.put("fallos", misses.get());
+            stats.put("desalojos", evictions.get());
+            stats.put("invalidaciones", invalidations.get());
+            return stats;
+        }
+
+        private V lookup(Long id) {
+            Entry<V> entry = byId.get(id);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.createdAt() >= ttlNanos) {
+                byId.remove(id);
+                evictions.incrementAndGet();
+                return null;
+            }
+            return entry.value();
+        }
+
+        private Optional<V> hit(V value) {
+            hits.incrementAndGet();
+            hitCounter.increment();
+            return Optional.of(value);
+        }
+
+        private long miss() {
+            misses.incrementAndGet();
+            missCounter.increment();
+            return generation;
+        }
+
+        private synchronized void store(V value, String key, long startGeneration) {
+            // Si hubo una invalidación mientras se cargaba, el valor podría estar obsoleto
+            if (generation != startGeneration) {
+                return;
+            }
+            Long id = idOf.apply(value);
+            byId.put(id, new Entry<>(value, System.nanoTime()));
+            if (key != null) {
+                idByKey.put(key, id);
+            }
+        }
+
+        private static Counter lookupCounter(String region, String result) {
+            return Counter.builder(LOOKUPS)
+                    .description("Búsquedas en la caché de filiales y productos")
+                    .tags("region", region, "resultado", result)
+                    .register(Metrics.globalRegistry);
+        }
+    }
+
+    private record Entry<V>(V value, long createdAt) {
+    }
+}
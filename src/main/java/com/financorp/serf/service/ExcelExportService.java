@@ -0,0 +1,271 @@
+package com.financorp.serf.service;
+
+import com.financorp.serf.patterns.structural.ColumnarReportTable;
+import com.financorp.serf.patterns.structural.Report;
+import com.financorp.serf.patterns.structural.ReportComponent;
+import com.financorp.serf.patterns.structural.ReportContent;
+import com.financorp.serf.patterns.structural.ReportSection;
+import com.financorp.serf.patterns.structural.ReportTable;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFRow;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Servicio de exportación de reportes a Excel (XLSX)
+ *
+ * Recorre el árbol Composite del reporte: cada sección de primer nivel se
+ * convierte en una hoja, las subsecciones en bloques de filas agrupadas y las
+ * tablas en celdas reales. Usa el libro en streaming de POI (SXSSF), que solo
+ * mantiene en memoria una ventana de filas y vuelca el resto a disco.
+ */
+@Service
+public class ExcelExportService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ExcelExportService.class);
+    
+    // Filas que se mantienen en memoria antes de volcarlas al archivo temporal
+    private static final int ROW_WINDOW = 500;
+    
+    private static final int MAX_ROWS_PER_SHEET = SpreadsheetVersion.EXCEL2007.getMaxRows();
+    
+    // Sin ceros a la izquierda: "007" o un número de documento son códigos, no cantidades
+    private static final Pattern NUMERIC = Pattern.compile("-?(0|[1-9]\\d*)(\\.\\d+)?");
+    
+    // Cifras que un double de Excel conserva exactas
+    private static final int MAX_NUMERIC_DIGITS = 15;
+    
+    /**
+     * Escribe el reporte como libro XLSX en el flujo indicado
+     */
+    public void export(Report report, OutputStream out) throws IOException {
+        ReportComponent root = report.getRootComponent();
+        if (root == null) {
+            throw new IllegalArgumentException("El reporte no tiene estructura de componentes para exportar");
+        }
+        
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            SheetWriter writer = new SheetWriter(workbook);
+            writeRoot(writer, root, report.getTitle());
+            workbook.write(out);
+            logger.info("Reporte '{}' exportado a Excel: {} hojas", report.getTitle(), workbook.getNumberOfSheets());
+        } finally {
+            // Eliminar los archivos temporales de la ventana de filas
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+    
+    private void writeRoot(SheetWriter writer, ReportComponent root, String title) {
+        if (!(root instanceof ReportSection)) {
+            writer.startSheet(title);
+            writeComponent(writer, root, 0);
+            return;
+        }
+        
+        // El contenido suelto del nivel raíz se agrupa en una hoja con el título del reporte
+        boolean rootSheetStarted = false;
+        for (int i = 0; i < root.getChildCount(); i++) {
+            ReportComponent child = root.getChild(i);
+            if (child instanceof ReportSection) {
+                writer.startSheet(child.getName());
+                writer.titleRow(child.getName(), 0);
+                writeChildren(writer, child, 0);
+            } else {
+                if (!rootSheetStarted) {
+                    writer.startSheet(root.getName());
+                    rootSheetStarted = true;
+                }
+                writeComponent(writer, child, 0);
+            }
+        }
+        
+        if (writer.sheet == null) {
+            writer.startSheet(root.getName());
+            writer.titleRow(root.getName(), 0);
+        }
+    }
+    
+    private void writeChildren(SheetWriter writer, ReportComponent section, int outlineLevel) {
+        for (int i = 0; i < section.getChildCount(); i++) {
+            writeComponent(writer, section.getChild(i), outlineLevel);
+        }
+    }
+    
+    private void writeComponent(SheetWriter writer, ReportComponent component, int outlineLevel) {
+        if (component instanceof ReportSection) {
+            // Subsección: fila de título y bloque de filas agrupado un nivel más
+            writer.titleRow(component.getName(), outlineLevel);
+            writeChildren(writer, component, outlineLevel + 1);
+            writer.blankRow(outlineLevel);
+        } else if (component instanceof ReportContent content) {
+            if (!content.getName().isEmpty()) {
+                writer.titleRow(content.getName(), outlineLevel);
+            }
+            for (String line : content.getContent().split("\n")) {
+                writer.textRow(line, outlineLevel);
+            }
+            writer.blankRow(outlineLevel);
+        } else if (component instanceof ReportTable table) {
+            writer.tableTitle(table.getName(), outlineLevel);
+            writer.headerRow(table.getHeaders(), outlineLevel);
+            for (List<String> row : table.getRows()) {
+                writer.dataRow(row, outlineLevel);
+            }
+            writer.blankRow(outlineLevel);
+        } else if (component instanceof ColumnarReportTable table) {
+            writer.tableTitle(table.getName(), outlineLevel);
+            writer.headerRow(table.getHeaders(), outlineLevel);
+            // Arreglo reutilizado para todas las filas; una celda nula marca el fin de la fila
+            String[] values = new String[table.getColumnCount()];
+            for (int row = 0; row < table.getRowCount(); row++) {
+                for (int column = 0; column < values.length; column++) {
+                    values[column] = table.getValue(row, column);
+                }
+                writer.dataRow(values, outlineLevel);
+            }
+            writer.blankRow(outlineLevel);
+        }
+    }
+    
+    /**
+     * Escribe filas secuencialmente en la hoja actual, abriendo una hoja de
+     * continuación cuando se alcanza el límite de filas de Excel
+     */
+    private static class SheetWriter {
+        private final SXSSFWorkbook workbook;
+        private final CellStyle titleStyle;
+        private final CellStyle headerStyle;
+        private final Set<String> sheetNames = new HashSet<>();
+        private SXSSFSheet sheet;
+        private String baseSheetName;
+        private int continuation;
+        private int nextRow;
+        
+        SheetWriter(SXSSFWorkbook workbook) {
+            this.workbook = workbook;
+            
+            Font boldFont = workbook.createFont();
+            boldFont.setBold(true);
+            this.titleStyle = workbook.createCellStyle();
+            this.titleStyle.setFont(boldFont);
+            this.headerStyle = workbook.createCellStyle();
+            this.headerStyle.setFont(boldFont);
+            this.headerStyle.setBorderBottom(BorderStyle.THIN);
+        }
+        
+        void startSheet(String name) {
+            baseSheetName = name;
+            continuation = 1;
+            openSheet(name);
+        }
+        
+        private void openSheet(String name) {
+            String safeName = WorkbookUtil.createSafeSheetName(name);
+            String unique = safeName;
+            int suffix = 2;
+            while (!sheetNames.add(unique.toLowerCase())) {
+                String tail = " (" + suffix++ + ")";
+                unique = safeName.substring(0, Math.min(safeName.length(), 31 - tail.length())) + tail;
+            }
+            sheet = workbook.createSheet(unique);
+            sheet.setColumnWidth(0, 40 * 256);
+            nextRow = 0;
+        }
+        
+        private SXSSFRow newRow(int outlineLevel) {
+            if (nextRow >= MAX_ROWS_PER_SHEET) {
+                continuation++;
+                openSheet(baseSheetName + " (" + continuation + ")");
+            }
+            int rowNum = nextRow++;
+            SXSSFRow row = sheet.createRow(rowNum);
+            if (outlineLevel > 0) {
+                sheet.setRowOutlineLevel(rowNum, outlineLevel);
+            }
+            return row;
+        }
+        
+        void titleRow(String title, int outlineLevel) {
+            SXSSFRow row = newRow(outlineLevel);
+            row.createCell(0).setCellValue(title);
+            row.getCell(0).setCellStyle(titleStyle);
+        }
+        
+        void tableTitle(String title, int outlineLevel) {
+            if (!title.isEmpty()) {
+                titleRow(title, outlineLevel);
+            }
+        }
+        
+        void textRow(String text, int outlineLevel) {
+            newRow(outlineLevel).createCell(0).setCellValue(text);
+        }
+        
+        void blankRow(int outlineLevel) {
+            newRow(outlineLevel);
+        }
+        
+        void headerRow(List<String> headers, int outlineLevel) {
+            SXSSFRow row = newRow(outlineLevel);
+            for (int i = 0; i < headers.size(); i++) {
+                row.createCell(i).setCellValue(headers.get(i));
+                row.getCell(i).setCellStyle(headerStyle);
+            }
+        }
+        
+        void dataRow(List<String> values, int outlineLevel) {
+            SXSSFRow row = newRow(outlineLevel);
+            for (int i = 0; i < values.size(); i++) {
+                setCellValue(row, i, values.get(i));
+            }
+        }
+        
+        void dataRow(String[] values, int outlineLevel) {
+            SXSSFRow row = newRow(outlineLevel);
+            for (int i = 0; i < values.length && values[i] != null; i++) {
+                setCellValue(row, i, values[i]);
+            }
+        }
+        
+        private void setCellValue(SXSSFRow row, int column, String value) {
+            if (isNumeric(value)) {
+                row.createCell(column).setCellValue(Double.parseDouble(value));
+            } else {
+                row.createCell(column).setCellValue(value);
+            }
+        }
+    }
+    
+    /**
+     * Valores que se exportan como celdas numéricas sin perder ceros ni precisión
+     */
+    private static boolean isNumeric(String value) {
+        if (!NUMERIC.matcher(value).matches()) {
+            return false;
+        }
+        int digits = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isDigit(value.charAt(i))) {
+                digits++;
+            }
+        }
+        return digits <= MAX_NUMERIC_DIGITS;
+    }
+}
@@ -0,0 +1,229 @@
+package com.financorp.serf.service;
+
+import com.financorp.serf.model.Filial;
+import com.financorp.serf.model.Moneda;
+import com.financorp.serf.model.Money;
+import com.financorp.serf.patterns.creational.FilialDataProvider;
+import com.financorp.serf.patterns.creational.FilialFigures;
+import com.financorp.serf.repository.ProductoRepository;
+import com.financorp.serf.repository.VentaRepository;
+import com.financorp.serf.repository.VentaResumenDiarioRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Agregación en paralelo de las cifras de cada filial para los reportes
+ *
+ * Lanza las consultas agregadas de todas las filiales a la vez (scatter) en un
+ * pool acotado y recoge los resultados hasta un plazo común (gather). El tiempo
+ * total se acerca al de la filial más lenta en lugar de a la suma de todas; las
+ * filiales que no responden a tiempo quedan fuera del resultado y el reporte
+ * las muestra como "N/D".
+ */
+@Service
+public class FilialAggregationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilialAggregationService.class);
+
+    // Límites para los reportes sin período
+    private static final LocalDateTime MIN_DATE = LocalDateTime.of(1900, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_DATE = LocalDateTime.of(9999, 12, 31, 23, 59);
+
+    private static final BigDecimal ONE_HUNDRED = BigDecimal.valueOf(100);
+
+    @Autowired
+    private VentaResumenDiarioRepository ventaResumenRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    private final ThreadPoolExecutor executor;
+    private final long deadlineMillis;
+
+    public FilialAggregationService(@Value("${serf.reportes.agregacion.threads:8}") int threads,
+                                    @Value("${serf.reportes.agregacion.queue-capacity:200}") int queueCapacity,
+                                    @Value("${serf.reportes.agregacion.deadline-ms:5000}") long deadlineMillis) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "serf-agregacion-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    /**
+     * Crea el proveedor de datos para un reporte con las filiales indicadas,
+     * indexadas por el nombre con el que aparecen en el reporte
+     */
+    public Aggregation newAggregation(Map<String, Filial> filialesByName) {
+        return new Aggregation(filialesByName);
+    }
+
+    /**
+     * Consulta en paralelo las cifras de cada filial; las que no terminan antes
+     * del plazo se omiten del resultado
+     */
+    public Map<String, FilialFigures> aggregate(Map<String, Filial> filialesByName,
+                                                LocalDateTime startDate,
+                                                LocalDateTime endDate) {
+        LocalDateTime start = startDate != null ? startDate : MIN_DATE;
+        LocalDateTime end = endDate != null ? endDate : MAX_DATE;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+
+        // Scatter: una tarea por filial
+        Map<String, Future<FilialFigures>> pending = new LinkedHashMap<>();
+        for (Map.Entry<String, Filial> entry : filialesByName.entrySet()) {
+            Filial filial = entry.getValue();
+            try {
+                pending.put(entry.getKey(), executor.submit(() -> computeFigures(filial, start, end)));
+            } catch (RejectedExecutionException e) {
+                logger.warn("Agregación de la filial {} rechazada: pool saturado", filial.getCodigo());
+            }
+        }
+
+        // Gather: esperar a todas hasta el plazo común
+        Map<String, FilialFigures> figures = new LinkedHashMap<>();
+        boolean interrupted = false;
+        for (Map.Entry<String, Future<FilialFigures>> entry : pending.entrySet()) {
+            Future<FilialFigures> future = entry.getValue();
+            if (interrupted) {
+                future.cancel(true);
+                continue;
+            }
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                figures.put(entry.getKey(), future.get(remaining, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                logger.warn("La filial {} no respondió en {} ms", entry.getKey(), deadlineMillis);
+            } catch (ExecutionException e) {
+                logger.error("Error al agregar las cifras de la filial {}", entry.getKey(), e.getCause());
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (figures.size() < filialesByName.size()) {
+            logger.warn("Datos parciales: {} de {} filiales", figures.size(), filialesByName.size());
+        }
+        return figures;
+    }
+
+    /**
+     * Calcula las cifras de una filial sobre el acumulado diario de ventas
+     * (el período se amplía a días completos)
+     */
+    FilialFigures computeFigures(Filial filial, LocalDateTime start, LocalDateTime end) {
+        VentaRepository.VentasAgregadas ventas = ventaResumenRepository.getVentasAgregadasByFilial(
+                filial.getId(), start.toLocalDate(), end.toLocalDate());
+        BigDecimal valorInventario = productoRepository.getValorInventarioByFilial(filial.getId());
+
+        BigDecimal rendimiento = null;
+        if (ventas.getSubtotal().signum() > 0) {
+            rendimiento = ventas.getSubtotal().subtract(ventas.getCosto())
+                    .multiply(ONE_HUNDRED)
+                    .divide(ventas.getSubtotal(), 4, RoundingMode.HALF_UP);
+        }
+
+        // Consolidación: ventas mensuales con el tipo de cada mes e inventario con el del cierre
+        Moneda moneda = Moneda.of(filial.getMoneda());
+        try {
+            List<VentaRepository.VentasPorMes> porMes = ventaResumenRepository.getVentasPorMes(
+                    filial.getId(), start.toLocalDate(), end.toLocalDate());
+            YearMonth[] meses = new YearMonth[porMes.size()];
+            long[] importes = new long[porMes.size()];
+            for (int i = 0; i < meses.length; i++) {
+                VentaRepository.VentasPorMes mes = porMes.get(i);
+                meses[i] = YearMonth.of(mes.getAnio(), mes.getMes());
+                importes[i] = Money.of(mes.getTotal(), moneda).minor();
+            }
+            Money ventasConsolidadas = fxRateService.consolidate(moneda, meses, importes);
+            Money inventarioConsolidado = fxRateService.consolidate(Money.of(valorInventario, moneda),
+                    closingDate(end));
+            return new FilialFigures(filial.getMoneda(), ventas.getTotal(), valorInventario, rendimiento,
+                    ventasConsolidadas.moneda().name(), ventasConsolidadas.toBigDecimal(),
+                    inventarioConsolidado.toBigDecimal());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Cifras de la filial {} sin consolidar: {}", filial.getCodigo(), e.getMessage());
+            return new FilialFigures(filial.getMoneda(), ventas.getTotal(), valorInventario, rendimiento);
+        }
+    }
+
+    /**
+     * Fecha del tipo de cierre: el fin del período, sin pasar de hoy
+     */
+    private static LocalDate closingDate(LocalDateTime end) {
+        LocalDate today = LocalDate.now();
+        return end.toLocalDate().isAfter(today) ? today : end.toLocalDate();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Proveedor de datos de un reporte concreto; recuerda si el último
+     * resultado fue parcial para no cachear reportes incompletos
+     */
+    public class Aggregation implements FilialDataProvider {
+        private final Map<String, Filial> filialesByName;
+        private volatile boolean partial;
+
+        private Aggregation(Map<String, Filial> filialesByName) {
+            this.filialesByName = filialesByName;
+        }
+
+        @Override
+        public Map<String, FilialFigures> fetch(List<String> filiales, LocalDateTime startDate, LocalDateTime endDate) {
+            Map<String, Filial> requested = new LinkedHashMap<>();
+            for (String name : filiales) {
+                Filial filial = filialesByName.get(name);
+                if (filial != null) {
+                    requested.put(name, filial);
+                }
+            }
+
+            Map<String, FilialFigures> figures = aggregate(requested, startDate, endDate);
+            partial = figures.size() < filiales.size();
+            return figures;
+        }
+
+        public boolean isPartial() {
+            return partial;
+        }
+    }
+}
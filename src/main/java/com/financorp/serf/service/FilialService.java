@@ -1,6 +1,8 @@
 package com.financorp.serf.service;
 
+import com.financorp.serf.dto.Pagina;
 import com.financorp.serf.model.Filial;
+import com.financorp.serf.model.Moneda;
 import com.financorp.serf.repository.FilialRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -13,21 +15,44 @@ public class FilialService {
     @Autowired
     private FilialRepository filialRepository;
     
+    @Autowired
+    private ReportCache reportCache;
+    
+    @Autowired
+    private CatalogCache catalogCache;
+    
+    @Autowired
+    private KeysetPagination keysetPagination;
+    
     public List<Filial> getAllFiliales() {
         return filialRepository.findAll();
     }
     
+    /**
+     * Página de filiales por id, con filtros opcionales de país y estado
+     */
+    public Pagina<Filial> getFilialesPage(String pais, Boolean activa, String cursor, Integer limite) {
+        int limit = keysetPagination.limit(limite);
+        Long afterId = keysetPagination.decodeId(cursor);
+        List<Filial> rows = filialRepository.findPage(pais, activa, afterId, limit + 1);
+        return keysetPagination.page(rows, limit, filial -> keysetPagination.encode(filial.getId()));
+    }
+    
     public List<Filial> getActiveFiliales() {
         return filialRepository.findByActivaTrue();
     }
     
+    /**
+     * Búsqueda por id a través de la caché de catálogo (la entidad devuelta puede
+     * estar desasociada de la sesión y no debe modificarse)
+     */
     public Filial getFilialById(Long id) {
-        return filialRepository.findById(id)
+        return catalogCache.getFilialById(id, filialRepository::findById)
                 .orElseThrow(() -> new RuntimeException("Filial no encontrada"));
     }
     
     public Filial getFilialByCodigo(String codigo) {
-        return filialRepository.findByCodigo(codigo)
+        return catalogCache.getFilialByCodigo(codigo, filialRepository::findByCodigo)
                 .orElseThrow(() -> new RuntimeException("Filial no encontrada"));
     }
     
@@ -36,21 +61,32 @@ public class FilialService {
     }
     
     public Filial createFilial(Filial filial) {
-        return filialRepository.save(filial);
+        // Solo monedas con decimales y redondeo conocidos (IllegalArgumentException si no)
+        filial.setMoneda(Moneda.of(filial.getMoneda()).name());
+        Filial saved = filialRepository.save(filial);
+        // La lista de filiales forma parte de los reportes consolidados
+        reportCache.invalidateAll();
+        return saved;
     }
     
     public Filial updateFilial(Long id, Filial filial) {
-        Filial existing = getFilialById(id);
+        Filial existing = filialRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Filial no encontrada"));
         existing.setNombre(filial.getNombre());
         existing.setPais(filial.getPais());
         existing.setCiudad(filial.getCiudad());
-        existing.setMoneda(filial.getMoneda());
+        existing.setMoneda(Moneda.of(filial.getMoneda()).name());
         existing.setResponsable(filial.getResponsable());
         existing.setActiva(filial.getActiva());
-        return filialRepository.save(existing);
+        Filial saved = filialRepository.save(existing);
+        catalogCache.invalidateFilial(id);
+        reportCache.invalidateAll();
+        return saved;
     }
     
     public void deleteFilial(Long id) {
         filialRepository.deleteById(id);
+        catalogCache.invalidateFilial(id);
+        reportCache.invalidateAll();
     }
 }
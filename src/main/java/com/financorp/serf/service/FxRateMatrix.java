@@ -0,0 +1,253 @@
+package com.financorp.serf.service;
+
+import com.financorp.serf.model.Moneda;
+import com.financorp.serf.model.Money;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Matriz inmutable de tipos de cambio fechados
+ *
+ * Cada fecha de vigencia guarda el factor de conversión de cada par de monedas
+ * en un array indexado por ordinal (origen * monedas + destino). El factor ya
+ * incluye la diferencia de decimales entre las monedas y se guarda como entero
+ * de 10 cifras significativas con su exponente decimal, de modo que convertir
+ * un importe en unidades menores es una multiplicación y una división enteras
+ * con el redondeo de la moneda destino.
+ *
+ * El fichero de tipos tiene líneas "fecha,moneda,unidadesPorEur" (ISO 8601);
+ * cada tipo rige desde su fecha hasta el siguiente de la misma moneda.
+ */
+public final class FxRateMatrix {
+
+    /**
+     * Moneda de referencia de los tipos del fichero
+     */
+    public static final Moneda BASE = Moneda.EUR;
+
+    private static final int MONEDAS = Moneda.values().length;
+    private static final MathContext CROSS_PRECISION = new MathContext(20, RoundingMode.HALF_EVEN);
+    private static final MathContext FACTOR_PRECISION = new MathContext(10, RoundingMode.HALF_EVEN);
+    private static final int MAX_EXPONENT = 18;
+    private static final long[] POW10 = new long[MAX_EXPONENT + 1];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    // Días (epoch) desde los que rige cada fila de la matriz, en orden creciente
+    private final int[] vigencias;
+    // Factor por fila y par de monedas: mantisa (0 si falta algún tipo) y exponente
+    private final long[] mantissas;
+    private final byte[] exponents;
+
+    private FxRateMatrix(int[] vigencias, long[] mantissas, byte[] exponents) {
+        this.vigencias = vigencias;
+        this.mantissas = mantissas;
+        this.exponents = exponents;
+    }
+
+    /**
+     * Lee los tipos de un fichero CSV (se ignoran las líneas vacías, los
+     * comentarios con # y la cabecera); lanza IllegalArgumentException si
+     * alguna línea no es válida
+     */
+    public static FxRateMatrix parse(Reader source) throws IOException {
+        TreeMap<LocalDate, Map<Moneda, BigDecimal>> tipos = new TreeMap<>();
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int number = 0;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("fecha")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            try {
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException("se esperaban 3 campos");
+                }
+                LocalDate fecha = LocalDate.parse(fields[0].strip());
+                Moneda moneda = Moneda.of(fields[1]);
+                if (moneda == BASE) {
+                    throw new IllegalArgumentException(BASE + " es la moneda de referencia");
+                }
+                BigDecimal porEur = new BigDecimal(fields[2].strip());
+                if (porEur.signum() <= 0) {
+                    throw new IllegalArgumentException("el tipo debe ser positivo");
+                }
+                tipos.computeIfAbsent(fecha, key -> new TreeMap<>()).put(moneda, porEur);
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new IllegalArgumentException("Tipo de cambio no válido en la línea " + number + ": "
+                        + e.getMessage(), e);
+            }
+        }
+        return build(tipos);
+    }
+
+    private static FxRateMatrix build(TreeMap<LocalDate, Map<Moneda, BigDecimal>> tipos) {
+        int[] vigencias = new int[tipos.size()];
+        long[] mantissas = new long[tipos.size() * MONEDAS * MONEDAS];
+        byte[] exponents = new byte[mantissas.length];
+
+        // Cada fecha arrastra los tipos vigentes de las monedas que no cambian
+        BigDecimal[] porEur = new BigDecimal[MONEDAS];
+        porEur[BASE.ordinal()] = BigDecimal.ONE;
+        int row = 0;
+        for (Map.Entry<LocalDate, Map<Moneda, BigDecimal>> entry : tipos.entrySet()) {
+            vigencias[row] = (int) entry.getKey().toEpochDay();
+            entry.getValue().forEach((moneda, tipo) -> porEur[moneda.ordinal()] = tipo);
+            for (Moneda from : Moneda.values()) {
+                for (Moneda to : Moneda.values()) {
+                    if (porEur[from.ordinal()] == null || porEur[to.ordinal()] == null) {
+                        continue;
+                    }
+                    BigDecimal factor = porEur[to.ordinal()]
+                            .divide(porEur[from.ordinal()], CROSS_PRECISION)
+                            .scaleByPowerOfTen(to.getDecimales() - from.getDecimales())
+                            .round(FACTOR_PRECISION)
+                            .stripTrailingZeros();
+                    if (factor.scale() > MAX_EXPONENT) {
+                        factor = factor.setScale(MAX_EXPONENT, RoundingMode.HALF_EVEN);
+                    } else if (factor.scale() < 0) {
+                        factor = factor.setScale(0);
+                    }
+                    int index = index(row, from, to);
+                    mantissas[index] = factor.unscaledValue().longValueExact();
+                    exponents[index] = (byte) factor.scale();
+                }
+            }
+            row++;
+        }
+        return new FxRateMatrix(vigencias, mantissas, exponents);
+    }
+
+    /**
+     * Conversión vigente en una fecha; las fechas anteriores al primer tipo usan
+     * el primero. Lanza IllegalArgumentException si falta el tipo de alguna moneda.
+     */
+    public Conversion conversion(Moneda from, Moneda to, LocalDate fecha) {
+        if (vigencias.length == 0) {
+            throw new IllegalArgumentException("No hay tipos de cambio cargados");
+        }
+        int row = Arrays.binarySearch(vigencias, (int) fecha.toEpochDay());
+        if (row < 0) {
+            row = Math.max(0, -row - 2);
+        }
+        int index = index(row, from, to);
+        if (mantissas[index] == 0) {
+            throw new IllegalArgumentException("Sin tipo de cambio de " + from + " a " + to + " en " + fecha);
+        }
+        return new Conversion(from, to, LocalDate.ofEpochDay(vigencias[row]), mantissas[index], exponents[index]);
+    }
+
+    /**
+     * Fechas de vigencia de la matriz
+     */
+    public int size() {
+        return vigencias.length;
+    }
+
+    public LocalDate firstDate() {
+        return vigencias.length > 0 ? LocalDate.ofEpochDay(vigencias[0]) : null;
+    }
+
+    public LocalDate lastDate() {
+        return vigencias.length > 0 ? LocalDate.ofEpochDay(vigencias[vigencias.length - 1]) : null;
+    }
+
+    private static int index(int row, Moneda from, Moneda to) {
+        return (row * MONEDAS + from.ordinal()) * MONEDAS + to.ordinal();
+    }
+
+    /**
+     * Conversión de un par de monedas con el tipo de una fecha: importe destino =
+     * importe origen * mantisa / 10^exponente, redondeado según la moneda destino
+     */
+    public static final class Conversion {
+        private final Moneda from;
+        private final Moneda to;
+        private final LocalDate vigencia;
+        private final long mantissa;
+        private final int exponent;
+        // Mayor importe cuyo producto por la mantisa cabe en un long
+        private final long fastLimit;
+
+        private Conversion(Moneda from, Moneda to, LocalDate vigencia, long mantissa, int exponent) {
+            this.from = from;
+            this.to = to;
+            this.vigencia = vigencia;
+            this.mantissa = mantissa;
+            this.exponent = exponent;
+            this.fastLimit = Long.MAX_VALUE / mantissa;
+        }
+
+        public long convert(long minor) {
+            if (minor <= fastLimit && minor >= -fastLimit) {
+                return Money.divide(minor * mantissa, POW10[exponent], to.getRedondeo());
+            }
+            // Producto fuera de rango: misma operación con precisión arbitraria
+            return BigDecimal.valueOf(minor).multiply(BigDecimal.valueOf(mantissa, exponent))
+                    .setScale(0, to.getRedondeo()).longValueExact();
+        }
+
+        public Money convert(Money amount) {
+            if (amount.moneda() != from) {
+                throw new IllegalArgumentException("La conversión es de " + from + ", no de " + amount.moneda());
+            }
+            return Money.ofMinor(convert(amount.minor()), to);
+        }
+
+        /**
+         * Convierte un bloque de importes en unidades menores sin crear objetos
+         * (salvo los importes que desbordarían un long)
+         */
+        public void convert(long[] minor, long[] target, int count) {
+            RoundingMode redondeo = to.getRedondeo();
+            long divisor = POW10[exponent];
+            for (int i = 0; i < count; i++) {
+                long value = minor[i];
+                target[i] = value <= fastLimit && value >= -fastLimit
+                        ? Money.divide(value * mantissa, divisor, redondeo)
+                        : convert(value);
+            }
+        }
+
+        public Moneda from() {
+            return from;
+        }
+
+        public Moneda to() {
+            return to;
+        }
+
+        /**
+         * Fecha desde la que rige el tipo aplicado
+         */
+        public LocalDate vigencia() {
+            return vigencia;
+        }
+
+        /**
+         * Unidades de la moneda destino por unidad de la moneda origen
+         */
+        public BigDecimal rate() {
+            return BigDecimal.valueOf(mantissa, exponent).scaleByPowerOfTen(from.getDecimales() - to.getDecimales())
+                    .stripTrailingZeros();
+        }
+    }
+}
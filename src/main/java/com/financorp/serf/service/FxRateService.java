@@ -0,0 +1,138 @@
+package com.financorp.serf.service;
+
+import com.financorp.serf.model.Moneda;
+import com.financorp.serf.model.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Consolidación multimoneda de las cifras de las filiales
+ *
+ * Carga los tipos de cambio fechados del fichero configurado en una matriz
+ * inmutable y convierte a la moneda de consolidación con el tipo vigente al
+ * cierre de cada mes. La conversión de cada (mes, moneda) se resuelve una vez y
+ * queda en caché, así que consolidar supone una búsqueda en un mapa y una
+ * operación entera por importe mensual de cada filial.
+ */
+@Service
+public class FxRateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FxRateService.class);
+
+    private record Periodo(YearMonth mes, Moneda moneda) {
+    }
+
+    // Matriz y caché de conversiones se sustituyen juntas al recargar
+    private record Tipos(FxRateMatrix matrix, Map<Periodo, FxRateMatrix.Conversion> conversions) {
+    }
+
+    @Autowired
+    private ReportCache reportCache;
+
+    private final Resource source;
+    private final Moneda monedaConsolidacion;
+    private volatile Tipos tipos;
+
+    public FxRateService(@Value("${serf.fx.tipos:classpath:fx/tipos-cambio.csv}") Resource source,
+                         @Value("${serf.fx.moneda-consolidacion:EUR}") String monedaConsolidacion) {
+        this.source = source;
+        this.monedaConsolidacion = Moneda.of(monedaConsolidacion);
+        this.tipos = new Tipos(load(), new ConcurrentHashMap<>());
+    }
+
+    public Moneda getMonedaConsolidacion() {
+        return monedaConsolidacion;
+    }
+
+    /**
+     * Conversión de una moneda a la de consolidación con el tipo vigente al cierre del mes
+     */
+    public FxRateMatrix.Conversion conversion(Moneda moneda, YearMonth mes) {
+        Tipos current = tipos;
+        return current.conversions().computeIfAbsent(new Periodo(mes, moneda),
+                periodo -> current.matrix().conversion(moneda, monedaConsolidacion, mes.atEndOfMonth()));
+    }
+
+    /**
+     * Suma en la moneda de consolidación importes mensuales en unidades menores
+     * de una moneda (meses[i] es el mes de importes[i])
+     */
+    public Money consolidate(Moneda moneda, YearMonth[] meses, long[] importes) {
+        long total = 0;
+        for (int i = 0; i < importes.length; i++) {
+            total = Math.addExact(total, conversion(moneda, meses[i]).convert(importes[i]));
+        }
+        return Money.ofMinor(total, monedaConsolidacion);
+    }
+
+    /**
+     * Convierte un importe a la moneda de consolidación con el tipo vigente en
+     * la fecha (sin caché: se usa una vez por filial y reporte)
+     */
+    public Money consolidate(Money amount, LocalDate fecha) {
+        return tipos.matrix().conversion(amount.moneda(), monedaConsolidacion, fecha).convert(amount);
+    }
+
+    /**
+     * Tipos vigentes al cierre del mes indicado: unidades de la moneda de
+     * consolidación por unidad de cada moneda
+     */
+    public Map<String, Object> getRates(YearMonth mes) {
+        Map<String, Object> rates = new LinkedHashMap<>();
+        for (Moneda moneda : Moneda.values()) {
+            try {
+                FxRateMatrix.Conversion conversion = conversion(moneda, mes);
+                rates.put(moneda.name(), Map.of("tipo", conversion.rate(), "vigencia", conversion.vigencia()));
+            } catch (IllegalArgumentException e) {
+                rates.put(moneda.name(), "N/D");
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("mes", mes.toString());
+        result.put("monedaConsolidacion", monedaConsolidacion);
+        result.put("tipos", rates);
+        return result;
+    }
+
+    /**
+     * Vuelve a leer el fichero de tipos; los reportes cacheados se descartan
+     */
+    public Map<String, Object> reload() {
+        FxRateMatrix loaded = load();
+        tipos = new Tipos(loaded, new ConcurrentHashMap<>());
+        reportCache.invalidateAll();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("fechas", loaded.size());
+        result.put("desde", loaded.firstDate());
+        result.put("hasta", loaded.lastDate());
+        return result;
+    }
+
+    private FxRateMatrix load() {
+        try (Reader reader = new InputStreamReader(source.getInputStream(), StandardCharsets.UTF_8)) {
+            FxRateMatrix loaded = FxRateMatrix.parse(reader);
+            logger.info("Tipos de cambio cargados de {}: {} fechas ({} a {}), consolidación en {}",
+                    source.getDescription(), loaded.size(), loaded.firstDate(), loaded.lastDate(),
+                    monedaConsolidacion);
+            return loaded;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudieron leer los tipos de cambio de " + source.getDescription(), e);
+        }
+    }
+}
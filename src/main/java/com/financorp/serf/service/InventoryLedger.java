@@ -0,0 +1,518 @@
+package com.financorp.serf.service;
+
+import com.financorp.serf.model.InventarioLedgerCheckpoint;
+import com.financorp.serf.repository.InventarioLedgerCheckpointRepository;
+import com.financorp.serf.repository.ProductoRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Registro de inventario en memoria para ventas flash (opcional)
+ *
+ * El stock disponible de cada producto vive en un contador atómico: las
+ * reservas y consultas se resuelven en memoria con compare-and-set, sin
+ * bloqueos ni consultas a la base de datos. Cada reserva confirmada se anota en
+ * un fichero WAL local y se acumula como movimiento pendiente (si la transacción
+ * se deshace, solo se devuelven las unidades al contador); un hilo de fondo
+ * aplica los movimientos a la tabla productos por lotes (write-behind) junto
+ * con la secuencia del WAL ya aplicada. Al arrancar se reaplican los
+ * movimientos del WAL posteriores a esa secuencia.
+ */
+@Service
+public class InventoryLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryLedger.class);
+
+    private static final String HEADER_PREFIX = "#ledger;";
+
+    private static final int STRIPES = 64;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private InventarioLedgerCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private ReportCache reportCache;
+
+    @Autowired
+    private CatalogCache catalogCache;
+
+    private final boolean enabled;
+    private final long flushIntervalMillis;
+    private final Path walPath;
+    private final boolean walFsync;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, AtomicInteger> available = new ConcurrentHashMap<>();
+    // Unidades reservadas en transacciones todavía abiertas
+    private final Map<Long, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    // Por producto: serializa la anotación de reservas, la carga del contador y
+    // los cambios de stock por otra vía (orden de locks: producto, flush, WAL)
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    // Protege el WAL, la secuencia y los movimientos pendientes (un corte consistente para cada flush)
+    private final Object walLock = new Object();
+    private Map<Long, Integer> pending = new HashMap<>();
+    private long sequence;
+    private FileChannel wal;
+    private String walHeader;
+
+    // Serializa los flush, la recuperación y la conciliación
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private ScheduledExecutorService scheduler;
+
+    public InventoryLedger(@Value("${serf.inventario.ledger.enabled:false}") boolean enabled,
+                           @Value("${serf.inventario.ledger.flush-interval-ms:1000}") long flushIntervalMillis,
+                           @Value("${serf.inventario.ledger.wal-path:data/inventario-ledger.wal}") String walPath,
+                           @Value("${serf.inventario.ledger.wal-fsync:false}") boolean walFsync,
+                           PlatformTransactionManager transactionManager) {
+        this.enabled = enabled;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.walPath = Paths.get(walPath);
+        this.walFsync = walFsync;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Recupera el WAL pendiente y arranca el flush periódico
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        recover();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "serf-inventario-ledger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        logger.info("Registro de inventario en memoria activo (WAL: {})", walPath.toAbsolutePath());
+    }
+
+    /**
+     * Reserva unidades de un producto en memoria; dentro de una transacción el
+     * movimiento se anota tras el commit y, si se deshace, las unidades se devuelven
+     */
+    public boolean reserve(Long productoId, int cantidad) {
+        AtomicInteger counter = counter(productoId);
+        // Se cuenta como en curso antes de tocar el contador (ver reconcile)
+        AtomicInteger reserved = inFlight.computeIfAbsent(productoId, id -> new AtomicInteger());
+        reserved.addAndGet(cantidad);
+        int current;
+        do {
+            current = counter.get();
+            if (current < cantidad) {
+                reserved.addAndGet(-cantidad);
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current - cantidad));
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(productoId, -cantidad, counter);
+            reserved.addAndGet(-cantidad);
+            return true;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record(productoId, -cantidad, counter);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    counter.addAndGet(cantidad);
+                }
+                reserved.addAndGet(-cantidad);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Stock disponible según el registro en memoria
+     */
+    public int getAvailable(Long productoId) {
+        return counter(productoId).get();
+    }
+
+    /**
+     * Cambia el stock de un producto por otra vía (ajuste, modificación o
+     * borrado): con el lock del producto tomado aplica los movimientos
+     * pendientes, ejecuta la escritura y descarta el contador, de modo que
+     * ninguna reserva confirmada se anota entre medias. La escritura debe
+     * confirmarse dentro de la llamada (fuera de una transacción abierta).
+     */
+    public <T> T overwrite(Long productoId, Supplier<T> write) {
+        if (!enabled) {
+            return write.get();
+        }
+        ReentrantLock lock = stripe(productoId);
+        lock.lock();
+        try {
+            flush();
+            T result = write.get();
+            available.remove(productoId);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Aplica en la base de datos los movimientos pendientes en una transacción,
+     * junto con la secuencia del WAL que cubren
+     */
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            Map<Long, Integer> batch;
+            long upTo;
+            synchronized (walLock) {
+                batch = pending;
+                pending = new HashMap<>();
+                upTo = sequence;
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    batch.forEach((productoId, delta) -> {
+                        if (delta != 0) {
+                            productoRepository.adjustStock(productoId, delta);
+                        }
+                    });
+                    saveCheckpoint(upTo);
+                });
+            } catch (RuntimeException e) {
+                synchronized (walLock) {
+                    batch.forEach((productoId, delta) -> pending.merge(productoId, delta, Integer::sum));
+                }
+                throw e;
+            }
+            truncateWalIfIdle(upTo);
+            batch.keySet().forEach(catalogCache::invalidateProducto);
+            reportCache.invalidateAll();
+            logger.debug("Registro de inventario: {} productos aplicados hasta la secuencia {}", batch.size(), upTo);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Reaplica en la base de datos los movimientos del WAL posteriores al último
+     * checkpoint y reinicia el estado en memoria (arranque tras una caída)
+     */
+    public Map<String, Object> recover() {
+        flushLock.lock();
+        try {
+            synchronized (walLock) {
+                InventarioLedgerCheckpoint checkpoint = checkpointRepository.findById(InventarioLedgerCheckpoint.ID)
+                        .orElse(null);
+                Map<Long, Integer> deltas = new HashMap<>();
+                long lastSequence = checkpoint != null ? checkpoint.getUltimaSecuencia() : 0;
+                int records = 0;
+
+                if (checkpoint == null) {
+                    if (Files.exists(walPath)) {
+                        logger.warn("WAL de inventario de otra base de datos descartado: {}", walPath);
+                    }
+                    checkpoint = new InventarioLedgerCheckpoint(InventarioLedgerCheckpoint.ID,
+                            UUID.randomUUID().toString(), 0L, LocalDateTime.now());
+                    checkpointRepository.save(checkpoint);
+                } else if (Files.exists(walPath)) {
+                    List<String> lines = readWal();
+                    if (!lines.isEmpty() && !lines.get(0).equals(HEADER_PREFIX + checkpoint.getLedgerId())) {
+                        logger.warn("WAL de inventario de otra base de datos descartado: {}", walPath);
+                    } else {
+                        for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+                            String[] fields = line.split(";");
+                            if (fields.length != 3) {
+                                // Última línea incompleta por la caída
+                                continue;
+                            }
+                            long seq = Long.parseLong(fields[0]);
+                            if (seq > checkpoint.getUltimaSecuencia()) {
+                                deltas.merge(Long.parseLong(fields[1]), Integer.parseInt(fields[2]), Integer::sum);
+                                lastSequence = Math.max(lastSequence, seq);
+                                records++;
+                            }
+                        }
+                    }
+                }
+
+                long upTo = lastSequence;
+                String ledgerId = checkpoint.getLedgerId();
+                transactionTemplate.executeWithoutResult(status -> {
+                    deltas.forEach((productoId, delta) -> productoRepository.adjustStock(productoId, delta));
+                    saveCheckpoint(upTo);
+                });
+
+                sequence = upTo;
+                pending = new HashMap<>();
+                available.clear();
+                openWal(ledgerId);
+                if (records > 0) {
+                    deltas.keySet().forEach(catalogCache::invalidateProducto);
+                    reportCache.invalidateAll();
+                    logger.info("Registro de inventario recuperado: {} movimientos de {} productos",
+                            records, deltas.size());
+                }
+
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("movimientosReaplicados", records);
+                result.put("productos", deltas.size());
+                result.put("secuencia", upTo);
+                return result;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Compara cada contador en memoria con el stock de la base de datos más los
+     * movimientos pendientes; con repair=true corrige los contadores desviados.
+     * Se omiten los productos con reservas sin confirmar.
+     */
+    public List<Map<String, Object>> reconcile(boolean repair) {
+        List<Map<String, Object>> differences = new ArrayList<>();
+        for (Map.Entry<Long, AtomicInteger> entry : available.entrySet()) {
+            Long productoId = entry.getKey();
+            ReentrantLock lock = stripe(productoId);
+            lock.lock();
+            flushLock.lock();
+            try {
+                // Con el contador leído antes, una reserva sin anotar siempre figura en curso
+                int inMemory = entry.getValue().get();
+                AtomicInteger reserved = inFlight.get(productoId);
+                if (available.get(productoId) != entry.getValue() || (reserved != null && reserved.get() != 0)) {
+                    continue;
+                }
+                int inDatabase = productoRepository.findStockActualById(productoId).orElse(0);
+                int pendingDelta;
+                synchronized (walLock) {
+                    pendingDelta = pending.getOrDefault(productoId, 0);
+                }
+                int expected = inDatabase + pendingDelta;
+                if (inMemory != expected) {
+                    Map<String, Object> difference = new LinkedHashMap<>();
+                    difference.put("productoId", productoId);
+                    difference.put("memoria", inMemory);
+                    difference.put("baseDatos", inDatabase);
+                    difference.put("pendiente", pendingDelta);
+                    difference.put("diferencia", inMemory - expected);
+                    differences.add(difference);
+                    if (repair) {
+                        entry.getValue().addAndGet(expected - inMemory);
+                    }
+                }
+            } finally {
+                flushLock.unlock();
+                lock.unlock();
+            }
+        }
+        return differences;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        try {
+            flush();
+        } finally {
+            closeWal();
+        }
+    }
+
+    private AtomicInteger counter(Long productoId) {
+        AtomicInteger counter = available.get(productoId);
+        if (counter != null) {
+            return counter;
+        }
+        // La carga inicial excluye los flush y las anotaciones del producto:
+        // stock de la base de datos y pendientes del mismo corte
+        ReentrantLock lock = stripe(productoId);
+        lock.lock();
+        flushLock.lock();
+        try {
+            return available.computeIfAbsent(productoId, id -> {
+                int stock = productoRepository.findStockActualById(id)
+                        .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+                synchronized (walLock) {
+                    return new AtomicInteger(stock + pending.getOrDefault(id, 0));
+                }
+            });
+        } finally {
+            flushLock.unlock();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Anota un movimiento confirmado en el WAL y en los pendientes. Si el
+     * contador de la reserva se descartó (cambio de stock por otra vía) y ya se
+     * cargó otro, el movimiento también se le aplica.
+     */
+    private void record(Long productoId, int delta, AtomicInteger counter) {
+        ReentrantLock lock = stripe(productoId);
+        lock.lock();
+        try {
+            synchronized (walLock) {
+                long seq = ++sequence;
+                writeWal(seq + ";" + productoId + ";" + delta + "\n");
+                pending.merge(productoId, delta, Integer::sum);
+            }
+            AtomicInteger current = available.get(productoId);
+            if (current != null && current != counter) {
+                current.addAndGet(delta);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock stripe(Long productoId) {
+        return stripes[Math.floorMod(productoId.hashCode(), STRIPES)];
+    }
+
+    private void saveCheckpoint(long upTo) {
+        InventarioLedgerCheckpoint checkpoint = checkpointRepository.findById(InventarioLedgerCheckpoint.ID)
+                .orElseThrow(() -> new RuntimeException("Checkpoint del registro de inventario no inicializado"));
+        checkpoint.setUltimaSecuencia(upTo);
+        checkpoint.setFechaActualizacion(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+    }
+
+    /**
+     * Si no hubo movimientos nuevos desde el corte aplicado, el WAL se vacía
+     */
+    private void truncateWalIfIdle(long upTo) {
+        synchronized (walLock) {
+            if (sequence == upTo && wal != null) {
+                try {
+                    wal.truncate(0);
+                    wal.write(ByteBuffer.wrap(walHeader.getBytes(StandardCharsets.UTF_8)), 0);
+                } catch (IOException e) {
+                    logger.warn("No se pudo vaciar el WAL de inventario", e);
+                }
+            }
+        }
+    }
+
+    private void openWal(String ledgerId) {
+        closeWal();
+        try {
+            Path parent = walPath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            wal = FileChannel.open(walPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            walHeader = HEADER_PREFIX + ledgerId + "\n";
+            wal.write(ByteBuffer.wrap(walHeader.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el WAL de inventario " + walPath, e);
+        }
+    }
+
+    private void writeWal(String line) {
+        if (wal == null) {
+            throw new RuntimeException("Registro de inventario no iniciado");
+        }
+        try {
+            wal.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)), wal.size());
+            if (walFsync) {
+                wal.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir en el WAL de inventario", e);
+        }
+    }
+
+    private List<String> readWal() {
+        try {
+            return Files.readAllLines(walPath, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el WAL de inventario " + walPath, e);
+        }
+    }
+
+    private void closeWal() {
+        if (wal != null) {
+            try {
+                wal.close();
+            } catch (IOException e) {
+                logger.warn("No se pudo cerrar el WAL de inventario", e);
+            }
+            wal = null;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Error al aplicar el registro de inventario; se reintentará", e);
+        }
+    }
+}
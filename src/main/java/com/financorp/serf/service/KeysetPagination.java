@@ -0,0 +1,103 @@
+package com.financorp.serf.service;
+
+import com.financorp.serf.dto.Pagina;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Paginación por clave (keyset) de los listados de la API
+ *
+ * Cada página se pide a partir de la clave de la última fila de la anterior (un
+ * rango sobre el índice de la clave, con LIMIT), en lugar de saltar filas con
+ * OFFSET, de modo que una página profunda cuesta lo mismo que la primera. El
+ * cursor viaja como un token opaco en base64 con los valores de la clave; se
+ * consulta una fila de más para saber si hay otra página.
+ */
+@Component
+public class KeysetPagination {
+
+    private static final String VERSION = "v1";
+    private static final String SEPARATOR = "|";
+
+    private final int defaultLimit;
+    private final int maxLimit;
+
+    public KeysetPagination(@Value("${serf.api.paginacion.limite-defecto:100}") int defaultLimit,
+                            @Value("${serf.api.paginacion.limite-maximo:1000}") int maxLimit) {
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Tamaño de página efectivo: el solicitado, acotado entre 1 y el máximo
+     */
+    public int limit(Integer requested) {
+        if (requested == null) {
+            return defaultLimit;
+        }
+        if (requested < 1) {
+            throw new IllegalArgumentException("El límite debe ser mayor que cero");
+        }
+        return Math.min(requested, maxLimit);
+    }
+
+    /**
+     * Construye la página a partir de las filas consultadas con un límite de limit + 1
+     */
+    public <T> Pagina<T> page(List<T> rows, int limit, Function<T, String> cursorOf) {
+        if (rows.size() <= limit) {
+            return new Pagina<>(rows, limit, false, null);
+        }
+        List<T> elementos = rows.subList(0, limit);
+        return new Pagina<>(elementos, limit, true, cursorOf.apply(elementos.get(limit - 1)));
+    }
+
+    public String encode(Object... values) {
+        StringBuilder token = new StringBuilder(VERSION);
+        for (Object value : values) {
+            token.append(SEPARATOR).append(value);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Id contenido en un cursor de listados ordenados por id, o null si no hay cursor
+     */
+    public Long decodeId(String cursor) {
+        String[] key = decode(cursor, 1);
+        if (key == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(key[0]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+    }
+
+    /**
+     * Valores de la clave contenidos en el cursor, o null si no hay cursor
+     */
+    public String[] decode(String cursor, int parts) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String token = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] values = token.split("\\|", -1);
+            if (values.length != parts + 1 || !VERSION.equals(values[0])) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            String[] key = new String[parts];
+            System.arraycopy(values, 1, key, 0, parts);
+            return key;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+    }
+}
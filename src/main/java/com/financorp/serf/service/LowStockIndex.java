@@ -0,0 +1,303 @@
+package com.financorp.serf.service;
+
+import com.financorp.serf.dto.ProductoDto;
+import com.financorp.serf.model.Producto;
+import com.financorp.serf.repository.ProductoRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Índice en memoria de los productos con stock bajo (stockActual < stockMinimo)
+ *
+ * Se carga al arrancar y se mantiene con cada cambio de stock hecho por
+ * ProductoService (descuentos de ventas tras el commit, ajustes de stock y
+ * modificaciones de producto), de modo que GET /api/productos/bajo-stock no
+ * consulta la base de datos. Cada producto que baja del mínimo o se recupera
+ * genera una alerta que se envía a los clientes suscritos por Server-Sent Events,
+ * en orden, desde un único hilo.
+ *
+ * Los descuentos se aplican como diferencias sobre el stock conocido: la
+ * recarga desde la base de datos debe hacerse sin ventas concurrentes.
+ */
+@Service
+public class LowStockIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(LowStockIndex.class);
+
+    public enum TipoAlerta {
+        BAJO_STOCK, RECUPERADO
+    }
+
+    /**
+     * Alerta enviada a los suscriptores
+     */
+    public record Alerta(long secuencia, TipoAlerta tipo, ProductoDto producto, LocalDateTime fecha) {
+    }
+
+    private record Nivel(int stock, int minimo) {
+        boolean bajo() {
+            return stock < minimo;
+        }
+    }
+
+    // Niveles de todos los productos y ids de los que están por debajo del mínimo
+    private record Estado(Map<Long, Nivel> niveles, Set<Long> bajoStock) {
+    }
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    private final long sseTimeoutMillis;
+    private final ThreadPoolExecutor dispatcher;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    // Datos descriptivos de los productos que han estado bajo mínimos (el stock se toma del nivel)
+    private final Map<Long, ProductoDto> fichas = new ConcurrentHashMap<>();
+    private final AtomicLong secuencia = new AtomicLong();
+    private volatile Estado estado;
+
+    public LowStockIndex(@Value("${serf.stock.alertas.sse-timeout-ms:1800000}") long sseTimeoutMillis,
+                         @Value("${serf.stock.alertas.queue-capacity:10000}") int queueCapacity) {
+        this.sseTimeoutMillis = sseTimeoutMillis;
+        this.dispatcher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "serf-alertas-stock");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Carga inicial de los niveles de stock
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        reload();
+    }
+
+    /**
+     * Reconstruye el índice desde la tabla de productos, tras aplicar los
+     * movimientos pendientes del registro de inventario
+     */
+    public Map<String, Object> reload() {
+        long start = System.currentTimeMillis();
+        inventoryLedger.flush();
+        Map<Long, Nivel> niveles = new ConcurrentHashMap<>();
+        Set<Long> bajoStock = ConcurrentHashMap.newKeySet();
+        for (Object[] row : productoRepository.findNivelesStock()) {
+            Nivel nivel = new Nivel((Integer) row[1], (Integer) row[2]);
+            niveles.put((Long) row[0], nivel);
+            if (nivel.bajo()) {
+                bajoStock.add((Long) row[0]);
+            }
+        }
+        fichas.clear();
+        for (Producto producto : productoRepository.findByStockActualLessThanStockMinimo()) {
+            fichas.put(producto.getId(), ProductoDto.from(producto));
+        }
+        estado = new Estado(niveles, bajoStock);
+        long elapsed = System.currentTimeMillis() - start;
+        logger.info("Índice de stock bajo cargado: {} productos, {} bajo mínimos en {} ms",
+                niveles.size(), bajoStock.size(), elapsed);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("productos", niveles.size());
+        result.put("bajoStock", bajoStock.size());
+        result.put("duracionMs", elapsed);
+        return result;
+    }
+
+    /**
+     * Productos bajo mínimos ordenados por id (sin consultas salvo una para las
+     * fichas de productos que acaban de bajar del mínimo o se han modificado)
+     */
+    public List<ProductoDto> getBajoStock() {
+        Estado current = estado;
+        if (current == null) {
+            return productoRepository.findByStockActualLessThanStockMinimo().stream().map(ProductoDto::from).toList();
+        }
+        List<Long> ids = current.bajoStock().stream().sorted().toList();
+        List<Long> missing = ids.stream().filter(id -> !fichas.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            for (Producto producto : productoRepository.findWithFilialByIdIn(missing)) {
+                fichas.put(producto.getId(), ProductoDto.from(producto));
+            }
+        }
+        List<ProductoDto> productos = new ArrayList<>(ids.size());
+        ids.forEach(id -> {
+            ProductoDto producto = ficha(current, id);
+            if (producto != null) {
+                productos.add(producto);
+            }
+        });
+        return productos;
+    }
+
+    public boolean isBajoStock(Long productoId) {
+        Estado current = estado;
+        return current != null && current.bajoStock().contains(productoId);
+    }
+
+    /**
+     * Registra un descuento de stock; dentro de una transacción se aplica tras el commit
+     */
+    public void recordDecrement(Long productoId, int cantidad) {
+        afterCommit(() -> apply(productoId, nivel -> new Nivel(nivel.stock() - cantidad, nivel.minimo())));
+    }
+
+    /**
+     * Registra el stock y el mínimo actuales de un producto creado o modificado
+     */
+    public void recordProducto(Producto producto) {
+        Long id = producto.getId();
+        int stock = producto.getStockActual();
+        int minimo = producto.getStockMinimo();
+        afterCommit(() -> {
+            // Nombre, precios o filial pueden haber cambiado
+            fichas.remove(id);
+            apply(id, nivel -> new Nivel(stock, minimo));
+        });
+    }
+
+    /**
+     * Quita un producto eliminado (sin alerta)
+     */
+    public void recordRemoval(Long productoId) {
+        afterCommit(() -> {
+            Estado current = estado;
+            if (current != null) {
+                current.niveles().remove(productoId);
+                current.bajoStock().remove(productoId);
+            }
+            fichas.remove(productoId);
+        });
+    }
+
+    /**
+     * Nuevo suscriptor de las alertas; se da de baja al cerrarse la conexión
+     */
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(sseTimeoutMillis));
+    }
+
+    public SseEmitter subscribe(SseEmitter emitter) {
+        emitters.add(emitter);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(error -> emitters.remove(emitter));
+        return emitter;
+    }
+
+    public int getSubscribers() {
+        return emitters.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        emitters.forEach(SseEmitter::complete);
+    }
+
+    private void apply(Long productoId, UnaryOperator<Nivel> change) {
+        Estado current = estado;
+        if (current == null) {
+            return;
+        }
+        TipoAlerta[] alerta = new TipoAlerta[1];
+        // El cambio de nivel y el del conjunto son atómicos por producto
+        current.niveles().compute(productoId, (id, nivel) -> {
+            Nivel before = nivel != null ? nivel : new Nivel(Integer.MAX_VALUE, 0);
+            Nivel after = change.apply(before);
+            if (after.bajo() && !before.bajo()) {
+                current.bajoStock().add(id);
+                alerta[0] = TipoAlerta.BAJO_STOCK;
+            } else if (!after.bajo() && before.bajo()) {
+                current.bajoStock().remove(id);
+                alerta[0] = TipoAlerta.RECUPERADO;
+            }
+            return after;
+        });
+        if (alerta[0] != null && !emitters.isEmpty()) {
+            publish(current, productoId, alerta[0]);
+        }
+    }
+
+    private void publish(Estado current, Long productoId, TipoAlerta tipo) {
+        long numero = secuencia.incrementAndGet();
+        LocalDateTime fecha = LocalDateTime.now();
+        try {
+            dispatcher.execute(() -> {
+                ProductoDto producto = ficha(current, productoId);
+                if (producto == null) {
+                    return;
+                }
+                Alerta alerta = new Alerta(numero, tipo, producto, fecha);
+                for (SseEmitter emitter : emitters) {
+                    try {
+                        emitter.send(SseEmitter.event().id(Long.toString(numero)).name(tipo.name()).data(alerta));
+                    } catch (IOException | IllegalStateException e) {
+                        emitters.remove(emitter);
+                        emitter.completeWithError(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Cola de alertas de stock llena: se descarta {} del producto {}", tipo, productoId);
+        }
+    }
+
+    /**
+     * Ficha del producto con el stock y el mínimo del índice
+     */
+    private ProductoDto ficha(Estado current, Long productoId) {
+        Nivel nivel = current.niveles().get(productoId);
+        ProductoDto ficha = fichas.computeIfAbsent(productoId,
+                id -> productoRepository.findWithFilialById(id).map(ProductoDto::from).orElse(null));
+        if (nivel == null || ficha == null) {
+            return null;
+        }
+        return ficha.withStock(nivel.stock(), nivel.minimo());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
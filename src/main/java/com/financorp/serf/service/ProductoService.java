@@ -1,9 +1,12 @@
 package com.financorp.serf.service;
 
+import com.financorp.serf.dto.Pagina;
+import com.financorp.serf.dto.ProductoDto;
 import com.financorp.serf.model.Producto;
 import com.financorp.serf.repository.ProductoRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -13,17 +16,50 @@ public class ProductoService {
     @Autowired
     private ProductoRepository productoRepository;
     
+    @Autowired
+    private ReportCache reportCache;
+    
+    @Autowired
+    private StockReservationService stockReservationService;
+    
+    @Autowired
+    private InventoryLedger inventoryLedger;
+    
+    @Autowired
+    private CatalogCache catalogCache;
+    
+    @Autowired
+    private KeysetPagination keysetPagination;
+    
+    @Autowired
+    private LowStockIndex lowStockIndex;
+    
     public List<Producto> getAllProductos() {
         return productoRepository.findAll();
     }
     
+    /**
+     * Página de productos por id, con filtros opcionales de filial y categoría
+     */
+    public Pagina<Producto> getProductosPage(Long filialId, Producto.CategoriaProducto categoria,
+                                             String cursor, Integer limite) {
+        int limit = keysetPagination.limit(limite);
+        Long afterId = keysetPagination.decodeId(cursor);
+        List<Producto> rows = productoRepository.findPage(filialId, categoria, afterId, limit + 1);
+        return keysetPagination.page(rows, limit, producto -> keysetPagination.encode(producto.getId()));
+    }
+    
+    /**
+     * Búsqueda por id a través de la caché de catálogo (la entidad devuelta, con
+     * su filial cargada, puede estar desasociada de la sesión y no debe modificarse)
+     */
     public Producto getProductoById(Long id) {
-        return productoRepository.findById(id)
+        return catalogCache.getProductoById(id, productoRepository::findWithFilialById)
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
     }
     
     public Producto getProductoBySku(String sku) {
-        return productoRepository.findBySku(sku)
+        return catalogCache.getProductoBySku(sku, productoRepository::findWithFilialBySku)
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
     }
     
@@ -35,35 +71,129 @@ public class ProductoService {
         return productoRepository.findByCategoria(categoria);
     }
     
-    public List<Producto> getProductosConBajoStock() {
-        return productoRepository.findByStockActualLessThanStockMinimo();
+    /**
+     * Productos bajo mínimos servidos desde el índice en memoria
+     */
+    public List<ProductoDto> getProductosConBajoStock() {
+        return lowStockIndex.getBajoStock();
     }
     
     public Producto createProducto(Producto producto) {
-        return productoRepository.save(producto);
+        Producto saved = productoRepository.save(producto);
+        lowStockIndex.recordProducto(saved);
+        invalidateReports();
+        return saved;
     }
     
     public Producto updateProducto(Long id, Producto producto) {
-        Producto existing = getProductoById(id);
-        existing.setNombre(producto.getNombre());
-        existing.setDescripcion(producto.getDescripcion());
-        existing.setCategoria(producto.getCategoria());
-        existing.setMarca(producto.getMarca());
-        existing.setModelo(producto.getModelo());
-        existing.setPrecioCompra(producto.getPrecioCompra());
-        existing.setPrecioVenta(producto.getPrecioVenta());
-        existing.setStockActual(producto.getStockActual());
-        existing.setStockMinimo(producto.getStockMinimo());
-        return productoRepository.save(existing);
+        Producto saved = inventoryLedger.overwrite(id, () -> {
+            Producto existing = findProducto(id);
+            existing.setNombre(producto.getNombre());
+            existing.setDescripcion(producto.getDescripcion());
+            existing.setCategoria(producto.getCategoria());
+            existing.setMarca(producto.getMarca());
+            existing.setModelo(producto.getModelo());
+            existing.setPrecioCompra(producto.getPrecioCompra());
+            existing.setPrecioVenta(producto.getPrecioVenta());
+            existing.setStockActual(producto.getStockActual());
+            existing.setStockMinimo(producto.getStockMinimo());
+            return productoRepository.save(existing);
+        });
+        lowStockIndex.recordProducto(saved);
+        stockReservationService.invalidate(id);
+        catalogCache.invalidateProducto(id);
+        invalidateReports();
+        return saved;
     }
     
     public void deleteProducto(Long id) {
-        productoRepository.deleteById(id);
+        inventoryLedger.overwrite(id, () -> {
+            productoRepository.deleteById(id);
+            return null;
+        });
+        lowStockIndex.recordRemoval(id);
+        stockReservationService.invalidate(id);
+        catalogCache.invalidateProducto(id);
+        invalidateReports();
     }
     
     public Producto updateStock(Long id, Integer cantidad) {
-        Producto producto = getProductoById(id);
-        producto.setStockActual(cantidad);
-        return productoRepository.save(producto);
+        // Los movimientos pendientes del registro en memoria se aplican antes de fijar el stock,
+        // sin que se anoten ventas del producto hasta descartar su contador
+        Producto saved = inventoryLedger.overwrite(id, () -> {
+            Producto producto = findProducto(id);
+            producto.setStockActual(cantidad);
+            return productoRepository.save(producto);
+        });
+        lowStockIndex.recordProducto(saved);
+        stockReservationService.invalidate(id);
+        catalogCache.invalidateProducto(id);
+        invalidateReports();
+        return saved;
+    }
+    
+    /**
+     * Stock disponible: del registro en memoria si está activo (la tabla puede
+     * ir hasta un intervalo de flush por detrás), si no de la base de datos
+     */
+    public Integer getStockDisponible(Long id) {
+        if (inventoryLedger.isEnabled()) {
+            return inventoryLedger.getAvailable(id);
+        }
+        return productoRepository.findStockActualById(id)
+                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+    }
+    
+    /**
+     * Reserva previa en memoria para los productos de alta demanda (ver
+     * StockReservationService); para el resto, o con el registro de inventario
+     * activo, siempre devuelve true
+     */
+    public boolean reserveStock(Long id, int cantidad) {
+        if (inventoryLedger.isEnabled()) {
+            return true;
+        }
+        return !stockReservationService.isHot(id) || stockReservationService.reserve(id, cantidad);
+    }
+    
+    /**
+     * Descuenta stock con un UPDATE condicional, sin leer y reescribir el valor
+     * (o en el registro en memoria si está activo); devuelve false si no hay
+     * unidades suficientes
+     */
+    @Transactional
+    public boolean decrementStock(Long id, int cantidad) {
+        if (inventoryLedger.isEnabled()) {
+            // Los reportes se invalidan al aplicar los movimientos en la base de datos
+            if (!inventoryLedger.reserve(id, cantidad)) {
+                return false;
+            }
+            lowStockIndex.recordDecrement(id, cantidad);
+            return true;
+        }
+        if (productoRepository.decrementStock(id, cantidad) == 0) {
+            // Si había contador en memoria, no reflejaba la base de datos
+            stockReservationService.invalidate(id);
+            return false;
+        }
+        lowStockIndex.recordDecrement(id, cantidad);
+        catalogCache.invalidateProducto(id);
+        // El valor de inventario aparece en los reportes de cualquier período; la
+        // invalidación se agrupa en una por transacción
+        reportCache.invalidateInventory();
+        return true;
+    }
+    
+    private Producto findProducto(Long id) {
+        return productoRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
+    }
+    
+    /**
+     * El valor del inventario y el margen (precio de compra) aparecen en los
+     * reportes de cualquier período, por lo que un cambio en productos los afecta a todos
+     */
+    private void invalidateReports() {
+        reportCache.invalidateAll();
     }
 }
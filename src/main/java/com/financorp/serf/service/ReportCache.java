@@ -0,0 +1,398 @@
+package com.financorp.serf.service;
+
+import com.financorp.serf.metrics.ReportMetrics;
+import com.financorp.serf.patterns.creational.ReportConfiguration;
+import com.financorp.serf.patterns.creational.ReportFactory;
+import com.financorp.serf.patterns.structural.BasicReport;
+import com.financorp.serf.patterns.structural.Report;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Caché acotada de reportes ya renderizados
+ *
+ * La clave es el tipo de reporte más la configuración normalizada. Las entradas
+ * se desalojan por número y por caracteres totales (LRU) y por antigüedad (TTL),
+ * y se invalidan cuando se escriben datos que caen dentro del período de un
+ * reporte cacheado.
+ *
+ * Un fallo no renderiza el reporte: devuelve uno que, al escribirse en su
+ * destino, copia la salida a un buffer acotado. Solo se guarda si el reporte
+ * cabe en maxEntryChars, de modo que los reportes grandes se siguen enviando
+ * en streaming sin retener su texto.
+ *
+ * Dentro de una transacción la invalidación se aplica tras el commit: un
+ * render que lea los datos anteriores antes de ese momento no llega a guardarse,
+ * porque la invalidación cambia la generación.
+ */
+@Component
+public class ReportCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportCache.class);
+
+    // Recurso de la transacción que indica que ya hay una invalidación de inventario pendiente
+    private static final Object INVENTORY_PENDING = new Object();
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxChars;
+    private final int maxEntryChars;
+    private final long ttlNanos;
+
+    // LinkedHashMap en orden de acceso: el primer elemento es el menos usado recientemente
+    private final LinkedHashMap<Key, CachedReport> entries;
+
+    // Se incrementa en cada invalidación para descartar renders iniciados antes de ella
+    private long generation;
+    // Caracteres de todas las entradas guardadas
+    private long totalChars;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ReportCache(@Value("${serf.reportes.cache.enabled:true}") boolean enabled,
+                       @Value("${serf.reportes.cache.max-entries:200}") int maxEntries,
+                       @Value("${serf.reportes.cache.max-chars:50000000}") long maxChars,
+                       @Value("${serf.reportes.cache.max-entry-chars:2000000}") int maxEntryChars,
+                       @Value("${serf.reportes.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+        this.maxEntryChars = (int) Math.min(maxEntryChars, maxChars);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Devuelve el reporte cacheado para el tipo y configuración indicados,
+     * o lo crea, renderiza y almacena si no existe o ha expirado
+     */
+    public Report getOrCreate(ReportFactory.ReportType type,
+                              ReportConfiguration config,
+                              Supplier<Report> factory) {
+        return getOrCreate(type, config, factory, () -> true, false);
+    }
+    
+    /**
+     * Igual que {@link #getOrCreate(ReportFactory.ReportType, ReportConfiguration, Supplier)},
+     * pero solo almacena el reporte si {@code cacheable} lo permite tras renderizarlo
+     * (p. ej. para no cachear reportes con datos parciales); con {@code inventario}
+     * el reporte muestra el stock actual y se invalida con cada cambio de stock
+     */
+    public Report getOrCreate(ReportFactory.ReportType type,
+                              ReportConfiguration config,
+                              Supplier<Report> factory,
+                              BooleanSupplier cacheable,
+                              boolean inventario) {
+        if (!enabled) {
+            return factory.get();
+        }
+
+        Key key = new Key(type, config.normalized());
+        long startGeneration;
+
+        synchronized (this) {
+            CachedReport cached = entries.get(key);
+            if (cached != null) {
+                if (System.nanoTime() - cached.createdAt() < ttlNanos) {
+                    hits.incrementAndGet();
+                    ReportMetrics.recordCacheHit(true);
+                    return cached.toReport();
+                }
+                remove(key);
+                evictions.incrementAndGet();
+            }
+            misses.incrementAndGet();
+            ReportMetrics.recordCacheHit(false);
+            startGeneration = generation;
+        }
+
+        // Se renderiza fuera del bloqueo, al escribirlo el llamador
+        return new RecordingReport(factory.get(), key, startGeneration, cacheable, inventario);
+    }
+
+    /**
+     * Guarda un reporte ya escrito si no hubo invalidaciones desde el fallo
+     */
+    private synchronized void store(Key key, long startGeneration, CachedReport rendered) {
+        // Si hubo una invalidación mientras se renderizaba, el contenido podría estar obsoleto
+        if (generation != startGeneration) {
+            return;
+        }
+        remove(key);
+        entries.put(key, rendered);
+        totalChars += rendered.content().length();
+        // Desaloja las menos usadas hasta cumplir los límites de entradas y caracteres
+        Iterator<CachedReport> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || totalChars > maxChars) {
+            totalChars -= eldest.next().content().length();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(Key key) {
+        CachedReport removed = entries.remove(key);
+        if (removed != null) {
+            totalChars -= removed.content().length();
+        }
+    }
+
+    /**
+     * Invalida los reportes cuyo período incluye la fecha indicada
+     */
+    public void invalidatePeriod(LocalDateTime date) {
+        afterCommit(() -> invalidatePeriodNow(date));
+    }
+
+    private synchronized void invalidatePeriodNow(LocalDateTime date) {
+        generation++;
+        if (date == null) {
+            invalidateAllLocked();
+            return;
+        }
+
+        int removed = 0;
+        Iterator<CachedReport> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            CachedReport cached = iterator.next();
+            if (cached.config().coversDate(date)) {
+                iterator.remove();
+                totalChars -= cached.content().length();
+                removed++;
+            }
+        }
+        invalidations.addAndGet(removed);
+        if (removed > 0) {
+            logger.debug("Invalidados {} reportes cacheados que incluyen la fecha {}", removed, date);
+        }
+    }
+
+    /**
+     * Invalida los reportes que muestran el stock actual (valor de inventario),
+     * sea cual sea su período; dentro de una transacción se aplica una sola vez
+     * tras el commit aunque se llame por cada descuento
+     */
+    public void invalidateInventory() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidateInventoryNow();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(INVENTORY_PENDING)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(INVENTORY_PENDING, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidateInventoryNow();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(INVENTORY_PENDING);
+            }
+        });
+    }
+
+    private synchronized void invalidateInventoryNow() {
+        generation++;
+        int removed = 0;
+        Iterator<CachedReport> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            CachedReport cached = iterator.next();
+            if (cached.inventario()) {
+                iterator.remove();
+                totalChars -= cached.content().length();
+                removed++;
+            }
+        }
+        invalidations.addAndGet(removed);
+    }
+
+    /**
+     * Invalida todos los reportes cacheados
+     */
+    public void invalidateAll() {
+        afterCommit(this::invalidateAllNow);
+    }
+
+    private synchronized void invalidateAllNow() {
+        generation++;
+        invalidateAllLocked();
+    }
+
+    private void invalidateAllLocked() {
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+        totalChars = 0;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Obtiene los contadores de la caché para dimensionarla
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("habilitada", enabled);
+        stats.put("entradas", entries.size());
+        stats.put("maxEntradas", maxEntries);
+        stats.put("caracteres", totalChars);
+        stats.put("maxCaracteres", maxChars);
+        stats.put("maxCaracteresPorEntrada", maxEntryChars);
+        stats.put("ttlSegundos", TimeUnit.NANOSECONDS.toSeconds(ttlNanos));
+        stats.put("aciertos", hits.get());
+        stats.put("fallos", misses.get());
+        stats.put("desalojos", evictions.get());
+        stats.put("invalidaciones", invalidations.get());
+        return stats;
+    }
+
+    /**
+     * Clave de la caché: tipo de reporte y configuración normalizada
+     */
+    public record Key(ReportFactory.ReportType type, ReportConfiguration config) {
+    }
+
+    /**
+     * Reporte de un fallo: cada escritura pasa al destino y, mientras quepa en
+     * maxEntryChars, a un buffer; al terminar la primera escritura completa se
+     * guarda en la caché si cacheable lo permite
+     */
+    private final class RecordingReport implements Report {
+        private final Report report;
+        private final Key key;
+        private final long startGeneration;
+        private final BooleanSupplier cacheable;
+        private final boolean inventario;
+        private boolean recorded;
+
+        RecordingReport(Report report, Key key, long startGeneration, BooleanSupplier cacheable,
+                        boolean inventario) {
+            this.report = report;
+            this.key = key;
+            this.startGeneration = startGeneration;
+            this.cacheable = cacheable;
+            this.inventario = inventario;
+        }
+
+        @Override
+        public void writeTo(Appendable out) throws IOException {
+            if (recorded) {
+                report.writeTo(out);
+                return;
+            }
+            recorded = true;
+            BoundedCopy copy = new BoundedCopy(out, maxEntryChars);
+            report.writeTo(copy);
+            if (!copy.overflowed() && cacheable.getAsBoolean()) {
+                store(key, startGeneration, new CachedReport(report.getTitle(), report.getType(),
+                        copy.content(), System.nanoTime(), key.config(), inventario));
+            }
+        }
+
+        @Override
+        public String getTitle() {
+            return report.getTitle();
+        }
+
+        @Override
+        public String getType() {
+            return report.getType();
+        }
+    }
+
+    /**
+     * Appendable que escribe en el destino y guarda una copia de hasta limit
+     * caracteres; al superarlo descarta la copia y solo escribe en el destino
+     */
+    private static final class BoundedCopy implements Appendable {
+        private final Appendable out;
+        private final int limit;
+        private StringBuilder copy = new StringBuilder();
+
+        BoundedCopy(Appendable out, int limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            CharSequence value = csq != null ? csq : "null";
+            return append(value, 0, value.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            CharSequence value = csq != null ? csq : "null";
+            out.append(value, start, end);
+            if (copy != null) {
+                if (copy.length() + (end - start) > limit) {
+                    copy = null;
+                } else {
+                    copy.append(value, start, end);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            out.append(c);
+            if (copy != null) {
+                if (copy.length() + 1 > limit) {
+                    copy = null;
+                } else {
+                    copy.append(c);
+                }
+            }
+            return this;
+        }
+
+        boolean overflowed() {
+            return copy == null;
+        }
+
+        String content() {
+            return copy.toString();
+        }
+    }
+
+    /**
+     * Reporte renderizado junto con los datos necesarios para expirarlo o invalidarlo
+     */
+    private record CachedReport(String title, String type, String content,
+                                long createdAt, ReportConfiguration config, boolean inventario) {
+        Report toReport() {
+            return new BasicReport(title, type, content);
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.financorp.serf.service;
+
+import com.financorp.serf.metrics.ReportMetrics;
+import com.financorp.serf.patterns.creational.AppConfiguration;
+import com.financorp.serf.patterns.structural.Report;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Servicio de generación asíncrona de reportes
+ *
+ * Los trabajos se encolan en una cola acotada y los procesa un pool de hilos
+ * propio, fuera de los hilos de Tomcat. Si la cola está llena el trabajo se
+ * rechaza para que el cliente reintente más tarde (contrapresión). Cada
+ * trabajo tiene como límite el valor de "integration.timeout.seconds" de
+ * {@link AppConfiguration} y puede cancelarse. El resultado se entrega una
+ * sola vez: se descarta al descargarlo o al vencer la retención del trabajo.
+ */
+@Service
+public class ReportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportJobService.class);
+
+    private static final int DEFAULT_TIMEOUT_SECONDS = 30;
+
+    /**
+     * Estados de un trabajo de reporte
+     */
+    public enum EstadoTrabajo {
+        EN_COLA, EN_PROCESO, COMPLETADO, FALLIDO, CANCELADO, EXPIRADO;
+
+        public boolean isFinal() {
+            return this != EN_COLA && this != EN_PROCESO;
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    private final Duration retention;
+    private final int maxRetainedJobs;
+
+    public ReportJobService(@Value("${serf.reportes.trabajos.workers:2}") int workers,
+                            @Value("${serf.reportes.trabajos.queue-capacity:20}") int queueCapacity,
+                            @Value("${serf.reportes.trabajos.retention-minutes:30}") long retentionMinutes,
+                            @Value("${serf.reportes.trabajos.max-retained:500}") int maxRetainedJobs) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "serf-reportes-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "serf-reportes-supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.retention = Duration.ofMinutes(retentionMinutes);
+        this.maxRetainedJobs = maxRetainedJobs;
+
+        scheduler.scheduleWithFixedDelay(this::purgeFinishedJobs, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Encola un trabajo que genera el reporte producido por el proveedor indicado
+     *
+     * @throws RejectedExecutionException si la cola de trabajos está llena
+     */
+    public ReportJob submit(String tipo, String pais, Supplier<Report> reportSupplier) {
+        ReportJob job = new ReportJob(UUID.randomUUID().toString(), tipo, pais);
+        jobs.put(job.getId(), job);
+
+        try {
+            job.future = executor.submit(() -> run(job, reportSupplier));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            logger.warn("Trabajo de reporte rechazado: cola llena ({} en cola)", executor.getQueue().size());
+            throw e;
+        }
+
+        logger.info("Trabajo de reporte {} encolado (tipo: {})", job.getId(), tipo);
+        return job;
+    }
+
+    private void run(ReportJob job, Supplier<Report> reportSupplier) {
+        if (!job.transition(EstadoTrabajo.EN_COLA, EstadoTrabajo.EN_PROCESO)) {
+            return;
+        }
+        job.startedAt = LocalDateTime.now();
+
+        // Límite de tiempo configurado en la integración. Se interrumpe a través del
+        // Future del trabajo: si el hilo ya ha pasado a otro trabajo, no le afecta
+        int timeoutSeconds = getTimeoutSeconds();
+        ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+            if (job.transition(EstadoTrabajo.EN_PROCESO, EstadoTrabajo.EXPIRADO)) {
+                job.error = "Tiempo máximo excedido (" + timeoutSeconds + " s)";
+                job.finishedAt = LocalDateTime.now();
+                Future<?> future = job.future;
+                if (future != null) {
+                    future.cancel(true);
+                }
+                logger.warn("Trabajo de reporte {} expirado tras {} s", job.getId(), timeoutSeconds);
+            }
+        }, timeoutSeconds, TimeUnit.SECONDS);
+
+        try {
+            Report report = reportSupplier.get();
+            StringBuilder result = new StringBuilder();
+            report.writeTo(new InterruptibleAppendable(result));
+
+            job.title = report.getTitle();
+            // Si se canceló o expiró mientras terminaba, el resultado no se conserva
+            if (job.complete(result.toString())) {
+                ReportMetrics.recordOutputSize(report.getType(), job.pais, result.length());
+                logger.info("Trabajo de reporte {} completado ({} caracteres)", job.getId(), result.length());
+            }
+        } catch (CancellationException e) {
+            logger.info("Trabajo de reporte {} interrumpido ({})", job.getId(), job.getEstado());
+        } catch (Exception e) {
+            if (job.transition(EstadoTrabajo.EN_PROCESO, EstadoTrabajo.FALLIDO)) {
+                job.error = e.getMessage();
+                job.finishedAt = LocalDateTime.now();
+                logger.error("Error en el trabajo de reporte {}", job.getId(), e);
+            }
+        } finally {
+            timeout.cancel(false);
+        }
+    }
+
+    /**
+     * Obtiene un trabajo por su identificador
+     */
+    public Optional<ReportJob> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Entrega el resultado de un trabajo completado y lo descarta
+     *
+     * @return el reporte, o vacío si el trabajo no existe, no está completado
+     *         o su resultado ya se descargó
+     */
+    public Optional<String> takeResult(String id) {
+        ReportJob job = jobs.get(id);
+        return job != null ? Optional.ofNullable(job.takeResult()) : Optional.empty();
+    }
+
+    /**
+     * Cancela un trabajo en cola o en proceso
+     *
+     * @return true si el trabajo se canceló, false si ya había finalizado
+     */
+    public boolean cancel(String id) {
+        ReportJob job = jobs.get(id);
+        if (job == null) {
+            return false;
+        }
+        if (job.transition(EstadoTrabajo.EN_COLA, EstadoTrabajo.CANCELADO)
+                || job.transition(EstadoTrabajo.EN_PROCESO, EstadoTrabajo.CANCELADO)) {
+            job.finishedAt = LocalDateTime.now();
+            if (job.future != null) {
+                job.future.cancel(true);
+                // Liberar el hueco de la cola si aún no había empezado
+                executor.remove((Runnable) job.future);
+            }
+            logger.info("Trabajo de reporte {} cancelado", id);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Obtiene el estado del pool y de la cola de trabajos
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", executor.getMaximumPoolSize());
+        stats.put("activos", executor.getActiveCount());
+        stats.put("enCola", executor.getQueue().size());
+        stats.put("capacidadCola", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        stats.put("trabajosRetenidos", jobs.size());
+        stats.put("timeoutSegundos", getTimeoutSeconds());
+        return stats;
+    }
+
+    /**
+     * Elimina los trabajos finalizados cuyo período de retención ha vencido
+     * y, si se supera el máximo, los finalizados más antiguos
+     */
+    void purgeFinishedJobs() {
+        LocalDateTime limit = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(job -> job.getEstado().isFinal()
+                && job.finishedAt != null && job.finishedAt.isBefore(limit));
+
+        int excess = jobs.size() - maxRetainedJobs;
+        if (excess > 0) {
+            jobs.values().stream()
+                    .filter(job -> job.getEstado().isFinal() && job.finishedAt != null)
+                    .sorted(Comparator.comparing(ReportJob::getFinishedAt))
+                    .limit(excess)
+                    .map(ReportJob::getId)
+                    .toList()
+                    .forEach(jobs::remove);
+        }
+    }
+
+    private int getTimeoutSeconds() {
+        Object value = AppConfiguration.getInstance().getConfiguration("integration.timeout.seconds");
+        return value instanceof Number number ? number.intValue() : DEFAULT_TIMEOUT_SECONDS;
+    }
+
+    Collection<ReportJob> getJobs() {
+        return jobs.values();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Trabajo de generación de un reporte
+     */
+    public static class ReportJob {
+        private final String id;
+        private final String tipo;
+        private final String pais;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private volatile EstadoTrabajo estado = EstadoTrabajo.EN_COLA;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile String title;
+        private String result;
+        private volatile boolean descargado;
+        private volatile String error;
+        private volatile Future<?> future;
+
+        ReportJob(String id, String tipo, String pais) {
+            this.id = id;
+            this.tipo = tipo;
+            this.pais = pais;
+        }
+
+        synchronized boolean complete(String content) {
+            if (!transition(EstadoTrabajo.EN_PROCESO, EstadoTrabajo.COMPLETADO)) {
+                return false;
+            }
+            result = content;
+            finishedAt = LocalDateTime.now();
+            return true;
+        }
+
+        synchronized boolean transition(EstadoTrabajo from, EstadoTrabajo to) {
+            if (estado != from) {
+                return false;
+            }
+            estado = to;
+            return true;
+        }
+
+        public String getId() { return id; }
+        public String getTipo() { return tipo; }
+        public String getPais() { return pais; }
+        public EstadoTrabajo getEstado() { return estado; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public LocalDateTime getFinishedAt() { return finishedAt; }
+        public String getTitle() { return title; }
+        public String getError() { return error; }
+        public boolean isDescargado() { return descargado; }
+
+        /**
+         * Entrega el resultado una sola vez (null si no hay o ya se entregó)
+         */
+        synchronized String takeResult() {
+            String taken = result;
+            result = null;
+            if (taken != null) {
+                descargado = true;
+            }
+            return taken;
+        }
+
+        /**
+         * Resumen del trabajo sin el contenido del reporte
+         */
+        public Map<String, Object> toStatus() {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("id", id);
+            status.put("tipo", tipo);
+            status.put("pais", pais);
+            status.put("estado", estado);
+            status.put("creado", createdAt);
+            status.put("iniciado", startedAt);
+            status.put("finalizado", finishedAt);
+            if (title != null) {
+                status.put("titulo", title);
+            }
+            if (error != null) {
+                status.put("error", error);
+            }
+            if (descargado) {
+                status.put("descargado", true);
+            }
+            return status;
+        }
+    }
+
+    /**
+     * Destino de escritura que aborta el renderizado si el hilo fue interrumpido
+     * (cancelación o tiempo máximo excedido)
+     */
+    private static final class InterruptibleAppendable implements Appendable {
+        private final StringBuilder target;
+
+        InterruptibleAppendable(StringBuilder target) {
+            this.target = target;
+        }
+
+        private void checkInterrupted() {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Generación de reporte interrumpida");
+            }
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            checkInterrupted();
+            target.append(csq);
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            checkInterrupted();
+            target.append(csq, start, end);
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            checkInterrupted();
+            target.append(c);
+            return this;
+        }
+    }
+}
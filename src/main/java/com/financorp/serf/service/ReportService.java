@@ -1,24 +1,32 @@
 package com.financorp.serf.service;
 
+import com.financorp.serf.metrics.ReportMetrics;
 import com.financorp.serf.model.Filial;
-import com.financorp.serf.model.Producto;
+import com.financorp.serf.model.Moneda;
+import com.financorp.serf.model.Money;
 import com.financorp.serf.model.Venta;
 import com.financorp.serf.patterns.creational.AppConfiguration;
 import com.financorp.serf.patterns.creational.FinancialReportBuilder;
 import com.financorp.serf.patterns.creational.ReportConfiguration;
 import com.financorp.serf.patterns.creational.ReportFactory;
+import com.financorp.serf.patterns.structural.ParallelSectionRenderer;
 import com.financorp.serf.patterns.structural.Report;
 import com.financorp.serf.repository.FilialRepository;
 import com.financorp.serf.repository.ProductoRepository;
 import com.financorp.serf.repository.VentaRepository;
+import com.financorp.serf.repository.VentaResumenDiarioRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * Servicio para la generación de reportes financieros
@@ -29,6 +37,9 @@ public class ReportService {
     
     private static final Logger logger = LoggerFactory.getLogger(ReportService.class);
     
+    // Días incluidos en el desglose diario de las estadísticas de filial
+    private static final int STATISTICS_DAYS = 30;
+    
     @Autowired
     private FilialRepository filialRepository;
     
@@ -38,6 +49,18 @@ public class ReportService {
     @Autowired
     private VentaRepository ventaRepository;
     
+    @Autowired
+    private VentaResumenDiarioRepository ventaResumenRepository;
+    
+    @Autowired
+    private ReportCache reportCache;
+    
+    @Autowired
+    private FilialAggregationService filialAggregationService;
+    
+    @Autowired
+    private ParallelSectionRenderer parallelSectionRenderer;
+    
     /**
      * Genera un reporte usando Factory Pattern
      */
@@ -47,29 +70,71 @@ public class ReportService {
                                  LocalDateTime endDate,
                                  String generatedBy) {
         
+        String generatedReport = createReport(reportType, country, startDate, endDate, generatedBy).generate();
+        logger.info("Reporte generado exitosamente");
+        
+        return generatedReport;
+    }
+    
+    /**
+     * Prepara un reporte usando Factory Pattern sin renderizarlo,
+     * para que el llamador lo escriba directamente en su destino
+     */
+    public Report createReport(ReportFactory.ReportType reportType, 
+                               String country, 
+                               LocalDateTime startDate, 
+                               LocalDateTime endDate,
+                               String generatedBy) {
+        
         logger.info("Generando reporte tipo: {} para país: {}", reportType, country);
+        ReportMetrics.Sample sample = ReportMetrics.start();
         
         // Usar el patrón Singleton para obtener la configuración
         AppConfiguration config = AppConfiguration.getInstance();
         logger.debug("Configuración del sistema: {}", config.getConfigurationAsString("company.name"));
         
         // Crear configuración del reporte
-        ReportConfiguration reportConfig = ReportConfiguration.builder()
+        ReportConfiguration reportConfig = buildReportConfiguration(country, startDate, endDate, generatedBy);
+        
+        // Usar Factory Pattern para crear el reporte (o reutilizar uno ya renderizado)
+        Report report = reportCache.getOrCreate(reportType, reportConfig,
+                () -> ReportFactory.createReport(reportType, reportConfig, null, parallelSectionRenderer));
+        
+        ReportMetrics.recordService(sample, "reporte", reportType.name(), country);
+        return report;
+    }
+    
+    /**
+     * Prepara un reporte conservando su árbol de componentes, necesario para
+     * exportarlo a formatos estructurados como Excel (no pasa por la caché de texto)
+     */
+    public Report createStructuredReport(ReportFactory.ReportType reportType,
+                                         String country,
+                                         LocalDateTime startDate,
+                                         LocalDateTime endDate,
+                                         String generatedBy) {
+        
+        logger.info("Generando reporte estructurado tipo: {} para país: {}", reportType, country);
+        ReportMetrics.Sample sample = ReportMetrics.start();
+        
+        Report report = ReportFactory.createReport(reportType,
+                buildReportConfiguration(country, startDate, endDate, generatedBy), null, parallelSectionRenderer);
+        
+        ReportMetrics.recordService(sample, "estructurado", reportType.name(), country);
+        return report;
+    }
+    
+    private ReportConfiguration buildReportConfiguration(String country,
+                                                         LocalDateTime startDate,
+                                                         LocalDateTime endDate,
+                                                         String generatedBy) {
+        return ReportConfiguration.builder()
                 .country(country)
                 .startDate(startDate)
                 .endDate(endDate)
                 .generatedBy(generatedBy)
                 .confidential(true)
                 .build();
-        
-        // Usar Factory Pattern para crear el reporte
-        Report report = ReportFactory.createReport(reportType, reportConfig);
-        
-        // Generar y retornar el reporte
-        String generatedReport = report.generate();
-        logger.info("Reporte generado exitosamente");
-        
-        return generatedReport;
     }
     
     /**
@@ -85,11 +150,37 @@ public class ReportService {
                                        boolean includeSignature,
                                        String generatedBy) {
         
+        String generatedReport = createCustomReport(title, reportType, country, startDate, endDate,
+                filiales, includeCharts, includeSignature, generatedBy).generate();
+        logger.info("Reporte personalizado generado exitosamente");
+        
+        return generatedReport;
+    }
+    
+    /**
+     * Prepara un reporte personalizado usando Builder Pattern sin renderizarlo
+     */
+    public Report createCustomReport(String title,
+                                     String reportType,
+                                     String country,
+                                     LocalDateTime startDate,
+                                     LocalDateTime endDate,
+                                     List<String> filiales,
+                                     boolean includeCharts,
+                                     boolean includeSignature,
+                                     String generatedBy) {
+        
         logger.info("Generando reporte personalizado: {}", title);
+        ReportMetrics.Sample sample = ReportMetrics.start();
         
         // Usar Builder Pattern para construcción paso a paso
         FinancialReportBuilder builder = new FinancialReportBuilder();
         
+        // Añadir filiales si se especificaron (antes de construir el reporte)
+        if (filiales != null && !filiales.isEmpty()) {
+            filiales.forEach(builder::addFilial);
+        }
+        
         Report report = builder
                 .setTitle(title)
                 .setReportType(reportType)
@@ -101,17 +192,11 @@ public class ReportService {
                 .withFooter(true, generatedBy)
                 .withWatermark(true)
                 .withDigitalSignature(includeSignature, "Director Financiero", "CFO")
+                .withParallelRenderer(parallelSectionRenderer)
                 .build();
         
-        // Añadir filiales si se especificaron
-        if (filiales != null && !filiales.isEmpty()) {
-            filiales.forEach(builder::addFilial);
-        }
-        
-        String generatedReport = report.generate();
-        logger.info("Reporte personalizado generado exitosamente");
-        
-        return generatedReport;
+        ReportMetrics.recordService(sample, "personalizado", reportType, country);
+        return report;
     }
     
     /**
@@ -121,13 +206,26 @@ public class ReportService {
                                              LocalDateTime endDate,
                                              String generatedBy) {
         
+        return createConsolidatedReport(startDate, endDate, generatedBy).generate();
+    }
+    
+    /**
+     * Prepara el reporte consolidado de todas las filiales sin renderizarlo
+     */
+    public Report createConsolidatedReport(LocalDateTime startDate, 
+                                           LocalDateTime endDate,
+                                           String generatedBy) {
+        
         logger.info("Generando reporte consolidado");
+        ReportMetrics.Sample sample = ReportMetrics.start();
         
         // Obtener todas las filiales activas
+        ReportMetrics.Sample fetch = ReportMetrics.start();
         List<Filial> filialesActivas = filialRepository.findByActivaTrue();
-        List<String> filialNames = filialesActivas.stream()
-                .map(f -> f.getCodigo() + " - " + f.getNombre())
-                .collect(Collectors.toList());
+        Map<String, Filial> filialesByName = new LinkedHashMap<>();
+        filialesActivas.forEach(f -> filialesByName.put(f.getCodigo() + " - " + f.getNombre(), f));
+        List<String> filialNames = new ArrayList<>(filialesByName.keySet());
+        ReportMetrics.recordFetch(fetch, "consolidado");
         
         // Configurar reporte
         ReportConfiguration config = ReportConfiguration.builder()
@@ -145,26 +243,53 @@ public class ReportService {
                 .auditNotes("Reporte revisado y aprobado según normativas corporativas")
                 .build();
         
-        // Generar usando Factory
-        Report report = ReportFactory.createReport(
-                ReportFactory.ReportType.FINANCIAL, 
-                config
-        );
+        // Cifras reales por filial, consultadas en paralelo solo si el reporte no está en caché
+        FilialAggregationService.Aggregation aggregation = filialAggregationService.newAggregation(filialesByName);
+        
+        // Generar usando Factory (o reutilizar uno ya renderizado); los reportes parciales no se cachean
+        // y los completos se invalidan con cada cambio de stock (valor de inventario)
+        Report report = reportCache.getOrCreate(ReportFactory.ReportType.FINANCIAL, config,
+                () -> ReportFactory.createReport(ReportFactory.ReportType.FINANCIAL, config, aggregation,
+                        parallelSectionRenderer),
+                () -> !aggregation.isPartial(), true);
         
-        return report.generate();
+        ReportMetrics.recordService(sample, "consolidado", ReportFactory.ReportType.FINANCIAL.name(), "Corporativo");
+        return report;
     }
     
     /**
-     * Obtiene estadísticas de una filial específica
+     * Obtiene estadísticas de una filial específica, con desgloses por estado,
+     * categoría, forma de pago y día calculados en la base de datos
      */
     public String getFilialStatistics(Long filialId) {
         Filial filial = filialRepository.findById(filialId)
                 .orElseThrow(() -> new RuntimeException("Filial no encontrada"));
+        Moneda moneda = Moneda.of(filial.getMoneda());
         
-        List<Producto> productos = productoRepository.findByFilialId(filialId);
-        List<Venta> ventas = ventaRepository.findByFilialId(filialId);
+        // Solo consultas agregadas (sobre el acumulado diario salvo la forma de pago):
+        // la memoria no depende del número de ventas
+        long totalProductos = productoRepository.countByFilialId(filialId);
+        long stockBajo = productoRepository.countStockBajoByFilial(filialId);
+        List<ProductoRepository.InventarioPorCategoria> inventario = productoRepository.getInventarioPorCategoria(filialId);
+        List<VentaRepository.VentasPorEstado> porEstado = ventaResumenRepository.getVentasPorEstado(filialId);
+        List<VentaRepository.VentasPorCategoria> porCategoria = ventaResumenRepository.getVentasPorCategoria(filialId);
+        List<VentaRepository.VentasPorFormaPago> porFormaPago = ventaRepository.getVentasPorFormaPago(filialId);
+        LocalDate hasta = LocalDate.now();
+        List<VentaRepository.VentasPorDia> porDia = ventaResumenRepository.getVentasPorDia(
+                filialId, hasta.minusDays(STATISTICS_DAYS - 1), hasta);
         
-        Double totalVentas = ventaRepository.getTotalVentasByFilial(filialId);
+        long totalVentas = 0;
+        Money montoVendido = Money.zero(moneda);
+        for (VentaRepository.VentasPorEstado estado : porEstado) {
+            totalVentas += estado.getCantidad();
+            if (estado.getEstado() == Venta.EstadoVenta.COMPLETADA) {
+                montoVendido = Money.of(estado.getTotal(), moneda);
+            }
+        }
+        Money valorInventario = Money.zero(moneda);
+        for (ProductoRepository.InventarioPorCategoria categoria : inventario) {
+            valorInventario = valorInventario.plus(Money.of(categoria.getValor(), moneda));
+        }
         
         StringBuilder stats = new StringBuilder();
         stats.append("═══════════════════════════════════════════════════\n");
@@ -174,12 +299,50 @@ public class ReportService {
         stats.append("Nombre: ").append(filial.getNombre()).append("\n");
         stats.append("País: ").append(filial.getPais()).append("\n");
         stats.append("Ciudad: ").append(filial.getCiudad()).append("\n\n");
-        stats.append("Total de productos: ").append(productos.size()).append("\n");
-        stats.append("Total de ventas: ").append(ventas.size()).append("\n");
-        stats.append("Monto total vendido: ").append(filial.getMoneda()).append(" ")
-             .append(totalVentas != null ? totalVentas : 0).append("\n");
+        stats.append("Total de productos: ").append(totalProductos).append("\n");
+        stats.append("Productos con stock bajo: ").append(stockBajo).append("\n");
+        stats.append("Valor de inventario: ").append(valorInventario).append("\n");
+        stats.append("Total de ventas: ").append(totalVentas).append("\n");
+        stats.append("Monto total vendido: ").append(montoVendido).append("\n");
+        
+        stats.append("\nInventario por categoría:\n");
+        for (ProductoRepository.InventarioPorCategoria categoria : inventario) {
+            stats.append(String.format("  %-25s %6d productos %8d uds  %s\n",
+                    categoria.getCategoria().getDescripcion(), categoria.getProductos(),
+                    categoria.getStock(), formatAmount(moneda, categoria.getValor())));
+        }
+        
+        stats.append("\nVentas por estado:\n");
+        for (VentaRepository.VentasPorEstado estado : porEstado) {
+            appendBreakdownLine(stats, estado.getEstado().getDescripcion(), estado, moneda);
+        }
+        
+        stats.append("\nVentas completadas por categoría:\n");
+        for (VentaRepository.VentasPorCategoria categoria : porCategoria) {
+            appendBreakdownLine(stats, categoria.getCategoria().getDescripcion(), categoria, moneda);
+        }
+        
+        stats.append("\nVentas completadas por forma de pago:\n");
+        for (VentaRepository.VentasPorFormaPago formaPago : porFormaPago) {
+            appendBreakdownLine(stats, formaPago.getFormaPago(), formaPago, moneda);
+        }
+        
+        stats.append("\nVentas completadas por día (últimos ").append(STATISTICS_DAYS).append(" días):\n");
+        for (VentaRepository.VentasPorDia dia : porDia) {
+            appendBreakdownLine(stats, dia.getDia().toString(), dia, moneda);
+        }
         stats.append("═══════════════════════════════════════════════════\n");
         
         return stats.toString();
     }
+    
+    private void appendBreakdownLine(StringBuilder stats, String label,
+                                     VentaRepository.TotalesVentas totales, Moneda moneda) {
+        stats.append(String.format("  %-25s %6d ventas %8d uds  %s\n",
+                label, totales.getCantidad(), totales.getUnidades(), formatAmount(moneda, totales.getTotal())));
+    }
+    
+    private String formatAmount(Moneda moneda, BigDecimal amount) {
+        return Money.of(amount, moneda).toString();
+    }
 }
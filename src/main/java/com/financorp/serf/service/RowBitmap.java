@@ -0,0 +1,488 @@
+package com.financorp.serf.service;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Conjunto comprimido de posiciones de fila al estilo Roaring
+ *
+ * Las filas se reparten en contenedores de 65.536 posiciones (los 16 bits
+ * altos, que coinciden con los bloques de {@link VentaColumnStore}). Cada
+ * contenedor es un array ordenado de los 16 bits bajos mientras tiene hasta
+ * ARRAY_MAX elementos (8 KB como máximo) y pasa a un mapa de bits de 8 KB
+ * cuando se llena más; las operaciones combinan contenedor a contenedor.
+ */
+public final class RowBitmap {
+
+    static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    // Índice = 16 bits altos de la fila; null si el contenedor está vacío
+    private Container[] containers;
+
+    public RowBitmap() {
+        this(new Container[0]);
+    }
+
+    private RowBitmap(Container[] containers) {
+        this.containers = containers;
+    }
+
+    /**
+     * Conjunto con todas las filas de 0 a rows - 1
+     */
+    public static RowBitmap range(int rows) {
+        RowBitmap bitmap = new RowBitmap();
+        for (int key = 0; key << 16 < rows; key++) {
+            bitmap.addChunk(key, Math.min(1 << 16, rows - (key << 16)));
+        }
+        return bitmap;
+    }
+
+    /**
+     * Añade las primeras rows filas del contenedor key (un bloque entero)
+     */
+    public void addChunk(int key, int rows) {
+        if (key >= containers.length) {
+            containers = Arrays.copyOf(containers, Math.max(key + 1, containers.length * 2));
+        }
+        Container filled = BitmapContainer.filled(rows);
+        containers[key] = containers[key] == null ? filled : containers[key].or(filled);
+    }
+
+    public void add(int row) {
+        int key = row >>> 16;
+        if (key >= containers.length) {
+            containers = Arrays.copyOf(containers, Math.max(key + 1, containers.length * 2));
+        }
+        Container container = containers[key];
+        containers[key] = container == null ? new ArrayContainer().add(row & 0xFFFF) : container.add(row & 0xFFFF);
+    }
+
+    public void remove(int row) {
+        int key = row >>> 16;
+        if (key < containers.length && containers[key] != null) {
+            containers[key] = containers[key].remove(row & 0xFFFF);
+        }
+    }
+
+    public boolean contains(int row) {
+        int key = row >>> 16;
+        return key < containers.length && containers[key] != null && containers[key].contains(row & 0xFFFF);
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (Container container : containers) {
+            if (container != null) {
+                cardinality += container.cardinality();
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * Número de filas comunes, sin construir la intersección
+     */
+    public long andCardinality(RowBitmap other) {
+        long cardinality = 0;
+        int keys = Math.min(containers.length, other.containers.length);
+        for (int key = 0; key < keys; key++) {
+            Container a = containers[key];
+            Container b = other.containers[key];
+            if (a != null && b != null) {
+                cardinality += a.andCardinality(b);
+            }
+        }
+        return cardinality;
+    }
+
+    public RowBitmap and(RowBitmap other) {
+        Container[] result = new Container[Math.min(containers.length, other.containers.length)];
+        for (int key = 0; key < result.length; key++) {
+            Container a = containers[key];
+            Container b = other.containers[key];
+            result[key] = a != null && b != null ? a.and(b) : null;
+        }
+        return new RowBitmap(result);
+    }
+
+    public RowBitmap or(RowBitmap other) {
+        Container[] result = new Container[Math.max(containers.length, other.containers.length)];
+        for (int key = 0; key < result.length; key++) {
+            Container a = key < containers.length ? containers[key] : null;
+            Container b = key < other.containers.length ? other.containers[key] : null;
+            result[key] = a == null ? copy(b) : b == null ? a.copy() : a.or(b);
+        }
+        return new RowBitmap(result);
+    }
+
+    public RowBitmap andNot(RowBitmap other) {
+        Container[] result = new Container[containers.length];
+        for (int key = 0; key < result.length; key++) {
+            Container a = containers[key];
+            Container b = key < other.containers.length ? other.containers[key] : null;
+            result[key] = a == null ? null : b == null ? a.copy() : a.andNot(b);
+        }
+        return new RowBitmap(result);
+    }
+
+    /**
+     * Recorre las filas del conjunto en orden ascendente
+     */
+    public void forEach(IntConsumer action) {
+        for (int key = 0; key < containers.length; key++) {
+            if (containers[key] != null) {
+                containers[key].forEach(key << 16, action);
+            }
+        }
+    }
+
+    /**
+     * Bytes aproximados que ocupan los contenedores
+     */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Container container : containers) {
+            if (container != null) {
+                bytes += container.sizeInBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private static Container copy(Container container) {
+        return container != null ? container.copy() : null;
+    }
+
+    /**
+     * Contenedor de hasta 65.536 posiciones; las operaciones devuelven null si
+     * el resultado queda vacío y cambian de representación según la cardinalidad
+     */
+    private abstract static class Container {
+        abstract Container add(int low);
+
+        abstract Container remove(int low);
+
+        abstract boolean contains(int low);
+
+        abstract int cardinality();
+
+        abstract Container copy();
+
+        abstract long[] words();
+
+        abstract void forEach(int base, IntConsumer action);
+
+        abstract long sizeInBytes();
+
+        int andCardinality(Container other) {
+            Container and = and(other);
+            return and != null ? and.cardinality() : 0;
+        }
+
+        Container and(Container other) {
+            if (this instanceof ArrayContainer array) {
+                return array.filter(other, true);
+            }
+            if (other instanceof ArrayContainer array) {
+                return array.filter(this, true);
+            }
+            long[] a = words();
+            long[] b = other.words();
+            long[] result = new long[WORDS];
+            for (int i = 0; i < WORDS; i++) {
+                result[i] = a[i] & b[i];
+            }
+            return BitmapContainer.of(result);
+        }
+
+        Container or(Container other) {
+            if (this instanceof ArrayContainer a && other instanceof ArrayContainer b
+                    && a.size + b.size <= ARRAY_MAX) {
+                return a.union(b);
+            }
+            long[] result = words().clone();
+            long[] b = other.words();
+            for (int i = 0; i < WORDS; i++) {
+                result[i] |= b[i];
+            }
+            return BitmapContainer.of(result);
+        }
+
+        Container andNot(Container other) {
+            if (this instanceof ArrayContainer array) {
+                return array.filter(other, false);
+            }
+            long[] result = words().clone();
+            long[] b = other.words();
+            for (int i = 0; i < WORDS; i++) {
+                result[i] &= ~b[i];
+            }
+            return BitmapContainer.of(result);
+        }
+    }
+
+    /**
+     * Array ordenado de los 16 bits bajos (como char, sin signo)
+     */
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int size;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        Container add(int low) {
+            int index = Arrays.binarySearch(values, 0, size, (char) low);
+            if (index >= 0) {
+                return this;
+            }
+            if (size == ARRAY_MAX) {
+                return toBitmap().add(low);
+            }
+            index = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, values.length * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = (char) low;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(int low) {
+            int index = Arrays.binarySearch(values, 0, size, (char) low);
+            if (index < 0) {
+                return this;
+            }
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+            return size > 0 ? this : null;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return Arrays.binarySearch(values, 0, size, (char) low) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, size), size);
+        }
+
+        @Override
+        long[] words() {
+            long[] words = new long[WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return words;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16 + 2L * values.length;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int cardinality = 0;
+            for (int i = 0; i < size; i++) {
+                if (other.contains(values[i])) {
+                    cardinality++;
+                }
+            }
+            return cardinality;
+        }
+
+        /**
+         * Valores que están (keep) o no están (!keep) en el otro contenedor
+         */
+        Container filter(Container other, boolean keep) {
+            char[] result = new char[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (other.contains(values[i]) == keep) {
+                    result[count++] = values[i];
+                }
+            }
+            return count > 0 ? new ArrayContainer(result, count) : null;
+        }
+
+        Container union(ArrayContainer other) {
+            char[] result = new char[size + other.size];
+            int i = 0;
+            int j = 0;
+            int count = 0;
+            while (i < size && j < other.size) {
+                char a = values[i];
+                char b = other.values[j];
+                if (a == b) {
+                    result[count++] = a;
+                    i++;
+                    j++;
+                } else if (a < b) {
+                    result[count++] = a;
+                    i++;
+                } else {
+                    result[count++] = b;
+                    j++;
+                }
+            }
+            while (i < size) {
+                result[count++] = values[i++];
+            }
+            while (j < other.size) {
+                result[count++] = other.values[j++];
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        private BitmapContainer toBitmap() {
+            return new BitmapContainer(words(), size);
+        }
+    }
+
+    /**
+     * Mapa de 65.536 bits (1.024 palabras de 64 bits)
+     */
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static BitmapContainer filled(int bits) {
+            long[] words = new long[WORDS];
+            Arrays.fill(words, 0, bits >>> 6, -1L);
+            if ((bits & 63) != 0) {
+                words[bits >>> 6] = (1L << bits) - 1;
+            }
+            return new BitmapContainer(words, bits);
+        }
+
+        /**
+         * Contenedor con los bits indicados, en la representación que menos ocupa
+         */
+        static Container of(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality == 0) {
+                return null;
+            }
+            BitmapContainer bitmap = new BitmapContainer(words, cardinality);
+            return cardinality > ARRAY_MAX ? bitmap : bitmap.toArray();
+        }
+
+        @Override
+        Container add(int low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                words[low >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(int low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) != 0) {
+                words[low >>> 6] &= ~bit;
+                cardinality--;
+            }
+            if (cardinality == 0) {
+                return null;
+            }
+            return cardinality > ARRAY_MAX ? this : toArray();
+        }
+
+        @Override
+        boolean contains(int low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        long[] words() {
+            return words;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(base | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16 + 8L * WORDS;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.andCardinality(this);
+            }
+            long[] b = other.words();
+            int cardinality = 0;
+            for (int i = 0; i < WORDS; i++) {
+                cardinality += Long.bitCount(words[i] & b[i]);
+            }
+            return cardinality;
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+}
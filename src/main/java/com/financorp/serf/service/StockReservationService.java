@@ -0,0 +1,128 @@
+package com.financorp.serf.service;
+
+import com.financorp.serf.repository.ProductoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Reserva de stock en memoria para los productos de alta demanda ("hot SKU")
+ *
+ * Antes del UPDATE condicional, cada venta reserva sus unidades en un contador
+ * por producto protegido por un conjunto fijo de locks (lock striping): las
+ * ventas de un producto agotado se rechazan sin llegar a la base de datos y
+ * solo compiten por la fila las que tienen unidades reservadas. La base de
+ * datos sigue siendo la fuente de verdad; el contador se recarga desde ella
+ * cuando se invalida.
+ */
+@Service
+public class StockReservationService {
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    private final Set<String> hotSkus;
+    private final ReentrantLock[] locks;
+    private final Map<Long, Boolean> hotProducts = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> available = new ConcurrentHashMap<>();
+
+    public StockReservationService(@Value("${serf.stock.hot-skus:}") String hotSkus,
+                                   @Value("${serf.stock.lock-stripes:64}") int stripes) {
+        this.hotSkus = Arrays.stream(hotSkus.split(","))
+                .map(String::trim)
+                .filter(sku -> !sku.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Indica si el producto usa reserva en memoria (configurado por SKU o activado en caliente)
+     */
+    public boolean isHot(Long productoId) {
+        return hotProducts.computeIfAbsent(productoId, id -> productoRepository.findSkuById(id)
+                .map(hotSkus::contains)
+                .orElse(false));
+    }
+
+    public void setHot(Long productoId, boolean hot) {
+        hotProducts.put(productoId, hot);
+        invalidate(productoId);
+    }
+
+    /**
+     * Reserva unidades de un producto; si hay una transacción activa y se
+     * deshace, las unidades vuelven al contador
+     */
+    public boolean reserve(Long productoId, int cantidad) {
+        ReentrantLock lock = lockFor(productoId);
+        lock.lock();
+        try {
+            Integer current = available.get(productoId);
+            if (current == null) {
+                current = productoRepository.findStockActualById(productoId).orElse(0);
+            }
+            if (current < cantidad) {
+                available.put(productoId, current);
+                return false;
+            }
+            available.put(productoId, current - cantidad);
+        } finally {
+            lock.unlock();
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        release(productoId, cantidad);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Devuelve unidades reservadas que no llegaron a venderse
+     */
+    public void release(Long productoId, int cantidad) {
+        ReentrantLock lock = lockFor(productoId);
+        lock.lock();
+        try {
+            available.computeIfPresent(productoId, (id, current) -> current + cantidad);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Descarta el contador de un producto (el stock cambió por otra vía);
+     * la siguiente reserva lo recarga desde la base de datos
+     */
+    public void invalidate(Long productoId) {
+        ReentrantLock lock = lockFor(productoId);
+        lock.lock();
+        try {
+            available.remove(productoId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lockFor(Long productoId) {
+        return locks[Math.floorMod(productoId.hashCode(), locks.length)];
+    }
+}
@@ -0,0 +1,478 @@
+package com.financorp.serf.service;
+
+import com.financorp.serf.model.Money;
+import com.financorp.serf.model.Producto;
+import com.financorp.serf.model.Venta;
+import com.financorp.serf.repository.VentaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * Instantánea analítica de las ventas sobre un almacén columnar fuera del heap
+ *
+ * Se carga desde la tabla de ventas al arrancar y se mantiene al día con cada
+ * alta, modificación o baja confirmada. Filiales y productos se guardan como
+ * índices densos (el diccionario sí vive en el heap, pero solo tiene una
+ * entrada por filial y producto) y la categoría es la del producto al
+ * registrar la venta. Los recuentos por estado, categoría, filial y país se
+ * resuelven con los índices de mapas de bits del almacén.
+ */
+@Service
+public class VentaAnalyticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VentaAnalyticsService.class);
+
+    @Autowired
+    private VentaRepository ventaRepository;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private FilialService filialService;
+
+    private final boolean enabled;
+    private final TransactionTemplate readTransaction;
+
+    private final Map<Long, Integer> filialIndex = new ConcurrentHashMap<>();
+    private final List<Long> filialIds = new ArrayList<>();
+    private final Map<Long, ProductoEntry> productoIndex = new ConcurrentHashMap<>();
+    private final List<Long> productoIds = new ArrayList<>();
+
+    private volatile VentaColumnStore store = new VentaColumnStore();
+    private final Object rebuildLock = new Object();
+
+    // Cambios recibidos durante una recarga: se aplican al almacén nuevo al terminar
+    private List<Consumer<VentaColumnStore>> pendingDuringRebuild;
+
+    public VentaAnalyticsService(@Value("${serf.analitica.snapshot.enabled:true}") boolean enabled,
+                                 PlatformTransactionManager transactionManager) {
+        this.enabled = enabled;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Carga inicial de la instantánea
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Vuelve a cargar la instantánea desde la tabla de ventas; los cambios que
+     * llegan mientras tanto se aplican después sobre el almacén nuevo
+     */
+    public Map<String, Object> rebuild() {
+        if (!enabled) {
+            throw new IllegalStateException("La instantánea analítica de ventas no está activa");
+        }
+        synchronized (rebuildLock) {
+            return load();
+        }
+    }
+
+    private Map<String, Object> load() {
+        long start = System.nanoTime();
+        synchronized (this) {
+            pendingDuringRebuild = new ArrayList<>();
+        }
+        VentaColumnStore loaded = new VentaColumnStore();
+        try {
+            readTransaction.executeWithoutResult(status -> {
+                try (Stream<Object[]> rows = ventaRepository.streamAnalyticsRows()) {
+                    rows.forEach(row -> loaded.append((Long) row[0], epochDay((LocalDateTime) row[1]),
+                            filial((Long) row[2]), producto((Long) row[3], (Producto.CategoriaProducto) row[4]).index(),
+                            ((Producto.CategoriaProducto) row[4]).ordinal(), ((Venta.EstadoVenta) row[5]).ordinal(),
+                            (Integer) row[6], minorUnits((BigDecimal) row[7])));
+                }
+            });
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pendingDuringRebuild = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            // Solo se repiten las altas que la carga no llegó a ver
+            for (Consumer<VentaColumnStore> change : pendingDuringRebuild) {
+                change.accept(loaded);
+            }
+            pendingDuringRebuild = null;
+            store = loaded;
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        logger.info("Instantánea analítica de ventas cargada: {} ventas, {} KB fuera del heap en {} ms",
+                loaded.size(), loaded.offHeapBytes() / 1024, elapsedMs);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("ventas", loaded.size());
+        result.put("bytesFueraDelHeap", loaded.offHeapBytes());
+        result.put("duracionMs", elapsedMs);
+        return result;
+    }
+
+    /**
+     * Registra una venta nueva al confirmarse su transacción
+     */
+    public void recordSale(Venta venta) {
+        recordSales(List.of(venta));
+    }
+
+    /**
+     * Registra un lote de ventas nuevas al confirmarse su transacción
+     */
+    public void recordSales(Collection<Venta> ventas) {
+        if (!enabled || ventas.isEmpty()) {
+            return;
+        }
+        // Los valores se toman ya: tras el commit las entidades pueden estar desasociadas
+        List<Row> rows = new ArrayList<>(ventas.size());
+        for (Venta venta : ventas) {
+            ProductoEntry producto = producto(venta.getProducto().getId(), null);
+            rows.add(new Row(venta.getId(), epochDay(venta.getFechaVenta()),
+                    filial(venta.getFilial().getId()), producto.index(), producto.categoria(),
+                    venta.getEstado().ordinal(), venta.getCantidad(), minorUnits(venta.getTotal())));
+        }
+        afterCommit(target -> {
+            boolean replay = target != store;
+            for (Row row : rows) {
+                if (!replay || !target.contains(row.id())) {
+                    target.append(row.id(), row.epochDay(), row.filial(), row.producto(), row.categoria(),
+                            row.estado(), row.cantidad(), row.totalMinor());
+                }
+            }
+        });
+    }
+
+    /**
+     * Actualiza el estado, la cantidad y el total de una venta modificada
+     */
+    public void replaceSale(Venta venta) {
+        if (!enabled) {
+            return;
+        }
+        long id = venta.getId();
+        int estado = venta.getEstado().ordinal();
+        int cantidad = venta.getCantidad();
+        long totalMinor = minorUnits(venta.getTotal());
+        afterCommit(target -> target.update(id, estado, cantidad, totalMinor));
+    }
+
+    /**
+     * Quita una venta eliminada de la instantánea
+     */
+    public void removeSale(Long id) {
+        if (enabled) {
+            afterCommit(target -> target.remove(id));
+        }
+    }
+
+    /**
+     * Totales de las ventas que cumplen los filtros (los null no se aplican)
+     * agrupados por la dimensión indicada, con las claves legibles: fecha, id de
+     * filial o producto, nombre de la categoría o del estado
+     */
+    public List<Grupo> aggregate(VentaColumnStore.Dimension groupBy, Long filialId, Long productoId,
+                                 Producto.CategoriaProducto categoria, Venta.EstadoVenta estado,
+                                 LocalDate desde, LocalDate hasta) {
+        if (!enabled) {
+            throw new IllegalStateException("La instantánea analítica de ventas no está activa");
+        }
+        VentaColumnStore.Filter filter = VentaColumnStore.Filter.all();
+        if (desde != null || hasta != null) {
+            filter = filter.withDays(desde != null ? (int) desde.toEpochDay() : Integer.MIN_VALUE,
+                    hasta != null ? (int) hasta.toEpochDay() : Integer.MAX_VALUE);
+        }
+        if (filialId != null) {
+            Integer index = filialIndex.get(filialId);
+            if (index == null) {
+                return List.of();
+            }
+            filter = filter.withFilial(index);
+        }
+        if (productoId != null) {
+            ProductoEntry producto = productoIndex.get(productoId);
+            if (producto == null) {
+                return List.of();
+            }
+            filter = filter.withProducto(producto.index());
+        }
+        if (categoria != null) {
+            filter = filter.withCategoria(categoria.ordinal());
+        }
+        if (estado != null) {
+            filter = filter.withEstado(estado.ordinal());
+        }
+
+        int groups = switch (groupBy) {
+            case FILIAL -> filialIndex.size();
+            case PRODUCTO -> productoIndex.size();
+            case CATEGORIA -> Producto.CategoriaProducto.values().length;
+            case ESTADO -> Venta.EstadoVenta.values().length;
+            case DIA, NINGUNA -> 0;
+        };
+        VentaColumnStore.Totals totals = store.aggregate(filter, groupBy, groups);
+
+        List<Grupo> result = new ArrayList<>();
+        for (int g = 0; g < totals.groups(); g++) {
+            if (totals.ventas()[g] == 0) {
+                continue;
+            }
+            result.add(new Grupo(key(groupBy, totals.firstKey() + g), totals.ventas()[g], totals.unidades()[g],
+                    BigDecimal.valueOf(totals.totalMinor()[g], Money.STORAGE_SCALE)));
+        }
+        return result;
+    }
+
+    /**
+     * Cuenta las ventas que cumplen todos los filtros con los índices de mapas
+     * de bits, sin recorrer filas. Cada filtro es una lista de valores separados
+     * por comas (basta con uno) y un "!" inicial lo niega: "!CANCELADA" o
+     * "LAPTOP,TABLET". Las filiales se indican por id y los países por nombre.
+     * desglosarPor (ESTADO, CATEGORIA, FILIAL o PAIS) reparte el recuento entre
+     * los valores de esa dimensión.
+     */
+    public Conteo count(String estados, String categorias, String filiales, String paises,
+                        LocalDate desde, LocalDate hasta, String desglosarPor) {
+        if (!enabled) {
+            throw new IllegalStateException("La instantánea analítica de ventas no está activa");
+        }
+        List<VentaColumnStore.Term> terms = new ArrayList<>();
+        addTerm(terms, VentaColumnStore.Dimension.ESTADO, estados,
+                value -> enumValue(Venta.EstadoVenta.class, value, "Estado desconocido").ordinal());
+        addTerm(terms, VentaColumnStore.Dimension.CATEGORIA, categorias,
+                value -> enumValue(Producto.CategoriaProducto.class, value, "Categoría desconocida").ordinal());
+        addTerm(terms, VentaColumnStore.Dimension.FILIAL, filiales, value -> {
+            try {
+                return filialIndex.getOrDefault(Long.valueOf(value), VentaColumnStore.ANY);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Id de filial inválido: " + value);
+            }
+        });
+        if (paises != null && !paises.isBlank()) {
+            boolean negated = paises.startsWith("!");
+            List<Integer> indexes = new ArrayList<>();
+            for (String pais : values(paises)) {
+                indexes.addAll(filialesDelPais(pais));
+            }
+            terms.add(new VentaColumnStore.Term(VentaColumnStore.Dimension.FILIAL,
+                    indexes.stream().mapToInt(Integer::intValue).toArray(), negated));
+        }
+
+        String breakdown = desglosarPor != null ? desglosarPor.trim().toUpperCase() : "NINGUNA";
+        VentaColumnStore.Dimension dimension;
+        int groups;
+        switch (breakdown) {
+            case "NINGUNA" -> {
+                dimension = VentaColumnStore.Dimension.NINGUNA;
+                groups = 0;
+            }
+            case "ESTADO" -> {
+                dimension = VentaColumnStore.Dimension.ESTADO;
+                groups = Venta.EstadoVenta.values().length;
+            }
+            case "CATEGORIA" -> {
+                dimension = VentaColumnStore.Dimension.CATEGORIA;
+                groups = Producto.CategoriaProducto.values().length;
+            }
+            case "FILIAL", "PAIS" -> {
+                dimension = VentaColumnStore.Dimension.FILIAL;
+                groups = filialIndex.size();
+            }
+            default -> throw new IllegalArgumentException("No se puede desglosar por " + desglosarPor
+                    + ": use ESTADO, CATEGORIA, FILIAL o PAIS");
+        }
+
+        VentaColumnStore.Count count = store.count(terms,
+                desde != null ? (int) desde.toEpochDay() : Integer.MIN_VALUE,
+                hasta != null ? (int) hasta.toEpochDay() : Integer.MAX_VALUE, dimension, groups);
+
+        Map<Object, Long> desglose = new LinkedHashMap<>();
+        for (int value = 0; value < count.desglose().length; value++) {
+            long ventas = count.desglose()[value];
+            if (ventas == 0) {
+                continue;
+            }
+            Object key = "PAIS".equals(breakdown)
+                    ? pais(indexedId(filialIds, value))
+                    : key(dimension, value);
+            desglose.merge(key, ventas, Long::sum);
+        }
+        return new Conteo(count.ventas(), desglose);
+    }
+
+    /**
+     * Tamaño de la instantánea
+     */
+    public Map<String, Object> getStatistics() {
+        VentaColumnStore current = store;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("habilitada", enabled);
+        stats.put("ventas", current.size());
+        stats.put("filiales", filialIndex.size());
+        stats.put("productos", productoIndex.size());
+        stats.put("bytesFueraDelHeap", current.offHeapBytes());
+        stats.put("bytesIndicesBitmap", current.bitmapBytes());
+        return stats;
+    }
+
+    private Object key(VentaColumnStore.Dimension groupBy, int key) {
+        return switch (groupBy) {
+            case DIA -> LocalDate.ofEpochDay(key);
+            case FILIAL -> indexedId(filialIds, key);
+            case PRODUCTO -> indexedId(productoIds, key);
+            case CATEGORIA -> Producto.CategoriaProducto.values()[key];
+            case ESTADO -> Venta.EstadoVenta.values()[key];
+            case NINGUNA -> "TOTAL";
+        };
+    }
+
+    private Long indexedId(List<Long> ids, int index) {
+        synchronized (ids) {
+            return ids.get(index);
+        }
+    }
+
+    private void addTerm(List<VentaColumnStore.Term> terms, VentaColumnStore.Dimension dimension, String spec,
+                         ToIntFunction<String> parser) {
+        if (spec == null || spec.isBlank()) {
+            return;
+        }
+        List<String> values = values(spec);
+        int[] parsed = new int[values.size()];
+        for (int i = 0; i < parsed.length; i++) {
+            parsed[i] = parser.applyAsInt(values.get(i));
+        }
+        terms.add(new VentaColumnStore.Term(dimension, parsed, spec.startsWith("!")));
+    }
+
+    private static List<String> values(String spec) {
+        String list = spec.startsWith("!") ? spec.substring(1) : spec;
+        return Arrays.stream(list.split(",")).map(String::trim).filter(value -> !value.isEmpty()).toList();
+    }
+
+    private static <E extends Enum<E>> E enumValue(Class<E> type, String value, String error) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(error + ": " + value);
+        }
+    }
+
+    private List<Integer> filialesDelPais(String pais) {
+        List<Integer> indexes = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : filialIndex.entrySet()) {
+            if (pais.equalsIgnoreCase(pais(entry.getKey()))) {
+                indexes.add(entry.getValue());
+            }
+        }
+        return indexes;
+    }
+
+    private String pais(Long filialId) {
+        return filialService.getFilialById(filialId).getPais();
+    }
+
+    private void afterCommit(Consumer<VentaColumnStore> change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+
+    private synchronized void apply(Consumer<VentaColumnStore> change) {
+        change.accept(store);
+        if (pendingDuringRebuild != null) {
+            pendingDuringRebuild.add(change);
+        }
+    }
+
+    private int filial(Long filialId) {
+        return filialIndex.computeIfAbsent(filialId, id -> {
+            synchronized (filialIds) {
+                filialIds.add(id);
+                return filialIds.size() - 1;
+            }
+        });
+    }
+
+    private ProductoEntry producto(Long productoId, Producto.CategoriaProducto categoria) {
+        ProductoEntry entry = productoIndex.get(productoId);
+        if (entry != null) {
+            return entry;
+        }
+        Producto.CategoriaProducto resolved = categoria != null
+                ? categoria : productoService.getProductoById(productoId).getCategoria();
+        return productoIndex.computeIfAbsent(productoId, id -> {
+            synchronized (productoIds) {
+                productoIds.add(id);
+                return new ProductoEntry(productoIds.size() - 1, resolved.ordinal());
+            }
+        });
+    }
+
+    private static int epochDay(LocalDateTime fecha) {
+        return (int) fecha.toLocalDate().toEpochDay();
+    }
+
+    private static long minorUnits(BigDecimal amount) {
+        return Money.toMinor(amount, Money.STORAGE_SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Totales de un grupo; el total está en la moneda de la filial
+     */
+    public record Grupo(Object clave, long ventas, long unidades, BigDecimal total) {
+    }
+
+    /**
+     * Recuento de ventas y su desglose por los valores de una dimensión
+     */
+    public record Conteo(long ventas, Map<Object, Long> desglose) {
+    }
+
+    private record ProductoEntry(int index, int categoria) {
+    }
+
+    private record Row(long id, int epochDay, int filial, int producto, int categoria, int estado,
+                       int cantidad, long totalMinor) {
+    }
+}
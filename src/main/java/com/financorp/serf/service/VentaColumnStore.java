@@ -0,0 +1,625 @@
+package com.financorp.serf.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Almacén columnar de ventas fuera del heap para consultas analíticas
+ *
+ * Cada columna se guarda en memoria directa (ByteBuffer.allocateDirect) en
+ * bloques de CHUNK_ROWS filas, de modo que crecer no copia lo ya escrito y el
+ * heap solo contiene los descriptores de los bloques y un índice del id de
+ * venta a su fila para modificaciones y bajas. Los importes van en
+ * unidades menores (céntimos) y las dimensiones como índices enteros asignados
+ * por quien escribe. Las consultas recorren las columnas por lotes de BATCH
+ * filas copiados a arrays primitivos, con bucles sin saltos que el compilador
+ * JIT puede vectorizar. Las filas eliminadas se marcan con ELIMINADA.
+ *
+ * Además mantiene índices de mapas de bits ({@link RowBitmap}) de las filas
+ * vivas por filial, categoría y estado, con los que count() combina filtros y
+ * desglosa recuentos sin recorrer las filas.
+ */
+public class VentaColumnStore {
+
+    public static final int CHUNK_ROWS = 1 << 16;
+    public static final byte ELIMINADA = -1;
+    public static final int ANY = -1;
+
+    // Filas por lote de cálculo: los arrays de trabajo caben en la caché L1/L2
+    static final int BATCH = 1024;
+
+    // Ancho de cada fila en bytes: id, total, día, filial, producto, cantidad, categoría, estado
+    static final int ROW_BYTES = Long.BYTES * 2 + Integer.BYTES * 4 + 2;
+
+    /**
+     * Dimensión por la que se agrupa una consulta
+     */
+    public enum Dimension {
+        NINGUNA, DIA, FILIAL, PRODUCTO, CATEGORIA, ESTADO
+    }
+
+    /**
+     * Filtro de una consulta: días (epoch day) incluidos y valores exactos; ANY no filtra
+     */
+    public record Filter(int fromDay, int toDay, int filial, int producto, int categoria, int estado) {
+
+        public static Filter all() {
+            return new Filter(Integer.MIN_VALUE, Integer.MAX_VALUE, ANY, ANY, ANY, ANY);
+        }
+
+        public Filter withDays(int from, int to) {
+            return new Filter(from, to, filial, producto, categoria, estado);
+        }
+
+        public Filter withFilial(int value) {
+            return new Filter(fromDay, toDay, value, producto, categoria, estado);
+        }
+
+        public Filter withProducto(int value) {
+            return new Filter(fromDay, toDay, filial, value, categoria, estado);
+        }
+
+        public Filter withCategoria(int value) {
+            return new Filter(fromDay, toDay, filial, producto, value, estado);
+        }
+
+        public Filter withEstado(int value) {
+            return new Filter(fromDay, toDay, filial, producto, categoria, value);
+        }
+    }
+
+    /**
+     * Condición de count(): la fila tiene alguno de los valores de la dimensión
+     * (FILIAL, CATEGORIA o ESTADO), o ninguno si negated
+     */
+    public record Term(Dimension dimension, int[] values, boolean negated) {
+    }
+
+    /**
+     * Resultado de count(): filas que cumplen las condiciones y su desglose
+     * por los valores de una dimensión
+     */
+    public record Count(long ventas, long[] desglose) {
+    }
+
+    /**
+     * Totales por grupo; el grupo g corresponde a la clave firstKey + g
+     * (el epoch day al agrupar por día, el índice o el ordinal en el resto)
+     */
+    public record Totals(int firstKey, long[] ventas, long[] unidades, long[] totalMinor) {
+
+        public int groups() {
+            return ventas.length;
+        }
+    }
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+    private int minDay = Integer.MAX_VALUE;
+    private int maxDay = Integer.MIN_VALUE;
+
+    private final RowIndex rowById = new RowIndex();
+
+    private final RowBitmap live = new RowBitmap();
+    private final List<RowBitmap> byFilial = new ArrayList<>();
+    private final List<RowBitmap> byCategoria = new ArrayList<>();
+    private final List<RowBitmap> byEstado = new ArrayList<>();
+
+    /**
+     * Añade una venta al final del almacén
+     */
+    public void append(long id, int epochDay, int filial, int producto, int categoria, int estado,
+                       int cantidad, long totalMinor) {
+        lock.writeLock().lock();
+        try {
+            int offset = size % CHUNK_ROWS;
+            if (offset == 0) {
+                chunks.add(new Chunk());
+            }
+            Chunk chunk = chunks.get(chunks.size() - 1);
+            chunk.ids.put(offset, id);
+            chunk.totals.put(offset, totalMinor);
+            chunk.days.put(offset, epochDay);
+            chunk.filiales.put(offset, filial);
+            chunk.productos.put(offset, producto);
+            chunk.cantidades.put(offset, cantidad);
+            chunk.categorias.put(offset, (byte) categoria);
+            chunk.estados.put(offset, (byte) estado);
+            chunk.include(epochDay, filial);
+            rowById.put(id, size);
+            live.add(size);
+            bitmap(byFilial, filial).add(size);
+            bitmap(byCategoria, categoria).add(size);
+            bitmap(byEstado, estado).add(size);
+            size++;
+            minDay = Math.min(minDay, epochDay);
+            maxDay = Math.max(maxDay, epochDay);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sustituye el estado, la cantidad y el total de una venta; devuelve false
+     * si la venta no está en el almacén
+     */
+    public boolean update(long id, int estado, int cantidad, long totalMinor) {
+        lock.writeLock().lock();
+        try {
+            int row = find(id);
+            if (row < 0) {
+                return false;
+            }
+            Chunk chunk = chunks.get(row / CHUNK_ROWS);
+            int offset = row % CHUNK_ROWS;
+            byte previous = chunk.estados.get(offset);
+            if (previous == ELIMINADA) {
+                return false;
+            }
+            if (previous != estado) {
+                byEstado.get(previous).remove(row);
+                bitmap(byEstado, estado).add(row);
+            }
+            chunk.estados.put(offset, (byte) estado);
+            chunk.cantidades.put(offset, cantidad);
+            chunk.totals.put(offset, totalMinor);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marca una venta como eliminada; las consultas dejan de contarla
+     */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int row = find(id);
+            if (row < 0) {
+                return false;
+            }
+            Chunk chunk = chunks.get(row / CHUNK_ROWS);
+            int offset = row % CHUNK_ROWS;
+            byte estado = chunk.estados.get(offset);
+            if (estado == ELIMINADA) {
+                return false;
+            }
+            live.remove(row);
+            byFilial.get(chunk.filiales.get(offset)).remove(row);
+            byCategoria.get(chunk.categorias.get(offset)).remove(row);
+            byEstado.get(estado).remove(row);
+            chunk.estados.put(offset, ELIMINADA);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return find(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes reservados fuera del heap
+     */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) chunks.size() * CHUNK_ROWS * ROW_BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cuenta las ventas, unidades y total que cumplen el filtro, agrupados por la
+     * dimensión indicada; groups es el número de valores posibles de la dimensión
+     * (índices de filial o producto, ordinales), y se ignora al agrupar por día
+     */
+    public Totals aggregate(Filter filter, Dimension groupBy, int groups) {
+        lock.readLock().lock();
+        try {
+            int firstKey = 0;
+            if (groupBy == Dimension.DIA) {
+                firstKey = Math.max(filter.fromDay(), minDay);
+                int lastKey = Math.min(filter.toDay(), maxDay);
+                groups = lastKey >= firstKey ? lastKey - firstKey + 1 : 0;
+            } else if (groupBy == Dimension.NINGUNA) {
+                groups = 1;
+            }
+            Totals totals = new Totals(firstKey, new long[groups], new long[groups], new long[groups]);
+            if (groups == 0 || size == 0 || filter.fromDay() > maxDay || filter.toDay() < minDay) {
+                return totals;
+            }
+            new Scan(filter, groupBy, totals).run();
+            return totals;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cuenta las filas vivas que cumplen todas las condiciones y el período (días
+     * incluidos) combinando los índices de mapas de bits; si breakdown no es
+     * NINGUNA, desglosa el recuento entre sus groups primeros valores. Solo se
+     * leen filas para el período, y únicamente en los bloques que lo cruzan.
+     */
+    public Count count(List<Term> terms, int fromDay, int toDay, Dimension breakdown, int groups) {
+        lock.readLock().lock();
+        try {
+            RowBitmap matches = live;
+            for (Term term : terms) {
+                RowBitmap any = new RowBitmap();
+                for (int value : term.values()) {
+                    any = any.or(index(term.dimension(), value));
+                }
+                matches = term.negated() ? matches.andNot(any) : matches.and(any);
+            }
+            if (fromDay > minDay || toDay < maxDay) {
+                matches = matches.and(dayRange(fromDay, toDay));
+            }
+
+            long[] desglose = new long[breakdown == Dimension.NINGUNA ? 0 : groups];
+            for (int value = 0; value < desglose.length; value++) {
+                desglose[value] = matches.andCardinality(index(breakdown, value));
+            }
+            return new Count(matches.cardinality(), desglose);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes aproximados de los índices de mapas de bits (en el heap)
+     */
+    public long bitmapBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = live.sizeInBytes();
+            for (List<RowBitmap> index : List.of(byFilial, byCategoria, byEstado)) {
+                for (RowBitmap bitmap : index) {
+                    bytes += bitmap.sizeInBytes();
+                }
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RowBitmap index(Dimension dimension, int value) {
+        List<RowBitmap> index = switch (dimension) {
+            case FILIAL -> byFilial;
+            case CATEGORIA -> byCategoria;
+            case ESTADO -> byEstado;
+            default -> throw new IllegalArgumentException("Sin índice de mapa de bits para " + dimension);
+        };
+        return value >= 0 && value < index.size() ? index.get(value) : new RowBitmap();
+    }
+
+    private static RowBitmap bitmap(List<RowBitmap> index, int value) {
+        while (index.size() <= value) {
+            index.add(new RowBitmap());
+        }
+        return index.get(value);
+    }
+
+    // Los bloques enteros dentro del período se toman completos; solo se leen los días de los que lo cruzan
+    private RowBitmap dayRange(int fromDay, int toDay) {
+        RowBitmap result = new RowBitmap();
+        for (int c = 0; c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            int rows = Math.min(CHUNK_ROWS, size - c * CHUNK_ROWS);
+            if (chunk.maxDay < fromDay || chunk.minDay > toDay) {
+                continue;
+            }
+            if (chunk.minDay >= fromDay && chunk.maxDay <= toDay) {
+                result.addChunk(c, rows);
+                continue;
+            }
+            for (int i = 0; i < rows; i++) {
+                int day = chunk.days.get(i);
+                if (day >= fromDay && day <= toDay) {
+                    result.add(c * CHUNK_ROWS + i);
+                }
+            }
+        }
+        return result;
+    }
+
+    private int find(long id) {
+        return rowById.get(id);
+    }
+
+    /**
+     * Índice del id de venta a su fila: direccionamiento abierto con sondeo
+     * lineal sobre arrays primitivos, sin objetos por entrada. Las altas que se
+     * confirman fuera de orden impiden buscar por bisección en la columna de ids.
+     */
+    private static final class RowIndex {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] keys = emptyKeys(1024);
+        private int[] rows = new int[1024];
+        private int entries;
+
+        int get(long id) {
+            int mask = keys.length - 1;
+            for (int slot = slot(id, mask); ; slot = (slot + 1) & mask) {
+                long key = keys[slot];
+                if (key == id) {
+                    return rows[slot];
+                }
+                if (key == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(long id, int row) {
+            // Factor de carga máximo 1/2
+            if ((entries + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = slot(id, mask);
+            while (keys[slot] != EMPTY && keys[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                keys[slot] = id;
+                entries++;
+            }
+            rows[slot] = row;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldRows = rows;
+            keys = emptyKeys(oldKeys.length * 2);
+            rows = new int[oldKeys.length * 2];
+            entries = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldRows[i]);
+                }
+            }
+        }
+
+        // Los ids son consecutivos: se mezclan los bits para repartirlos por la tabla
+        private static int slot(long id, int mask) {
+            long hash = id * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        private static long[] emptyKeys(int length) {
+            long[] keys = new long[length];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+
+    /**
+     * Recorrido de una consulta: solo copia del almacén las columnas que usa
+     */
+    private final class Scan {
+        private final Filter filter;
+        private final Dimension groupBy;
+        private final Totals totals;
+
+        private final boolean readFilial;
+        private final boolean readProducto;
+        private final boolean readCategoria;
+
+        private final int[] days = new int[BATCH];
+        private final int[] filiales = new int[BATCH];
+        private final int[] productos = new int[BATCH];
+        private final int[] cantidades = new int[BATCH];
+        private final long[] totalMinor = new long[BATCH];
+        private final byte[] categorias = new byte[BATCH];
+        private final byte[] estados = new byte[BATCH];
+        private final int[] match = new int[BATCH];
+
+        Scan(Filter filter, Dimension groupBy, Totals totals) {
+            this.filter = filter;
+            this.groupBy = groupBy;
+            this.totals = totals;
+            this.readFilial = filter.filial() != ANY || groupBy == Dimension.FILIAL;
+            this.readProducto = filter.producto() != ANY || groupBy == Dimension.PRODUCTO;
+            this.readCategoria = filter.categoria() != ANY || groupBy == Dimension.CATEGORIA;
+        }
+
+        void run() {
+            for (int c = 0; c < chunks.size(); c++) {
+                Chunk chunk = chunks.get(c);
+                if (!chunk.mayMatch(filter)) {
+                    continue;
+                }
+                // Si el bloque entero cae dentro del período no hace falta leer los días
+                boolean chunkDays = groupBy == Dimension.DIA
+                        || chunk.minDay < filter.fromDay() || chunk.maxDay > filter.toDay();
+                int rows = Math.min(CHUNK_ROWS, size - c * CHUNK_ROWS);
+                for (int start = 0; start < rows; start += BATCH) {
+                    int length = Math.min(BATCH, rows - start);
+                    load(chunk, start, length, chunkDays);
+                    select(length, chunkDays);
+                    accumulate(length);
+                }
+            }
+        }
+
+        private void load(Chunk chunk, int start, int length, boolean readDays) {
+            chunk.estados.get(start, estados, 0, length);
+            chunk.cantidades.get(start, cantidades, 0, length);
+            chunk.totals.get(start, totalMinor, 0, length);
+            if (readDays) {
+                chunk.days.get(start, days, 0, length);
+            }
+            if (readFilial) {
+                chunk.filiales.get(start, filiales, 0, length);
+            }
+            if (readProducto) {
+                chunk.productos.get(start, productos, 0, length);
+            }
+            if (readCategoria) {
+                chunk.categorias.get(start, categorias, 0, length);
+            }
+        }
+
+        // Cada filtro multiplica la máscara por 0 o 1 en un bucle sin saltos
+        private void select(int length, boolean filterDays) {
+            int estado = filter.estado();
+            for (int i = 0; i < length; i++) {
+                match[i] = estados[i] != ELIMINADA && (estado == ANY || estados[i] == estado) ? 1 : 0;
+            }
+            if (filterDays) {
+                int from = filter.fromDay();
+                int to = filter.toDay();
+                for (int i = 0; i < length; i++) {
+                    match[i] &= days[i] >= from && days[i] <= to ? 1 : 0;
+                }
+            }
+            if (filter.filial() != ANY) {
+                int filial = filter.filial();
+                for (int i = 0; i < length; i++) {
+                    match[i] &= filiales[i] == filial ? 1 : 0;
+                }
+            }
+            if (filter.producto() != ANY) {
+                int producto = filter.producto();
+                for (int i = 0; i < length; i++) {
+                    match[i] &= productos[i] == producto ? 1 : 0;
+                }
+            }
+            if (filter.categoria() != ANY) {
+                byte categoria = (byte) filter.categoria();
+                for (int i = 0; i < length; i++) {
+                    match[i] &= categorias[i] == categoria ? 1 : 0;
+                }
+            }
+        }
+
+        private void accumulate(int length) {
+            if (groupBy == Dimension.NINGUNA) {
+                long ventas = 0;
+                long unidades = 0;
+                long total = 0;
+                for (int i = 0; i < length; i++) {
+                    ventas += match[i];
+                    unidades += (long) match[i] * cantidades[i];
+                    total += match[i] * totalMinor[i];
+                }
+                totals.ventas()[0] += ventas;
+                totals.unidades()[0] += unidades;
+                totals.totalMinor()[0] += total;
+                return;
+            }
+            long[] ventas = totals.ventas();
+            long[] unidades = totals.unidades();
+            long[] total = totals.totalMinor();
+            for (int i = 0; i < length; i++) {
+                if (match[i] == 0) {
+                    continue;
+                }
+                int group = groupOf(i);
+                // Índices asignados después de dimensionar la consulta
+                if (group >= ventas.length) {
+                    continue;
+                }
+                ventas[group]++;
+                unidades[group] += cantidades[i];
+                total[group] += totalMinor[i];
+            }
+        }
+
+        private int groupOf(int i) {
+            return switch (groupBy) {
+                case DIA -> days[i] - totals.firstKey();
+                case FILIAL -> filiales[i];
+                case PRODUCTO -> productos[i];
+                case CATEGORIA -> categorias[i];
+                case ESTADO -> estados[i];
+                case NINGUNA -> 0;
+            };
+        }
+    }
+
+    /**
+     * Bloque de CHUNK_ROWS filas: una sola reserva de memoria directa dividida en
+     * columnas, con el rango de días y las filiales presentes para descartar
+     * bloques enteros sin leerlos (las ventas llegan casi en orden de fecha)
+     */
+    private static final class Chunk {
+        final LongBuffer ids;
+        final LongBuffer totals;
+        final IntBuffer days;
+        final IntBuffer filiales;
+        final IntBuffer productos;
+        final IntBuffer cantidades;
+        final ByteBuffer categorias;
+        final ByteBuffer estados;
+
+        int minDay = Integer.MAX_VALUE;
+        int maxDay = Integer.MIN_VALUE;
+        // Bit i: hay ventas de la filial i (las de índice 63 o mayor comparten el último bit)
+        long filialMask;
+
+        Chunk() {
+            ByteBuffer memory = ByteBuffer.allocateDirect(CHUNK_ROWS * ROW_BYTES).order(ByteOrder.nativeOrder());
+            ids = column(memory, Long.BYTES).asLongBuffer();
+            totals = column(memory, Long.BYTES).asLongBuffer();
+            days = column(memory, Integer.BYTES).asIntBuffer();
+            filiales = column(memory, Integer.BYTES).asIntBuffer();
+            productos = column(memory, Integer.BYTES).asIntBuffer();
+            cantidades = column(memory, Integer.BYTES).asIntBuffer();
+            categorias = column(memory, 1);
+            estados = column(memory, 1);
+        }
+
+        void include(int epochDay, int filial) {
+            minDay = Math.min(minDay, epochDay);
+            maxDay = Math.max(maxDay, epochDay);
+            filialMask |= filialBit(filial);
+        }
+
+        boolean mayMatch(Filter filter) {
+            return minDay <= filter.toDay() && maxDay >= filter.fromDay()
+                    && (filter.filial() == ANY || (filialMask & filialBit(filter.filial())) != 0);
+        }
+
+        private static long filialBit(int filial) {
+            return 1L << Math.min(filial, 63);
+        }
+
+        // Recorta la siguiente columna del bloque y avanza la posición
+        private static ByteBuffer column(ByteBuffer memory, int width) {
+            int start = memory.position();
+            int end = start + CHUNK_ROWS * width;
+            ByteBuffer column = memory.slice(start, CHUNK_ROWS * width).order(ByteOrder.nativeOrder());
+            memory.position(end);
+            return column;
+        }
+    }
+}
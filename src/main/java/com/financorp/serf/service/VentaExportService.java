@@ -0,0 +1,136 @@
+package com.financorp.serf.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.financorp.serf.dto.VentaDto;
+import com.financorp.serf.model.Venta;
+import com.financorp.serf.repository.VentaRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Exportación completa de ventas en NDJSON o CSV (conciliación externa)
+ *
+ * Lee las ventas de un cursor de solo avance con el tamaño de fetch JDBC
+ * configurado y escribe cada fila en cuanto se lee; el contexto de persistencia
+ * se vacía cada cierto número de filas, por lo que la memoria usada no depende
+ * del número de ventas exportadas.
+ */
+@Service
+public class VentaExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VentaExportService.class);
+
+    // Tamaño del búfer de escritura: cada bloque lleno sale a la respuesta
+    private static final int STREAM_CHUNK_SIZE = 8192;
+
+    private static final String CSV_HEADER = "id,codigoVenta,productoId,productoSku,productoNombre,filialId,"
+            + "filialCodigo,moneda,cantidad,precioUnitario,subtotal,impuesto,montoImpuesto,total,clienteNombre,"
+            + "clienteDocumento,estado,formaPago,fechaVenta,observaciones";
+
+    public enum Formato {
+        NDJSON, CSV
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private VentaRepository ventaRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final int fetchSize;
+    private final int clearEvery;
+
+    public VentaExportService(@Value("${serf.ventas.exportacion.fetch-size:1000}") int fetchSize,
+                              @Value("${serf.ventas.exportacion.clear-every:1000}") int clearEvery) {
+        this.fetchSize = fetchSize;
+        this.clearEvery = clearEvery;
+    }
+
+    /**
+     * Escribe las ventas que cumplen los filtros (los null no se aplican) en el
+     * flujo indicado y devuelve el número de filas exportadas
+     */
+    @Transactional(readOnly = true)
+    public long export(Long filialId, Venta.EstadoVenta estado, LocalDateTime fechaInicio, LocalDateTime fechaFin,
+                       Formato formato, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), STREAM_CHUNK_SIZE);
+        if (formato == Formato.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        long rows = 0;
+        try (Stream<Venta> ventas = ventaRepository.streamForExport(filialId, estado, fechaInicio, fechaFin, fetchSize)) {
+            Iterator<Venta> iterator = ventas.iterator();
+            while (iterator.hasNext()) {
+                VentaDto venta = VentaDto.from(iterator.next());
+                if (formato == Formato.CSV) {
+                    writeCsv(writer, venta);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(venta));
+                    writer.write('\n');
+                }
+                rows++;
+                if (rows == 1) {
+                    // La primera fila sale sin esperar a llenar el búfer
+                    writer.flush();
+                } else if (rows % clearEvery == 0) {
+                    // Libera las entidades ya escritas y envía lo acumulado al cliente
+                    entityManager.clear();
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+        logger.info("Exportadas {} ventas en formato {}", rows, formato);
+        return rows;
+    }
+
+    private static void writeCsv(Writer writer, VentaDto venta) throws IOException {
+        Object[] values = {venta.id(), venta.codigoVenta(), venta.productoId(), venta.productoSku(),
+                venta.productoNombre(), venta.filialId(), venta.filialCodigo(), venta.moneda(), venta.cantidad(),
+                venta.precioUnitario(), venta.subtotal(), venta.impuesto(), venta.montoImpuesto(), venta.total(),
+                venta.clienteNombre(), venta.clienteDocumento(), venta.estado(), venta.formaPago(),
+                venta.fechaVenta(), venta.observaciones()};
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(csvField(values[i] instanceof BigDecimal amount
+                        ? amount.toPlainString() : values[i].toString()));
+            }
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Entrecomilla el campo si contiene separadores, comillas o saltos de línea (RFC 4180)
+     */
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
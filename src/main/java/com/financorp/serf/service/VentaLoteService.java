@@ -0,0 +1,255 @@
+package com.financorp.serf.service;
+
+import com.financorp.serf.dto.VentaLoteItem;
+import com.financorp.serf.dto.VentaLoteResultado;
+import com.financorp.serf.model.Filial;
+import com.financorp.serf.model.Producto;
+import com.financorp.serf.model.Venta;
+import com.financorp.serf.repository.FilialRepository;
+import com.financorp.serf.repository.ProductoRepository;
+import com.financorp.serf.repository.VentaRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Carga masiva de ventas (cierre diario de las filiales)
+ *
+ * Valida todas las filas con unas pocas consultas por lote, descuenta el stock
+ * con un UPDATE condicional por producto e inserta las ventas por lotes JDBC,
+ * vaciando el contexto de persistencia cada hibernate.jdbc.batch_size filas.
+ * Las filas inválidas se rechazan individualmente; las válidas se guardan en
+ * una sola transacción.
+ */
+@Service
+public class VentaLoteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VentaLoteService.class);
+
+    // Tamaño máximo de las listas IN de las consultas de validación
+    private static final int IN_CHUNK_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private VentaRepository ventaRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private FilialRepository filialRepository;
+
+    @Autowired
+    private VentaResumenService ventaResumenService;
+
+    @Autowired
+    private ReportCache reportCache;
+
+    @Autowired
+    private VentaAnalyticsService ventaAnalyticsService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    private final int batchSize;
+    private final int maxRows;
+
+    public VentaLoteService(@Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}") int batchSize,
+                            @Value("${serf.ventas.lote.max-filas:50000}") int maxRows) {
+        this.batchSize = batchSize;
+        this.maxRows = maxRows;
+    }
+
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * Registra un lote de ventas y devuelve el resultado de cada fila
+     */
+    @Transactional
+    public VentaLoteResultado ingest(List<VentaLoteItem> items) {
+        if (items.size() > maxRows) {
+            throw new IllegalArgumentException("El lote supera el máximo de " + maxRows + " ventas");
+        }
+        long start = System.nanoTime();
+        String[] errors = new String[items.size()];
+
+        // Validación de campos y códigos repetidos dentro del lote
+        Set<String> codigos = new HashSet<>();
+        Set<Long> productoIds = new HashSet<>();
+        Set<Long> filialIds = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            VentaLoteItem item = items.get(i);
+            errors[i] = validateFields(item);
+            if (errors[i] == null && !codigos.add(item.codigoVenta())) {
+                errors[i] = "Código de venta repetido en el lote";
+            }
+            if (errors[i] == null) {
+                productoIds.add(item.productoId());
+                filialIds.add(item.filialId());
+            }
+        }
+
+        // Validación contra la base de datos con consultas por bloques
+        // (con el registro de inventario activo, el stock de la tabla puede ir por
+        // detrás; el descuento posterior es el que decide)
+        Set<String> existentes = findExistingCodes(codigos);
+        Map<Long, Producto> productos = new HashMap<>();
+        productoRepository.findAllById(productoIds).forEach(producto -> productos.put(producto.getId(), producto));
+        Map<Long, String> monedas = new HashMap<>();
+        filialRepository.findAllById(filialIds).forEach(filial -> monedas.put(filial.getId(), filial.getMoneda()));
+
+        // Reparto del stock disponible en el orden de llegada
+        Map<Long, Integer> decrements = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (errors[i] != null) {
+                continue;
+            }
+            VentaLoteItem item = items.get(i);
+            Producto producto = productos.get(item.productoId());
+            if (existentes.contains(item.codigoVenta())) {
+                errors[i] = "Ya existe una venta con el código " + item.codigoVenta();
+            } else if (producto == null) {
+                errors[i] = "Producto no encontrado: " + item.productoId();
+            } else if (!monedas.containsKey(item.filialId())) {
+                errors[i] = "Filial no encontrada: " + item.filialId();
+            } else if (!producto.getFilial().getId().equals(item.filialId())) {
+                errors[i] = "El producto " + producto.getSku() + " no pertenece a la filial " + item.filialId();
+            } else {
+                int requested = decrements.getOrDefault(producto.getId(), 0) + item.cantidad();
+                if (requested > producto.getStockActual()) {
+                    errors[i] = "Stock insuficiente para el producto " + producto.getSku();
+                } else {
+                    decrements.put(producto.getId(), requested);
+                }
+            }
+        }
+
+        // Un descuento atómico de stock por producto (UPDATE condicional o registro
+        // en memoria); si otra venta lo consumió desde la validación, se rechazan
+        // todas las filas de ese producto
+        Set<Long> agotados = new HashSet<>();
+        decrements.forEach((productoId, cantidad) -> {
+            if (!productoService.decrementStock(productoId, cantidad)) {
+                agotados.add(productoId);
+            }
+            stockReservationService.invalidate(productoId);
+        });
+        for (int i = 0; i < items.size(); i++) {
+            if (errors[i] == null && agotados.contains(items.get(i).productoId())) {
+                errors[i] = "Stock insuficiente para el producto " + productos.get(items.get(i).productoId()).getSku();
+            }
+        }
+        entityManager.clear();
+
+        // Inserción por lotes JDBC
+        List<Venta> ventas = new ArrayList<>();
+        Long[] ids = new Long[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            if (errors[i] != null) {
+                continue;
+            }
+            Venta venta = toVenta(items.get(i), monedas.get(items.get(i).filialId()));
+            entityManager.persist(venta);
+            ventas.add(venta);
+            ids[i] = venta.getId();
+            if (ventas.size() % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        ventaResumenService.recordSales(ventas);
+        ventaAnalyticsService.recordSales(ventas);
+        if (!ventas.isEmpty()) {
+            // El stock cambia el valor de inventario de cualquier período
+            reportCache.invalidateAll();
+        }
+
+        List<VentaLoteResultado.Fila> resultados = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            String codigo = items.get(i) != null ? items.get(i).codigoVenta() : null;
+            resultados.add(errors[i] == null
+                    ? VentaLoteResultado.Fila.created(i, codigo, ids[i])
+                    : VentaLoteResultado.Fila.rejected(i, codigo, errors[i]));
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        int rejected = (int) Arrays.stream(errors).filter(error -> error != null).count();
+        logger.info("Carga masiva de ventas: {} creadas, {} rechazadas en {} ms",
+                ventas.size(), rejected, elapsedMs);
+        return new VentaLoteResultado(items.size(), ventas.size(), rejected, elapsedMs, resultados);
+    }
+
+    private String validateFields(VentaLoteItem item) {
+        if (item == null) {
+            return "Fila vacía";
+        }
+        if (item.codigoVenta() == null || item.codigoVenta().isBlank()) {
+            return "El código de venta es obligatorio";
+        }
+        if (item.productoId() == null || item.filialId() == null) {
+            return "El producto y la filial son obligatorios";
+        }
+        if (item.cantidad() == null || item.cantidad() <= 0) {
+            return "La cantidad debe ser mayor que cero";
+        }
+        if (item.precioUnitario() == null || item.precioUnitario().signum() < 0) {
+            return "El precio unitario es obligatorio y no puede ser negativo";
+        }
+        if (item.impuesto() != null && item.impuesto().signum() < 0) {
+            return "El impuesto no puede ser negativo";
+        }
+        return null;
+    }
+
+    private Set<String> findExistingCodes(Set<String> codigos) {
+        Set<String> existentes = new HashSet<>();
+        List<String> pending = new ArrayList<>(codigos);
+        for (int from = 0; from < pending.size(); from += IN_CHUNK_SIZE) {
+            List<String> chunk = pending.subList(from, Math.min(from + IN_CHUNK_SIZE, pending.size()));
+            existentes.addAll(ventaRepository.findExistingCodigos(chunk));
+        }
+        return existentes;
+    }
+
+    private Venta toVenta(VentaLoteItem item, String moneda) {
+        Venta venta = new Venta();
+        venta.setCodigoVenta(item.codigoVenta());
+        venta.setMoneda(moneda);
+        // Referencias sin consulta: producto y filial ya se validaron
+        venta.setProducto(entityManager.getReference(Producto.class, item.productoId()));
+        venta.setFilial(entityManager.getReference(Filial.class, item.filialId()));
+        venta.setCantidad(item.cantidad());
+        venta.setPrecioUnitario(item.precioUnitario());
+        venta.setImpuesto(item.impuesto() != null ? item.impuesto() : BigDecimal.ZERO);
+        venta.setEstado(item.estado() != null ? item.estado() : Venta.EstadoVenta.COMPLETADA);
+        venta.setFormaPago(item.formaPago());
+        venta.setFechaVenta(item.fechaVenta());
+        venta.setClienteNombre(item.clienteNombre());
+        venta.setClienteDocumento(item.clienteDocumento());
+        venta.setObservaciones(item.observaciones());
+        return venta;
+    }
+}
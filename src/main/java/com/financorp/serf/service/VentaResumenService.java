@@ -0,0 +1,232 @@
+package com.financorp.serf.service;
+
+import com.financorp.serf.model.Money;
+import com.financorp.serf.model.Venta;
+import com.financorp.serf.model.VentaResumenDiario;
+import com.financorp.serf.repository.FilialRepository;
+import com.financorp.serf.repository.ProductoRepository;
+import com.financorp.serf.repository.VentaRepository;
+import com.financorp.serf.repository.VentaResumenDiarioRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Mantenimiento del acumulado diario de ventas (día, filial, producto, estado)
+ *
+ * Cada alta, modificación o baja de venta aplica su diferencia al acumulado
+ * dentro de la transacción de la propia venta; rebuild() lo recalcula desde
+ * la tabla de ventas para la carga inicial o tras cargas masivas.
+ */
+@Service
+public class VentaResumenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VentaResumenService.class);
+
+    // Intentos de crear y sumar la fila de una clave nueva
+    private static final int NEW_ROW_ATTEMPTS = 3;
+
+    @Autowired
+    private VentaResumenDiarioRepository resumenRepository;
+
+    @Autowired
+    private VentaRepository ventaRepository;
+
+    @Autowired
+    private FilialRepository filialRepository;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    private final TransactionTemplate newRowTransaction;
+
+    public VentaResumenService(PlatformTransactionManager transactionManager) {
+        this.newRowTransaction = new TransactionTemplate(transactionManager);
+        this.newRowTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Suma una venta nueva al acumulado
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordSale(Venta venta) {
+        apply(Snapshot.of(venta), 1);
+    }
+
+    /**
+     * Suma un lote de ventas nuevas al acumulado, con una sola actualización
+     * por combinación de día, filial, producto y estado
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordSales(Collection<Venta> ventas) {
+        Map<Snapshot, Snapshot> totals = new LinkedHashMap<>();
+        for (Venta venta : ventas) {
+            Snapshot snapshot = Snapshot.of(venta);
+            totals.merge(snapshot.key(), snapshot, Snapshot::plus);
+        }
+        for (Snapshot total : totals.values()) {
+            apply(total.dia(), total.filialId(), total.productoId(), total.estado(), total.numeroVentas(),
+                    total.cantidad(), total.subtotalMinor(), total.montoImpuestoMinor(), total.totalMinor());
+        }
+    }
+
+    /**
+     * Sustituye la contribución anterior de una venta modificada por la actual
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void replaceSale(Snapshot before, Venta venta) {
+        apply(before, -1);
+        apply(Snapshot.of(venta), 1);
+        deleteIfEmpty(before);
+    }
+
+    /**
+     * Resta una venta eliminada del acumulado
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removeSale(Venta venta) {
+        Snapshot snapshot = Snapshot.of(venta);
+        apply(snapshot, -1);
+        deleteIfEmpty(snapshot);
+    }
+
+    /**
+     * Recalcula todo el acumulado desde la tabla de ventas
+     * (debe ejecutarse sin altas de ventas concurrentes)
+     */
+    @Transactional
+    public Map<String, Object> rebuild() {
+        long start = System.currentTimeMillis();
+        int deleted = resumenRepository.deleteAllRows();
+        int inserted = resumenRepository.rebuildFromVentas();
+        long elapsed = System.currentTimeMillis() - start;
+        logger.info("Acumulado diario de ventas reconstruido: {} filas en {} ms", inserted, elapsed);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("filasEliminadas", deleted);
+        result.put("filasGeneradas", inserted);
+        result.put("duracionMs", elapsed);
+        return result;
+    }
+
+    /**
+     * Carga inicial: si hay ventas y el acumulado está vacío, lo reconstruye
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillIfEmpty() {
+        if (resumenRepository.count() == 0 && ventaRepository.count() > 0) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Quita la fila de la clave que se acaba de restar si se ha quedado sin ventas
+     */
+    private void deleteIfEmpty(Snapshot snapshot) {
+        resumenRepository.deleteEmpty(snapshot.dia(), snapshot.filialId(), snapshot.productoId(), snapshot.estado());
+    }
+
+    private void apply(Snapshot snapshot, int sign) {
+        apply(snapshot.dia(), snapshot.filialId(), snapshot.productoId(), snapshot.estado(),
+                sign * snapshot.numeroVentas(), sign * snapshot.cantidad(), sign * snapshot.subtotalMinor(),
+                sign * snapshot.montoImpuestoMinor(), sign * snapshot.totalMinor());
+    }
+
+    private void apply(LocalDate dia, Long filialId, Long productoId, Venta.EstadoVenta estado,
+                       long numeroVentas, long cantidad, long subtotalMinor, long montoImpuestoMinor,
+                       long totalMinor) {
+        BigDecimal subtotal = BigDecimal.valueOf(subtotalMinor, Money.STORAGE_SCALE);
+        BigDecimal montoImpuesto = BigDecimal.valueOf(montoImpuestoMinor, Money.STORAGE_SCALE);
+        BigDecimal total = BigDecimal.valueOf(totalMinor, Money.STORAGE_SCALE);
+        int updated = resumenRepository.increment(dia, filialId, productoId, estado,
+                numeroVentas, cantidad, subtotal, montoImpuesto, total);
+        if (updated == 0 && numeroVentas < 0) {
+            logger.warn("Acumulado diario sin fila para {} (filial {}, producto {}); ejecute la reconstrucción",
+                    dia, filialId, productoId);
+            return;
+        }
+        // Dos ventas concurrentes pueden crear la misma fila: se crea vacía en su
+        // propia transacción (la perdedora recibe la violación de unicidad) y se suma.
+        // Si la baja de la última venta de la clave borra la fila vacía antes de la
+        // suma, se vuelve a crear.
+        for (int attempt = 0; updated == 0 && attempt < NEW_ROW_ATTEMPTS; attempt++) {
+            try {
+                newRowTransaction.executeWithoutResult(status -> resumenRepository.saveAndFlush(
+                        emptyRow(dia, filialId, productoId, estado)));
+            } catch (DataIntegrityViolationException e) {
+                logger.debug("Fila del acumulado creada por otra transacción: {} {} {}", dia, filialId, productoId);
+            }
+            updated = resumenRepository.increment(dia, filialId, productoId, estado,
+                    numeroVentas, cantidad, subtotal, montoImpuesto, total);
+        }
+        if (updated == 0) {
+            throw new IllegalStateException("No se pudo crear la fila del acumulado diario para " + dia
+                    + " (filial " + filialId + ", producto " + productoId + ")");
+        }
+    }
+
+    private VentaResumenDiario emptyRow(LocalDate dia, Long filialId, Long productoId, Venta.EstadoVenta estado) {
+        VentaResumenDiario row = new VentaResumenDiario();
+        row.setDia(dia);
+        row.setFilial(filialRepository.getReferenceById(filialId));
+        row.setProducto(productoRepository.getReferenceById(productoId));
+        row.setEstado(estado);
+        return row;
+    }
+
+    /**
+     * Contribución de una venta al acumulado, con los importes en unidades menores
+     * a la escala de las columnas (las sumas del lote no crean BigDecimal)
+     */
+    public record Snapshot(LocalDate dia, Long filialId, Long productoId, Venta.EstadoVenta estado,
+                           long numeroVentas, long cantidad, long subtotalMinor, long montoImpuestoMinor,
+                           long totalMinor) {
+
+        public static Snapshot of(Venta venta) {
+            return new Snapshot(venta.getFechaVenta().toLocalDate(),
+                    venta.getFilial().getId(),
+                    venta.getProducto().getId(),
+                    venta.getEstado(),
+                    1,
+                    venta.getCantidad(),
+                    minor(venta.getSubtotal()),
+                    minor(venta.getMontoImpuesto()),
+                    minor(venta.getTotal()));
+        }
+
+        /**
+         * Clave de la fila del acumulado (sin importes)
+         */
+        Snapshot key() {
+            return new Snapshot(dia, filialId, productoId, estado, 0, 0, 0, 0, 0);
+        }
+
+        Snapshot plus(Snapshot other) {
+            return new Snapshot(dia, filialId, productoId, estado, numeroVentas + other.numeroVentas,
+                    cantidad + other.cantidad, Math.addExact(subtotalMinor, other.subtotalMinor),
+                    Math.addExact(montoImpuestoMinor, other.montoImpuestoMinor),
+                    Math.addExact(totalMinor, other.totalMinor));
+        }
+
+        private static long minor(BigDecimal value) {
+            return Money.toMinor(value, Money.STORAGE_SCALE, RoundingMode.HALF_UP);
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package com.financorp.serf.service;
 
+import com.financorp.serf.dto.Pagina;
+import com.financorp.serf.model.Moneda;
+import com.financorp.serf.model.Money;
 import com.financorp.serf.model.Producto;
 import com.financorp.serf.model.Venta;
 import com.financorp.serf.repository.VentaRepository;
+import com.financorp.serf.repository.VentaResumenDiarioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 
 @Service
@@ -16,13 +21,54 @@ public class VentaService {
     @Autowired
     private VentaRepository ventaRepository;
     
+    @Autowired
+    private VentaResumenDiarioRepository ventaResumenRepository;
+    
     @Autowired
     private ProductoService productoService;
     
+    @Autowired
+    private FilialService filialService;
+    
+    @Autowired
+    private ReportCache reportCache;
+    
+    @Autowired
+    private VentaResumenService ventaResumenService;
+    
+    @Autowired
+    private KeysetPagination keysetPagination;
+    
+    @Autowired
+    private VentaAnalyticsService ventaAnalyticsService;
+    
     public List<Venta> getAllVentas() {
         return ventaRepository.findAll();
     }
     
+    /**
+     * Página de ventas de la más reciente a la más antigua, con filtros opcionales;
+     * el cursor es el siguienteCursor de la página anterior (null para la primera)
+     */
+    public Pagina<Venta> getVentasPage(Long filialId, Venta.EstadoVenta estado, LocalDateTime desde,
+                                       LocalDateTime hasta, String cursor, Integer limite) {
+        int limit = keysetPagination.limit(limite);
+        String[] key = keysetPagination.decode(cursor, 2);
+        LocalDateTime afterFecha = null;
+        Long afterId = null;
+        if (key != null) {
+            try {
+                afterFecha = LocalDateTime.parse(key[0]);
+                afterId = Long.valueOf(key[1]);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido", e);
+            }
+        }
+        List<Venta> rows = ventaRepository.findPage(filialId, estado, desde, hasta, afterFecha, afterId, limit + 1);
+        return keysetPagination.page(rows, limit,
+                venta -> keysetPagination.encode(venta.getFechaVenta(), venta.getId()));
+    }
+    
     public Venta getVentaById(Long id) {
         return ventaRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Venta no encontrada"));
@@ -47,22 +93,40 @@ public class VentaService {
     
     @Transactional
     public Venta createVenta(Venta venta) {
-        // Actualizar stock del producto
-        Producto producto = venta.getProducto();
-        int nuevoStock = producto.getStockActual() - venta.getCantidad();
+        if (venta.getCantidad() == null || venta.getCantidad() <= 0) {
+            throw new RuntimeException("La cantidad debe ser mayor que cero");
+        }
+        
+        // La moneda de la filial fija los decimales y el redondeo de los totales
+        if (venta.getMoneda() == null && venta.getFilial() != null && venta.getFilial().getId() != null) {
+            venta.setMoneda(filialService.getFilialById(venta.getFilial().getId()).getMoneda());
+        }
         
-        if (nuevoStock < 0) {
+        // Productos de alta demanda: si la reserva en memoria falla no se toca la base de datos
+        Producto producto = venta.getProducto();
+        if (!productoService.reserveStock(producto.getId(), venta.getCantidad())) {
             throw new RuntimeException("Stock insuficiente para completar la venta");
         }
         
-        productoService.updateStock(producto.getId(), nuevoStock);
+        // Guardar la venta primero: las filas más disputadas (stock del producto y
+        // acumulado del día) se actualizan al final y su lock dura solo hasta el commit
+        Venta saved = ventaRepository.saveAndFlush(venta);
+        
+        // Descuento atómico del stock del producto
+        if (!productoService.decrementStock(producto.getId(), venta.getCantidad())) {
+            throw new RuntimeException("Stock insuficiente para completar la venta");
+        }
         
-        // Guardar la venta
-        return ventaRepository.save(venta);
+        ventaResumenService.recordSale(saved);
+        ventaAnalyticsService.recordSale(saved);
+        reportCache.invalidatePeriod(saved.getFechaVenta());
+        return saved;
     }
     
+    @Transactional
     public Venta updateVenta(Long id, Venta venta) {
         Venta existing = getVentaById(id);
+        VentaResumenService.Snapshot before = VentaResumenService.Snapshot.of(existing);
         existing.setCantidad(venta.getCantidad());
         existing.setPrecioUnitario(venta.getPrecioUnitario());
         existing.setImpuesto(venta.getImpuesto());
@@ -71,14 +135,29 @@ public class VentaService {
         existing.setEstado(venta.getEstado());
         existing.setFormaPago(venta.getFormaPago());
         existing.setObservaciones(venta.getObservaciones());
-        return ventaRepository.save(existing);
+        // Flush para que @PreUpdate recalcule los totales antes de actualizar el acumulado
+        Venta saved = ventaRepository.saveAndFlush(existing);
+        ventaResumenService.replaceSale(before, saved);
+        ventaAnalyticsService.replaceSale(saved);
+        reportCache.invalidatePeriod(saved.getFechaVenta());
+        return saved;
     }
     
+    @Transactional
     public void deleteVenta(Long id) {
-        ventaRepository.deleteById(id);
+        ventaRepository.findById(id).ifPresent(venta -> {
+            ventaResumenService.removeSale(venta);
+            ventaAnalyticsService.removeSale(venta.getId());
+            ventaRepository.delete(venta);
+            reportCache.invalidatePeriod(venta.getFechaVenta());
+        });
     }
     
-    public Double getTotalVentasByFilial(Long filialId) {
-        return ventaRepository.getTotalVentasByFilial(filialId);
+    /**
+     * Total de las ventas completadas de una filial en su moneda
+     */
+    public Money getTotalVentasByFilial(Long filialId) {
+        Moneda moneda = Moneda.of(filialService.getFilialById(filialId).getMoneda());
+        return Money.of(ventaResumenRepository.getTotalVentasByFilial(filialId), moneda);
     }
 }
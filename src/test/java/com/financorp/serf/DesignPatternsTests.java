@@ -1,15 +1,84 @@
 package com.financorp.serf;
 
+import com.financorp.serf.dto.Pagina;
+import com.financorp.serf.dto.ProductoDto;
+import com.financorp.serf.dto.VentaLoteItem;
+import com.financorp.serf.dto.VentaLoteResultado;
+import com.financorp.serf.metrics.ReportMetrics;
+import com.financorp.serf.model.Filial;
+import com.financorp.serf.model.Moneda;
+import com.financorp.serf.model.Money;
+import com.financorp.serf.model.Producto;
+import com.financorp.serf.model.Venta;
+import com.financorp.serf.metrics.ServerTiming;
 import com.financorp.serf.patterns.creational.AppConfiguration;
+import com.financorp.serf.patterns.creational.FilialFigures;
 import com.financorp.serf.patterns.creational.FinancialReportBuilder;
 import com.financorp.serf.patterns.creational.ReportConfiguration;
 import com.financorp.serf.patterns.creational.ReportFactory;
+import com.financorp.serf.patterns.creational.ReportTemplate;
+import com.financorp.serf.patterns.structural.BasicReport;
+import com.financorp.serf.patterns.structural.ColumnarReportTable;
+import com.financorp.serf.patterns.structural.ParallelSectionRenderer;
 import com.financorp.serf.patterns.structural.Report;
+import com.financorp.serf.patterns.structural.ReportContent;
+import com.financorp.serf.patterns.structural.ReportSection;
+import com.financorp.serf.patterns.structural.ReportTable;
+import com.financorp.serf.service.CatalogCache;
+import com.financorp.serf.service.ExcelExportService;
+import com.financorp.serf.service.FilialService;
+import com.financorp.serf.service.FxRateMatrix;
+import com.financorp.serf.service.FxRateService;
+import com.financorp.serf.service.LowStockIndex;
+import com.financorp.serf.service.ProductoService;
+import com.financorp.serf.service.ReportCache;
+import com.financorp.serf.service.ReportJobService;
+import com.financorp.serf.service.ReportService;
+import com.financorp.serf.service.RowBitmap;
+import com.financorp.serf.service.VentaAnalyticsService;
+import com.financorp.serf.service.VentaColumnStore;
+import com.financorp.serf.service.VentaExportService;
+import com.financorp.serf.service.VentaLoteService;
+import com.financorp.serf.service.VentaResumenService;
+import com.financorp.serf.service.VentaService;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -19,6 +88,38 @@ import static org.junit.jupiter.api.Assertions.*;
 @SpringBootTest
 class DesignPatternsTests {
     
+    private static final int BULK_ROWS = 2000;
+    
+    @Autowired
+    private ReportService reportService;
+    
+    @Autowired
+    private VentaService ventaService;
+    
+    @Autowired
+    private VentaResumenService ventaResumenService;
+    
+    @Autowired
+    private FilialService filialService;
+    
+    @Autowired
+    private ProductoService productoService;
+    
+    @Autowired
+    private VentaLoteService ventaLoteService;
+    
+    @Autowired
+    private VentaExportService ventaExportService;
+    
+    @Autowired
+    private VentaAnalyticsService ventaAnalyticsService;
+    
+    @Autowired
+    private FxRateService fxRateService;
+    
+    @Autowired
+    private LowStockIndex lowStockIndex;
+    
     /**
      * Test del patrón Singleton
      */
@@ -154,6 +255,1058 @@ class DesignPatternsTests {
         assertTrue(generated.contains("AUDITORÍA"));
     }
     
+    /**
+     * Test de escritura en streaming a través de la cadena de decoradores
+     */
+    @Test
+    void testStreamingReportOutput() throws IOException {
+        Report report = new FinancialReportBuilder()
+                .setTitle("Reporte en Streaming")
+                .setReportType("Streaming Test Report")
+                .setCountry("México")
+                .setPeriod(LocalDateTime.now().minusMonths(1), LocalDateTime.now())
+                .includeCharts(true)
+                .withHeader(true)
+                .withFooter(true, "Test User")
+                .withWatermark(true)
+                .withDigitalSignature(true, "Director Financiero", "CFO")
+                .build();
+        
+        StringWriter writer = new StringWriter();
+        report.writeTo(writer);
+        
+        assertEquals(report.generate(), writer.toString());
+        assertTrue(writer.toString().startsWith("╔"));
+        assertTrue(writer.toString().contains("Reporte en Streaming"));
+    }
+    
+    /**
+     * Test de la caché de reportes renderizados (LRU, invalidación por período)
+     */
+    @Test
+    void testReportCache() {
+        ReportCache cache = new ReportCache(true, 2, 1_000_000, 1_000_000, 300);
+        LocalDateTime inicio = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime fin = LocalDateTime.of(2024, 1, 31, 23, 59, 59);
+        ReportConfiguration enero = ReportConfiguration.builder()
+                .country("España").startDate(inicio).endDate(fin).generatedBy("Test").build();
+        ReportConfiguration eneroNormalizable = ReportConfiguration.builder()
+                .country(" España ").startDate(inicio).endDate(fin).generatedBy("Test").build();
+        
+        String primero = cache.getOrCreate(ReportFactory.ReportType.SALES, enero,
+                () -> ReportFactory.createReport(ReportFactory.ReportType.SALES, enero)).generate();
+        String segundo = cache.getOrCreate(ReportFactory.ReportType.SALES, eneroNormalizable,
+                () -> fail("Debe reutilizar el reporte cacheado")).generate();
+        assertEquals(primero, segundo);
+        
+        // Una venta fuera del período no invalida; una dentro sí
+        cache.invalidatePeriod(LocalDateTime.of(2024, 3, 1, 12, 0));
+        assertEquals(1, cache.getStatistics().get("entradas"));
+        cache.invalidatePeriod(LocalDateTime.of(2024, 1, 15, 12, 0));
+        assertEquals(0, cache.getStatistics().get("entradas"));
+        
+        // Capacidad de 2 entradas: la tercera desaloja la menos usada
+        for (ReportFactory.ReportType type : List.of(ReportFactory.ReportType.SALES,
+                ReportFactory.ReportType.INVENTORY, ReportFactory.ReportType.BRANCH)) {
+            cache.getOrCreate(type, enero, () -> ReportFactory.createReport(type, enero)).generate();
+        }
+        
+        Map<String, Object> stats = cache.getStatistics();
+        assertEquals(2, stats.get("entradas"));
+        assertEquals(1L, stats.get("aciertos"));
+        assertEquals(4L, stats.get("fallos"));
+        assertEquals(1L, stats.get("desalojos"));
+        
+        // Dentro de una transacción la invalidación espera al commit
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidatePeriod(LocalDateTime.of(2024, 1, 15, 12, 0));
+            assertEquals(2, cache.getStatistics().get("entradas"));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(0, cache.getStatistics().get("entradas"));
+        
+        // Los cambios de stock invalidan solo los reportes con inventario, una vez por transacción
+        cache.getOrCreate(ReportFactory.ReportType.SALES, enero,
+                () -> ReportFactory.createReport(ReportFactory.ReportType.SALES, enero)).generate();
+        cache.getOrCreate(ReportFactory.ReportType.INVENTORY, enero,
+                () -> ReportFactory.createReport(ReportFactory.ReportType.INVENTORY, enero), () -> true, true).generate();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidateInventory();
+            cache.invalidateInventory();
+            assertEquals(1, TransactionSynchronizationManager.getSynchronizations().size());
+            assertEquals(2, cache.getStatistics().get("entradas"));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(1, cache.getStatistics().get("entradas"));
+        assertNotNull(cache.getOrCreate(ReportFactory.ReportType.SALES, enero, () -> fail("Debe seguir cacheado")));
+        
+        // Solo se guarda tras escribirse, y no si supera el tamaño máximo de una entrada
+        ReportCache small = new ReportCache(true, 10, 100, 100, 300);
+        Report streamed = small.getOrCreate(ReportFactory.ReportType.SALES, enero,
+                () -> ReportFactory.createReport(ReportFactory.ReportType.SALES, enero));
+        assertEquals(0, small.getStatistics().get("entradas"));
+        assertEquals(primero, streamed.generate());
+        assertEquals(0, small.getStatistics().get("entradas"));
+        assertEquals(0L, small.getStatistics().get("caracteres"));
+        
+        // El límite total de caracteres desaloja las entradas menos usadas
+        ReportCache bounded = new ReportCache(true, 10, primero.length() + 1, primero.length() + 1, 300);
+        for (ReportFactory.ReportType type : List.of(ReportFactory.ReportType.SALES,
+                ReportFactory.ReportType.INVENTORY)) {
+            bounded.getOrCreate(type, enero, () -> ReportFactory.createReport(type, enero)).generate();
+        }
+        assertEquals(1, bounded.getStatistics().get("entradas"));
+        assertTrue((Long) bounded.getStatistics().get("caracteres") <= primero.length() + 1);
+    }
+    
+    /**
+     * Test de la tabla columnar como reemplazo directo de ReportTable
+     */
+    @Test
+    void testColumnarReportTableMatchesReportTable() {
+        ReportTable table = new ReportTable("Inventario", 2);
+        ColumnarReportTable columnar = new ColumnarReportTable("Inventario", 2);
+        
+        List<String> headers = List.of("SKU", "Producto", "Stock");
+        table.setHeaders(headers);
+        columnar.setHeaders(headers);
+        for (int i = 0; i < 100; i++) {
+            List<String> row = List.of("SKU-" + i, "Producto de prueba número " + i, String.valueOf(i * 7));
+            table.addRow(row);
+            columnar.addRow(row);
+        }
+        
+        assertEquals(100, columnar.getRowCount());
+        assertEquals("SKU-42", columnar.getValue(42, 0));
+        assertEquals(table.render(), columnar.render());
+    }
+    
+    /**
+     * Test de exportación a Excel del árbol Composite
+     */
+    @Test
+    void testExcelExport() throws IOException {
+        Report report = new FinancialReportBuilder()
+                .setTitle("Reporte Excel")
+                .setReportType("Excel Test Report")
+                .setCountry("España")
+                .addFilial("ES-001")
+                .includeCharts(true)
+                .withWatermark(true)
+                .build();
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ExcelExportService().export(report, out);
+        
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet datos = workbook.getSheet("Datos Consolidados");
+            assertNotNull(datos);
+            assertEquals("Resumen por Filial", datos.getRow(1).getCell(0).getStringCellValue());
+            assertEquals("Filial", datos.getRow(2).getCell(0).getStringCellValue());
+            assertEquals("ES-001", datos.getRow(3).getCell(0).getStringCellValue());
+            assertNotNull(workbook.getSheet("Análisis Gráfico"));
+        }
+        
+        // Códigos con ceros a la izquierda y números de más de 15 cifras quedan como texto
+        ReportTable codigos = new ReportTable("Códigos", 1);
+        codigos.setHeaders(List.of("Código", "Documento", "Importe", "Cero"));
+        codigos.addRow(List.of("007", "12345678901234567", "-1234.50", "0.25"));
+        out.reset();
+        new ExcelExportService().export(new BasicReport("Códigos", "Excel Test Report", codigos), out);
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Row fila = workbook.getSheetAt(0).getRow(2);
+            assertEquals("007", fila.getCell(0).getStringCellValue());
+            assertEquals("12345678901234567", fila.getCell(1).getStringCellValue());
+            assertEquals(-1234.5, fila.getCell(2).getNumericCellValue());
+            assertEquals(0.25, fila.getCell(3).getNumericCellValue());
+        }
+    }
+    
+    /**
+     * Test de plantillas precompiladas: mismo texto que el Builder completo
+     */
+    @Test
+    void testCompiledTemplatesMatchBuilder() {
+        ReportConfiguration config = ReportConfiguration.builder()
+                .country("Perú")
+                .startDate(LocalDateTime.now().minusMonths(1))
+                .endDate(LocalDateTime.now())
+                .filiales(List.of("PE-001 - Filial Lima"))
+                .confidential(true)
+                .requireAudit(true)
+                .auditor("Auditor Interno")
+                .auditNotes("Sin observaciones")
+                .generatedBy("Test User")
+                .build();
+        
+        for (ReportFactory.ReportType type : ReportFactory.ReportType.values()) {
+            String templated = withoutTimestamps(ReportFactory.createReport(type, config).generate());
+            String built = withoutTimestamps(ReportFactory.buildReport(type, config).generate());
+            assertEquals(built, templated, "Plantilla distinta del Builder para " + type);
+        }
+        
+        // Con más títulos que el límite se desaloja de una en una, sin vaciar el resto
+        for (int i = 0; i < 300; i++) {
+            ReportConfiguration filial = ReportConfiguration.builder()
+                    .country("Perú")
+                    .filiales(List.of("PE-" + i + " - Filial de prueba"))
+                    .generatedBy("Test User")
+                    .build();
+            ReportFactory.createReport(ReportFactory.ReportType.BRANCH, filial);
+        }
+        assertEquals(256, ReportTemplate.getCompiledTemplateCount());
+    }
+    
+    private static String withoutTimestamps(String report) {
+        // La fecha del pie, la de auditoría y el código de firma dependen del instante de creación
+        return report.lines()
+                .filter(line -> !line.startsWith("Fecha y hora:")
+                        && !line.startsWith("│ Fecha:")
+                        && !line.startsWith("Código de firma:"))
+                .collect(Collectors.joining("\n"));
+    }
+    
+    /**
+     * Test del renderizado paralelo: salida idéntica a la secuencial
+     */
+    @Test
+    void testParallelRenderingMatchesSerial() {
+        ReportSection root = new ReportSection("Consolidado", 1);
+        for (int f = 0; f < 6; f++) {
+            ReportSection filial = new ReportSection("Filial " + f, 2);
+            filial.add(new ReportContent("Resumen", "Datos de la filial " + f, 3));
+            ColumnarReportTable ventas = new ColumnarReportTable("Ventas", 3);
+            ventas.setHeaders(List.of("Código", "Producto", "Total"));
+            ReportTable inventario = new ReportTable("Inventario", 3);
+            inventario.setHeaders(List.of("SKU", "Stock"));
+            for (int i = 0; i < 2000; i++) {
+                ventas.addRow("V-" + f + "-" + i, "Producto " + (i % 37), String.valueOf(i * 13));
+                inventario.addRow(List.of("SKU-" + i, String.valueOf(i % 100)));
+            }
+            filial.add(ventas);
+            filial.add(inventario);
+            root.add(filial);
+        }
+        
+        String serial = root.render();
+        
+        ParallelSectionRenderer renderer = new ParallelSectionRenderer(true, 4, 1000);
+        try {
+            assertTrue(renderer.isEnabled());
+            root.setParallelRenderer(renderer);
+            String parallel = root.render();
+            
+            assertEquals(serial, parallel);
+        } finally {
+            renderer.shutdown();
+        }
+    }
+    
+    /**
+     * Test de trabajos asíncronos: cola acotada, rechazo, cancelación y resultado
+     */
+    @Test
+    void testReportJobQueue() throws InterruptedException {
+        ReportJobService jobs = new ReportJobService(1, 1, 30, 500);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        
+        try {
+            ReportJobService.ReportJob running = jobs.submit("SALES", "España", () -> {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ReportFactory.createSimpleReport(ReportFactory.ReportType.SALES, "España", "Test");
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            
+            // Un worker ocupado y un hueco en la cola: el tercer trabajo se rechaza
+            ReportJobService.ReportJob queued = jobs.submit("INVENTORY", "México",
+                    () -> ReportFactory.createSimpleReport(ReportFactory.ReportType.INVENTORY, "México", "Test"));
+            assertThrows(RejectedExecutionException.class, () -> jobs.submit("FINANCIAL", "Perú",
+                    () -> ReportFactory.createSimpleReport(ReportFactory.ReportType.FINANCIAL, "Perú", "Test")));
+            
+            assertTrue(jobs.cancel(queued.getId()));
+            assertEquals(ReportJobService.EstadoTrabajo.CANCELADO, queued.getEstado());
+            assertFalse(jobs.cancel(queued.getId()));
+            
+            release.countDown();
+            for (int i = 0; i < 100 && !running.getEstado().isFinal(); i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(ReportJobService.EstadoTrabajo.COMPLETADO, running.getEstado());
+            assertTrue(jobs.takeResult(running.getId()).orElseThrow().contains("Reporte de Ventas"));
+            // El resultado se descarta una vez descargado
+            assertTrue(jobs.takeResult(running.getId()).isEmpty());
+            assertEquals(true, running.toStatus().get("descargado"));
+            assertEquals(running, jobs.getJob(running.getId()).orElseThrow());
+            assertEquals(30, jobs.getStatistics().get("timeoutSegundos"));
+        } finally {
+            release.countDown();
+            jobs.shutdown();
+        }
+    }
+    
+    /**
+     * Test de renderizado memoizado: solo se vuelven a renderizar los subárboles modificados
+     */
+    @Test
+    void testMemoizedRendering() {
+        AtomicInteger renders = new AtomicInteger();
+        ReportSection root = new ReportSection("Vista Consolidada", 1);
+        ReportSection resumen = new ReportSection("Resumen", 2);
+        resumen.add(new ReportContent("Estado", "Sin cambios", 3) {
+            @Override
+            protected void renderContent(Appendable out) throws IOException {
+                renders.incrementAndGet();
+                super.renderContent(out);
+            }
+        });
+        ReportSection ventas = new ReportSection("Ventas", 2);
+        ReportTable tabla = new ReportTable("Ventas del día", 3);
+        tabla.setHeaders(List.of("Código", "Total"));
+        tabla.addRow(List.of("V-1", "100"));
+        ventas.add(tabla);
+        root.add(resumen);
+        root.add(ventas);
+        
+        root.setMemoized(true);
+        String first = root.render();
+        assertEquals(first, root.render());
+        assertEquals(1, renders.get());
+        assertFalse(root.isDirty());
+        
+        // Una venta nueva solo ensucia la tabla y sus ancestros
+        tabla.addRow(List.of("V-2", "250"));
+        assertTrue(tabla.isDirty());
+        assertTrue(ventas.isDirty());
+        assertTrue(root.isDirty());
+        assertFalse(resumen.isDirty());
+        
+        String second = root.render();
+        assertEquals(1, renders.get());
+        assertTrue(second.contains("V-2"));
+        
+        // Mover la tabla a otra sección la quita de la anterior y ensucia ambas
+        resumen.add(tabla);
+        assertEquals(0, ventas.getChildCount());
+        assertTrue(ventas.isDirty());
+        assertTrue(resumen.isDirty());
+        String third = root.render();
+        assertEquals(1, renders.get());
+        assertEquals(third.indexOf("V-2"), third.lastIndexOf("V-2"));
+        
+        root.setMemoized(false);
+        assertEquals(third, root.render());
+        assertEquals(2, renders.get());
+        
+        // Sin memoización los cambios no recorren los ancestros ni guardan renderizados
+        tabla.addRow(List.of("V-3", "80"));
+        assertTrue(root.render().contains("V-3"));
+        assertTrue(root.isDirty());
+    }
+    
+    /**
+     * Test de métricas del pipeline: timers por etapa y decorador y cabecera Server-Timing
+     */
+    @Test
+    void testReportMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        ServerTiming timing = ReportMetrics.startServerTiming();
+        try {
+            ReportConfiguration config = ReportConfiguration.builder()
+                    .country("España")
+                    .startDate(LocalDateTime.of(2024, 1, 1, 0, 0))
+                    .endDate(LocalDateTime.of(2024, 3, 31, 23, 59))
+                    .generatedBy("Test")
+                    .build();
+            ReportFactory.buildReport(ReportFactory.ReportType.SALES, config).generate();
+        } finally {
+            ReportMetrics.stopServerTiming();
+            Metrics.removeRegistry(registry);
+        }
+        
+        Timer builder = registry.find("serf.reportes.builder").tags("tipo", "SALES", "pais", "espana").timer();
+        assertNotNull(builder);
+        assertEquals(1, builder.count());
+        assertNotNull(registry.find("serf.reportes.renderizado").tag("tipo", "SALES").timer());
+        assertNotNull(registry.find("serf.reportes.decorador").tag("decorador", "FooterDecorator").timer());
+        assertNotNull(registry.find("serf.reportes.decorador").tag("decorador", "HeaderDecorator").timer());
+        
+        assertTrue(timing.getStageNanos(ServerTiming.Stage.BUILD) > 0);
+        assertTrue(timing.getStageNanos(ServerTiming.Stage.RENDER) > 0);
+        assertTrue(timing.getStageNanos(ServerTiming.Stage.DECORATE) > 0);
+        String header = timing.toHeaderValue();
+        assertTrue(header.startsWith("build;dur="));
+        assertTrue(header.contains("decorate;dur="));
+        assertTrue(header.contains("total;dur="));
+    }
+    
+    /**
+     * Test del reporte consolidado con cifras reales y datos parciales por filial
+     */
+    @Test
+    void testConsolidatedReportWithFilialData() {
+        String partial = new FinancialReportBuilder()
+                .setTitle("Consolidado")
+                .setReportType("Reporte Financiero Consolidado")
+                .addFilial("ES-001 - Filial Madrid")
+                .addFilial("MX-001 - Filial Ciudad de México")
+                .withDataProvider((filiales, start, end) -> Map.of("ES-001 - Filial Madrid",
+                        new FilialFigures("EUR", new BigDecimal("1234.5"), new BigDecimal("800"), new BigDecimal("25.55"))))
+                .build()
+                .generate();
+        
+        assertTrue(partial.contains("EUR 1,234.50"));
+        assertTrue(partial.contains("EUR 800.00"));
+        assertTrue(partial.contains("25.6%"));
+        assertTrue(partial.contains("N/D"));
+        assertTrue(partial.contains("Datos parciales: 1 filial(es)"));
+        
+        // Con cifras consolidables, el total de una respuesta incompleta se marca como parcial
+        String partialTotal = new FinancialReportBuilder()
+                .setTitle("Consolidado")
+                .setReportType("Reporte Financiero Consolidado")
+                .addFilial("ES-001 - Filial Madrid")
+                .addFilial("MX-001 - Filial Ciudad de México")
+                .withDataProvider((filiales, start, end) -> Map.of("ES-001 - Filial Madrid",
+                        new FilialFigures("EUR", new BigDecimal("1234.5"), new BigDecimal("800"), null,
+                                "EUR", new BigDecimal("1234.5"), new BigDecimal("800"))))
+                .build()
+                .generate();
+        assertTrue(partialTotal.contains("Total consolidado (EUR, parcial: faltan 1 filial(es))"));
+        
+        LocalDateTime now = LocalDateTime.now();
+        String consolidated = reportService.generateConsolidatedReport(now.minusDays(60), now.plusDays(1), "Test");
+        String madrid = consolidated.lines()
+                .filter(line -> line.contains("ES-001 - Filial Madrid"))
+                .findFirst()
+                .orElseThrow();
+        assertTrue(madrid.contains("│ EUR "));
+        assertFalse(consolidated.contains("Datos parciales"));
+    }
+    
+    /**
+     * Test de las estadísticas de filial calculadas con consultas agregadas
+     */
+    @Test
+    void testFilialStatisticsBreakdowns() {
+        String stats = reportService.getFilialStatistics(1L);
+        
+        assertTrue(stats.contains("Total de ventas: "));
+        assertTrue(stats.contains("Inventario por categoría:"));
+        assertTrue(stats.contains("Ventas por estado:"));
+        assertTrue(stats.contains("Completada"));
+        assertTrue(stats.contains("Ventas completadas por forma de pago:"));
+        assertTrue(stats.contains("Tarjeta de Crédito"));
+        assertTrue(stats.contains("Ventas completadas por día"));
+        assertTrue(stats.lines().anyMatch(line -> line.matches("\\s+\\d{4}-\\d{2}-\\d{2}\\s+\\d+ ventas.*")));
+    }
+    
+    /**
+     * Test del acumulado diario de ventas: alta, modificación, baja y reconstrucción
+     */
+    @Test
+    void testDailySalesRollup() {
+        Filial filial = filialService.getFilialByCodigo("ES-001");
+        Producto producto = productoService.getProductoBySku("PHN-001");
+        Money before = ventaService.getTotalVentasByFilial(filial.getId());
+        Money venta121 = Money.of(new BigDecimal("121"), Moneda.EUR);
+        
+        Venta venta = new Venta();
+        venta.setCodigoVenta("ES-001-V-ROLLUP");
+        venta.setProducto(producto);
+        venta.setFilial(filial);
+        venta.setCantidad(1);
+        venta.setPrecioUnitario(new BigDecimal("100"));
+        venta.setImpuesto(new BigDecimal("21"));
+        venta.setEstado(Venta.EstadoVenta.COMPLETADA);
+        venta.setFormaPago("Efectivo");
+        Venta saved = ventaService.createVenta(venta);
+        assertEquals(before.plus(venta121), ventaService.getTotalVentasByFilial(filial.getId()));
+        
+        venta.setCantidad(2);
+        ventaService.updateVenta(saved.getId(), venta);
+        assertEquals(before.plus(venta121.times(2)), ventaService.getTotalVentasByFilial(filial.getId()));
+        
+        ventaService.deleteVenta(saved.getId());
+        assertEquals(before, ventaService.getTotalVentasByFilial(filial.getId()));
+        
+        ventaResumenService.rebuild();
+        assertEquals(before, ventaService.getTotalVentasByFilial(filial.getId()));
+    }
+    
+    /**
+     * Test de la carga masiva de ventas: filas válidas por lotes y rechazos individuales
+     */
+    @Test
+    void testBulkSaleIngestion() {
+        Filial madrid = filialService.getFilialByCodigo("ES-001");
+        Filial mexico = filialService.getFilialByCodigo("MX-001");
+        Producto producto = new Producto();
+        producto.setSku("BULK-001");
+        producto.setNombre("Cargador USB-C");
+        producto.setCategoria(Producto.CategoriaProducto.ACCESORIO);
+        producto.setMarca("Anker");
+        producto.setModelo("PowerPort");
+        producto.setPrecioCompra(new BigDecimal("20"));
+        producto.setPrecioVenta(new BigDecimal("100"));
+        producto.setStockActual(BULK_ROWS);
+        producto.setFilial(madrid);
+        Long productoId = productoService.createProducto(producto).getId();
+        Money before = ventaService.getTotalVentasByFilial(madrid.getId());
+        
+        List<VentaLoteItem> items = new ArrayList<>();
+        LocalDateTime fecha = LocalDateTime.now().minusHours(1);
+        for (int i = 0; i < BULK_ROWS; i++) {
+            items.add(new VentaLoteItem("ES-001-L-" + i, productoId, madrid.getId(), 1, new BigDecimal("100"),
+                    new BigDecimal("21"), Venta.EstadoVenta.COMPLETADA, "Efectivo", fecha, null, null, null));
+        }
+        items.add(new VentaLoteItem("ES-001-L-0", productoId, madrid.getId(), 1, new BigDecimal("100"),
+                null, null, null, fecha, null, null, null));
+        items.add(new VentaLoteItem("ES-001-L-X", productoId, madrid.getId(), 1, new BigDecimal("100"),
+                null, null, null, fecha, null, null, null));
+        items.add(new VentaLoteItem("MX-001-L-1", productoId, mexico.getId(), 1, new BigDecimal("100"),
+                null, null, null, fecha, null, null, null));
+        items.add(new VentaLoteItem("ES-001-L-Y", -1L, madrid.getId(), 1, new BigDecimal("100"),
+                null, null, null, fecha, null, null, null));
+        items.add(new VentaLoteItem("ES-001-L-Z", productoId, madrid.getId(), 0, new BigDecimal("100"),
+                null, null, null, fecha, null, null, null));
+        
+        VentaLoteResultado result = ventaLoteService.ingest(items);
+        
+        assertEquals(BULK_ROWS + 5, result.recibidas());
+        assertEquals(BULK_ROWS, result.creadas());
+        assertEquals(5, result.rechazadas());
+        assertNotNull(result.resultados().get(0).id());
+        assertEquals("Código de venta repetido en el lote", result.resultados().get(BULK_ROWS).error());
+        assertTrue(result.resultados().get(BULK_ROWS + 1).error().startsWith("Stock insuficiente"));
+        assertTrue(result.resultados().get(BULK_ROWS + 2).error().contains("no pertenece a la filial"));
+        assertTrue(result.resultados().get(BULK_ROWS + 3).error().startsWith("Producto no encontrado"));
+        assertEquals("La cantidad debe ser mayor que cero", result.resultados().get(BULK_ROWS + 4).error());
+        assertEquals(0, productoService.getProductoById(productoId).getStockActual());
+        assertEquals(before.plus(Money.of(new BigDecimal("121"), Moneda.EUR).times(BULK_ROWS)),
+                ventaService.getTotalVentasByFilial(madrid.getId()));
+    }
+    
+    /**
+     * Test de la caché de búsquedas de filiales y productos (read-through, LRU e invalidación)
+     */
+    @Test
+    void testCatalogCache() {
+        CatalogCache cache = new CatalogCache(true, 2, 300);
+        AtomicInteger loads = new AtomicInteger();
+        Filial madrid = new Filial();
+        madrid.setId(100L);
+        madrid.setCodigo("ES-100");
+        
+        assertSame(madrid, cache.getFilialByCodigo("ES-100", codigo -> {
+            loads.incrementAndGet();
+            return Optional.of(madrid);
+        }).orElseThrow());
+        assertSame(madrid, cache.getFilialByCodigo("ES-100", codigo -> fail("Debe usar la caché")).orElseThrow());
+        assertSame(madrid, cache.getFilialById(100L, id -> fail("Debe usar la caché")).orElseThrow());
+        
+        // Las búsquedas sin resultado no se cachean
+        assertTrue(cache.getFilialByCodigo("XX-000", codigo -> Optional.empty()).isEmpty());
+        assertTrue(cache.getFilialByCodigo("XX-000", codigo -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        }).isEmpty());
+        
+        cache.invalidateFilial(100L);
+        cache.getFilialByCodigo("ES-100", codigo -> {
+            loads.incrementAndGet();
+            return Optional.of(madrid);
+        });
+        assertEquals(3, loads.get());
+        
+        @SuppressWarnings("unchecked")
+        Map<String, Object> filiales = (Map<String, Object>) cache.getStatistics().get("filiales");
+        assertEquals(2L, filiales.get("aciertos"));
+        assertEquals(4L, filiales.get("fallos"));
+        assertEquals(1L, filiales.get("invalidaciones"));
+        
+        // Dentro de una transacción la invalidación espera al commit
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidateFilial(100L);
+            assertSame(madrid, cache.getFilialById(100L, id -> fail("Debe usar la caché")).orElseThrow());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertTrue(cache.getFilialById(100L, id -> Optional.empty()).isEmpty());
+        
+        // Integración: el stock de un producto cacheado se actualiza tras una venta
+        Producto producto = productoService.getProductoBySku("LAP-001");
+        assertSame(producto, productoService.getProductoBySku("LAP-001"));
+        assertSame(producto, productoService.getProductoById(producto.getId()));
+        assertEquals("ES-001", producto.getFilial().getCodigo());
+        
+        Venta venta = new Venta();
+        venta.setCodigoVenta("ES-001-CACHE-1");
+        venta.setProducto(producto);
+        venta.setFilial(producto.getFilial());
+        venta.setCantidad(1);
+        venta.setPrecioUnitario(producto.getPrecioVenta());
+        venta.setEstado(Venta.EstadoVenta.COMPLETADA);
+        ventaService.createVenta(venta);
+        assertEquals(producto.getStockActual() - 1, productoService.getProductoBySku("LAP-001").getStockActual());
+    }
+    
+    /**
+     * Test de la paginación por clave: recorrer todas las páginas devuelve cada
+     * fila una sola vez y en orden, con los filtros aplicados
+     */
+    @Test
+    void testKeysetPagination() {
+        List<Long> ids = new ArrayList<>();
+        LocalDateTime previous = null;
+        String cursor = null;
+        int pages = 0;
+        do {
+            Pagina<Venta> pagina = ventaService.getVentasPage(null, null, null, null, cursor, 2);
+            assertTrue(pagina.elementos().size() <= 2);
+            for (Venta venta : pagina.elementos()) {
+                assertTrue(previous == null || !venta.getFechaVenta().isAfter(previous));
+                previous = venta.getFechaVenta();
+                ids.add(venta.getId());
+            }
+            assertEquals(pagina.hayMas(), pagina.siguienteCursor() != null);
+            cursor = pagina.siguienteCursor();
+            pages++;
+        } while (cursor != null && pages < 10_000);
+        assertEquals(ids.size(), ids.stream().distinct().count());
+        assertEquals(ventaService.getAllVentas().size(), ids.size());
+        
+        Filial madrid = filialService.getFilialByCodigo("ES-001");
+        Pagina<Producto> laptops = productoService.getProductosPage(madrid.getId(),
+                Producto.CategoriaProducto.LAPTOP, null, 10);
+        assertFalse(laptops.elementos().isEmpty());
+        laptops.elementos().forEach(producto -> {
+            assertEquals("ES-001", producto.getFilial().getCodigo());
+            assertEquals(Producto.CategoriaProducto.LAPTOP, producto.getCategoria());
+        });
+        Pagina<Producto> primera = productoService.getProductosPage(madrid.getId(), null, null, 1);
+        assertTrue(primera.hayMas());
+        Pagina<Producto> segunda = productoService.getProductosPage(madrid.getId(), null,
+                primera.siguienteCursor(), 1);
+        assertTrue(segunda.elementos().get(0).getId() > primera.elementos().get(0).getId());
+        
+        assertEquals(4, filialService.getFilialesPage(null, true, null, 10).elementos().size());
+        assertThrows(IllegalArgumentException.class,
+                () -> filialService.getFilialesPage(null, null, "no-es-un-cursor", 10));
+    }
+    
+    /**
+     * Test de la exportación de ventas en NDJSON y CSV
+     */
+    @Test
+    void testVentaExport() throws IOException {
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        long rows = ventaExportService.export(null, null, null, null, VentaExportService.Formato.NDJSON, ndjson);
+        List<String> lines = ndjson.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(ventaService.getAllVentas().size(), rows);
+        assertEquals(rows, lines.size());
+        assertTrue(lines.stream().allMatch(line -> line.startsWith("{\"id\":") && line.endsWith("}")));
+        
+        Filial madrid = filialService.getFilialByCodigo("ES-001");
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        long madridRows = ventaExportService.export(madrid.getId(), null, null, null,
+                VentaExportService.Formato.CSV, csv);
+        List<String> csvLines = csv.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(ventaService.getVentasByFilial(madrid.getId()).size(), madridRows);
+        assertEquals(madridRows + 1, csvLines.size());
+        assertTrue(csvLines.get(0).startsWith("id,codigoVenta,"));
+        csvLines.stream().skip(1).forEach(line -> assertTrue(line.contains(",ES-001,")));
+    }
+    
+    /**
+     * Test de la instantánea analítica: operadores del almacén columnar y
+     * coherencia con la tabla de ventas tras altas, modificaciones y bajas
+     */
+    @Test
+    void testVentaAnalyticsSnapshot() {
+        // Más filas que un bloque para cruzar el límite entre bloques
+        VentaColumnStore store = new VentaColumnStore();
+        int rows = VentaColumnStore.CHUNK_ROWS + 100;
+        long[] expectedByDay = new long[3];
+        long[] expectedByCategoria = new long[4];
+        for (int i = 0; i < rows; i++) {
+            store.append(i, 19000 + i % 10, i % 3, i % 7, i % 4, i % 2, 1 + i % 5, 100 + i);
+            if (i % 2 == 0 && i % 10 >= 2 && i % 10 <= 4 && i != rows - 2) {
+                expectedByDay[i % 10 - 2] += 100 + i;
+            }
+            if (i % 3 == 1) {
+                expectedByCategoria[i % 4] += 1 + i % 5;
+            }
+        }
+        assertTrue(store.remove(rows - 2));
+        assertFalse(store.remove(rows - 2));
+        assertTrue(store.contains(3));
+        assertTrue(store.contains(rows - 1));
+        assertFalse(store.contains(rows));
+        assertFalse(store.update(rows, 0, 1, 1));
+        VentaColumnStore.Totals porDia = store.aggregate(VentaColumnStore.Filter.all().withDays(19002, 19004)
+                .withEstado(0), VentaColumnStore.Dimension.DIA, 0);
+        assertEquals(19002, porDia.firstKey());
+        assertArrayEquals(expectedByDay, porDia.totalMinor());
+        VentaColumnStore.Totals porCategoria = store.aggregate(VentaColumnStore.Filter.all().withFilial(1),
+                VentaColumnStore.Dimension.CATEGORIA, 4);
+        assertArrayEquals(expectedByCategoria, porCategoria.unidades());
+        assertEquals(rows - 1, store.aggregate(VentaColumnStore.Filter.all(),
+                VentaColumnStore.Dimension.NINGUNA, 0).ventas()[0]);
+        
+        // La instantánea de la aplicación coincide con la tabla de ventas
+        Filial madrid = filialService.getFilialByCodigo("ES-001");
+        List<Venta> completadas = ventaService.getVentasByFilial(madrid.getId()).stream()
+                .filter(venta -> venta.getEstado() == Venta.EstadoVenta.COMPLETADA).toList();
+        BigDecimal expectedTotal = completadas.stream().map(Venta::getTotal)
+                .map(total -> total.setScale(2, RoundingMode.HALF_UP))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        VentaAnalyticsService.Grupo total = analyticsTotal(madrid);
+        assertEquals(completadas.size(), total.ventas());
+        assertEquals(0, expectedTotal.compareTo(total.total()));
+        
+        Venta venta = new Venta();
+        venta.setCodigoVenta("ES-001-V-ANALITICA");
+        venta.setProducto(productoService.getProductoBySku("PHN-001"));
+        venta.setFilial(madrid);
+        venta.setCantidad(1);
+        venta.setPrecioUnitario(new BigDecimal("100"));
+        venta.setImpuesto(new BigDecimal("21"));
+        venta.setEstado(Venta.EstadoVenta.COMPLETADA);
+        Venta saved = ventaService.createVenta(venta);
+        assertEquals(completadas.size() + 1, analyticsTotal(madrid).ventas());
+        assertEquals(0, expectedTotal.add(new BigDecimal("121")).compareTo(analyticsTotal(madrid).total()));
+        
+        venta.setCantidad(2);
+        ventaService.updateVenta(saved.getId(), venta);
+        assertEquals(0, expectedTotal.add(new BigDecimal("242")).compareTo(analyticsTotal(madrid).total()));
+        List<VentaAnalyticsService.Grupo> porCategoriaMadrid = ventaAnalyticsService.aggregate(
+                VentaColumnStore.Dimension.CATEGORIA, madrid.getId(), null, null, Venta.EstadoVenta.COMPLETADA,
+                null, null);
+        assertTrue(porCategoriaMadrid.stream().anyMatch(grupo -> grupo.clave() == Producto.CategoriaProducto.SMARTPHONE));
+        
+        ventaService.deleteVenta(saved.getId());
+        assertEquals(completadas.size(), analyticsTotal(madrid).ventas());
+        
+        ventaAnalyticsService.rebuild();
+        assertEquals(0, expectedTotal.compareTo(analyticsTotal(madrid).total()));
+    }
+    
+    /**
+     * Test de los índices de mapas de bits: operaciones frente a BitSet y
+     * recuentos combinados frente a la tabla de ventas
+     */
+    @Test
+    void testBitmapIndexes() {
+        // Un contenedor denso (mapa de bits) y otro disperso (array), con filas eliminadas
+        Random random = new Random(42);
+        RowBitmap a = new RowBitmap();
+        RowBitmap b = new RowBitmap();
+        BitSet expectedA = new BitSet();
+        BitSet expectedB = new BitSet();
+        for (int i = 0; i < 20_000; i++) {
+            int dense = random.nextInt(1 << 16);
+            int sparse = (1 << 16) * 3 + random.nextInt(1 << 16);
+            a.add(dense);
+            expectedA.set(dense);
+            b.add(i % 2 == 0 ? dense : sparse);
+            expectedB.set(i % 2 == 0 ? dense : sparse);
+        }
+        for (int i = 0; i < 15_000; i++) {
+            int row = random.nextInt(1 << 16);
+            a.remove(row);
+            expectedA.clear(row);
+        }
+        assertEquals(expectedA.cardinality(), a.cardinality());
+        BitSet and = (BitSet) expectedA.clone();
+        and.and(expectedB);
+        BitSet or = (BitSet) expectedA.clone();
+        or.or(expectedB);
+        BitSet andNot = (BitSet) expectedB.clone();
+        andNot.andNot(expectedA);
+        assertEquals(and.cardinality(), a.and(b).cardinality());
+        assertEquals(and.cardinality(), a.andCardinality(b));
+        assertEquals(or.cardinality(), a.or(b).cardinality());
+        assertEquals(andNot.cardinality(), b.andNot(a).cardinality());
+        List<Integer> rows = new ArrayList<>();
+        b.andNot(a).forEach(rows::add);
+        assertEquals(andNot.stream().boxed().toList(), rows);
+        
+        // COMPLETADA, en España, sin laptops; y desglose por país de todas las ventas
+        List<Venta> ventas = ventaService.getAllVentas();
+        long expected = ventas.stream()
+                .filter(venta -> venta.getEstado() == Venta.EstadoVenta.COMPLETADA)
+                .filter(venta -> "España".equals(venta.getFilial().getPais()))
+                .filter(venta -> venta.getProducto().getCategoria() != Producto.CategoriaProducto.LAPTOP)
+                .count();
+        VentaAnalyticsService.Conteo conteo = ventaAnalyticsService.count("COMPLETADA", "!LAPTOP", null, "españa",
+                null, null, "CATEGORIA");
+        assertEquals(expected, conteo.ventas());
+        assertFalse(conteo.desglose().containsKey(Producto.CategoriaProducto.LAPTOP));
+        assertEquals(expected, conteo.desglose().values().stream().mapToLong(Long::longValue).sum());
+        
+        VentaAnalyticsService.Conteo porPais = ventaAnalyticsService.count(null, null, null, null, null, null, "PAIS");
+        assertEquals(ventas.size(), porPais.ventas());
+        assertEquals(ventas.stream().filter(venta -> "México".equals(venta.getFilial().getPais())).count(),
+                porPais.desglose().getOrDefault("México", 0L));
+        assertEquals(0, ventaAnalyticsService.count(null, null, null, null, LocalDate.of(1990, 1, 1),
+                LocalDate.of(1990, 12, 31), null).ventas());
+        assertThrows(IllegalArgumentException.class,
+                () -> ventaAnalyticsService.count("VENDIDA", null, null, null, null, null, null));
+    }
+    
+    /**
+     * Test del importe en punto fijo: redondeo por moneda, sumas exactas y totales de la venta
+     */
+    @Test
+    void testMoney() {
+        assertEquals(Money.ofMinor(1235, Moneda.EUR), Money.of(new BigDecimal("12.345"), Moneda.EUR));
+        assertEquals(Money.ofMinor(1001, Moneda.CLP), Money.of(new BigDecimal("1000.5"), Moneda.CLP));
+        assertEquals("EUR 1,234,567.05", Money.of(new BigDecimal("1234567.05"), Moneda.EUR).format());
+        assertEquals("CLP -12,500", Money.ofMinor(-12_500, Moneda.CLP).format());
+        assertEquals("MXN 0.07", Money.ofMinor(7, Moneda.MXN).toString());
+        assertEquals(Money.ofMinor(629, Moneda.EUR), Money.ofMinor(2997, Moneda.EUR).percent(new BigDecimal("21")));
+        assertThrows(IllegalArgumentException.class, () -> Money.zero(Moneda.EUR).plus(Money.zero(Moneda.PEN)));
+        assertThrows(IllegalArgumentException.class, () -> Moneda.of("USD"));
+
+        // La división entera coincide con BigDecimal en todos los modos de redondeo
+        Random random = new Random(23);
+        for (int i = 0; i < 10_000; i++) {
+            long dividend = random.nextLong() >> random.nextInt(60);
+            long divisor = (random.nextInt(20_000) + 1) * (random.nextBoolean() ? 1L : -1L);
+            for (RoundingMode mode : RoundingMode.values()) {
+                if (mode != RoundingMode.UNNECESSARY) {
+                    assertEquals(BigDecimal.valueOf(dividend).divide(BigDecimal.valueOf(divisor), 0, mode).longValueExact(),
+                            Money.divide(dividend, divisor, mode), dividend + " / " + divisor + " " + mode);
+                }
+            }
+        }
+
+        // Un millón de importes sumados en un long cuadran al céntimo con BigDecimal
+        long sumMinor = 0;
+        BigDecimal sumExact = BigDecimal.ZERO;
+        for (int i = 0; i < 1_000_000; i++) {
+            long minor = random.nextInt(10_000_000);
+            sumMinor += minor;
+            sumExact = sumExact.add(BigDecimal.valueOf(minor, Money.STORAGE_SCALE));
+        }
+        assertEquals(sumExact, Money.ofMinor(sumMinor, Moneda.EUR).toBigDecimal());
+
+        // Totales de la venta con los decimales y el redondeo de la moneda de la filial
+        Filial madrid = filialService.getFilialByCodigo("ES-001");
+        Producto producto = productoService.getProductoBySku("PHN-001");
+        Venta venta = new Venta();
+        venta.setCodigoVenta("ES-001-V-MONEY");
+        venta.setProducto(producto);
+        venta.setFilial(madrid);
+        venta.setCantidad(3);
+        venta.setPrecioUnitario(new BigDecimal("9.99"));
+        venta.setImpuesto(new BigDecimal("21"));
+        venta.setFormaPago("Efectivo");
+        Venta saved = ventaService.createVenta(venta);
+        assertEquals("EUR", saved.getMoneda());
+        assertEquals(new BigDecimal("29.97"), saved.getSubtotal());
+        assertEquals(new BigDecimal("6.29"), saved.getMontoImpuesto());
+        assertEquals(new BigDecimal("36.26"), saved.getTotal());
+        ventaService.deleteVenta(saved.getId());
+
+        Filial chile = new Filial();
+        chile.setCodigo("CL-001");
+        chile.setNombre("Filial Santiago");
+        chile.setPais("Chile");
+        chile.setCiudad("Santiago");
+        chile.setMoneda("clp");
+        chile.setResponsable("Ana Rojas");
+        chile = filialService.createFilial(chile);
+        assertEquals("CLP", chile.getMoneda());
+        Producto tablet = new Producto();
+        tablet.setSku("CLP-001");
+        tablet.setNombre("Tablet Lenovo Tab");
+        tablet.setCategoria(Producto.CategoriaProducto.TABLET);
+        tablet.setMarca("Lenovo");
+        tablet.setModelo("Tab M10");
+        tablet.setPrecioCompra(new BigDecimal("600"));
+        tablet.setPrecioVenta(new BigDecimal("1000"));
+        tablet.setStockActual(10);
+        tablet.setFilial(chile);
+        tablet = productoService.createProducto(tablet);
+        Venta pesos = new Venta();
+        pesos.setCodigoVenta("CL-001-V-MONEY");
+        pesos.setProducto(tablet);
+        pesos.setFilial(chile);
+        pesos.setCantidad(3);
+        pesos.setPrecioUnitario(new BigDecimal("1000.40"));
+        pesos.setImpuesto(new BigDecimal("19"));
+        pesos.setFormaPago("Tarjeta");
+        pesos = ventaService.createVenta(pesos);
+        assertEquals(new BigDecimal("3000"), pesos.getSubtotal());
+        assertEquals(new BigDecimal("570"), pesos.getMontoImpuesto());
+        assertEquals(new BigDecimal("3570"), pesos.getTotal());
+        assertEquals(Money.ofMinor(3570, Moneda.CLP), ventaService.getTotalVentasByFilial(chile.getId()));
+
+        Filial dolares = new Filial();
+        dolares.setMoneda("USD");
+        assertThrows(IllegalArgumentException.class, () -> filialService.createFilial(dolares));
+    }
+
+    /**
+     * Test de la consolidación multimoneda: matriz de tipos fechados, conversión por bloques y total consolidado
+     */
+    @Test
+    void testFxConsolidation() throws IOException {
+        FxRateMatrix matrix = FxRateMatrix.parse(new StringReader("""
+                # tipos de prueba
+                fecha,moneda,unidadesPorEur
+                2025-01-01,MXN,20
+                2025-01-01,CLP,1000
+                2025-06-01,MXN,25
+                """));
+        assertEquals(2, matrix.size());
+        LocalDate marzo = LocalDate.of(2025, 3, 15);
+        assertEquals(200_000, matrix.conversion(Moneda.EUR, Moneda.MXN, marzo).convert(10_000));
+        assertEquals(4_938, matrix.conversion(Moneda.MXN, Moneda.EUR, LocalDate.of(2025, 7, 1)).convert(123_456));
+        assertEquals(124, matrix.conversion(Moneda.CLP, Moneda.EUR, marzo).convert(1_235));
+        assertEquals(1_230, matrix.conversion(Moneda.EUR, Moneda.CLP, marzo).convert(123));
+        assertEquals(Money.ofMinor(5_000, Moneda.MXN),
+                matrix.conversion(Moneda.CLP, Moneda.MXN, marzo).convert(Money.ofMinor(2_500, Moneda.CLP)));
+        assertEquals(new BigDecimal("0.04"), matrix.conversion(Moneda.MXN, Moneda.EUR, LocalDate.of(2026, 1, 1)).rate());
+        // Antes del primer tipo rige el primero; el CLP se arrastra a la segunda fecha
+        assertEquals(LocalDate.of(2025, 1, 1), matrix.conversion(Moneda.EUR, Moneda.MXN, LocalDate.of(2020, 1, 1)).vigencia());
+        assertEquals(100_000, matrix.conversion(Moneda.EUR, Moneda.CLP, LocalDate.of(2025, 8, 1)).convert(10_000));
+        assertThrows(IllegalArgumentException.class, () -> matrix.conversion(Moneda.PEN, Moneda.EUR, marzo));
+        assertThrows(IllegalArgumentException.class,
+                () -> FxRateMatrix.parse(new StringReader("2025-01-01,USD,1.1")));
+
+        // Conversión por bloques igual a la de cada importe, también fuera del rango rápido
+        FxRateMatrix.Conversion clpToMxn = matrix.conversion(Moneda.CLP, Moneda.MXN, marzo);
+        Random random = new Random(24);
+        long[] importes = new long[1_000];
+        for (int i = 0; i < importes.length; i++) {
+            importes[i] = i % 100 == 0 ? random.nextLong() / 100 : random.nextInt(100_000_000) - 50_000_000;
+        }
+        long[] convertidos = new long[importes.length];
+        clpToMxn.convert(importes, convertidos, importes.length);
+        for (int i = 0; i < importes.length; i++) {
+            assertEquals(BigDecimal.valueOf(importes[i]).multiply(new BigDecimal("2"))
+                    .setScale(0, RoundingMode.HALF_UP).longValueExact(), convertidos[i]);
+        }
+
+        // Consolidación mensual con los tipos del fichero de la aplicación (cacheada por mes y moneda)
+        assertEquals(Moneda.EUR, fxRateService.getMonedaConsolidacion());
+        YearMonth mes = YearMonth.of(2026, 8);
+        assertSame(fxRateService.conversion(Moneda.MXN, mes), fxRateService.conversion(Moneda.MXN, mes));
+        Money consolidado = fxRateService.consolidate(Moneda.MXN, new YearMonth[]{mes, mes.plusMonths(1)},
+                new long[]{2_104_500, 4_209_000});
+        assertEquals(Money.ofMinor(300_000, Moneda.EUR), consolidado);
+
+        LocalDateTime now = LocalDateTime.now();
+        String consolidated = reportService.generateConsolidatedReport(now.minusDays(90), now.plusDays(1), "FX");
+        String total = consolidated.lines()
+                .filter(line -> line.contains("Total consolidado"))
+                .findFirst()
+                .orElseThrow();
+        assertTrue(total.contains("Total consolidado (EUR)"));
+        assertTrue(total.contains("│ EUR "));
+        assertFalse(total.contains("N/D"));
+    }
+
+    /**
+     * Test del índice de stock bajo: listado en memoria y alertas al cruzar el mínimo
+     */
+    @Test
+    void testLowStockAlerts() throws Exception {
+        BlockingQueue<LowStockIndex.Alerta> alertas = new LinkedBlockingQueue<>();
+        SseEmitter suscriptor = lowStockIndex.subscribe(new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                builder.build().stream()
+                        .filter(item -> item.getData() instanceof LowStockIndex.Alerta)
+                        .forEach(item -> alertas.add((LowStockIndex.Alerta) item.getData()));
+            }
+        });
+
+        Filial filial = filialService.getFilialByCodigo("ES-001");
+        Producto producto = new Producto();
+        producto.setSku("LOW-001");
+        producto.setNombre("Router TP-Link Archer");
+        producto.setCategoria(Producto.CategoriaProducto.EQUIPO_RED);
+        producto.setMarca("TP-Link");
+        producto.setModelo("Archer AX55");
+        producto.setPrecioCompra(new BigDecimal("60"));
+        producto.setPrecioVenta(new BigDecimal("90"));
+        producto.setStockActual(5);
+        producto.setStockMinimo(10);
+        producto.setFilial(filial);
+        producto = productoService.createProducto(producto);
+        Long id = producto.getId();
+
+        LowStockIndex.Alerta alta = alertas.poll(5, TimeUnit.SECONDS);
+        assertNotNull(alta);
+        assertEquals(LowStockIndex.TipoAlerta.BAJO_STOCK, alta.tipo());
+        assertEquals("LOW-001", alta.producto().sku());
+        assertTrue(productoService.getProductosConBajoStock().stream().anyMatch(dto -> dto.id().equals(id)));
+
+        productoService.updateStock(id, 20);
+        LowStockIndex.Alerta recuperado = alertas.poll(5, TimeUnit.SECONDS);
+        assertNotNull(recuperado);
+        assertEquals(LowStockIndex.TipoAlerta.RECUPERADO, recuperado.tipo());
+        assertEquals(20, recuperado.producto().stockActual());
+        assertFalse(lowStockIndex.isBajoStock(id));
+
+        Venta venta = new Venta();
+        venta.setCodigoVenta("ES-001-V-LOWSTOCK");
+        venta.setProducto(producto);
+        venta.setFilial(filial);
+        venta.setCantidad(12);
+        venta.setPrecioUnitario(new BigDecimal("90"));
+        venta.setImpuesto(new BigDecimal("21"));
+        venta.setFormaPago("Efectivo");
+        Venta saved = ventaService.createVenta(venta);
+        LowStockIndex.Alerta bajo = alertas.poll(5, TimeUnit.SECONDS);
+        assertNotNull(bajo);
+        assertEquals(LowStockIndex.TipoAlerta.BAJO_STOCK, bajo.tipo());
+        assertEquals(8, bajo.producto().stockActual());
+        assertTrue(bajo.secuencia() > recuperado.secuencia());
+        ProductoDto listado = productoService.getProductosConBajoStock().stream()
+                .filter(dto -> dto.id().equals(id))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(8, listado.stockActual());
+        assertEquals(10, listado.stockMinimo());
+
+        // La recarga desde la base de datos coincide con el estado mantenido en memoria
+        lowStockIndex.reload();
+        assertTrue(lowStockIndex.isBajoStock(id));
+        assertTrue(alertas.isEmpty());
+
+        ventaService.deleteVenta(saved.getId());
+        productoService.deleteProducto(id);
+        assertFalse(lowStockIndex.isBajoStock(id));
+        suscriptor.complete();
+    }
+
+    private VentaAnalyticsService.Grupo analyticsTotal(Filial filial) {
+        List<VentaAnalyticsService.Grupo> grupos = ventaAnalyticsService.aggregate(VentaColumnStore.Dimension.NINGUNA,
+                filial.getId(), null, null, Venta.EstadoVenta.COMPLETADA, null, null);
+        return grupos.isEmpty() ? new VentaAnalyticsService.Grupo("TOTAL", 0, 0, BigDecimal.ZERO) : grupos.get(0);
+    }
+    
     /**
      * Test de configuración por país
      */
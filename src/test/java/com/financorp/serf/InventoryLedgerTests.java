@@ -0,0 +1,164 @@
+package com.financorp.serf;
+
+import com.financorp.serf.model.Filial;
+import com.financorp.serf.model.Producto;
+import com.financorp.serf.service.FilialService;
+import com.financorp.serf.service.InventoryLedger;
+import com.financorp.serf.service.ProductoService;
+import com.financorp.serf.service.VentaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Registro de inventario en memoria: reservas atómicas, flush por lotes a la
+ * base de datos y recuperación desde el WAL
+ *
+ * Usa su propia base de datos en memoria para no compartir stock con el
+ * contexto del resto de pruebas; el flush periódico se desactiva en la práctica
+ * para controlar cuándo se escribe.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:serfdb-ledger",
+        "serf.inventario.ledger.enabled=true",
+        "serf.inventario.ledger.flush-interval-ms=3600000",
+        "serf.inventario.ledger.wal-path=target/inventario-ledger-test.wal"
+})
+class InventoryLedgerTests {
+
+    @Autowired
+    private InventoryLedger inventoryLedger;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private FilialService filialService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void salesReserveInMemoryAndFlushToDatabase() {
+        Filial filial = filialService.getFilialByCodigo("AR-001");
+        Producto producto = productoService.createProducto(
+                TestFixtures.producto("LEDGER-FLUSH-" + System.nanoTime(), 3, filial));
+
+        for (int i = 0; i < 3; i++) {
+            ventaService.createVenta(TestFixtures.venta(producto, filial, "AR-001-L-F-" + producto.getId() + "-" + i));
+        }
+        RuntimeException agotado = assertThrows(RuntimeException.class,
+                () -> ventaService.createVenta(TestFixtures.venta(producto, filial, "AR-001-L-F-" + producto.getId() + "-3")));
+        assertEquals("Stock insuficiente para completar la venta", agotado.getMessage());
+
+        // En memoria ya no queda stock; la tabla todavía no se ha actualizado
+        assertEquals(0, productoService.getStockDisponible(producto.getId()));
+        assertEquals(3, databaseStock(producto.getId()));
+        assertTrue(inventoryLedger.reconcile(false).isEmpty());
+
+        inventoryLedger.flush();
+        assertEquals(0, databaseStock(producto.getId()));
+        assertTrue(inventoryLedger.reconcile(false).isEmpty());
+    }
+
+    @Test
+    void recoveryReplaysUnflushedMovements() {
+        Filial filial = filialService.getFilialByCodigo("AR-001");
+        Producto producto = productoService.createProducto(
+                TestFixtures.producto("LEDGER-WAL-" + System.nanoTime(), 10, filial));
+
+        ventaService.createVenta(TestFixtures.venta(producto, filial, "AR-001-L-W-" + producto.getId() + "-0"));
+        ventaService.createVenta(TestFixtures.venta(producto, filial, "AR-001-L-W-" + producto.getId() + "-1"));
+        assertEquals(10, databaseStock(producto.getId()));
+
+        // Simula un reinicio: los movimientos pendientes solo están en el WAL
+        Map<String, Object> recovered = inventoryLedger.recover();
+        assertTrue((Integer) recovered.get("movimientosReaplicados") >= 2);
+        assertEquals(8, databaseStock(producto.getId()));
+        assertEquals(8, productoService.getStockDisponible(producto.getId()));
+
+        // Una segunda recuperación no vuelve a aplicar los mismos movimientos
+        inventoryLedger.recover();
+        assertEquals(8, databaseStock(producto.getId()));
+    }
+
+    @Test
+    void reconciliationDetectsAndRepairsDrift() {
+        Filial filial = filialService.getFilialByCodigo("AR-001");
+        Producto producto = productoService.createProducto(
+                TestFixtures.producto("LEDGER-REC-" + System.nanoTime(), 5, filial));
+        assertEquals(5, productoService.getStockDisponible(producto.getId()));
+
+        // Cambio de stock fuera de la aplicación
+        jdbcTemplate.update("UPDATE productos SET stock_actual = 7 WHERE id = ?", producto.getId());
+
+        assertEquals(1, inventoryLedger.reconcile(true).size());
+        assertEquals(7, productoService.getStockDisponible(producto.getId()));
+        assertTrue(inventoryLedger.reconcile(false).isEmpty());
+    }
+
+    @Test
+    void reservationsAreRecordedOnlyOnCommit() throws Exception {
+        Filial filial = filialService.getFilialByCodigo("AR-001");
+        Producto producto = productoService.createProducto(
+                TestFixtures.producto("LEDGER-TX-" + System.nanoTime(), 10, filial));
+        Long id = producto.getId();
+
+        // Una reserva deshecha no llega al WAL
+        inventoryLedger.flush();
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(productoService.decrementStock(id, 4));
+            assertEquals(6, productoService.getStockDisponible(id));
+            status.setRollbackOnly();
+        });
+        assertEquals(10, productoService.getStockDisponible(id));
+        assertEquals(0, inventoryLedger.recover().get("movimientosReaplicados"));
+
+        // Una venta que confirma después de un ajuste de stock se descuenta del nuevo valor
+        CountDownLatch reserved = new CountDownLatch(1);
+        CountDownLatch adjusted = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> sale = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                assertTrue(productoService.decrementStock(id, 1));
+                reserved.countDown();
+                try {
+                    adjusted.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(reserved.await(10, TimeUnit.SECONDS));
+            productoService.updateStock(id, 20);
+            adjusted.countDown();
+            sale.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(19, productoService.getStockDisponible(id));
+        inventoryLedger.flush();
+        assertEquals(19, databaseStock(id));
+        assertTrue(inventoryLedger.reconcile(false).isEmpty());
+    }
+
+    private int databaseStock(Long productoId) {
+        return jdbcTemplate.queryForObject("SELECT stock_actual FROM productos WHERE id = ?", Integer.class, productoId);
+    }
+}
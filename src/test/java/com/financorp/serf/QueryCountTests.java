@@ -0,0 +1,158 @@
+package com.financorp.serf;
+
+import com.financorp.serf.model.Filial;
+import com.financorp.serf.model.Producto;
+import com.financorp.serf.service.FilialService;
+import com.financorp.serf.service.ProductoService;
+import com.financorp.serf.service.VentaService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Guarda contra N+1: los listados de la API deben resolverse con un número fijo
+ * de sentencias SQL, independiente del número de filas devueltas
+ *
+ * Cuenta las sentencias preparadas con las estadísticas de Hibernate, activadas
+ * solo durante cada petición. Comparte el contexto y la base de datos del resto
+ * de pruebas (MockMvc se construye sobre ese contexto) y solo añade productos y
+ * ventas propios.
+ */
+@SpringBootTest
+class QueryCountTests {
+
+    private static final int MAX_STATEMENTS_PER_REQUEST = 2;
+    private static final int EXTRA_ROWS_PER_FILIAL = 5;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private FilialService filialService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private VentaService ventaService;
+
+    private static boolean seeded;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void seedRows() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        // Varias filas por filial y producto: un N+1 se notaría en el recuento
+        if (seeded) {
+            return;
+        }
+        for (Filial filial : filialService.getAllFiliales()) {
+            for (int i = 0; i < EXTRA_ROWS_PER_FILIAL; i++) {
+                Producto producto = productoService.createProducto(
+                TestFixtures.producto(filial.getCodigo() + "-QC-" + i, 5, filial));
+                ventaService.createVenta(TestFixtures.venta(producto, filial, filial.getCodigo() + "-QC-V-" + i));
+            }
+        }
+        seeded = true;
+    }
+
+    @Test
+    void ventaListsUseFixedStatementCount() throws Exception {
+        Long filialId = filialService.getFilialByCodigo("ES-001").getId();
+        assertStatementsAtMost("/api/ventas");
+        assertStatementsAtMost("/api/ventas/filial/" + filialId);
+        assertStatementsAtMost("/api/ventas/estado/COMPLETADA");
+        assertStatementsAtMost("/api/ventas/periodo?fechaInicio=2000-01-01T00:00:00&fechaFin=2100-01-01T00:00:00");
+    }
+
+    @Test
+    void deepPagesUseFixedStatementCount() throws Exception {
+        String url = "/api/ventas?estado=COMPLETADA&limite=3";
+        String body = assertStatementsAtMost(url);
+        int pages = 1;
+        while (body.contains("\"siguienteCursor\":\"")) {
+            String cursor = body.replaceAll("(?s).*\"siguienteCursor\":\"([^\"]+)\".*", "$1");
+            body = assertStatementsAtMost(url + "&cursor=" + cursor);
+            pages++;
+        }
+        assertTrue(pages > 2);
+        assertStatementsAtMost("/api/productos?categoria=PERIFERICO&limite=3");
+    }
+
+    @Test
+    void productoListsUseFixedStatementCount() throws Exception {
+        Long filialId = filialService.getFilialByCodigo("ES-001").getId();
+        assertStatementsAtMost("/api/productos");
+        assertStatementsAtMost("/api/productos/filial/" + filialId);
+        assertStatementsAtMost("/api/productos/categoria/PERIFERICO");
+        assertStatementsAtMost("/api/productos/bajo-stock");
+    }
+
+    @Test
+    void filialListsDoNotWalkCollections() throws Exception {
+        String body = assertStatementsAtMost("/api/filiales");
+        assertFalse(body.contains("\"productos\""));
+        assertFalse(body.contains("\"ventas\""));
+        assertStatementsAtMost("/api/filiales/activas");
+        assertStatementsAtMost("/api/filiales/pais/España");
+    }
+
+    @Test
+    void exportReadsAllRowsWithOneQuery() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        statistics.setStatisticsEnabled(true);
+        String body;
+        long statements;
+        try {
+            MvcResult started = mockMvc.perform(get("/api/ventas/exportar?formato=CSV"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            body = mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                    .andReturn().getResponse().getContentAsString();
+            statements = statistics.getPrepareStatementCount();
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+        assertEquals(ventaService.getAllVentas().size() + 1, body.lines().count());
+        assertEquals(1, statements, () -> "La exportación ejecutó " + statements + " sentencias SQL");
+    }
+
+    private String assertStatementsAtMost(String url) throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        statistics.setStatisticsEnabled(true);
+        MvcResult result;
+        long statements;
+        try {
+            result = mockMvc.perform(get(url)).andExpect(status().isOk()).andReturn();
+            statements = statistics.getPrepareStatementCount();
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+        assertTrue(statements <= MAX_STATEMENTS_PER_REQUEST,
+                () -> url + " ejecutó " + statements + " sentencias SQL (máximo " + MAX_STATEMENTS_PER_REQUEST + ")");
+        return result.getResponse().getContentAsString();
+    }
+}
@@ -0,0 +1,121 @@
+package com.financorp.serf;
+
+import com.financorp.serf.model.Filial;
+import com.financorp.serf.model.Producto;
+import com.financorp.serf.service.FilialService;
+import com.financorp.serf.service.ProductoService;
+import com.financorp.serf.service.StockReservationService;
+import com.financorp.serf.service.VentaService;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Banco de pruebas de contención del descuento de stock
+ *
+ * Varios hilos venden a la vez el mismo producto con la mitad de stock que
+ * intentos de venta: se comprueba que nunca se vende de más ni se pierden
+ * actualizaciones, y se registra el rendimiento por número de hilos.
+ */
+@SpringBootTest
+class StockContentionTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockContentionTests.class);
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+    private static final int SALES_PER_THREAD = 100;
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private FilialService filialService;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Test
+    void conditionalDecrementNeverOversells() throws Exception {
+        for (int threads : THREAD_COUNTS) {
+            runContention("BD", threads, false);
+        }
+    }
+
+    @Test
+    void hotSkuReservationNeverOversells() throws Exception {
+        for (int threads : THREAD_COUNTS) {
+            runContention("HOT", threads, true);
+        }
+    }
+
+    private void runContention(String mode, int threads, boolean hot) throws Exception {
+        Filial filial = filialService.getFilialByCodigo("AR-001");
+        int attempts = threads * SALES_PER_THREAD;
+        int stock = attempts / 2;
+        Producto producto = productoService.createProducto(
+                TestFixtures.producto("CONT-" + mode + "-" + threads + "-" + System.nanoTime(), stock, filial));
+        stockReservationService.setHot(producto.getId(), hot);
+
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < SALES_PER_THREAD; i++) {
+                    try {
+                        ventaService.createVenta(TestFixtures.venta(producto, filial,
+                                "AR-001-C-" + mode + "-" + producto.getId() + "-" + thread + "-" + i));
+                        sold.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        if ("Stock insuficiente para completar la venta".equals(e.getMessage())) {
+                            rejected.incrementAndGet();
+                        } else {
+                            unexpected.add(e);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+        pool.shutdown();
+
+        logger.info("Contención {} con {} hilos: {} intentos, {} vendidas, {} rechazadas, {} intentos/s",
+                mode, threads, attempts, sold.get(), rejected.get(),
+                Math.round(attempts / (elapsedNanos / 1e9)));
+
+        assertTrue(unexpected.isEmpty(), () -> "Errores inesperados: " + unexpected);
+        assertEquals(stock, sold.get());
+        assertEquals(attempts - stock, rejected.get());
+        assertEquals(0, productoService.getProductoById(producto.getId()).getStockActual());
+    }
+}
@@ -0,0 +1,48 @@
+package com.financorp.serf;
+
+import com.financorp.serf.model.Filial;
+import com.financorp.serf.model.Producto;
+import com.financorp.serf.model.Venta;
+
+import java.math.BigDecimal;
+
+/**
+ * Datos de prueba comunes: un periférico de 10 de coste y 25 de precio, y una
+ * venta completada de una unidad a ese precio
+ */
+final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    /**
+     * Producto sin guardar con el stock indicado
+     */
+    static Producto producto(String sku, int stock, Filial filial) {
+        Producto producto = new Producto();
+        producto.setSku(sku);
+        producto.setNombre("Producto " + sku);
+        producto.setCategoria(Producto.CategoriaProducto.PERIFERICO);
+        producto.setMarca("Logitech");
+        producto.setModelo("MX");
+        producto.setPrecioCompra(new BigDecimal("10"));
+        producto.setPrecioVenta(new BigDecimal("25"));
+        producto.setStockActual(stock);
+        producto.setFilial(filial);
+        return producto;
+    }
+
+    /**
+     * Venta sin guardar de una unidad del producto
+     */
+    static Venta venta(Producto producto, Filial filial, String codigo) {
+        Venta venta = new Venta();
+        venta.setCodigoVenta(codigo);
+        venta.setProducto(producto);
+        venta.setFilial(filial);
+        venta.setCantidad(1);
+        venta.setPrecioUnitario(new BigDecimal("25"));
+        venta.setEstado(Venta.EstadoVenta.COMPLETADA);
+        return venta;
+    }
+}
@@ -0,0 +1,58 @@
+package com.financorp.serf.benchmark;
+
+import com.financorp.serf.patterns.structural.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark de la cadena de decoradores sobre un cuerpo ya renderizado,
+ * para distintas combinaciones de decoradores
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecoratorChainBenchmark {
+
+    @Param({"NINGUNO", "ENCABEZADO_PIE", "MARCO", "TODOS"})
+    private String decoradores;
+
+    @Param({"1000", "100000"})
+    private int bodyChars;
+
+    private Report report;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Report decorated = new BasicReport("Reporte de Ventas", "Reporte de Ventas", "x".repeat(bodyChars));
+
+        switch (decoradores) {
+            case "ENCABEZADO_PIE" -> {
+                decorated = new HeaderDecorator(decorated, "FinanCorp S.A.", "Departamento de Finanzas");
+                decorated = new FooterDecorator(decorated, "Benchmark");
+            }
+            case "MARCO" -> {
+                decorated = new WatermarkDecorator(decorated, "CONFIDENCIAL");
+                decorated = new HeaderDecorator(decorated, "FinanCorp S.A.", "Departamento de Finanzas");
+            }
+            case "TODOS" -> {
+                decorated = new WatermarkDecorator(decorated, "CONFIDENCIAL");
+                decorated = new HeaderDecorator(decorated, "FinanCorp S.A.", "Departamento de Finanzas");
+                decorated = new AuditDecorator(decorated, "Auditor Interno", "Revisión trimestral");
+                decorated = new DigitalSignatureDecorator(decorated, "CEO FinanCorp", "Chief Executive Officer");
+                decorated = new FooterDecorator(decorated, "Benchmark");
+            }
+            default -> {
+            }
+        }
+        report = decorated;
+    }
+
+    @Benchmark
+    public String generate() {
+        return report.generate();
+    }
+}
@@ -0,0 +1,56 @@
+package com.financorp.serf.benchmark;
+
+import com.financorp.serf.patterns.creational.FinancialReportBuilder;
+import com.financorp.serf.patterns.structural.Report;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark de {@link FinancialReportBuilder#build}: construcción del árbol y
+ * los decoradores por separado del renderizado completo
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FinancialReportBuilderBenchmark {
+
+    @Param({"0", "10", "1000"})
+    private int filiales;
+
+    @Param({"false", "true"})
+    private boolean decoradores;
+
+    private FinancialReportBuilder newBuilder() {
+        FinancialReportBuilder builder = new FinancialReportBuilder()
+                .setTitle("Reporte Financiero - FinanCorp S.A.")
+                .setReportType("Reporte Financiero Consolidado")
+                .setCountry("España")
+                .setPeriod(LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 12, 31, 23, 59))
+                .includeCharts(true)
+                .includeSummary(true)
+                .withHeader(decoradores)
+                .withFooter(decoradores, "Benchmark")
+                .withWatermark(decoradores)
+                .withDigitalSignature(decoradores, "CEO FinanCorp", "Chief Executive Officer")
+                .withAudit(decoradores, "Auditor Interno", "Revisión trimestral");
+        for (int i = 0; i < filiales; i++) {
+            builder.addFilial("F-" + i + " - Filial " + i);
+        }
+        return builder;
+    }
+
+    @Benchmark
+    public Report build() {
+        return newBuilder().build();
+    }
+
+    @Benchmark
+    public String buildAndGenerate() {
+        return newBuilder().build().generate();
+    }
+}
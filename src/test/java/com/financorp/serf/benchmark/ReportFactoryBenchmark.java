@@ -0,0 +1,64 @@
+package com.financorp.serf.benchmark;
+
+import com.financorp.serf.patterns.creational.ReportConfiguration;
+import com.financorp.serf.patterns.creational.ReportFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark de {@link ReportFactory#createReport} para cada tipo de reporte,
+ * comparando la plantilla precompilada con la construcción completa del Builder
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportFactoryBenchmark {
+
+    // Sin valores: JMH usa todas las constantes del enum
+    @Param
+    private ReportFactory.ReportType type;
+
+    @Param({"0", "50"})
+    private int filiales;
+
+    private ReportConfiguration config;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < filiales; i++) {
+            names.add("F-" + i + " - Filial " + i);
+        }
+        config = ReportConfiguration.builder()
+                .country("España")
+                .startDate(LocalDateTime.of(2024, 1, 1, 0, 0))
+                .endDate(LocalDateTime.of(2024, 12, 31, 23, 59))
+                .filiales(names.isEmpty() ? null : names)
+                .confidential(true)
+                .requireSignature(true)
+                .requireAudit(true)
+                .signerName("CEO FinanCorp")
+                .signerRole("Chief Executive Officer")
+                .auditor("Auditor Interno")
+                .auditNotes("Revisión trimestral")
+                .generatedBy("Benchmark")
+                .build();
+    }
+
+    @Benchmark
+    public String createReport() {
+        return ReportFactory.createReport(type, config).generate();
+    }
+
+    @Benchmark
+    public String buildReport() {
+        return ReportFactory.buildReport(type, config).generate();
+    }
+}
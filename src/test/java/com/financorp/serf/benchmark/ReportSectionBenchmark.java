@@ -0,0 +1,59 @@
+package com.financorp.serf.benchmark;
+
+import com.financorp.serf.patterns.structural.ReportContent;
+import com.financorp.serf.patterns.structural.ReportSection;
+import com.financorp.serf.patterns.structural.ReportTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark del renderizado de un árbol de secciones, con y sin memoización
+ * (con memoización cada operación modifica una tabla y vuelve a renderizar)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportSectionBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int sections;
+
+    @Param({"false", "true"})
+    private boolean memoized;
+
+    private ReportSection root;
+    private ReportTable lastTable;
+    private int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        root = new ReportSection("Reporte Consolidado", 1);
+        for (int s = 0; s < sections; s++) {
+            ReportSection filial = new ReportSection("Filial " + s, 2);
+            filial.add(new ReportContent("Resumen", "Ventas y márgenes del período de la filial " + s, 3));
+            ReportTable table = new ReportTable("Ventas", 3);
+            table.setHeaders(List.of("Código", "Total"));
+            for (int i = 0; i < 20; i++) {
+                table.addRow(List.of("V-" + s + "-" + i, String.valueOf(i * 100)));
+            }
+            filial.add(table);
+            root.add(filial);
+            lastTable = table;
+        }
+        root.setMemoized(memoized);
+    }
+
+    @Benchmark
+    public String render() {
+        if (memoized) {
+            // Una venta nueva: solo la última filial queda sucia
+            lastTable.addRow(List.of("N-" + counter, String.valueOf(counter++)));
+        }
+        return root.render();
+    }
+}
@@ -0,0 +1,55 @@
+package com.financorp.serf.benchmark;
+
+import com.financorp.serf.patterns.structural.ColumnarReportTable;
+import com.financorp.serf.patterns.structural.ReportComponent;
+import com.financorp.serf.patterns.structural.ReportTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark del renderizado de tablas con 10, 10k y 1M filas,
+ * comparando {@link ReportTable} y {@link ColumnarReportTable}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ReportTableBenchmark {
+
+    @Param({"10", "10000", "1000000"})
+    private int rows;
+
+    @Param({"LISTA", "COLUMNAR"})
+    private String tabla;
+
+    private ReportComponent table;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> headers = List.of("Código", "Producto", "Cantidad", "Total");
+        if ("COLUMNAR".equals(tabla)) {
+            ColumnarReportTable columnar = new ColumnarReportTable("Ventas", 3);
+            columnar.setHeaders(headers);
+            for (int i = 0; i < rows; i++) {
+                columnar.addRow("V-" + i, "Producto " + (i % 97), String.valueOf(i % 50), String.valueOf(i * 13L));
+            }
+            table = columnar;
+        } else {
+            ReportTable list = new ReportTable("Ventas", 3);
+            list.setHeaders(headers);
+            for (int i = 0; i < rows; i++) {
+                list.addRow(List.of("V-" + i, "Producto " + (i % 97), String.valueOf(i % 50), String.valueOf(i * 13L)));
+            }
+            table = list;
+        }
+    }
+
+    @Benchmark
+    public String render() {
+        return table.render();
+    }
+}
@@ -0,0 +1,61 @@
+package com.financorp.serf.benchmark;
+
+import com.financorp.serf.service.VentaColumnStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark de las agregaciones de la instantánea analítica de ventas con 1M
+ * y 50M filas: total de una filial en un año, total por día y recuento con
+ * índices de mapas de bits desglosado por categoría
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g", "-XX:MaxDirectMemorySize=4g"})
+@State(Scope.Benchmark)
+public class VentaColumnStoreBenchmark {
+
+    private static final int FIRST_DAY = 19000;
+    private static final int DAYS = 1500;
+
+    @Param({"1000000", "50000000"})
+    private int rows;
+
+    private VentaColumnStore store;
+    private VentaColumnStore.Filter filialYear;
+    private List<VentaColumnStore.Term> bitmapTerms;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new VentaColumnStore();
+        for (int i = 0; i < rows; i++) {
+            store.append(i, FIRST_DAY + (int) ((long) i * DAYS / rows), i % 4, i % 5000, i % 7, i % 20 == 0 ? 1 : 0,
+                    1 + i % 3, 1_000 + i % 100_000);
+        }
+        filialYear = VentaColumnStore.Filter.all().withDays(FIRST_DAY + 365, FIRST_DAY + 729).withFilial(2).withEstado(0);
+        bitmapTerms = List.of(
+                new VentaColumnStore.Term(VentaColumnStore.Dimension.ESTADO, new int[]{0}, false),
+                new VentaColumnStore.Term(VentaColumnStore.Dimension.CATEGORIA, new int[]{1, 2}, false),
+                new VentaColumnStore.Term(VentaColumnStore.Dimension.FILIAL, new int[]{3}, true));
+    }
+
+    @Benchmark
+    public long totalFilialYear() {
+        return store.aggregate(filialYear, VentaColumnStore.Dimension.NINGUNA, 0).totalMinor()[0];
+    }
+
+    @Benchmark
+    public long[] countByCategoria() {
+        return store.count(bitmapTerms, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                VentaColumnStore.Dimension.CATEGORIA, 7).desglose();
+    }
+
+    @Benchmark
+    public long[] totalByDay() {
+        return store.aggregate(VentaColumnStore.Filter.all().withEstado(0), VentaColumnStore.Dimension.DIA, 0).totalMinor();
+    }
+}